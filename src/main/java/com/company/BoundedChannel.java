@@ -0,0 +1,149 @@
+package com.company;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, closable hand-off between producer and consumer threads, backed by a fixed ring array.
+ * <p>
+ * A producer blocks in put() while the ring is full, which gives the reader backpressure. When the producer
+ * is done, it calls close(). Every consumer then drains what is left, after which take() returns null.
+ * Unlike an end marker in a queue, the closed state is seen by all consumers without being put back.
+ *
+ * @param <T> the type of the items handed off.
+ */
+final class BoundedChannel<T> {
+
+    //region Final Variables
+
+    private final Object[] _items;
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Condition _notEmpty = _lock.newCondition();
+    private final Condition _notFull = _lock.newCondition();
+
+    //endregion
+
+    //region Variables Guarded by the Lock
+
+    private int _head;
+    private int _count;
+    private boolean _closed;
+
+    //endregion
+
+    //region Constructor
+
+    BoundedChannel(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("'capacity' must be positive.");
+        _items = new Object[capacity];
+    }
+
+    //endregion
+
+    //region Hand-off
+
+    /**
+     * Adds an item, waiting for space if the channel is full.
+     *
+     * @throws IllegalStateException when the channel has been closed.
+     */
+    void put(T item) throws InterruptedException {
+        if (item == null) throw new IllegalArgumentException("'item' cannot be null.");
+        _lock.lockInterruptibly();
+        try {
+            while (_count == _items.length && !_closed) _notFull.await();
+            if (_closed) throw new IllegalStateException("The channel is closed.");
+            _items[(_head + _count) % _items.length] = item;
+            _count++;
+            _notEmpty.signal();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Removes an item, waiting for one if the channel is empty.
+     *
+     * @return the next item, or null when the channel is closed and drained.
+     */
+    T take() throws InterruptedException {
+        _lock.lockInterruptibly();
+        try {
+            while (_count == 0 && !_closed) _notEmpty.await();
+            return _count == 0 ? null : dequeue();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the end of the stream. Items already in the channel can still be taken.
+     */
+    void close() {
+        _lock.lock();
+        try {
+            _closed = true;
+            _notEmpty.signalAll();
+            _notFull.signalAll();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a closed channel again, for another stream, so that it can be reused instead of allocated anew.
+     *
+     * @throws IllegalStateException when items of the previous stream are still in the channel.
+     */
+    void reopen() {
+        _lock.lock();
+        try {
+            if (_count != 0) throw new IllegalStateException("The channel is not drained.");
+            _closed = false;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    //endregion
+
+    //region State
+
+    int size() {
+        _lock.lock();
+        try {
+            return _count;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    int capacity() {
+        return _items.length;
+    }
+
+    boolean isClosed() {
+        _lock.lock();
+        try {
+            return _closed;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    //endregion
+
+    //region Helpers
+
+    @SuppressWarnings("unchecked")
+    private T dequeue() {
+        final T item = (T) _items[_head];
+        _items[_head] = null;
+        _head = (_head + 1) % _items.length;
+        _count--;
+        _notFull.signal();
+        return item;
+    }
+
+    //endregion
+}
@@ -0,0 +1,50 @@
+package com.company;
+
+/**
+ * A reusable block of text handed from a reader to a parser in one go.
+ * The text always ends on a word boundary, unless a single word is longer than the whole batch.
+ */
+final class CharBatch {
+
+    //region Final Variables
+
+    private final char[] _chars;
+
+    //endregion
+
+    //region Variables
+
+    private int _length;
+
+    //endregion
+
+    //region Constructor
+
+    CharBatch(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("'capacity' must be positive.");
+        _chars = new char[capacity];
+    }
+
+    //endregion
+
+    //region Getters and Setters
+
+    char[] chars() {
+        return _chars;
+    }
+
+    int length() {
+        return _length;
+    }
+
+    void setLength(int length) {
+        if (length < 0 || length > _chars.length) throw new IllegalArgumentException("'length' is out of range.");
+        _length = length;
+    }
+
+    int capacity() {
+        return _chars.length;
+    }
+
+    //endregion
+}
@@ -0,0 +1,121 @@
+package com.company;
+
+/**
+ * A fixed set of reusable CharBatches that circulate between the reader and the parsers.
+ * <p>
+ * The reader acquires an empty batch, fills it and publishes it. A parser takes the batch, parses it and
+ * releases it back to the ring. Since the number of batches is fixed by the memory budget, the reader
+ * blocks in acquire() when the parsers fall behind, instead of filling up the heap.
+ */
+final class CharBatchRing {
+
+    //region Static Final Class Variables
+
+    static final int DEFAULT_BATCH_CHARS = 64 * 1024;
+    static final long DEFAULT_MEMORY_BUDGET = 16L * 1024 * 1024;
+    private static final int MIN_BATCH_COUNT = 2;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final BoundedChannel<CharBatch> _free;
+    private final BoundedChannel<CharBatch> _full;
+    private final int _batchCount;
+
+    //endregion
+
+    //region Constructors
+
+    CharBatchRing(long memoryBudget) {
+        this(memoryBudget, DEFAULT_BATCH_CHARS);
+    }
+
+    /**
+     * @param memoryBudget the number of bytes the batches may take in total. A char takes two bytes.
+     * @param batchChars   the number of chars in one batch.
+     */
+    CharBatchRing(long memoryBudget, int batchChars) {
+        if (memoryBudget <= 0) throw new IllegalArgumentException("'memoryBudget' must be positive.");
+        if (batchChars <= 0) throw new IllegalArgumentException("'batchChars' must be positive.");
+        _batchCount = (int) Math.max(MIN_BATCH_COUNT, Math.min(Integer.MAX_VALUE, memoryBudget / (2L * batchChars)));
+        _free = new BoundedChannel<>(_batchCount);
+        _full = new BoundedChannel<>(_batchCount);
+        try {
+            for (int index = 0; index < _batchCount; index++) _free.put(new CharBatch(batchChars));
+        } catch (InterruptedException e) {
+            //Cannot happen, there is room for every batch.
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //endregion
+
+    //region Reader Side
+
+    /**
+     * @return an empty batch, waiting for a parser to release one if none is free.
+     */
+    CharBatch acquire() throws InterruptedException {
+        final CharBatch batch = _free.take();
+        if (batch == null) throw new IllegalStateException("The ring is closed.");
+        return batch;
+    }
+
+    void publish(CharBatch batch) throws InterruptedException {
+        _full.put(batch);
+    }
+
+    /**
+     * Marks the end of the stream. The parsers still get the batches that were published before.
+     */
+    void close() {
+        _full.close();
+    }
+
+    //endregion
+
+    //region Parser Side
+
+    /**
+     * @return the next filled batch, or null at the end of the stream.
+     */
+    CharBatch take() throws InterruptedException {
+        return _full.take();
+    }
+
+    void release(CharBatch batch) throws InterruptedException {
+        batch.setLength(0);
+        _free.put(batch);
+    }
+
+    //endregion
+
+    //region Reuse
+
+    /**
+     * Prepares the ring for another stream, once the reader and every parser of the last one are done.
+     *
+     * @return false when batches of the last stream are missing, for instance because a parser failed.
+     * Such a ring cannot be reused.
+     */
+    boolean reopen() {
+        if (_full.size() != 0 || _free.size() != _batchCount) return false;
+        _full.reopen();
+        return true;
+    }
+
+    //endregion
+
+    //region State
+
+    int batchCount() {
+        return _batchCount;
+    }
+
+    int publishedCount() {
+        return _full.size();
+    }
+
+    //endregion
+}
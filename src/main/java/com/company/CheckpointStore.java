@@ -0,0 +1,218 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The checkpoint of a long count, kept in a directory: the merged counts so far, and how far into each input file
+ * they go, so that a count that dies can be resumed without counting the same input twice.
+ * <p>
+ * The checkpoint file starts with the job it belongs to: the absolute path, size and last modified time of every
+ * input file, in order. Then, for every file, whether it is done and how many of its bytes are counted. The counts
+ * follow in the binary form of the CountCache. A checkpoint of another job, or of files that changed since, is
+ * ignored.
+ * <p>
+ * The file is written to a temporary file first and moved into place, so a crash while writing leaves the previous
+ * checkpoint as it was.
+ */
+final class CheckpointStore {
+
+    //region Static Final Class Variables
+
+    private static final int MAGIC = 0x57434b31; //"WCK1"
+    private static final String CHECKPOINT_FILE = "checkpoint.wck";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Progress
+
+    /**
+     * How far a count got into each of its input files, in the order they are given.
+     */
+    static final class Progress {
+
+        private final boolean[] _done;
+        private final long[] _offsets;
+
+        Progress(int fileCount) {
+            if (fileCount < 0) throw new IllegalArgumentException("'fileCount' cannot be negative.");
+            _done = new boolean[fileCount];
+            _offsets = new long[fileCount];
+        }
+
+        int fileCount() {
+            return _done.length;
+        }
+
+        boolean done(int file) {
+            return _done[file];
+        }
+
+        /**
+         * @return the number of bytes of the file, from its start, whose words are all counted. For a compressed
+         * file, the bytes are those of its decompressed content.
+         */
+        long offset(int file) {
+            return _offsets[file];
+        }
+
+        void advance(int file, long offset) {
+            if (offset < _offsets[file]) throw new IllegalArgumentException("'offset' cannot go back.");
+            _offsets[file] = offset;
+        }
+
+        void complete(int file) {
+            _done[file] = true;
+        }
+
+        int doneCount() {
+            int done = 0;
+            for (boolean fileDone : _done) if (fileDone) done++;
+            return done;
+        }
+    }
+
+    //endregion
+
+    //region Final Variables
+
+    private final Path _directory;
+    private final Path _file;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param directory the directory the checkpoint is kept in. It is created if it does not exist.
+     */
+    CheckpointStore(Path directory) throws IOException {
+        if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+        Files.createDirectories(directory);
+        _directory = directory;
+        _file = directory.resolve(CHECKPOINT_FILE);
+    }
+
+    //endregion
+
+    //region Load and Save
+
+    /**
+     * Loads the checkpoint of a count of the given files, if there is one.
+     *
+     * @param progress receives how far the checkpointed count got. It must have a slot for every file.
+     * @param sink     receives the counts of the checkpoint.
+     * @return true when the checkpoint was loaded. Otherwise, the progress and the sink are left untouched.
+     */
+    boolean load(String[] filePath, Progress progress, PartitionedWordCounts sink) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        if (progress == null || progress.fileCount() != filePath.length) {
+            throw new IllegalArgumentException("'progress' must have a slot for every file.");
+        }
+        if (!Files.isRegularFile(_file)) return false;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(_file), BUFFER_SIZE))) {
+            if (input.readInt() != MAGIC || !readJob(input, filePath)) {
+                ConsoleOutput.printMessageWithGaps("The checkpoint in " + _directory + " is of another job, or its files changed. Ignoring it.");
+                return false;
+            }
+
+            //Read everything first, so that a corrupt checkpoint never leaves a partial state behind.
+            final Progress loaded = new Progress(filePath.length);
+            for (int file = 0; file < filePath.length; file++) {
+                if (input.readBoolean()) loaded.complete(file);
+                loaded.advance(file, input.readLong());
+            }
+            final WordCountTable counts = CountCache.readCounts(input);
+
+            for (int file = 0; file < filePath.length; file++) {
+                if (loaded.done(file)) progress.complete(file);
+                progress.advance(file, loaded.offset(file));
+            }
+            counts.forEach(sink::add);
+            return true;
+        } catch (IOException e) {
+            final String errorHeader = "Ignoring the unreadable checkpoint in: " + _directory;
+            ConsoleOutput.printIOException(errorHeader, e);
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the checkpoint with the given progress and counts.
+     *
+     * @return the size of the checkpoint file.
+     */
+    long save(String[] filePath, Progress progress, PartitionedWordCounts counts) throws IOException {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        if (progress == null || progress.fileCount() != filePath.length) {
+            throw new IllegalArgumentException("'progress' must have a slot for every file.");
+        }
+        if (counts == null) throw new IllegalArgumentException("'counts' cannot be null.");
+
+        final Path temporary = Files.createTempFile(_directory, CHECKPOINT_FILE, TEMPORARY_SUFFIX);
+        try {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_SIZE))) {
+                output.writeInt(MAGIC);
+                writeJob(output, filePath);
+                for (int file = 0; file < filePath.length; file++) {
+                    output.writeBoolean(progress.done(file));
+                    output.writeLong(progress.offset(file));
+                }
+                CountCache.writeCounts(output, counts);
+            }
+            final long size = Files.size(temporary);
+            Files.move(temporary, _file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the checkpoint, once the count it belongs to is done.
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(_file);
+    }
+
+    //endregion
+
+    //region Job
+
+    private static void writeJob(DataOutputStream output, String[] filePath) throws IOException {
+        output.writeInt(filePath.length);
+        for (String path : filePath) {
+            final Path file = Paths.get(path).toAbsolutePath();
+            output.writeUTF(file.toString());
+            output.writeLong(Files.size(file));
+            output.writeLong(Files.getLastModifiedTime(file).toMillis());
+        }
+    }
+
+    /**
+     * @return whether the checkpoint belongs to a count of the same files, none of which changed since.
+     */
+    private static boolean readJob(DataInputStream input, String[] filePath) throws IOException {
+        if (input.readInt() != filePath.length) return false;
+        for (String path : filePath) {
+            final Path file = Paths.get(path).toAbsolutePath();
+            if (!input.readUTF().equals(file.toString())) return false;
+            if (input.readLong() != Files.size(file)) return false;
+            if (input.readLong() != Files.getLastModifiedTime(file).toMillis()) return false;
+        }
+        return true;
+    }
+
+    //endregion
+}
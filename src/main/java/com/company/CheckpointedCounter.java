@@ -0,0 +1,389 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Counts files exactly while it takes checkpoints of the count, so that a count that dies, from running out of
+ * memory, being preempted or killed, can be resumed from its last checkpoint instead of from the start.
+ * <p>
+ * The files are read one after the other, from the start or from the offset of the checkpoint, and cut into
+ * chunks by a ChunkAssembler. The parsers count the chunks in parallel, each into a PaneSink. A checkpoint is taken
+ * between two reads: the complete words read so far are handed over, the reader waits until every chunk it handed
+ * over is parsed, the panes of the parsers are added to the counts of the previous checkpoints, and the counts are
+ * saved with the offset the chunks end at. The partial word after that offset is read again on a resume.
+ * <p>
+ * A checkpoint costs a pause of the parsers and a write of every distinct word so far, so its cost grows with the
+ * vocabulary. A checkpoint that falls due is estimated from the number of words it would write and the cost per word
+ * of the previous one, and put off while it would take the checkpoints over a fixed share of the time of the count,
+ * however short the interval.
+ * <p>
+ * Plain and gzip files are resumed from their offset. Zip archives and special files, such as named pipes, can only
+ * be skipped whole, so no checkpoint is taken in the middle of them.
+ */
+final class CheckpointedCounter {
+
+    //region Static Final Class Variables
+
+    private static final int CHUNKS_PER_PARSER = 2;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    //Checkpoints are put off so that they take at most this share of the time of the count.
+    private static final int MAX_CHECKPOINT_PERCENT = 5;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final ExecutorService _parserExecutor;
+    private final int _parserCount;
+    private final int _partitionCount;
+    private final Charset _encoding;
+    private final RunOptions.Tokenizer _tokenizer;
+    private final int _chunkSize;
+    private final CheckpointStore _store;
+    private final long _intervalNanos;
+    private final BoundedChannel<ByteBuffer> _chunks;
+    private final List<PaneSink> _panes = new ArrayList<>();
+    private final Object _inFlightLock = new Object();
+
+    //endregion
+
+    //region Variables
+
+    //The counts of the previous checkpoints, which the panes of the parsers are added to at every checkpoint.
+    private PartitionedWordCounts _total;
+    private long _start;
+    private long _nextCheckpoint;
+
+    //The cost of the last checkpoint per distinct word, to estimate the next one. Zero before the first one.
+    private double _nanosPerWord;
+
+    //Chunks handed over to the parsers and not parsed yet, and the failure of a parser, guarded by _inFlightLock.
+    private int _inFlight;
+    private Throwable _parserFailure;
+
+    //Statistics of the checkpoints.
+    private int _checkpoints;
+    private long _checkpointNanos;
+    private long _checkpointBytes;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param encoding       a charset the files can be cut into chunks in, see MappedFileReader.supportsCharset.
+     * @param intervalMillis the shortest time between two checkpoints.
+     */
+    CheckpointedCounter(ExecutorService parserExecutor, int parserCount, int partitionCount, Charset encoding,
+                        RunOptions.Tokenizer tokenizer, int chunkSize, CheckpointStore store, long intervalMillis) {
+        if (parserExecutor == null) throw new IllegalArgumentException("'parserExecutor' cannot be null.");
+        if (parserCount <= 0) throw new IllegalArgumentException("'parserCount' must be positive.");
+        if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+        if (encoding == null) throw new IllegalArgumentException("'encoding' cannot be null.");
+        if (!MappedFileReader.supportsCharset(encoding)) {
+            throw new IllegalArgumentException("Files in " + encoding.name() + " cannot be cut into chunks.");
+        }
+        if (tokenizer == null) throw new IllegalArgumentException("'tokenizer' cannot be null.");
+        if (chunkSize <= 0) throw new IllegalArgumentException("'chunkSize' must be positive.");
+        if (store == null) throw new IllegalArgumentException("'store' cannot be null.");
+        if (intervalMillis <= 0) throw new IllegalArgumentException("'intervalMillis' must be positive.");
+        _parserExecutor = parserExecutor;
+        _parserCount = parserCount;
+        _partitionCount = partitionCount;
+        _encoding = encoding;
+        _tokenizer = tokenizer;
+        _chunkSize = chunkSize;
+        _store = store;
+        _intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        _chunks = new BoundedChannel<>(parserCount * CHUNKS_PER_PARSER);
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts the files, resuming from the checkpoint of the store if it is of the same files. The checkpoint is
+     * deleted once the count is done. A counter runs a single count.
+     */
+    PartitionedWordCounts count(String[] filePath, PipelineMetrics metrics) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        if (metrics == null) throw new IllegalArgumentException("'metrics' cannot be null.");
+        if (_total != null) throw new IllegalStateException("A checkpointed counter runs a single count.");
+        final long start = System.nanoTime();
+        _start = start;
+        final CheckpointStore.Progress progress = new CheckpointStore.Progress(filePath.length);
+        _total = new PartitionedWordCounts(_partitionCount);
+        if (_store.load(filePath, progress, _total)) {
+            ConsoleOutput.printMessageWithGaps("Resuming from the checkpoint: " + progress.doneCount() + " of "
+                    + filePath.length + " files done, " + _total.size() + " distinct words counted.");
+        }
+
+        final List<ChunkParser<PaneSink>> parsers = new ArrayList<>();
+        final List<Future<?>> parserTasks = new ArrayList<>();
+        for (int index = 0; index < _parserCount; index++) {
+            final PaneSink pane = new PaneSink(_partitionCount);
+            final ChunkParser<PaneSink> parser = new ChunkParser<>(_encoding, _tokenizer, pane);
+            _panes.add(pane);
+            parsers.add(parser);
+            parserTasks.add(_parserExecutor.submit(() -> {
+                try {
+                    ByteBuffer chunk;
+                    while ((chunk = _chunks.take()) != null) {
+                        try {
+                            pane.parse(parser, chunk);
+                        } finally {
+                            chunkParsed();
+                        }
+                    }
+                } catch (InterruptedException | RuntimeException | Error e) {
+                    parserFailed(e);
+                    throw e;
+                }
+                return null;
+            }));
+        }
+
+        _nextCheckpoint = System.nanoTime() + _intervalNanos;
+        try {
+            for (int file = 0; file < filePath.length; file++) {
+                if (!progress.done(file)) countFile(filePath, file, progress);
+            }
+        } catch (IOException e) {
+            //The checkpoint of the last good state is kept, so the count can be resumed once the file is fixed.
+            throw new IllegalStateException("Cannot read the input files. Resume from the last checkpoint once they can be read.", e);
+        } catch (InterruptedException e) {
+            //The counts so far are not a result. The checkpoint is kept, so that the count can be resumed.
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the files. Resume from the last checkpoint.", e);
+        } finally {
+            _chunks.close();
+        }
+        metrics.recordStage(PipelineMetrics.Stage.READ, System.nanoTime() - start);
+        for (Future<?> parserTask : parserTasks) awaitParser(parserTask);
+        checkParsers();
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, System.nanoTime() - start);
+        for (ChunkParser<PaneSink> parser : parsers) metrics.recordParser(parser);
+
+        final long mergeStart = System.nanoTime();
+        for (PaneSink pane : _panes) addToTotal(pane.swap());
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, System.nanoTime() - mergeStart);
+        metrics.recordStage(PipelineMetrics.Stage.CHECKPOINT, _checkpointNanos);
+        reportCheckpoints(System.nanoTime() - start);
+
+        try {
+            _store.delete();
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Failed to delete the checkpoint of a finished count.", e);
+        }
+        return _total;
+    }
+
+    private void countFile(String[] filePath, int file, CheckpointStore.Progress progress) throws IOException, InterruptedException {
+        final String path = filePath[file];
+        final Path filePathObject = Paths.get(path);
+        final boolean regular = Files.isRegularFile(filePathObject);
+        final CompressedInput.Format format = CompressedInput.detect(path);
+        if (format == CompressedInput.Format.ZIP) {
+            try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(filePathObject))) {
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory()) countStream(zip, filePath, file, progress, false);
+                }
+            }
+        } else if (format == CompressedInput.Format.GZIP) {
+            try (InputStream input = CompressedInput.openGzip(path)) {
+                skipFully(input, progress.offset(file));
+                countStream(input, filePath, file, progress, true);
+            }
+        } else if (regular) {
+            try (FileChannel channel = FileChannel.open(filePathObject, StandardOpenOption.READ)) {
+                channel.position(progress.offset(file));
+                countStream(Channels.newInputStream(channel), filePath, file, progress, true);
+            }
+        } else {
+            try (InputStream input = Files.newInputStream(filePathObject)) {
+                countStream(input, filePath, file, progress, false);
+            }
+        }
+        progress.complete(file);
+        if (System.nanoTime() >= _nextCheckpoint) checkpoint(filePath, progress);
+    }
+
+    /**
+     * Counts a stream of the file, from the offset of the file on, and takes the checkpoints that fall due.
+     *
+     * @param resumable whether the file can be resumed from an offset, so that a checkpoint can be taken inside it.
+     */
+    private void countStream(InputStream input, String[] filePath, int file, CheckpointStore.Progress progress,
+                             boolean resumable) throws IOException, InterruptedException {
+        final long[] handedOver = {progress.offset(file)};
+        final ChunkAssembler assembler = new ChunkAssembler(_chunkSize, false, chunk -> {
+            handedOver[0] += chunk.remaining();
+            handOver(chunk);
+        });
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            assembler.write(buffer, 0, read);
+            if (resumable && System.nanoTime() >= _nextCheckpoint) {
+                assembler.flush();
+                progress.advance(file, handedOver[0]);
+                checkpoint(filePath, progress);
+            }
+        }
+        assembler.finish();
+        if (resumable) progress.advance(file, handedOver[0]);
+    }
+
+    //endregion
+
+    //region Checkpoints
+
+    /**
+     * Waits until every chunk handed over is parsed, adds the panes to the total and saves it with the progress.
+     * The checkpoint is put off instead when it would take the checkpoints over their share of the count.
+     */
+    private void checkpoint(String[] filePath, CheckpointStore.Progress progress) throws InterruptedException {
+        final long start = System.nanoTime();
+        awaitParsedChunks();
+
+        //The parsers are idle, so their panes can be sized. The sum is an upper bound, since panes share words.
+        long words = _total.size();
+        for (PaneSink pane : _panes) words += pane.size();
+        final long estimateNanos = (long) (_nanosPerWord * words);
+        if (estimateNanos > 0 && (_checkpointNanos + estimateNanos) * 100 > (start - _start) * MAX_CHECKPOINT_PERCENT) {
+            _checkpointNanos += System.nanoTime() - start;
+            _nextCheckpoint = _start + (_checkpointNanos + estimateNanos) * 100 / MAX_CHECKPOINT_PERCENT;
+            return;
+        }
+
+        for (PaneSink pane : _panes) addToTotal(pane.swap());
+        try {
+            _checkpointBytes = _store.save(filePath, progress, _total);
+            _checkpoints++;
+        } catch (IOException e) {
+            //The count goes on. The previous checkpoint is still in place.
+            ConsoleOutput.printIOException("Failed to write a checkpoint. Keeping the previous one.", e);
+        }
+        final long end = System.nanoTime();
+        _checkpointNanos += end - start;
+
+        //A checkpoint writes every distinct word, so the next one is estimated from the words it will have to write.
+        _nanosPerWord = (end - start) / (double) Math.max(1, _total.size());
+        _nextCheckpoint = Math.max(end + _intervalNanos, _start + _checkpointNanos * 100 / MAX_CHECKPOINT_PERCENT);
+    }
+
+    private void addToTotal(PartitionedWordCounts pane) {
+        for (int partition = 0; partition < _partitionCount; partition++) {
+            _total.partition(partition).merge(pane.partition(partition));
+        }
+    }
+
+    private void reportCheckpoints(long elapsedNanos) {
+        if (_checkpoints == 0) return;
+        ConsoleOutput.printMessageWithGaps(String.format(Locale.ROOT, "Wrote %d checkpoint%s in %d ms, %.1f%% of the count. The last one took %d KB.",
+                _checkpoints, _checkpoints == 1 ? "" : "s", TimeUnit.NANOSECONDS.toMillis(_checkpointNanos),
+                elapsedNanos > 0 ? 100.0 * _checkpointNanos / elapsedNanos : 0.0, _checkpointBytes / 1024));
+    }
+
+    //endregion
+
+    //region Chunks in Flight
+
+    private void handOver(ByteBuffer chunk) throws InterruptedException {
+        synchronized (_inFlightLock) {
+            _inFlight++;
+        }
+        try {
+            _chunks.put(chunk);
+        } catch (IllegalStateException e) {
+            //Only a failed parser closes the channel while the files are read.
+            checkParsers();
+            throw e;
+        }
+    }
+
+    private void chunkParsed() {
+        synchronized (_inFlightLock) {
+            if (--_inFlight == 0) _inFlightLock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns once the parsers are idle. Their panes, written under the same lock, can then be read.
+     *
+     * @throws IllegalStateException when a parser failed, so that no checkpoint is taken of counts that miss a chunk.
+     */
+    private void awaitParsedChunks() throws InterruptedException {
+        synchronized (_inFlightLock) {
+            while (_inFlight > 0 && _parserFailure == null) _inFlightLock.wait();
+        }
+        checkParsers();
+    }
+
+    /**
+     * Closes the channel, which wakes a reader that waits for room in it, and lets the other parsers end.
+     */
+    private void parserFailed(Throwable failure) {
+        synchronized (_inFlightLock) {
+            if (_parserFailure == null) _parserFailure = failure;
+            _inFlightLock.notifyAll();
+        }
+        _chunks.close();
+    }
+
+    private void checkParsers() {
+        synchronized (_inFlightLock) {
+            if (_parserFailure == null) return;
+            throw new IllegalStateException("A parser of the checkpointed count failed. Resume from the last checkpoint.", _parserFailure);
+        }
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static void skipFully(InputStream input, long count) throws IOException {
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        while (count > 0) {
+            final int read = input.read(buffer, 0, (int) Math.min(buffer.length, count));
+            if (read < 0) throw new IOException("The file is shorter than its checkpoint.");
+            count -= read;
+        }
+    }
+
+    private static void awaitParser(Future<?> parser) {
+        try {
+            parser.get();
+        } catch (InterruptedException e) {
+            final String errorHeader = "Interrupted while awaiting a parser of a checkpointed count.";
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = new Throwable(e).getCause();
+            final String errorHeader = "ExcecutionException thrown by a parser of a checkpointed count.";
+            ConsoleOutput.printExecutionException(errorHeader, cause, e);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,184 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cuts a stream of decompressed bytes into chunks that end on a word boundary, the same way the
+ * MappedFileReader cuts a mapping.
+ * <p>
+ * When the stream is only a piece of a longer text, such as one member of a gzip file, the words at its
+ * edges may continue in the neighbouring pieces. Such an assembler holds back the bytes before the first
+ * delimiter (the head) and after the last one (the tail), so that they can be joined with the neighbours.
+ */
+final class ChunkAssembler {
+
+    //region Chunk Sink
+
+    /**
+     * Where the finished chunks go. Each chunk is a buffer of its own, which is never written again.
+     */
+    interface ChunkSink {
+        void put(ByteBuffer chunk) throws InterruptedException;
+    }
+
+    //endregion
+
+    //region Static Final Class Variables
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    //endregion
+
+    //region Final Variables
+
+    private final int _chunkSize;
+    private final boolean _holdEdges;
+    private final ChunkSink _sink;
+
+    //endregion
+
+    //region Variables
+
+    private byte[] _buffer;
+    private int _length;
+    private byte[] _head;
+    private byte[] _tail = EMPTY;
+    private boolean _delimited = true;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param holdEdges whether to hold back the partial words at both edges of the stream, instead of
+     *                  treating the start and the end of the stream as word boundaries.
+     */
+    ChunkAssembler(int chunkSize, boolean holdEdges, ChunkSink sink) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("'chunkSize' must be positive.");
+        if (sink == null) throw new IllegalArgumentException("'sink' cannot be null.");
+        _chunkSize = chunkSize;
+        _holdEdges = holdEdges;
+        _sink = sink;
+        _buffer = new byte[Math.min(chunkSize, INITIAL_BUFFER_SIZE)];
+    }
+
+    //endregion
+
+    //region Writing
+
+    void write(byte[] bytes, int offset, int length) throws InterruptedException {
+        while (length > 0) {
+            if (_length == _buffer.length) {
+                if (_buffer.length < _chunkSize) {
+                    _buffer = Arrays.copyOf(_buffer, Math.min(_chunkSize, _buffer.length * 2));
+                } else {
+                    emitAligned();
+                }
+            }
+            final int copied = Math.min(length, _buffer.length - _length);
+            System.arraycopy(bytes, offset, _buffer, _length, copied);
+            _length += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    /**
+     * Emits everything up to the last delimiter now, without waiting for a full chunk, and keeps the partial word
+     * after it. For a live stream, whose next bytes may be a long time coming.
+     */
+    void flush() throws InterruptedException {
+        final int end = lastDelimiterEnd(_buffer, _length);
+        if (end == 0) return;
+        final byte[] chunk = Arrays.copyOf(_buffer, end);
+        System.arraycopy(_buffer, end, _buffer, 0, _length - end);
+        _length -= end;
+        emit(chunk, 0, end);
+    }
+
+    /**
+     * Emits what is left. The end of the stream is a word boundary, unless the edges are held back.
+     */
+    void finish() throws InterruptedException {
+        //The buffer is not written again, so the last chunk can share it with the tail.
+        if (!_holdEdges) {
+            emit(_buffer, 0, _length);
+            return;
+        }
+
+        final int end = lastDelimiterEnd(_buffer, _length);
+        if (end == 0 && _head == null) {
+            //Not a single delimiter in the whole stream. All of it is one partial word.
+            _head = Arrays.copyOf(_buffer, _length);
+            _delimited = false;
+            return;
+        }
+        emit(_buffer, 0, end);
+        _tail = Arrays.copyOfRange(_buffer, end, _length);
+    }
+
+    //endregion
+
+    //region Edges
+
+    /**
+     * @return the bytes before the first delimiter. Valid once the assembler is finished.
+     */
+    byte[] head() {
+        return _head == null ? EMPTY : _head;
+    }
+
+    /**
+     * @return the bytes after the last delimiter. Valid once the assembler is finished.
+     */
+    byte[] tail() {
+        return _tail;
+    }
+
+    /**
+     * @return whether the stream had a word boundary at all. When it had not, the whole stream is the head.
+     */
+    boolean delimited() {
+        return _delimited;
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private void emitAligned() throws InterruptedException {
+        int end = lastDelimiterEnd(_buffer, _length);
+        //A word longer than a whole chunk is cut where the chunk ends, like the MappedFileReader does.
+        if (end == 0) end = _length;
+
+        final byte[] full = _buffer;
+        final int rest = _length - end;
+        _buffer = new byte[_chunkSize];
+        System.arraycopy(full, end, _buffer, 0, rest);
+        _length = rest;
+        emit(full, 0, end);
+    }
+
+    private void emit(byte[] bytes, int from, int to) throws InterruptedException {
+        if (_holdEdges && _head == null) {
+            //The first bytes of the stream, up to the first delimiter, belong to a word of the previous piece.
+            int first = from;
+            while (first < to && !MappedFileReader.isDelimiter(bytes[first])) first++;
+            _head = Arrays.copyOfRange(bytes, from, first);
+            from = first;
+        }
+        if (to <= from) return;
+        _sink.put(ByteBuffer.wrap(bytes, from, to - from).slice());
+    }
+
+    private static int lastDelimiterEnd(byte[] bytes, int length) {
+        for (int index = length - 1; index >= 0; index--) {
+            if (MappedFileReader.isDelimiter(bytes[index])) return index + 1;
+        }
+        return 0;
+    }
+
+    //endregion
+}
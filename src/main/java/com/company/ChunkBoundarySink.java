@@ -0,0 +1,22 @@
+package com.company;
+
+/**
+ * A WordSink that needs to know which chunk its words come from, such as the NGramCounts, whose n-grams must not
+ * run from the end of one chunk into the start of an unrelated one. A ChunkParser tells such a sink where every
+ * chunk starts and ends.
+ */
+interface ChunkBoundarySink extends WordSink {
+
+    /**
+     * Called before the first word of a chunk.
+     *
+     * @param path     the path of the file the chunk is part of.
+     * @param sequence the place of the chunk in the file, see FileChunk.sequence().
+     */
+    void startChunk(String path, long sequence);
+
+    /**
+     * Called after the last word of the chunk.
+     */
+    void endChunk();
+}
@@ -0,0 +1,226 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+/**
+ * The callable class to parse one file chunk at a time from a channel passed in the constructor.
+ * Each chunk is tokenized here, on the parser thread, the same way a LineParser parses a line.
+ * The words are counted into a local sink, usually a WordCountTable, which is the result of the call.
+ * <p>
+ * A chunk is not decoded: in every charset a chunk can be cut in, the bytes of the words are their ASCII
+ * characters, and every other byte is a delimiter, so its bytes are tokenized as they are. The words become
+ * Strings only when the result is written. Chunks of any other charset are decoded into a reusable buffer first.
+ * <p>
+ * A ChunkParser without a channel is fed by whoever calls parse() instead, one chunk at a time.
+ * <p>
+ * A sink that is a ChunkBoundarySink is told where each chunk starts and ends.
+ *
+ * @param <S> the type of the sink the words are counted into.
+ */
+public class ChunkParser<S extends WordSink> implements Callable<S>, PipelineMetrics.ParserStage {
+
+    //region Final Variables and Collections
+
+    private final BoundedChannel<FileChunk> _chunks;
+    private final CharsetDecoder _decoder;
+    private final S _result;
+    private final ChunkBoundarySink _boundarySink;
+    private final WordTokenizer _tokenizer;
+
+    //False when the tokenizer reads the bytes as they are, which is the case for every charset chunks are cut in.
+    private final boolean _decodeChunks;
+
+    //endregion
+
+    //region Variables
+
+    //Reused for every chunk. It only grows when a chunk decodes to more chars than any chunk before.
+    private CharBuffer _chars = CharBuffer.allocate(0);
+
+    //Written by the parser thread only, and read once it is done.
+    private long _elapsedNanos;
+    private long _blockedNanos;
+
+    //endregion
+
+    //region Constructors
+
+    ChunkParser(BoundedChannel<FileChunk> chunks, S sink) {
+        this(chunks, StandardCharsets.UTF_8, sink);
+    }
+
+    /**
+     * @param chunks  the buffer from which the ChunkParser reads the chunks to parse.
+     * @param charset the charset of the chunks. Chunks that have to be decoded replace malformed input.
+     * @param sink    the sink the words are counted into. It is returned by call().
+     */
+    ChunkParser(BoundedChannel<FileChunk> chunks, Charset charset, S sink) {
+        this(chunks, charset, RunOptions.Tokenizer.SCALAR, sink);
+    }
+
+    /**
+     * @param tokenizer how the bytes of the chunks are scanned for words.
+     */
+    ChunkParser(BoundedChannel<FileChunk> chunks, Charset charset, RunOptions.Tokenizer tokenizer, S sink) {
+        this(charset, tokenizer, sink, requireChannel(chunks));
+    }
+
+    /**
+     * A parser without a channel, which counts the chunks handed to parse().
+     */
+    ChunkParser(Charset charset, S sink) {
+        this(charset, RunOptions.Tokenizer.SCALAR, sink);
+    }
+
+    ChunkParser(Charset charset, RunOptions.Tokenizer tokenizer, S sink) {
+        this(charset, tokenizer, sink, null);
+    }
+
+    private ChunkParser(Charset charset, RunOptions.Tokenizer tokenizer, S sink, BoundedChannel<FileChunk> chunks) {
+        if (charset == null) throw new IllegalArgumentException("'charset' cannot be null.");
+        if (tokenizer == null) throw new IllegalArgumentException("'tokenizer' cannot be null.");
+        if (sink == null) throw new IllegalArgumentException("'sink' cannot be null.");
+        _chunks = chunks;
+        _result = sink;
+        _boundarySink = sink instanceof ChunkBoundarySink ? (ChunkBoundarySink) sink : null;
+        _tokenizer = new WordTokenizer(tokenizer);
+        _decodeChunks = !MappedFileReader.supportsCharset(charset);
+        _decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private static BoundedChannel<FileChunk> requireChannel(BoundedChannel<FileChunk> chunks) {
+        if (chunks == null) throw new IllegalArgumentException("The input chunk buffer cannot be null.");
+        return chunks;
+    }
+
+    //endregion
+
+    //region Call method implementation
+
+    @Override
+    public S call() {
+        if (_chunks == null) throw new IllegalStateException("A parser without a channel is fed by parse().");
+        final long start = System.nanoTime();
+        try {
+            return parseChunks();
+        } finally {
+            _elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private S parseChunks() {
+        //The reader closes the channel in a finally block, so the parsers always see the end of the stream.
+        while (true) {
+            final FileChunk chunk;
+            try {
+                final long takeStart = System.nanoTime();
+                chunk = _chunks.take();
+                _blockedNanos += System.nanoTime() - takeStart;
+            } catch (InterruptedException e) {
+                final String errorHeader = "Parser thread interrupted while waiting for chunks to parse.";
+                ConsoleOutput.printInterruptedException(errorHeader, e);
+                continue;
+            }
+            if (chunk == null) break;
+
+            //A chunk always ends on a delimiter, so tokenizing it whole gives the same words as
+            //tokenizing it line by line.
+            tokenize(chunk);
+        }
+        return _result;
+    }
+
+    /**
+     * Counts the words of one chunk, which must end on a word boundary. Not safe to call from two threads at once.
+     */
+    void parse(ByteBuffer bytes) {
+        final long start = System.nanoTime();
+        tokenize(bytes);
+        _elapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Counts the words of one chunk of a file, and tells a ChunkBoundarySink which chunk they come from.
+     */
+    void parse(FileChunk chunk) {
+        final long start = System.nanoTime();
+        tokenize(chunk);
+        _elapsedNanos += System.nanoTime() - start;
+    }
+
+    private void tokenize(FileChunk chunk) {
+        if (_boundarySink == null) {
+            tokenize(chunk.bytes());
+            return;
+        }
+        _boundarySink.startChunk(chunk.path(), chunk.sequence());
+        tokenize(chunk.bytes());
+        _boundarySink.endChunk();
+    }
+
+    private void tokenize(ByteBuffer bytes) {
+        if (_decodeChunks) {
+            _tokenizer.tokenize(decode(bytes), _result);
+        } else {
+            _tokenizer.tokenize(bytes, _result);
+        }
+    }
+
+    S result() {
+        return _result;
+    }
+
+    //endregion
+
+    //region Decoding
+
+    private CharBuffer decode(ByteBuffer bytes) {
+        final int maxChars = (int) Math.ceil(bytes.remaining() * (double) _decoder.maxCharsPerByte());
+        if (_chars.capacity() < maxChars) _chars = CharBuffer.allocate(maxChars);
+        _chars.clear();
+
+        //With the REPLACE actions, decoding cannot fail, and the output buffer is big enough.
+        _decoder.reset();
+        _decoder.decode(bytes, _chars, true);
+        _decoder.flush(_chars);
+        _chars.flip();
+        return _chars;
+    }
+
+    //endregion
+
+    //region Statistics Getters
+
+    @Override
+    public long words() {
+        return _tokenizer.words();
+    }
+
+    @Override
+    public long lines() {
+        return _tokenizer.lines();
+    }
+
+    @Override
+    public long busyNanos() {
+        return _elapsedNanos - _blockedNanos;
+    }
+
+    /**
+     * @return the time spent waiting for chunks to parse.
+     */
+    @Override
+    public long blockedNanos() {
+        return _blockedNanos;
+    }
+
+    //endregion
+}
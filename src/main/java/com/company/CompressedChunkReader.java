@@ -0,0 +1,136 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Decompresses a gzip file or a zip archive straight into word-aligned chunks for the ChunkParsers, so that
+ * compressed inputs never have to be unpacked to disk.
+ * <p>
+ * The entries of a zip archive are independent, so a few tasks on the given executor take them one by one. The
+ * members of a gzip file are inflated in parallel by a GzipMemberChain. A file of a single member, which is the
+ * usual case for gzip, can only be inflated by one thread. The executor is the engine's, so that no file starts
+ * threads of its own.
+ */
+final class CompressedChunkReader {
+
+    //region Static Final Class Variables
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Constructor
+
+    private CompressedChunkReader() {
+    }
+
+    //endregion
+
+    //region Reading
+
+    /**
+     * Decompresses a file into chunks, and returns when every chunk has been put in the channel.
+     *
+     * @param executor runs the inflating tasks. Without one, everything runs on the calling thread.
+     * @param threads  how many tasks may inflate this file at once.
+     */
+    static void read(String path, CompressedInput.Format format, BoundedChannel<FileChunk> chunks, int chunkSize,
+                     ExecutorService executor, int threads) throws IOException, InterruptedException {
+        if (format == CompressedInput.Format.PLAIN) throw new IllegalArgumentException("'format' must be compressed.");
+        if (threads <= 0) throw new IllegalArgumentException("'threads' must be positive.");
+
+        final ExecutorService inflater = threads > 1 ? executor : null;
+        if (format == CompressedInput.Format.GZIP) {
+            readGzip(path, chunks, chunkSize, inflater, threads);
+        } else {
+            readZip(path, chunks, chunkSize, inflater, threads);
+        }
+    }
+
+    private static void readGzip(String path, BoundedChannel<FileChunk> chunks, int chunkSize,
+                                 ExecutorService executor, int threads) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            new GzipMemberChain(path, channel, chunks, chunkSize).run(executor, threads);
+        }
+    }
+
+    private static void readZip(String path, BoundedChannel<FileChunk> chunks, int chunkSize,
+                                ExecutorService executor, int threads) throws IOException, InterruptedException {
+        try (ZipFile zip = new ZipFile(path)) {
+            final List<ZipEntry> entries = new ArrayList<>();
+            final Enumeration<? extends ZipEntry> all = zip.entries();
+            while (all.hasMoreElements()) {
+                final ZipEntry entry = all.nextElement();
+                if (!entry.isDirectory()) entries.add(entry);
+            }
+
+            if (executor == null || entries.size() == 1) {
+                for (ZipEntry entry : entries) readZipEntry(zip, entry, path, chunks, chunkSize);
+                return;
+            }
+
+            //Every entry is a separate deflate stream. A ZipFile can read several of them at once.
+            final AtomicInteger next = new AtomicInteger();
+            final List<Future<Void>> tasks = new ArrayList<>();
+            try {
+                for (int task = 0; task < Math.min(threads, entries.size()); task++) {
+                    tasks.add(executor.submit(() -> {
+                        int index;
+                        while ((index = next.getAndIncrement()) < entries.size()) {
+                            readZipEntry(zip, entries.get(index), path, chunks, chunkSize);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<Void> task : tasks) awaitEntry(task);
+            } finally {
+                //After a failure, the other tasks must not go on reading a closed archive into the channel.
+                next.set(entries.size());
+                for (Future<Void> task : tasks) task.cancel(true);
+            }
+        }
+    }
+
+    private static void readZipEntry(ZipFile zip, ZipEntry entry, String path, BoundedChannel<FileChunk> chunks,
+                                     int chunkSize) throws IOException, InterruptedException {
+        //The entry is counted like a file of its own, so both of its ends are word boundaries.
+        final String entryPath = path + "!/" + entry.getName();
+        final AtomicLong sequence = new AtomicLong();
+        final ChunkAssembler text = new ChunkAssembler(chunkSize, false,
+                chunk -> chunks.put(new FileChunk(entryPath, sequence.getAndIncrement(), chunk)));
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream input = zip.getInputStream(entry)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) text.write(buffer, 0, read);
+        }
+        text.finish();
+    }
+
+    private static void awaitEntry(Future<Void> task) throws IOException, InterruptedException {
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InterruptedException) throw new InterruptedIOException(cause.getMessage());
+            throw new IOException(cause);
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,91 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Recognizes compressed input files by their first bytes, and opens them as a stream of their decompressed content.
+ * <p>
+ * Only the formats of java.util.zip are supported: gzip, including files of several concatenated gzip members,
+ * and zip archives, whose entries are counted as if they were separate files.
+ */
+final class CompressedInput {
+
+    //region Static Final Class Variables
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Format
+
+    enum Format {
+        PLAIN,
+        GZIP,
+        ZIP
+    }
+
+    //endregion
+
+    //region Constructor
+
+    private CompressedInput() {
+    }
+
+    //endregion
+
+    //region Detection
+
+    /**
+     * Looks at the first bytes of a file. Special files, such as named pipes, are never read here,
+     * since that would take the bytes away from the reader.
+     */
+    static Format detect(String filePath) throws IOException {
+        final Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path)) return Format.PLAIN;
+
+        final ByteBuffer magic = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                //Keep reading until the magic bytes are in, or the file ends.
+            }
+        }
+        return detect(magic.array(), magic.position());
+    }
+
+    static Format detect(byte[] magic, int length) {
+        if (length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) return Format.GZIP;
+        //A local file header, or the end of central directory of an empty archive.
+        if (length >= 4 && magic[0] == 'P' && magic[1] == 'K'
+                && ((magic[2] == 3 && magic[3] == 4) || (magic[2] == 5 && magic[3] == 6))) return Format.ZIP;
+        return Format.PLAIN;
+    }
+
+    //endregion
+
+    //region Streams
+
+    /**
+     * Opens a gzip file as one stream. Concatenated members are read one after another.
+     */
+    static InputStream openGzip(String filePath) throws IOException {
+        final InputStream file = new FileInputStream(filePath);
+        try {
+            return new GZIPInputStream(new BufferedInputStream(file, STREAM_BUFFER_SIZE), STREAM_BUFFER_SIZE);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    //endregion
+}
@@ -1,9 +1,11 @@
 package com.company;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.PrintStream;
+import java.util.Locale;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is the central point of directing the output to console. Its methods have been synchronized
@@ -27,24 +29,46 @@ class ConsoleOutput {
 
     //endregion
 
+    //region Message Stream
+
+    //Where the messages go. The standard output, unless it has been taken by results in a machine-readable format.
+    private static PrintStream _out = System.out;
+
+    /**
+     * Sends all further messages to the standard error, so that the standard output carries only the results.
+     */
+    static synchronized void useStandardErrorForMessages() {
+        _out = System.err;
+    }
+
+    /**
+     * Sends all further messages to the given stream, for instance to keep them out of a benchmark.
+     */
+    static synchronized void useMessageStream(PrintStream out) {
+        if (out == null) throw new IllegalArgumentException("'out' cannot be null.");
+        _out = out;
+    }
+
+    //endregion
+
     //region General Message Printers
 
     static synchronized void printMessageWithoutGaps(String message) {
-        System.out.println(message);
+        _out.println(message);
     }
 
     static synchronized void printMessageWithGaps(String message) {
-        System.out.println();
-        System.out.println(message);
-        System.out.println();
+        _out.println();
+        _out.println(message);
+        _out.println();
     }
 
     static synchronized void printMessageWithGapsAndLineBreaks(String message) {
-        System.out.println();
+        _out.println();
         printLineBreak();
-        System.out.println(message);
+        _out.println(message);
         printLineBreak();
-        System.out.println();
+        _out.println();
     }
 
     //endregion
@@ -52,8 +76,8 @@ class ConsoleOutput {
     //region Tagged Message Printers
 
     private static synchronized void printTaggedMessage(String tag, String message) {
-        System.out.println(tag + ":");
-        System.out.println(message);
+        _out.println(tag + ":");
+        _out.println(message);
     }
 
     private static synchronized void printDetailedInterruptionCause(String message) {
@@ -74,48 +98,109 @@ class ConsoleOutput {
 
     static synchronized void printIOException(String errorHeader, IOException e) {
         printLineBreak();
-        System.out.println(errorHeader);
+        _out.println(errorHeader);
         printDetailedExceptionMessage(e.getMessage());
         printLineBreak();
-        System.out.println();
+        _out.println();
     }
 
     static synchronized void printInterruptedException(String errorHeader, InterruptedException e) {
         printLineBreak();
-        System.out.println(errorHeader);
+        _out.println(errorHeader);
         printDetailedInterruptionCause(e.getCause().toString());
-        System.out.println();
+        _out.println();
         printDetailedExceptionMessage(e.getMessage());
-        System.out.println();
+        _out.println();
         printLineBreak();
     }
 
     static synchronized void printExecutionException(String errorHeader, Throwable cause, ExecutionException e) {
         printLineBreak();
-        System.out.println(errorHeader);
+        _out.println(errorHeader);
         printExceptionWithCause(cause.getMessage());
-        System.out.println();
+        _out.println();
         printDetailedExceptionMessage(e.getMessage());
-        System.out.println();
+        _out.println();
         printLineBreak();
     }
 
+    static synchronized void printCacheStatistics(int hits, int misses, long savedNanos) {
+        printMessageWithGaps("Count cache: " + hits + " hits, " + misses + " misses, about "
+                + TimeUnit.NANOSECONDS.toMillis(savedNanos) + " ms saved.");
+    }
+
     //endregion
 
     //region Other Case Specific Printers
 
     private static synchronized void printLineBreak() {
-        System.out.println("----------------------------------");
+        _out.println("----------------------------------");
     }
 
-    static synchronized void blockPrintMap(HashMap<String, Long> map) {
+    static synchronized void blockPrintResult(WordCountResult result, RunOptions.SortOrder sort, ExecutorService sortExecutor) {
         printLineBreak();
         printMessageWithGaps("Merged Word Count:");
-        for (Map.Entry<String, Long> mapEntry : map.entrySet()) {
-            printMessageWithoutGaps("{'" + mapEntry.getKey() + "': " + mapEntry.getValue() + "}");
+        try {
+            //The entries go through one buffer instead of a println per word.
+            _out.flush();
+            result.write(_out, RunOptions.OutputFormat.TEXT, sort, sortExecutor);
+        } catch (IOException e) {
+            printIOException("Failed to print the word counts.", e);
         }
         printLineBreak();
     }
 
+    static synchronized void blockPrintTopWords(SpaceSavingSummary summary, int top) {
+        printLineBreak();
+        printMessageWithGaps("Top " + top + " Words (approximate):");
+        _out.print(topWordsText(summary, top));
+        printLineBreak();
+    }
+
+    static synchronized void blockPrintCardinality(HyperLogLog sketch) {
+        printLineBreak();
+        printMessageWithGaps("Distinct Word Count (approximate):");
+        _out.print(cardinalityText(sketch));
+        printLineBreak();
+    }
+
+    //endregion
+
+    //region Result Text
+
+    /**
+     * @return the report of a top-K count, as printed on the console. The count server answers with it too.
+     */
+    static String topWordsText(SpaceSavingSummary summary, int top) {
+        final StringBuilder text = new StringBuilder();
+        text.append("Total words counted: ").append(summary.totalCount()).append(NEW_LINE);
+        text.append("Counters per parser: ").append(summary.capacity()).append(NEW_LINE);
+        text.append("Any word not listed occurred at most ").append(summary.unlistedBound()).append(" times.").append(NEW_LINE);
+        text.append(NEW_LINE);
+
+        //Each count is an upper bound. The true count lies between the lower bound and the count.
+        final long guaranteedThreshold = summary.guaranteedTopThreshold(top);
+        for (SpaceSavingSummary.HeavyHitter hitter : summary.top(top)) {
+            text.append("{'").append(hitter.word()).append("': ").append(hitter.count())
+                    .append(", 'lowerBound': ").append(hitter.lowerBound())
+                    .append(", 'guaranteed': ").append(hitter.lowerBound() >= guaranteedThreshold).append("}")
+                    .append(NEW_LINE);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the report of a cardinality count, as printed on the console.
+     */
+    static String cardinalityText(HyperLogLog sketch) {
+        final long estimate = sketch.estimate();
+        final double standardError = sketch.standardError();
+        return "{'distinctWords': " + estimate
+                + ", 'standardError': " + String.format(Locale.ROOT, "%.4f", standardError)
+                + ", 'low95': " + Math.round(estimate * (1 - 2 * standardError))
+                + ", 'high95': " + Math.round(estimate * (1 + 2 * standardError)) + "}"
+                + NEW_LINE;
+    }
+
     //endregion
 }
@@ -0,0 +1,352 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * An on-disk cache of the word counts of single input files, so that files that did not change since the last
+ * run are not read and parsed again.
+ * <p>
+ * Every input file has one cache file, named after a digest of its absolute path. The cache file starts with the
+ * fingerprint of the input file: its path, size, last modified time and, optionally, a CRC32 of its content,
+ * then the encoding and tokenizer it was counted with, since the same bytes make other words in another encoding.
+ * The counts follow in a compact binary form: the number of words, then for every word its length and bytes
+ * and its count, the numbers written as variable-length integers.
+ * <p>
+ * The fingerprint of a file is taken before the file is counted, and taken again before its counts are stored.
+ * A file that changed in between is not stored, since its counts may belong to neither version of it.
+ * <p>
+ * Cache files are written to a temporary file first and moved into place, so a crash never leaves a partial
+ * entry behind. A cache can be shared by counts that run at the same time. Its statistics add up all of them.
+ */
+final class CountCache {
+
+    //region Static Final Class Variables
+
+    private static final int MAGIC = 0x57434332; //"WCC2"
+    private static final String ENTRY_SUFFIX = ".wcc";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int CONTENT_BUFFER_SIZE = 1024 * 1024;
+
+    //endregion
+
+    //region Final Variables
+
+    private final Path _directory;
+    private final boolean _verifyContent;
+    private final Charset _encoding;
+    private final RunOptions.Tokenizer _tokenizer;
+
+    //endregion
+
+    //region Statistics
+
+    private final AtomicInteger _hits = new AtomicInteger();
+    private final AtomicInteger _misses = new AtomicInteger();
+    private final AtomicLong _savedNanos = new AtomicLong();
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * A cache of counts made in UTF-8 with the scalar tokenizer, the defaults of a WordCounter.
+     */
+    CountCache(Path directory, boolean verifyContent) throws IOException {
+        this(directory, verifyContent, StandardCharsets.UTF_8, RunOptions.Tokenizer.SCALAR);
+    }
+
+    /**
+     * @param directory     the directory the cache files are kept in. It is created if it does not exist.
+     * @param verifyContent whether a CRC32 of the content must match too, for files whose modified time
+     *                      cannot be trusted. It costs a read of every file, but no parsing.
+     * @param encoding      the encoding the files are counted in. Entries stored in another encoding miss.
+     * @param tokenizer     the tokenizer the files are counted with. Entries stored with another one miss.
+     */
+    CountCache(Path directory, boolean verifyContent, Charset encoding, RunOptions.Tokenizer tokenizer) throws IOException {
+        if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+        if (encoding == null) throw new IllegalArgumentException("'encoding' cannot be null.");
+        if (tokenizer == null) throw new IllegalArgumentException("'tokenizer' cannot be null.");
+        Files.createDirectories(directory);
+        _directory = directory;
+        _verifyContent = verifyContent;
+        _encoding = encoding;
+        _tokenizer = tokenizer;
+    }
+
+    //endregion
+
+    //region Fingerprint
+
+    /**
+     * What a cache entry knows of the input file it was counted from.
+     */
+    static final class Fingerprint {
+
+        private final String _path;
+        private final long _size;
+        private final long _modifiedMillis;
+        private final boolean _hasChecksum;
+        private final long _checksum;
+
+        private Fingerprint(String path, long size, long modifiedMillis, boolean hasChecksum, long checksum) {
+            _path = path;
+            _size = size;
+            _modifiedMillis = modifiedMillis;
+            _hasChecksum = hasChecksum;
+            _checksum = checksum;
+        }
+
+        long size() {
+            return _size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Fingerprint)) return false;
+            final Fingerprint fingerprint = (Fingerprint) other;
+            return _path.equals(fingerprint._path) && _size == fingerprint._size && _modifiedMillis == fingerprint._modifiedMillis
+                    && _hasChecksum == fingerprint._hasChecksum && _checksum == fingerprint._checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return _path.hashCode() * 31 + Long.hashCode(_size);
+        }
+    }
+
+    /**
+     * Takes the fingerprint of a file as it is now. Take it before the file is counted, and pass it to load() and
+     * store().
+     */
+    Fingerprint fingerprint(String filePath) throws IOException {
+        final Path path = Paths.get(filePath).toAbsolutePath();
+        return new Fingerprint(path.toString(), Files.size(path), Files.getLastModifiedTime(path).toMillis(),
+                _verifyContent, _verifyContent ? contentChecksum(path) : 0L);
+    }
+
+    //endregion
+
+    //region Lookup and Store
+
+    /**
+     * Loads the cached counts of a file into a sink, if the file did not change since they were stored.
+     *
+     * @param fingerprint the fingerprint of the file, taken before this call.
+     * @return true on a cache hit. On a miss, the sink is left untouched.
+     */
+    boolean load(String filePath, Fingerprint fingerprint, PartitionedWordCounts sink) {
+        if (fingerprint == null) throw new IllegalArgumentException("'fingerprint' cannot be null.");
+        final long start = System.nanoTime();
+        final Path entry = entryPath(filePath);
+        if (!Files.isRegularFile(entry)) {
+            _misses.incrementAndGet();
+            return false;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry)))) {
+            final long countNanos = readFingerprint(input, fingerprint);
+            if (countNanos < 0) {
+                _misses.incrementAndGet();
+                return false;
+            }
+
+            //Read into a table first, so that a corrupt entry never leaves partial counts in the sink.
+            final WordCountTable counts = readCounts(input);
+            counts.forEach(sink::add);
+            _hits.incrementAndGet();
+            _savedNanos.addAndGet(Math.max(0L, countNanos - (System.nanoTime() - start)));
+            return true;
+        } catch (IOException e) {
+            final String errorHeader = "Ignoring unreadable cache entry for file: " + filePath;
+            ConsoleOutput.printIOException(errorHeader, e);
+            _misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Stores the counts of a single file, unless the file changed since its fingerprint was taken.
+     *
+     * @param fingerprint the fingerprint of the file, taken before it was counted.
+     * @param countNanos  how long counting the file took, to report the time saved by later hits.
+     * @return whether the counts were stored.
+     */
+    boolean store(String filePath, Fingerprint fingerprint, PartitionedWordCounts counts, long countNanos) {
+        if (fingerprint == null) throw new IllegalArgumentException("'fingerprint' cannot be null.");
+        final Path entry = entryPath(filePath);
+        try {
+            if (!fingerprint(filePath).equals(fingerprint)) {
+                ConsoleOutput.printMessageWithGaps("Not caching the counts of a file that changed while it was counted: " + filePath);
+                return false;
+            }
+
+            //Every store has a temporary file of its own, in case two counts store the same file at once.
+            final Path temporary = Files.createTempFile(_directory, entry.getFileName().toString(), TEMPORARY_SUFFIX);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                writeFingerprint(output, fingerprint, countNanos);
+                writeCounts(output, counts);
+            }
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            final String errorHeader = "Failed to store the cache entry for file: " + filePath;
+            ConsoleOutput.printIOException(errorHeader, e);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes every entry of the cache.
+     */
+    void clear() throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(_directory)) {
+            for (Path entry : entries) {
+                final String name = entry.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX) || name.endsWith(TEMPORARY_SUFFIX)) Files.delete(entry);
+            }
+        }
+    }
+
+    //endregion
+
+    //region Getters
+
+    int hits() {
+        return _hits.get();
+    }
+
+    int misses() {
+        return _misses.get();
+    }
+
+    long savedNanos() {
+        return _savedNanos.get();
+    }
+
+    //endregion
+
+    //region Entry Header
+
+    private void writeFingerprint(DataOutputStream output, Fingerprint fingerprint, long countNanos) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeUTF(fingerprint._path);
+        output.writeLong(fingerprint._size);
+        output.writeLong(fingerprint._modifiedMillis);
+        output.writeBoolean(fingerprint._hasChecksum);
+        output.writeLong(fingerprint._checksum);
+        output.writeUTF(_encoding.name());
+        output.writeUTF(_tokenizer.name());
+        output.writeLong(countNanos);
+    }
+
+    /**
+     * @return how long counting the file took when it was stored, or -1 if the file changed since then, or was
+     * counted in another encoding or with another tokenizer.
+     */
+    private long readFingerprint(DataInputStream input, Fingerprint fingerprint) throws IOException {
+        if (input.readInt() != MAGIC) return -1;
+        if (!input.readUTF().equals(fingerprint._path)) return -1;
+        if (input.readLong() != fingerprint._size) return -1;
+        if (input.readLong() != fingerprint._modifiedMillis) return -1;
+
+        final boolean hasChecksum = input.readBoolean();
+        final long checksum = input.readLong();
+        if (fingerprint._hasChecksum && (!hasChecksum || checksum != fingerprint._checksum)) return -1;
+        if (!input.readUTF().equals(_encoding.name())) return -1;
+        if (!input.readUTF().equals(_tokenizer.name())) return -1;
+        return input.readLong();
+    }
+
+    private static long contentChecksum(Path path) throws IOException {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer buffer = ByteBuffer.allocate(CONTENT_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    //endregion
+
+    //region Counts
+
+    /**
+     * Writes counts in the binary form of the cache entries, which the CheckpointStore uses as well.
+     */
+    static void writeCounts(DataOutputStream output, PartitionedWordCounts counts) throws IOException {
+        VarInts.write(output, counts.size());
+        final IOException[] failure = new IOException[1];
+        counts.forEach((word, offset, length, count) -> {
+            if (failure[0] != null) return;
+            try {
+                VarInts.write(output, length);
+                output.write(word, offset, length);
+                VarInts.write(output, count);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+    }
+
+    /**
+     * Reads counts written by writeCounts into a table of their own.
+     */
+    static WordCountTable readCounts(DataInputStream input) throws IOException {
+        final long size = VarInts.read(input);
+        if (size < 0 || size > Integer.MAX_VALUE) throw new IOException("Corrupt cache entry.");
+        final WordCountTable counts = new WordCountTable((int) size);
+        byte[] word = new byte[64];
+        for (long entry = 0; entry < size; entry++) {
+            final int length = (int) VarInts.read(input);
+            if (length <= 0) throw new IOException("Corrupt cache entry.");
+            if (word.length < length) word = new byte[length];
+            input.readFully(word, 0, length);
+            counts.add(word, 0, length, VarInts.read(input));
+        }
+        return counts;
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private Path entryPath(String filePath) {
+        final String absolutePath = Paths.get(filePath).toAbsolutePath().toString();
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(absolutePath.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder();
+            for (int index = 0; index < 16; index++) name.append(String.format("%02x", digest[index]));
+            return _directory.resolve(name.append(ENTRY_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    //endregion
+}
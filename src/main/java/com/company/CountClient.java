@@ -0,0 +1,131 @@
+package com.company;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * The thin client of the CountServer. It sends the arguments of a job to a server on this machine, with the token
+ * the server wrote for its user, and copies the answer to a stream. Nothing is counted in the client itself.
+ */
+final class CountClient {
+
+    //region Static Final Class Variables
+
+    private static final String CONNECT_PREFIX = "--connect";
+    private static final String OUTPUT_PREFIX = "--output";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Constructor
+
+    private CountClient() {
+    }
+
+    //endregion
+
+    //region Sending Jobs
+
+    /**
+     * Sends a job to the count server, and copies the result to the output.
+     *
+     * @param arguments the command line of the job. Input paths are made absolute, since the server may run in
+     *                  another working directory. A --connect option is left out, and so is an --output option,
+     *                  since the caller writes the answer where it asked for.
+     * @throws IllegalStateException when the server turns the job away, with the reason it gave.
+     */
+    static void send(int port, String[] arguments, OutputStream output) throws IOException {
+        if (arguments == null) throw new IllegalArgumentException("'arguments' cannot be null.");
+        if (output == null) throw new IllegalArgumentException("'output' cannot be null.");
+
+        final StringBuilder job = new StringBuilder();
+        for (String argument : arguments) {
+            if (argument.startsWith(CONNECT_PREFIX) || argument.startsWith(OUTPUT_PREFIX)) continue;
+            job.append(absolutePaths(argument)).append('\n');
+        }
+
+        final HttpURLConnection connection = open(port, "/count");
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setChunkedStreamingMode(0);
+        try {
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write(job.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            final int status = connection.getResponseCode();
+            if (status != CountServer.OK) {
+                throw new IllegalStateException("The count server turned the job away (" + status + "): " + readError(connection));
+            }
+            try (InputStream result = connection.getInputStream()) {
+                copy(result, output);
+            }
+            output.flush();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Asks the count server to stop once its running jobs are done.
+     */
+    static void shutdown(int port) throws IOException {
+        final HttpURLConnection connection = open(port, "/shutdown");
+        connection.setRequestMethod("POST");
+        try {
+            if (connection.getResponseCode() != CountServer.OK) {
+                throw new IllegalStateException("The count server did not shut down: " + readError(connection));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static HttpURLConnection open(int port, String path) throws IOException {
+        final String token;
+        try {
+            token = new String(Files.readAllBytes(CountServer.tokenFile(port)), StandardCharsets.US_ASCII).trim();
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("No count server of this user runs on port " + port + ": " + e.getMessage() + " is missing.");
+        }
+        final URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, path);
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty(CountServer.TOKEN_HEADER, token);
+        return connection;
+    }
+
+    private static String absolutePaths(String argument) {
+        //File rather than Path, so that glob patterns, which are not valid paths everywhere, are kept as they are.
+        return argument.startsWith("--") ? argument : new File(argument).getAbsolutePath();
+    }
+
+    private static String readError(HttpURLConnection connection) throws IOException {
+        final InputStream error = connection.getErrorStream();
+        if (error == null) return connection.getResponseMessage();
+        final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        try (InputStream input = error) {
+            copy(input, message);
+        }
+        return new String(message.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) output.write(buffer, 0, read);
+    }
+
+    //endregion
+}
@@ -0,0 +1,446 @@
+package com.company;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-running count server, so that many small jobs share one warm JVM and one WordCounter, instead of paying
+ * for the start-up of a JVM and for interpreted code on every run.
+ * <p>
+ * The server listens on the loopback interface only, with com.sun.net.httpserver. It has three endpoints:
+ * <ul>
+ * <li>POST /count: the body holds the arguments of a job, one per line, the same as on the command line.
+ * The answer is the result, or the path it was written to with --output.</li>
+ * <li>GET /status: the number of running, waiting, finished and rejected jobs.</li>
+ * <li>POST /shutdown: stops the server once the running jobs are done.</li>
+ * </ul>
+ * Input paths are read by the server, so they must be absolute, or relative to its working directory.
+ * <p>
+ * A job takes the count mode, format and sort options only. The reader, transport, cache and other options of the
+ * engine are those of the server's WordCounter, so a job that gives them is turned away with 400, and so is one
+ * that gives --output or --metrics: the server writes no files for a job, and CountClient writes --output itself.
+ * <p>
+ * Every request must carry the token of the server in the X-Count-Token header. The server writes the token to
+ * a file that only its user can read, which CountClient reads, so that other users of the machine cannot count
+ * the files the server can read, nor stop it. Requests that come with an Origin header, as those a browser sends
+ * from a web page do, or that name a host other than the loopback one, are turned away with 403 before that.
+ * <p>
+ * At most a fixed number of jobs run at the same time. Further jobs wait in line, in the order they came,
+ * up to the length of the queue. Jobs beyond that are turned away at once, with 503, and so are jobs whose
+ * input files are larger than the per-job limit, with 413.
+ */
+final class CountServer {
+
+    //region Static Final Class Variables
+
+    private static final String COUNT_PATH = "/count";
+    private static final String STATUS_PATH = "/status";
+    private static final String SHUTDOWN_PATH = "/shutdown";
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final int TOKEN_BYTES = 32;
+    private static final List<String> LOOPBACK_HOSTS = Arrays.asList("localhost", "127.0.0.1", "[::1]");
+    private static final List<String> JOB_OPTIONS = Arrays.asList("top", "top-capacity", "cardinality", "precision", "format", "sort");
+
+    static final String TOKEN_HEADER = "X-Count-Token";
+
+    static final int OK = 200;
+    static final int BAD_REQUEST = 400;
+    static final int FORBIDDEN = 403;
+    static final int NOT_ALLOWED = 405;
+    static final int TOO_LARGE = 413;
+    static final int INTERNAL_ERROR = 500;
+    static final int UNAVAILABLE = 503;
+
+    //endregion
+
+    //region Final Variables
+
+    private final WordCounter _counter;
+    private final int _maxJobs;
+    private final int _maxQueued;
+    private final long _maxJobBytes;
+    private final HttpServer _server;
+    private final ExecutorService _handlers;
+    private final Semaphore _running;
+    private final CountDownLatch _stopRequested = new CountDownLatch(1);
+    private final String _token = newToken();
+
+    //endregion
+
+    //region Statistics
+
+    //The jobs that were let in and are running or waiting to run.
+    private final AtomicInteger _admitted = new AtomicInteger();
+    private final AtomicLong _finished = new AtomicLong();
+    private final AtomicLong _rejected = new AtomicLong();
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param port        the local port to listen on, or 0 for any free port.
+     * @param maxJobs     the number of jobs that run at the same time.
+     * @param maxQueued   the number of jobs that may wait for a running one to finish.
+     * @param maxJobBytes the largest total size of the input files of one job, or 0 for no limit.
+     */
+    CountServer(WordCounter counter, int port, int maxJobs, int maxQueued, long maxJobBytes) throws IOException {
+        if (counter == null) throw new IllegalArgumentException("'counter' cannot be null.");
+        if (maxJobs <= 0) throw new IllegalArgumentException("'maxJobs' must be positive.");
+        if (maxQueued < 0) throw new IllegalArgumentException("'maxQueued' cannot be negative.");
+        if (maxJobBytes < 0) throw new IllegalArgumentException("'maxJobBytes' cannot be negative.");
+        _counter = counter;
+        _maxJobs = maxJobs;
+        _maxQueued = maxQueued;
+        _maxJobBytes = maxJobBytes;
+        _running = new Semaphore(maxJobs, true);
+
+        _server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), maxJobs + maxQueued);
+        _server.createContext(COUNT_PATH, this::handleCount);
+        _server.createContext(STATUS_PATH, this::handleStatus);
+        _server.createContext(SHUTDOWN_PATH, this::handleShutdown);
+
+        //Waiting jobs hold a handler thread, so the handlers are not limited here, but by the admission of jobs.
+        _handlers = Executors.newCachedThreadPool(new DaemonThreadFactory("count-server-"));
+        _server.setExecutor(_handlers);
+    }
+
+    //endregion
+
+    //region Life Cycle
+
+    /**
+     * Writes the token file, then starts answering requests.
+     */
+    void start() throws IOException {
+        writeToken();
+        _server.start();
+    }
+
+    /**
+     * @return the port the server listens on, which is the one picked by the system when it was created with 0.
+     */
+    int port() {
+        return _server.getAddress().getPort();
+    }
+
+    /**
+     * Waits until a client asks the server to shut down, then stops it.
+     */
+    void awaitShutdown() throws InterruptedException {
+        _stopRequested.await();
+        stop();
+    }
+
+    void stop() {
+        _server.stop(STOP_DELAY_SECONDS);
+        _handlers.shutdown();
+        try {
+            Files.deleteIfExists(tokenFile(port()));
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Failed to delete the token file: " + tokenFile(port()), e);
+        }
+    }
+
+    //endregion
+
+    //region Token
+
+    /**
+     * @return the file the token of the server on the port is written to, in the home directory of the user.
+     */
+    static Path tokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".wordcount", "server-" + port + ".token");
+    }
+
+    private static String newToken() {
+        final byte[] bytes = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(bytes);
+        final StringBuilder token = new StringBuilder(2 * TOKEN_BYTES);
+        for (byte b : bytes) token.append(String.format("%02x", b & 0xFF));
+        return token.toString();
+    }
+
+    private void writeToken() throws IOException {
+        final Path file = tokenFile(port());
+        Files.createDirectories(file.getParent());
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        Files.write(file, _token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Turns away, with 403, a request that a web page may have sent, or that does not carry the token.
+     *
+     * @return whether the request may go on.
+     */
+    private boolean authorize(HttpExchange exchange) throws IOException {
+        final String reason;
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            reason = "Requests from web pages are not accepted.";
+        } else if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+            reason = "Requests must name the loopback host.";
+        } else {
+            final String token = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+            if (token != null && MessageDigest.isEqual(_token.getBytes(StandardCharsets.US_ASCII), token.getBytes(StandardCharsets.US_ASCII))) {
+                return true;
+            }
+            reason = "Requests must carry the token of the server in the " + TOKEN_HEADER + " header.";
+        }
+        _rejected.incrementAndGet();
+        respond(exchange, FORBIDDEN, reason);
+        return false;
+    }
+
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) return false;
+        final int portSeparator = host.startsWith("[") ? host.indexOf(']') + 1 : host.indexOf(':');
+        return LOOPBACK_HOSTS.contains((portSeparator > 0 ? host.substring(0, portSeparator) : host).toLowerCase(Locale.ROOT));
+    }
+
+    //endregion
+
+    //region Handlers
+
+    private void handleCount(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorize(exchange)) return;
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, NOT_ALLOWED, "Count jobs must be posted.");
+                return;
+            }
+
+            if (_admitted.incrementAndGet() > _maxJobs + _maxQueued) {
+                _admitted.decrementAndGet();
+                _rejected.incrementAndGet();
+                respond(exchange, UNAVAILABLE, "Too many jobs. Try again later.");
+                return;
+            }
+            try {
+                runJob(exchange, readArguments(exchange));
+            } finally {
+                _admitted.decrementAndGet();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorize(exchange)) return;
+            final int admitted = _admitted.get();
+            final int running = Math.min(admitted, _maxJobs - _running.availablePermits());
+            respond(exchange, OK, "{'running': " + running
+                    + ", 'waiting': " + Math.max(0, admitted - running)
+                    + ", 'finished': " + _finished.get()
+                    + ", 'rejected': " + _rejected.get() + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorize(exchange)) return;
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, NOT_ALLOWED, "Shutdown must be posted.");
+                return;
+            }
+            respond(exchange, OK, "Shutting down.");
+            _stopRequested.countDown();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    //endregion
+
+    //region Jobs
+
+    private void runJob(HttpExchange exchange, String[] arguments) throws IOException {
+        final RunOptions options;
+        final String[] filePath;
+        try {
+            checkJobOptions(arguments);
+            options = RunOptions.parse(arguments);
+            filePath = InputFiles.expand(options.filePath());
+            checkJobSize(filePath);
+        } catch (JobTooLargeException e) {
+            _rejected.incrementAndGet();
+            respond(exchange, TOO_LARGE, e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            _rejected.incrementAndGet();
+            respond(exchange, BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        try {
+            _running.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, UNAVAILABLE, "The server is shutting down.");
+            return;
+        }
+        try {
+            final WordCountResult result = count(options, filePath);
+            final long outputStart = System.nanoTime();
+            sendResult(exchange, options, result);
+            result.metrics().recordStage(PipelineMetrics.Stage.OUTPUT, System.nanoTime() - outputStart);
+            _finished.incrementAndGet();
+        } catch (IllegalArgumentException e) {
+            //Input files that are missing or unreadable.
+            _rejected.incrementAndGet();
+            respond(exchange, BAD_REQUEST, e.getMessage());
+        } catch (RuntimeException e) {
+            respond(exchange, INTERNAL_ERROR, "The job failed: " + e);
+        } finally {
+            _running.release();
+        }
+    }
+
+    private WordCountResult count(RunOptions options, String[] filePath) {
+        switch (options.countMode()) {
+            case TOP:
+                return _counter.countTop(options.topCapacity(), filePath);
+            case CARDINALITY:
+                return _counter.countDistinct(options.precision(), filePath);
+            default:
+                return _counter.count(filePath);
+        }
+    }
+
+    private void sendResult(HttpExchange exchange, RunOptions options, WordCountResult result) throws IOException {
+        switch (result.mode()) {
+            case TOP:
+                respond(exchange, OK, ConsoleOutput.topWordsText(result.summary(), options.top()));
+                return;
+            case CARDINALITY:
+                respond(exchange, OK, ConsoleOutput.cardinalityText(result.sketch()));
+                return;
+            default:
+                break;
+        }
+
+        //The length is not known up front, so the result is sent in chunks as the ResultWriter fills its buffer.
+        exchange.getResponseHeaders().set("Content-Type", contentType(options.format()));
+        exchange.sendResponseHeaders(OK, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            result.write(body, options.format(), options.sort(), _counter.sortExecutor());
+        }
+    }
+
+    /**
+     * Turns away a job that gives an option the server does not apply, rather than count it some other way
+     * than it asked for.
+     */
+    private static void checkJobOptions(String[] arguments) {
+        for (String argument : arguments) {
+            if (!argument.startsWith("--")) continue;
+            final int separator = argument.indexOf('=');
+            final String name = argument.substring(2, separator < 0 ? argument.length() : separator);
+            if (JOB_OPTIONS.contains(name)) continue;
+            if ("output".equals(name) || "metrics".equals(name)) {
+                throw new IllegalArgumentException("The count server writes no files for a job: --" + name + " is not accepted.");
+            }
+            throw new IllegalArgumentException("The count server does not apply --" + name
+                    + " to a job: the options of its engine are those it was started with.");
+        }
+    }
+
+    /**
+     * Turns away a job before any of it is read, when its input files are larger than the limit.
+     */
+    private void checkJobSize(String[] filePath) {
+        if (_maxJobBytes == 0) return;
+        long total = 0;
+        for (String path : filePath) {
+            try {
+                total += Files.size(Paths.get(path));
+            } catch (IOException e) {
+                //A missing file is reported by the WordCounter, with all the others.
+                continue;
+            }
+            if (total > _maxJobBytes) {
+                throw new JobTooLargeException("The input files of the job are larger than the limit of " + _maxJobBytes + " bytes.");
+            }
+        }
+    }
+
+    private static final class JobTooLargeException extends IllegalArgumentException {
+
+        private static final long serialVersionUID = 1L;
+
+        JobTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static String[] readArguments(HttpExchange exchange) throws IOException {
+        final List<String> arguments = new ArrayList<>();
+        try (BufferedReader body = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = body.readLine()) != null) {
+                if (!line.isEmpty()) arguments.add(line);
+            }
+        }
+        return arguments.toArray(new String[0]);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        final byte[] body = (message + ConsoleOutput.NEW_LINE).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static String contentType(RunOptions.OutputFormat format) {
+        switch (format) {
+            case JSON:
+                return "application/json";
+            case CSV:
+                return "text/csv";
+            case BINARY:
+                return "application/octet-stream";
+            default:
+                return "text/plain; charset=us-ascii";
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,41 @@
+package com.company;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Names the threads of a pool, and makes them daemons, so that a pool that is never shut down does not
+ * keep the JVM alive.
+ */
+final class DaemonThreadFactory implements ThreadFactory {
+
+    //region Final Variables
+
+    private final String _prefix;
+    private final AtomicInteger _next = new AtomicInteger(1);
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param prefix the start of the thread names, which end with a number.
+     */
+    DaemonThreadFactory(String prefix) {
+        if (prefix == null) throw new IllegalArgumentException("'prefix' cannot be null.");
+        _prefix = prefix;
+    }
+
+    //endregion
+
+    //region Thread Creation
+
+    @Override
+    public Thread newThread(Runnable task) {
+        final Thread thread = new Thread(task, _prefix + _next.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    //endregion
+}
@@ -1,29 +1,84 @@
 package com.company;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.BlockingQueue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 /**
  * The class which can be put on a thread and used for reading input from disk.
+ * <p>
+ * It either puts individual lines in a blocking queue, or fills reusable CharBatches from a CharBatchRing
+ * so that one hand-off moves a whole block of text. Gzip files and zip archives are decompressed as they
+ * are read, one stream at a time.
+ * <p>
+ * The files are decoded with the encoding passed in the constructor, UTF-8 unless another is given, and never
+ * with the platform default. Malformed input is replaced.
  */
-public class DiskFileReader implements Runnable {
+public class DiskFileReader implements Runnable, PipelineMetrics.ReaderStage {
 
     //region Final Variables and Collections
 
-    private final String[] _filePath;
+    private final FileSchedule _files;
+    private final Charset _encoding;
     private final BlockingQueue<String> _lines;
+    private final CharBatchRing _batches;
 
     //endregion
 
-    //region Constructor
+    //region Statistics
+
+    //Written by the reader thread only, and read once it is done.
+    private long _bytesRead;
+    private long _elapsedNanos;
+    private long _blockedNanos;
+
+    //endregion
+
+    //region Constructors
 
     DiskFileReader(String[] filePath, BlockingQueue<String> lines) {
-        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        this(schedule(filePath), StandardCharsets.UTF_8, lines);
+    }
+
+    DiskFileReader(String[] filePath, CharBatchRing batches) {
+        this(schedule(filePath), StandardCharsets.UTF_8, batches);
+    }
+
+    /**
+     * A reader that shares its files with other readers. Only the last of them to finish marks the reading as done.
+     */
+    DiskFileReader(FileSchedule files, Charset encoding, BlockingQueue<String> lines) {
+        if (files == null) throw new IllegalArgumentException("'files' cannot be null.");
+        if (encoding == null) throw new IllegalArgumentException("'encoding' cannot be null.");
         if (lines == null) throw new IllegalArgumentException("'lines' cannot be null.");
-        _filePath = filePath;
+        _files = files;
+        _encoding = encoding;
         _lines = lines;
+        _batches = null;
+    }
+
+    DiskFileReader(FileSchedule files, Charset encoding, CharBatchRing batches) {
+        if (files == null) throw new IllegalArgumentException("'files' cannot be null.");
+        if (encoding == null) throw new IllegalArgumentException("'encoding' cannot be null.");
+        if (batches == null) throw new IllegalArgumentException("'batches' cannot be null.");
+        _files = files;
+        _encoding = encoding;
+        _lines = null;
+        _batches = batches;
+    }
+
+    private static FileSchedule schedule(String[] filePath) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        return new FileSchedule(filePath);
     }
 
     //endregion
@@ -32,14 +87,23 @@ public class DiskFileReader implements Runnable {
 
     @Override
     public void run() {
+        final long start = System.nanoTime();
         try {
             populateLines();
         } finally {
-            markBlockingQueueAsDone();
+            _elapsedNanos = System.nanoTime() - start;
+            if (_files.readerFinished()) markBlockingQueueAsDone();
         }
     }
 
     private void markBlockingQueueAsDone() {
+        //In batch mode, closing the ring tells every parser that the reading is done.
+        if (_batches != null) {
+            _batches.close();
+            ConsoleOutput.printMessageWithGaps("Marked the CharBatchRing as done.");
+            return;
+        }
+
         //To tell that the reading is done, we add the END_MARKER at the end.
         try {
             _lines.put(ConsoleOutput.END_MARKER);
@@ -52,14 +116,30 @@ public class DiskFileReader implements Runnable {
 
     private void populateLines() {
         ConsoleOutput.printMessageWithGaps("Reading the lines from input files...");
-        //Iterate over all the files provided in the array
-        for (String path : _filePath) {
-            //1. Open the file
-            try (FileReader fileReader = new FileReader(path);
-                 BufferedReader bufferedReader = new BufferedReader(fileReader)) {
-                //2. Read and put the lines one by one in the concurrent collection
-                String line;
-                while ((line = bufferedReader.readLine()) != null) _lines.put(line);
+        //Iterate over the files, taking the next one from the schedule until there are none left.
+        String path;
+        while ((path = _files.next()) != null) {
+            try {
+                //1. Open the file, decompressing it on the way if it is a gzip file or a zip archive.
+                //2. Read and put the lines one by one in the concurrent collection,
+                //   or a batch at a time in the ring.
+                switch (CompressedInput.detect(path)) {
+                    case GZIP:
+                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(CompressedInput.openGzip(path), _encoding))) {
+                            populate(reader);
+                        }
+                        break;
+                    case ZIP:
+                        populateZipEntries(path);
+                        break;
+                    default:
+                        try (InputStreamReader fileReader = new InputStreamReader(new FileInputStream(path), _encoding);
+                             BufferedReader bufferedReader = new BufferedReader(fileReader)) {
+                            populate(bufferedReader);
+                        }
+                        break;
+                }
+                _bytesRead += new File(path).length();
                 ConsoleOutput.printMessageWithoutGaps("Done reading lines from file: " + path);
             } catch (IOException e) {
                 final String errorHeader = "Exception in reading file: " + path;
@@ -72,5 +152,99 @@ public class DiskFileReader implements Runnable {
         ConsoleOutput.printMessageWithoutGaps("Done reading lines from  all input files.");
     }
 
+    private void populate(BufferedReader reader) throws IOException, InterruptedException {
+        if (_batches != null) {
+            populateBatches(reader);
+        } else {
+            String line;
+            while ((line = reader.readLine()) != null) _lines.put(line);
+        }
+    }
+
+    /**
+     * Reads the entries of a zip archive one after another, each as if it was a file of its own.
+     */
+    private void populateZipEntries(String path) throws IOException, InterruptedException {
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                //The reader is not closed here, since that would close the whole archive.
+                if (!entry.isDirectory()) populate(new BufferedReader(new InputStreamReader(zip, _encoding)));
+            }
+        }
+    }
+
+    private void populateBatches(Reader reader) throws IOException, InterruptedException {
+        CharBatch batch = acquireBatch();
+        int length = 0;
+        int read;
+        while ((read = reader.read(batch.chars(), length, batch.capacity() - length)) >= 0) {
+            length += read;
+            if (length < batch.capacity()) continue;
+
+            //The batch is full. Publish it up to its last delimiter, and carry the unfinished word over.
+            final int end = batchEnd(batch.chars(), length);
+            final CharBatch next = acquireBatch();
+            System.arraycopy(batch.chars(), end, next.chars(), 0, length - end);
+            batch.setLength(end);
+            _batches.publish(batch);
+            length -= end;
+            batch = next;
+        }
+
+        //Publish what is left at the end of the file. The end of a file is always a word boundary.
+        if (length == 0) {
+            _batches.release(batch);
+            return;
+        }
+        batch.setLength(length);
+        _batches.publish(batch);
+    }
+
+    /**
+     * Takes a free batch from the ring. The ring runs out of them when the parsers fall behind.
+     */
+    private CharBatch acquireBatch() throws InterruptedException {
+        final long start = System.nanoTime();
+        final CharBatch batch = _batches.acquire();
+        _blockedNanos += System.nanoTime() - start;
+        return batch;
+    }
+
+    /**
+     * @return the index right after the last delimiter in the batch, or its length when a single word fills it.
+     */
+    private static int batchEnd(char[] chars, int length) {
+        for (int index = length - 1; index >= 0; index--) {
+            if (!MappedFileReader.isWordCharacter(chars[index])) return index + 1;
+        }
+        return length;
+    }
+
+    //endregion
+
+    //region Statistics Getters
+
+    /**
+     * @return the size of the input files read so far. Special files, such as named pipes, have none.
+     */
+    @Override
+    public long bytesRead() {
+        return _bytesRead;
+    }
+
+    @Override
+    public long elapsedNanos() {
+        return _elapsedNanos;
+    }
+
+    /**
+     * @return the time spent waiting for a free batch. The unbounded queue of single lines never waits.
+     */
+    @Override
+    public long blockedNanos() {
+        return _blockedNanos;
+    }
+
     //endregion
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A slice of a memory-mapped input file, handed as a whole from the MappedFileReader to a ChunkParser.
+ * The slice always ends on a word boundary, so that no word is split between two chunks.
+ * <p>
+ * The chunks of a file reach the parsers in any order. Their sequence numbers give them back the order of the
+ * text: sorted by sequence, the chunks of one path are the file from start to end. The numbers need not be
+ * consecutive.
+ */
+final class FileChunk {
+
+    //region Final Variables
+
+    private final String _path;
+    private final long _sequence;
+    private final ByteBuffer _bytes;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * A chunk that is the whole text of its path, or whose place in the text does not matter.
+     */
+    FileChunk(String path, ByteBuffer bytes) {
+        this(path, 0L, bytes);
+    }
+
+    /**
+     * @param sequence the place of the chunk among the chunks of its path. Never negative.
+     */
+    FileChunk(String path, long sequence, ByteBuffer bytes) {
+        if (path == null) throw new IllegalArgumentException("'path' cannot be null.");
+        if (sequence < 0) throw new IllegalArgumentException("'sequence' cannot be negative.");
+        if (bytes == null) throw new IllegalArgumentException("'bytes' cannot be null.");
+        _path = path;
+        _sequence = sequence;
+        _bytes = bytes;
+    }
+
+    //endregion
+
+    //region Getters
+
+    String path() {
+        return _path;
+    }
+
+    long sequence() {
+        return _sequence;
+    }
+
+    /**
+     * @return a read-only view of the chunk bytes with its own position and limit,
+     * so that the same chunk can safely be read more than once.
+     */
+    ByteBuffer bytes() {
+        return _bytes.asReadOnlyBuffer();
+    }
+
+    int length() {
+        return _bytes.remaining();
+    }
+
+    //endregion
+}
@@ -0,0 +1,75 @@
+package com.company;
+
+/**
+ * A file, or a range of bytes of a file, to be counted as a unit. A ShardCoordinator cuts large files into ranges
+ * that start and end right after a delimiter byte, so that no word is split between two of them. A range covers
+ * the bytes from its start up to, but not including, its end.
+ * <p>
+ * A whole file is read the way count() reads any file, be it compressed or not. A range is only ever cut from a
+ * plain file, and is mapped as it is.
+ */
+final class FileRange {
+
+    //region Static Final Class Variables
+
+    //The end of a range that stands for the whole file, whatever its size.
+    static final long WHOLE_FILE = -1L;
+
+    //endregion
+
+    //region Final Variables
+
+    private final String _path;
+    private final long _start;
+    private final long _end;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * @param end the exclusive end of the range, or WHOLE_FILE.
+     */
+    FileRange(String path, long start, long end) {
+        if (path == null) throw new IllegalArgumentException("'path' cannot be null.");
+        if (start < 0) throw new IllegalArgumentException("'start' cannot be negative.");
+        if (end == WHOLE_FILE ? start != 0 : end < start) throw new IllegalArgumentException("'end' cannot be before 'start'.");
+        _path = path;
+        _start = start;
+        _end = end;
+    }
+
+    static FileRange whole(String path) {
+        return new FileRange(path, 0L, WHOLE_FILE);
+    }
+
+    //endregion
+
+    //region Getters
+
+    String path() {
+        return _path;
+    }
+
+    long start() {
+        return _start;
+    }
+
+    /**
+     * @return the exclusive end of the range, or WHOLE_FILE.
+     */
+    long end() {
+        return _end;
+    }
+
+    boolean isWholeFile() {
+        return _end == WHOLE_FILE;
+    }
+
+    @Override
+    public String toString() {
+        return isWholeFile() ? _path : _path + " [" + _start + ", " + _end + ")";
+    }
+
+    //endregion
+}
@@ -0,0 +1,142 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The input files, shared by a fixed number of reader threads.
+ * <p>
+ * Every reader asks for the next file when it is done with the previous one, so the files spread over the readers
+ * by how fast each one gets through its share. Handing out the largest files first keeps a big file from being
+ * picked up last, when the other readers have nothing left to do.
+ * <p>
+ * The schedule also knows how many readers share it, so that only the last reader to finish tells the parsers that
+ * the reading is done.
+ * <p>
+ * A schedule of FileRanges, such as the shard of a ShardWorker, may hand out parts of files. Only the
+ * MappedFileReader reads such a schedule, with nextRange().
+ */
+final class FileSchedule {
+
+    //region Final Variables
+
+    private final FileRange[] _ranges;
+    private final AtomicInteger _next = new AtomicInteger();
+    private final int _readerCount;
+    private final AtomicInteger _runningReaders;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * A schedule for a single reader, which hands out the files in the given order.
+     */
+    FileSchedule(String[] filePath) {
+        this(filePath, 1);
+    }
+
+    /**
+     * A schedule which hands out the files in the given order.
+     *
+     * @param readerCount the number of readers that will share the schedule.
+     */
+    FileSchedule(String[] filePath, int readerCount) {
+        this(wholeFiles(filePath), readerCount);
+    }
+
+    /**
+     * A schedule which hands out the files and ranges of files in the given order.
+     *
+     * @param readerCount the number of readers that will share the schedule.
+     */
+    FileSchedule(FileRange[] ranges, int readerCount) {
+        if (ranges == null) throw new IllegalArgumentException("'ranges' cannot be null.");
+        if (readerCount <= 0) throw new IllegalArgumentException("'readerCount' must be positive.");
+        _ranges = ranges.clone();
+        _readerCount = readerCount;
+        _runningReaders = new AtomicInteger(readerCount);
+    }
+
+    private static FileRange[] wholeFiles(String[] filePath) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        final FileRange[] ranges = new FileRange[filePath.length];
+        for (int index = 0; index < filePath.length; index++) ranges[index] = FileRange.whole(filePath[index]);
+        return ranges;
+    }
+
+    /**
+     * A schedule which hands out the largest files first. Files whose size cannot be read, such as pipes, go last.
+     */
+    static FileSchedule largestFirst(String[] filePath, int readerCount) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+
+        //Read every size once, instead of once per comparison.
+        final long[] size = new long[filePath.length];
+        final Integer[] order = new Integer[filePath.length];
+        for (int index = 0; index < filePath.length; index++) {
+            size[index] = sizeOf(filePath[index]);
+            order[index] = index;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer index) -> size[index]).reversed());
+
+        final String[] sorted = new String[filePath.length];
+        for (int index = 0; index < sorted.length; index++) sorted[index] = filePath[order[index]];
+        return new FileSchedule(sorted, readerCount);
+    }
+
+    //endregion
+
+    //region Scheduling
+
+    /**
+     * @return the next file to read, or null when every file has been handed out.
+     */
+    String next() {
+        final FileRange range = nextRange();
+        return range == null ? null : range.path();
+    }
+
+    /**
+     * @return the next file or range of a file to read, or null when every one has been handed out.
+     */
+    FileRange nextRange() {
+        final int index = _next.getAndIncrement();
+        return index < _ranges.length ? _ranges[index] : null;
+    }
+
+    /**
+     * Called by each reader once it is out of files.
+     *
+     * @return true for the last reader to finish, which then marks the reading as done.
+     */
+    boolean readerFinished() {
+        return _runningReaders.decrementAndGet() == 0;
+    }
+
+    int fileCount() {
+        return _ranges.length;
+    }
+
+    int readerCount() {
+        return _readerCount;
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static long sizeOf(String path) {
+        try {
+            return Files.isRegularFile(Paths.get(path)) ? Files.size(Paths.get(path)) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,304 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Counts every input file on a task of its own, for inputs of many small files, where the time goes into opening
+ * and reading the files rather than into parsing them. On virtual threads, a task that blocks on a read costs next
+ * to nothing, so thousands of reads can wait at once while the carrier threads parse what has arrived.
+ * <p>
+ * The tasks do not count into sinks of their own, which would leave one partial result per file to merge.
+ * They borrow one of a fixed set of ChunkParsers, one per parser thread and so one per carrier thread, only for
+ * as long as they parse a chunk. A small file is read whole, in a single open. A larger one, or a compressed one,
+ * is streamed through a ChunkAssembler and parsed chunk by chunk.
+ * <p>
+ * Before it reads, a task reserves the memory it holds until its text is parsed: the size of a small file, and a
+ * chunk and a copy buffer for a stream. The reservations come from a budget of bytes that the tasks of every count
+ * of an engine share, the same way as the open files, so that thousands of tasks never hold a file each at once.
+ *
+ * @param <S> the type of the sink the words are counted into.
+ */
+final class FileTaskCounter<S extends WordSink> implements PipelineMetrics.ReaderStage {
+
+    //region Static Final Class Variables
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int MAGIC_SIZE = 4;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final ExecutorService _executor;
+    private final Semaphore _openFiles;
+    private final Semaphore _bufferBytes;
+    private final List<ChunkParser<S>> _parsers;
+    private final BlockingQueue<ChunkParser<S>> _idleParsers;
+    private final int _chunkSize;
+    private final AtomicLong _bytesRead = new AtomicLong();
+    private final AtomicLong _blockedNanos = new AtomicLong();
+
+    //endregion
+
+    //region Variables
+
+    private long _elapsedNanos;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param executor    the executor to start one task per file on, usually one with a virtual thread per task.
+     * @param openFiles   the permits for open files, which the tasks of every count of an engine share.
+     * @param bufferBytes the permits for the bytes the tasks hold in memory, one per byte, which the tasks of
+     *                    every count of an engine share. There must be at least two chunks and 64K of them.
+     * @param parsers     the parsers the tasks count into. They are not fed by a channel.
+     */
+    FileTaskCounter(ExecutorService executor, Semaphore openFiles, Semaphore bufferBytes, List<ChunkParser<S>> parsers, int chunkSize) {
+        if (executor == null) throw new IllegalArgumentException("'executor' cannot be null.");
+        if (openFiles == null) throw new IllegalArgumentException("'openFiles' cannot be null.");
+        if (bufferBytes == null) throw new IllegalArgumentException("'bufferBytes' cannot be null.");
+        if (parsers == null || parsers.isEmpty()) throw new IllegalArgumentException("'parsers' cannot be empty.");
+        if (chunkSize <= 0) throw new IllegalArgumentException("'chunkSize' must be positive.");
+        _executor = executor;
+        _openFiles = openFiles;
+        _bufferBytes = bufferBytes;
+        _parsers = new ArrayList<>(parsers);
+        _idleParsers = new ArrayBlockingQueue<>(parsers.size(), false, parsers);
+        _chunkSize = chunkSize;
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts the files, and returns the sinks of the parsers once every file is done.
+     */
+    List<S> count(String[] filePath) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        final long start = System.nanoTime();
+        final List<Future<?>> tasks = new ArrayList<>(filePath.length);
+        for (String path : filePath) tasks.add(_executor.submit(() -> countFile(path)));
+        for (Future<?> task : tasks) awaitTask(task);
+        _elapsedNanos = System.nanoTime() - start;
+        ConsoleOutput.printMessageWithGaps("Counted " + filePath.length + " files on a task each.");
+
+        final List<S> results = new ArrayList<>();
+        for (ChunkParser<S> parser : _parsers) results.add(parser.result());
+        return results;
+    }
+
+    private void countFile(String path) {
+        try {
+            _openFiles.acquire();
+        } catch (InterruptedException e) {
+            final String errorHeader = "File task interrupted while waiting to open: " + path;
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+            return;
+        }
+        try {
+            final Path file = Paths.get(path);
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (attributes.isRegularFile() && attributes.size() <= _chunkSize) {
+                countSmallFile(path, file, (int) attributes.size());
+            } else {
+                _bufferBytes.acquire(streamBytes());
+                try {
+                    countLargeFile(path);
+                } finally {
+                    _bufferBytes.release(streamBytes());
+                }
+            }
+            _bytesRead.addAndGet(attributes.size());
+        } catch (IOException e) {
+            final String errorHeader = "Exception in reading file: " + path;
+            ConsoleOutput.printIOException(errorHeader, e);
+        } catch (InterruptedException e) {
+            final String errorHeader = "File task interrupted while reading: " + path;
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+        } finally {
+            _openFiles.release();
+        }
+    }
+
+    /**
+     * Reads the whole file in a single open. Its first bytes tell whether it is compressed, and so whether the
+     * memory to inflate it must be reserved as well, before the rest is read. Bytes appended to the file after
+     * its size was read are left out.
+     */
+    private void countSmallFile(String path, Path file, int size) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(Math.min(size, MAGIC_SIZE));
+            readFully(channel, magic);
+            final CompressedInput.Format format = CompressedInput.detect(magic.array(), magic.position());
+            final int reservedBytes = format == CompressedInput.Format.PLAIN ? size : size + streamBytes();
+
+            _bufferBytes.acquire(reservedBytes);
+            try {
+                final byte[] bytes = new byte[size];
+                System.arraycopy(magic.array(), 0, bytes, 0, magic.position());
+                final ByteBuffer text = ByteBuffer.wrap(bytes);
+                text.position(magic.position());
+                readFully(channel, text);
+                text.flip();
+                countSmallFile(path, text, format);
+            } finally {
+                _bufferBytes.release(reservedBytes);
+            }
+        }
+    }
+
+    private void countSmallFile(String path, ByteBuffer text, CompressedInput.Format format) throws IOException, InterruptedException {
+        final ByteArrayInputStream bytes = new ByteArrayInputStream(text.array(), 0, text.limit());
+        switch (format) {
+            case GZIP:
+                try (InputStream input = new GZIPInputStream(bytes)) {
+                    countStream(path, input);
+                }
+                break;
+            case ZIP:
+                countZipEntries(path, bytes);
+                break;
+            default:
+                //The whole file is one chunk. Its ends are word boundaries.
+                parse(new FileChunk(path, text));
+                break;
+        }
+    }
+
+    private void countLargeFile(String path) throws IOException, InterruptedException {
+        switch (CompressedInput.detect(path)) {
+            case GZIP:
+                try (InputStream input = CompressedInput.openGzip(path)) {
+                    countStream(path, input);
+                }
+                break;
+            case ZIP:
+                try (InputStream input = new BufferedInputStream(Files.newInputStream(Paths.get(path)), COPY_BUFFER_SIZE)) {
+                    countZipEntries(path, input);
+                }
+                break;
+            default:
+                try (InputStream input = Files.newInputStream(Paths.get(path))) {
+                    countStream(path, input);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Counts the entries of a zip archive one after another, each as if it was a file of its own.
+     */
+    private void countZipEntries(String path, InputStream archive) throws IOException, InterruptedException {
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) countStream(path + "!/" + entry.getName(), zip);
+            }
+        }
+    }
+
+    /**
+     * Streams the text of one path into chunks, numbered in the order of the text.
+     */
+    private void countStream(String path, InputStream input) throws IOException, InterruptedException {
+        final AtomicLong sequence = new AtomicLong();
+        final ChunkAssembler chunks = new ChunkAssembler(_chunkSize, false,
+                chunk -> parse(new FileChunk(path, sequence.getAndIncrement(), chunk)));
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) chunks.write(buffer, 0, read);
+        chunks.finish();
+    }
+
+    /**
+     * @return the bytes a stream holds at most: the chunk it assembles and the buffer it copies through.
+     */
+    private int streamBytes() {
+        return _chunkSize + COPY_BUFFER_SIZE;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            //Keep reading until the buffer is full, or the file ends.
+        }
+    }
+
+    /**
+     * Parses a chunk on one of the parsers, waiting for one to be free if every parser is in use.
+     */
+    private void parse(FileChunk chunk) throws InterruptedException {
+        final long start = System.nanoTime();
+        final ChunkParser<S> parser = _idleParsers.take();
+        _blockedNanos.addAndGet(System.nanoTime() - start);
+        try {
+            parser.parse(chunk);
+        } finally {
+            _idleParsers.put(parser);
+        }
+    }
+
+    private static void awaitTask(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            final String errorHeader = "Interrupted while awaiting a file task.";
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = new Throwable(e).getCause();
+            final String errorHeader = "ExcecutionException thrown by a file task.";
+            ConsoleOutput.printExecutionException(errorHeader, cause, e);
+        }
+    }
+
+    //endregion
+
+    //region Statistics Getters
+
+    /**
+     * @return the size of the input files read so far, compressed files included as they are on disk.
+     */
+    @Override
+    public long bytesRead() {
+        return _bytesRead.get();
+    }
+
+    @Override
+    public long elapsedNanos() {
+        return _elapsedNanos;
+    }
+
+    /**
+     * @return the time the tasks spent, added up, waiting for a free parser.
+     */
+    @Override
+    public long blockedNanos() {
+        return _blockedNanos.get();
+    }
+
+    //endregion
+}
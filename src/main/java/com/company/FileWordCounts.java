@@ -0,0 +1,102 @@
+package com.company;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sink of a ChunkParser that keeps the counts of every input file apart, so that many files can be counted in
+ * one run of the pipeline and still be stored in the CountCache one by one.
+ * <p>
+ * The words of a chunk go to the counts of the file the chunk comes from. The entries of a zip archive count
+ * towards the archive.
+ */
+final class FileWordCounts implements ChunkBoundarySink {
+
+    //region Static Final Class Variables
+
+    //What the readers put between the path of a zip archive and the name of one of its entries.
+    private static final String ENTRY_SEPARATOR = "!/";
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final Set<String> _filePaths;
+    private final int _partitionCount;
+    private final Map<String, PartitionedWordCounts> _files = new HashMap<>();
+
+    //endregion
+
+    //region Variables
+
+    private PartitionedWordCounts _current;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param filePaths the paths of the input files, as the readers are given them.
+     */
+    FileWordCounts(Collection<String> filePaths, int partitionCount) {
+        if (filePaths == null) throw new IllegalArgumentException("'filePaths' cannot be null.");
+        if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+        _filePaths = new HashSet<>(filePaths);
+        _partitionCount = partitionCount;
+    }
+
+    //endregion
+
+    //region Sink
+
+    @Override
+    public void startChunk(String path, long sequence) {
+        final String filePath = inputPath(path);
+        _current = _files.get(filePath);
+        if (_current == null) {
+            _current = new PartitionedWordCounts(_partitionCount);
+            _files.put(filePath, _current);
+        }
+    }
+
+    @Override
+    public void endChunk() {
+        _current = null;
+    }
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        if (_current == null) throw new IllegalStateException("A word outside of a chunk.");
+        _current.accept(word, offset, length);
+    }
+
+    /**
+     * @return the counts of a file, or null if this sink saw none of its chunks.
+     */
+    PartitionedWordCounts counts(String filePath) {
+        return _files.get(filePath);
+    }
+
+    //endregion
+
+    //region Helpers
+
+    /**
+     * The input path a chunk path stands for: the path itself, or the path of the zip archive of an entry.
+     */
+    private String inputPath(String path) {
+        if (_filePaths.contains(path)) return path;
+        int separator = path.indexOf(ENTRY_SEPARATOR);
+        while (separator >= 0) {
+            final String archive = path.substring(0, separator);
+            if (_filePaths.contains(archive)) return archive;
+            separator = path.indexOf(ENTRY_SEPARATOR, separator + 1);
+        }
+        throw new IllegalStateException("A chunk of a file that was not counted: " + path);
+    }
+
+    //endregion
+}
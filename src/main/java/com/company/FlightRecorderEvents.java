@@ -0,0 +1,172 @@
+package com.company;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The custom JDK Flight Recorder events of the pipeline, in the "Word Count" category of a recording:
+ * <ul>
+ * <li>com.company.ReaderFinished: the bytes a reader read, how long it ran and how long it waited for the parsers.</li>
+ * <li>com.company.ParserFinished: the words and lines a parser counted, and how long it was busy and waiting for text.</li>
+ * <li>com.company.QueueDepth: a sample of the number of chunks or batches waiting for a parser.</li>
+ * <li>com.company.StageFinished: how long the read, parse, merge and output stages of a count took.</li>
+ * </ul>
+ * The project compiles for Java 8, whose class library has no jdk.jfr package. So the event types are
+ * defined when this class loads, through jdk.jfr.EventFactory found by reflection. On a runtime without it,
+ * every event does nothing.
+ */
+final class FlightRecorderEvents {
+
+    //region Static Final Class Variables
+
+    private static final String CATEGORY = "Word Count";
+    private static final String NANOSECONDS = "NANOSECONDS";
+    private static final String BYTES = "BYTES";
+
+    static final EventType READER_FINISHED = EventType.define("com.company.ReaderFinished", "Reader Finished",
+            new Field(long.class, "bytes", "Bytes Read", "jdk.jfr.DataAmount", BYTES),
+            new Field(long.class, "elapsed", "Elapsed", "jdk.jfr.Timespan", NANOSECONDS),
+            new Field(long.class, "blocked", "Blocked on Parsers", "jdk.jfr.Timespan", NANOSECONDS));
+
+    static final EventType PARSER_FINISHED = EventType.define("com.company.ParserFinished", "Parser Finished",
+            new Field(long.class, "words", "Words"),
+            new Field(long.class, "lines", "Lines"),
+            new Field(long.class, "busy", "Busy", "jdk.jfr.Timespan", NANOSECONDS),
+            new Field(long.class, "blocked", "Blocked on Take", "jdk.jfr.Timespan", NANOSECONDS));
+
+    static final EventType QUEUE_DEPTH = EventType.define("com.company.QueueDepth", "Queue Depth",
+            new Field(int.class, "depth", "Depth"),
+            new Field(int.class, "capacity", "Capacity"));
+
+    static final EventType STAGE_FINISHED = EventType.define("com.company.StageFinished", "Stage Finished",
+            new Field(String.class, "stage", "Stage"),
+            new Field(long.class, "time", "Time", "jdk.jfr.Timespan", NANOSECONDS));
+
+    //endregion
+
+    //region Constructor
+
+    private FlightRecorderEvents() {
+    }
+
+    //endregion
+
+    //region Field
+
+    /**
+     * A field of an event type, with an optional annotation that gives the unit of its value.
+     */
+    static final class Field {
+        final Class<?> type;
+        final String name;
+        final String label;
+        final String unitAnnotation;
+        final String unit;
+
+        Field(Class<?> type, String name, String label) {
+            this(type, name, label, null, null);
+        }
+
+        Field(Class<?> type, String name, String label, String unitAnnotation, String unit) {
+            this.type = type;
+            this.name = name;
+            this.label = label;
+            this.unitAnnotation = unitAnnotation;
+            this.unit = unit;
+        }
+    }
+
+    //endregion
+
+    //region Event Type
+
+    static final class EventType {
+
+        //The jdk.jfr.EventFactory of the type, or null when Flight Recorder is not available.
+        private final Object _factory;
+        private final Method _newEvent;
+        private final Method _isEnabled;
+        private final Method _set;
+        private final Method _commit;
+        private final int _fieldCount;
+
+        private EventType(Object factory, Method newEvent, Method isEnabled, Method set, Method commit, int fieldCount) {
+            _factory = factory;
+            _newEvent = newEvent;
+            _isEnabled = isEnabled;
+            _set = set;
+            _commit = commit;
+            _fieldCount = fieldCount;
+        }
+
+        static EventType define(String name, String label, Field... fields) {
+            try {
+                final Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+                final Constructor<?> newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+                final Constructor<?> newValueDescriptor = Class.forName("jdk.jfr.ValueDescriptor")
+                        .getConstructor(Class.class, String.class, List.class);
+
+                final List<Object> eventAnnotations = Arrays.asList(
+                        newAnnotation.newInstance(annotation("jdk.jfr.Name"), name),
+                        newAnnotation.newInstance(annotation("jdk.jfr.Label"), label),
+                        newAnnotation.newInstance(annotation("jdk.jfr.Category"), new String[]{CATEGORY}));
+                final List<Object> valueDescriptors = new ArrayList<>();
+                for (Field field : fields) {
+                    final List<Object> fieldAnnotations = new ArrayList<>();
+                    fieldAnnotations.add(newAnnotation.newInstance(annotation("jdk.jfr.Label"), field.label));
+                    if (field.unitAnnotation != null) {
+                        fieldAnnotations.add(newAnnotation.newInstance(annotation(field.unitAnnotation), field.unit));
+                    }
+                    valueDescriptors.add(newValueDescriptor.newInstance(field.type, field.name, fieldAnnotations));
+                }
+
+                final Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+                final Object factory = eventFactory.getMethod("create", List.class, List.class)
+                        .invoke(null, eventAnnotations, valueDescriptors);
+                final Class<?> event = Class.forName("jdk.jfr.Event");
+                return new EventType(factory, eventFactory.getMethod("newEvent"), event.getMethod("isEnabled"),
+                        event.getMethod("set", int.class, Object.class), event.getMethod("commit"), fields.length);
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+                //No Flight Recorder on this runtime. The events are left out rather than failing the count.
+                return new EventType(null, null, null, null, null, fields.length);
+            }
+        }
+
+        private static Class<? extends Annotation> annotation(String name) throws ClassNotFoundException {
+            return Class.forName(name).asSubclass(Annotation.class);
+        }
+
+        /**
+         * @return whether events of this type can be committed on this runtime, recorded or not.
+         */
+        boolean isAvailable() {
+            return _factory != null;
+        }
+
+        /**
+         * Commits an event with the given field values, in the order of the fields of the type.
+         * Does nothing when no recording takes events of this type.
+         */
+        void commit(Object... values) {
+            if (values.length != _fieldCount) {
+                throw new IllegalArgumentException("Expected " + _fieldCount + " values, got " + values.length + ".");
+            }
+            if (_factory == null) return;
+            try {
+                final Object event = _newEvent.invoke(_factory);
+                if (!(Boolean) _isEnabled.invoke(event)) return;
+                for (int index = 0; index < values.length; index++) _set.invoke(event, index, values[index]);
+                _commit.invoke(event);
+            } catch (ReflectiveOperationException e) {
+                //An event is not worth failing a count for.
+                ConsoleOutput.printMessageWithGaps("Cannot commit a Flight Recorder event: " + e);
+            }
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,521 @@
+package com.company;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses the members of one gzip file in parallel, and hands the text to the parsers as word-aligned chunks.
+ * <p>
+ * A gzip file of several members does not say where its members start. The first member is inflated on its own,
+ * since most gzip files have only the one, and nothing else is needed for them. Only when another member follows is
+ * the rest of the file scanned for byte sequences that look like a gzip header, and a segment worker starts inflating
+ * at each of them. The start of the second member is known to be one. A later one is confirmed when the member before it ends exactly there, and is
+ * rejected when that member runs past it, in which case the candidate was a lookalike inside compressed data.
+ * <p>
+ * Until its start is confirmed, a worker keeps its chunks to itself, up to a limit after which it waits. Once
+ * confirmed, the chunks go to the parsers. The partial words at the edges of every worker's text are held back and
+ * joined with the neighbours in file order, so that a word split between two members is counted once.
+ * <p>
+ * The chunks reach the channel out of order, so each one carries a sequence number of two halves: the index of its
+ * segment in the high half, and its place in the segment in the low half. The joined edges before the text of a
+ * segment are number 0 of that segment, and the tail of the last segment comes after all of its chunks.
+ */
+final class GzipMemberChain {
+
+    //region Static Final Class Variables
+
+    private static final int READ_BLOCK_SIZE = 64 * 1024;
+    private static final int INFLATE_BLOCK_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 10;
+    private static final int SHORT_HEADER_READ = 1024;
+    private static final int TRAILER_SIZE = 8;
+    private static final int FLAG_HEADER_CRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+    private static final int FLAG_RESERVED = 0xE0;
+
+    //The speculative workers together buffer this many chunks per core, before they wait for their starts
+    //to be confirmed. The confirmed worker never waits, so the chain always moves on.
+    private static final int SPECULATIVE_CHUNKS_PER_CORE = 4;
+
+    private static final long LAST_IN_SEGMENT = 0xFFFFFFFFL;
+
+    //endregion
+
+    //region Segment State
+
+    private enum Status {
+        PENDING,
+        CONFIRMED,
+        REJECTED
+    }
+
+    private static final class Segment {
+        Status status = Status.PENDING;
+        boolean finished;
+        long end;
+        byte[] head;
+        byte[] tail;
+        boolean delimited;
+        IOException failure;
+        long emitted;
+        final List<FileChunk> buffered = new ArrayList<>();
+    }
+
+    /**
+     * Thrown inside a worker whose start turned out not to be a member, to stop it.
+     */
+    private static final class RejectedSegment extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        RejectedSegment() {
+            super(null, null, false, false);
+        }
+    }
+
+    //endregion
+
+    //region Final Variables
+
+    private final String _path;
+    private final FileChannel _channel;
+    private final long _size;
+    private final BoundedChannel<FileChunk> _chunks;
+    private final int _chunkSize;
+    private final long _speculationBudget;
+
+    //endregion
+
+    //region Variables Written Before the Workers Start
+
+    private boolean _scanPending;
+    private long[] _starts = {0};
+    private Segment[] _segments = {new Segment()};
+
+    //endregion
+
+    //region Variables Guarded by this
+
+    private int _current;
+    private final ByteArrayOutputStream _carry = new ByteArrayOutputStream();
+    private long _bufferedBytes;
+    private int _pendingPuts;
+    private boolean _done;
+    private IOException _failure;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param channel the gzip file, read with positional reads only, so that the workers can share it.
+     */
+    GzipMemberChain(String path, FileChannel channel, BoundedChannel<FileChunk> chunks, int chunkSize) throws IOException {
+        if (path == null) throw new IllegalArgumentException("'path' cannot be null.");
+        if (channel == null) throw new IllegalArgumentException("'channel' cannot be null.");
+        if (chunks == null) throw new IllegalArgumentException("'chunks' cannot be null.");
+        if (chunkSize <= 0) throw new IllegalArgumentException("'chunkSize' must be positive.");
+        _path = path;
+        _channel = channel;
+        _size = channel.size();
+        _chunks = chunks;
+        _chunkSize = chunkSize;
+        _segments[0].status = Status.CONFIRMED;
+        _speculationBudget = (long) SPECULATIVE_CHUNKS_PER_CORE * chunkSize * Runtime.getRuntime().availableProcessors();
+    }
+
+    //endregion
+
+    //region Running
+
+    /**
+     * Decompresses the whole file, and returns when every chunk has been handed to the parsers.
+     *
+     * @param executor    runs the segment workers. Without one, every member is inflated on the calling thread,
+     *                    one after another, and the file is never scanned.
+     * @param parallelism how many workers may run at once.
+     */
+    void run(ExecutorService executor, int parallelism) throws IOException, InterruptedException {
+        //The first segment runs here. If more members follow its first one, it ends there, and the workers take
+        //the candidates found after it.
+        _scanPending = executor != null && parallelism > 1;
+        decompressSegment(0);
+        if (_starts.length == 1) {
+            awaitDone();
+            return;
+        }
+
+        //The workers take the segments in the order of their starts. So the confirmed segment has always been
+        //taken by a worker before any later one waits for it, and the chain moves on.
+        final AtomicInteger next = new AtomicInteger(1);
+        final List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int worker = 0; worker < Math.min(parallelism, _starts.length - 1); worker++) {
+                workers.add(executor.submit(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < _starts.length) decompressSegment(index);
+                }));
+            }
+            awaitDone();
+        } finally {
+            //Whatever still runs is a rejected worker, or the chain failed. Either way, it has nothing left to do.
+            next.set(_starts.length);
+            for (Future<?> worker : workers) worker.cancel(true);
+        }
+    }
+
+    private synchronized void awaitDone() throws IOException, InterruptedException {
+        while (!_done || _pendingPuts > 0) wait();
+        if (_failure != null) throw _failure;
+    }
+
+    int candidateCount() {
+        return _starts.length;
+    }
+
+    //endregion
+
+    //region Segment Worker
+
+    private void decompressSegment(int index) {
+        synchronized (this) {
+            if (_segments[index].status == Status.REJECTED) return;
+        }
+
+        final ChunkAssembler text = new ChunkAssembler(_chunkSize, true, chunk -> emit(index, chunk));
+        try {
+            final long end = inflateMembers(index, text);
+            text.finish();
+            finished(index, end, text, null);
+        } catch (RejectedSegment e) {
+            //Another worker covers this part of the file.
+        } catch (IOException e) {
+            finished(index, -1, null, e);
+        } catch (DataFormatException e) {
+            finished(index, -1, null, new IOException("Corrupt gzip data in: " + _path, e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finished(index, -1, null, new InterruptedIOException("Interrupted while decompressing: " + _path));
+        } catch (RuntimeException e) {
+            //Such as a closed chunk channel. The chain must still end, or the reader would wait forever.
+            finished(index, -1, null, new IOException("Failed to decompress: " + _path, e));
+        }
+    }
+
+    /**
+     * Inflates members one after another, from the start of the segment until the next candidate or the end of the
+     * file. A member that ends where no candidate was found is simply followed on this thread.
+     *
+     * @return where the last member ended: the start of a later candidate, or the size of the file.
+     */
+    private long inflateMembers(int index, ChunkAssembler text) throws IOException, DataFormatException, InterruptedException {
+        long position = _starts[index];
+        while (true) {
+            position = inflateMember(index, position, text);
+            if (position >= _size) return _size;
+            if (Arrays.binarySearch(_starts, position) >= 0) return position;
+            //Whatever follows the last member and is not a member is ignored, like GZIPInputStream does.
+            if (headerLength(position) < 0) return _size;
+            if (_scanPending) {
+                addCandidates(position);
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Makes a segment of every candidate from the position on, which is where the second member starts. Runs on
+     * the first segment's thread, before any worker starts.
+     */
+    private void addCandidates(long position) throws IOException {
+        _scanPending = false;
+        final long[] candidates = findCandidates(_channel, position, _size);
+        final long[] starts = new long[1 + candidates.length];
+        System.arraycopy(candidates, 0, starts, 1, candidates.length);
+        final Segment[] segments = Arrays.copyOf(_segments, starts.length);
+        for (int index = 1; index < segments.length; index++) segments[index] = new Segment();
+        synchronized (this) {
+            _starts = starts;
+            _segments = segments;
+        }
+    }
+
+    /**
+     * @return the position right after the trailer of the member.
+     */
+    private long inflateMember(int index, long start, ChunkAssembler text) throws IOException, DataFormatException, InterruptedException {
+        final int headerLength = headerLength(start);
+        if (headerLength < 0) throw new IOException("Not a gzip member at byte " + start + " of: " + _path);
+
+        final Inflater inflater = new Inflater(true);
+        final CRC32 crc = new CRC32();
+        final byte[] input = new byte[READ_BLOCK_SIZE];
+        final byte[] output = new byte[INFLATE_BLOCK_SIZE];
+        long inputPosition = start + headerLength;
+        long outputSize = 0;
+        try {
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    checkRejected(index);
+                    final int read = read(input, inputPosition);
+                    if (read <= 0) throw new EOFException("Truncated gzip member in: " + _path);
+                    inflater.setInput(input, 0, read);
+                    inputPosition += read;
+                }
+                if (inflater.needsDictionary()) throw new DataFormatException("A gzip member cannot need a dictionary.");
+                final int inflated = inflater.inflate(output);
+                if (inflated == 0) continue;
+                crc.update(output, 0, inflated);
+                outputSize += inflated;
+                text.write(output, 0, inflated);
+            }
+
+            //Check the trailer, so that a lookalike header is never taken for a member.
+            final long trailer = inputPosition - inflater.getRemaining();
+            final byte[] bytes = new byte[TRAILER_SIZE];
+            if (read(bytes, trailer) < TRAILER_SIZE) throw new EOFException("Truncated gzip trailer in: " + _path);
+            if (littleEndianInt(bytes, 0) != (int) crc.getValue() || littleEndianInt(bytes, 4) != (int) outputSize) {
+                throw new IOException("Corrupt gzip member at byte " + start + " of: " + _path);
+            }
+            return trailer + TRAILER_SIZE;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    //endregion
+
+    //region Chain
+
+    private void emit(int index, ByteBuffer bytes) throws InterruptedException {
+        final FileChunk chunk;
+        synchronized (this) {
+            final Segment segment = _segments[index];
+            chunk = new FileChunk(_path, sequence(index, ++segment.emitted), bytes);
+            while (segment.status != Status.CONFIRMED) {
+                if (segment.status == Status.REJECTED) throw new RejectedSegment();
+                if (_bufferedBytes + chunk.length() <= _speculationBudget) {
+                    segment.buffered.add(chunk);
+                    _bufferedBytes += chunk.length();
+                    return;
+                }
+                wait();
+            }
+        }
+        _chunks.put(chunk);
+    }
+
+    private static long sequence(int segment, long chunk) {
+        return (long) segment << 32 | chunk;
+    }
+
+    private synchronized void checkRejected(int index) {
+        if (_segments[index].status == Status.REJECTED) throw new RejectedSegment();
+    }
+
+    private void finished(int index, long end, ChunkAssembler text, IOException failure) {
+        final List<FileChunk> ready = new ArrayList<>();
+        synchronized (this) {
+            final Segment segment = _segments[index];
+            segment.finished = true;
+            segment.end = end;
+            segment.failure = failure;
+            if (text != null) {
+                segment.head = text.head();
+                segment.tail = text.tail();
+                segment.delimited = text.delimited();
+            }
+            advance(ready);
+            _pendingPuts++;
+            notifyAll();
+        }
+
+        //Hand over outside the lock, since the parsers may be slow to make room.
+        try {
+            for (FileChunk chunk : ready) _chunks.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                if (_failure == null) _failure = new InterruptedIOException("Interrupted while handing over: " + _path);
+            }
+        } finally {
+            synchronized (this) {
+                _pendingPuts--;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Walks the chain of confirmed segments as far as finished workers allow, confirming and rejecting the
+     * candidates after each, and collects the chunks that are now known to be part of the text.
+     */
+    private void advance(List<FileChunk> ready) {
+        while (!_done) {
+            final Segment segment = _segments[_current];
+            if (!segment.finished) return;
+            if (segment.failure != null) {
+                _failure = segment.failure;
+                reject(_current + 1, _segments.length);
+                _done = true;
+                return;
+            }
+
+            //Join the partial word carried over from earlier segments with the head of this one.
+            _carry.write(segment.head, 0, segment.head.length);
+            if (segment.delimited) {
+                takeCarry(ready, sequence(_current, 0));
+                _carry.write(segment.tail, 0, segment.tail.length);
+            }
+
+            final int next = segment.end < _size ? Arrays.binarySearch(_starts, segment.end) : -1;
+            reject(_current + 1, next < 0 ? _segments.length : next);
+            if (next < 0) {
+                takeCarry(ready, sequence(_current, LAST_IN_SEGMENT));
+                _done = true;
+                return;
+            }
+
+            _current = next;
+            final Segment confirmed = _segments[next];
+            confirmed.status = Status.CONFIRMED;
+            ready.addAll(confirmed.buffered);
+            release(confirmed);
+        }
+    }
+
+    private void reject(int from, int to) {
+        for (int index = from; index < to; index++) {
+            _segments[index].status = Status.REJECTED;
+            release(_segments[index]);
+        }
+    }
+
+    private void release(Segment segment) {
+        for (FileChunk chunk : segment.buffered) _bufferedBytes -= chunk.length();
+        segment.buffered.clear();
+    }
+
+    private void takeCarry(List<FileChunk> ready, long sequence) {
+        if (_carry.size() > 0) ready.add(new FileChunk(_path, sequence, ByteBuffer.wrap(_carry.toByteArray())));
+        _carry.reset();
+    }
+
+    //endregion
+
+    //region Header Scan
+
+    /**
+     * @return the offsets of everything from the position on that looks like a gzip header.
+     */
+    static long[] findCandidates(FileChannel channel, long from, long size) throws IOException {
+        long[] starts = new long[16];
+        int count = 0;
+        final ByteBuffer block = ByteBuffer.allocate(READ_BLOCK_SIZE + HEADER_SIZE);
+        long position = from;
+        while (position < size) {
+            block.clear();
+            while (block.hasRemaining() && channel.read(block, position + block.position()) > 0) {
+                //Fill the block, including the overlap for a header that starts near its end.
+            }
+            final byte[] bytes = block.array();
+            final int scanned = Math.min(READ_BLOCK_SIZE, block.position());
+            for (int offset = 0; offset < scanned; offset++) {
+                if (bytes[offset] != 0x1F || !looksLikeHeader(bytes, offset, block.position())) continue;
+                if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                starts[count++] = position + offset;
+            }
+            if (block.position() < bytes.length) break;
+            position += READ_BLOCK_SIZE;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * The fixed part of a gzip header: the magic bytes, the deflate method, no reserved flags, a known
+     * compression level and a known operating system.
+     */
+    static boolean looksLikeHeader(byte[] bytes, int offset, int length) {
+        if (length - offset < HEADER_SIZE) return false;
+        final int extraFlags = bytes[offset + 8] & 0xFF;
+        final int operatingSystem = bytes[offset + 9] & 0xFF;
+        return (bytes[offset] & 0xFF) == 0x1F
+                && (bytes[offset + 1] & 0xFF) == 0x8B
+                && bytes[offset + 2] == 8
+                && (bytes[offset + 3] & FLAG_RESERVED) == 0
+                && (extraFlags == 0 || extraFlags == 2 || extraFlags == 4)
+                && (operatingSystem <= 13 || operatingSystem == 255);
+    }
+
+    /**
+     * @return the length of the gzip header at the position, or -1 if there is none.
+     */
+    private int headerLength(long position) throws IOException {
+        //Most headers carry no more than a short file name. Read more only for the rare longer one.
+        for (int size = SHORT_HEADER_READ; ; size = READ_BLOCK_SIZE) {
+            final byte[] bytes = new byte[size];
+            final int read = read(bytes, position);
+            final int length = headerLength(bytes, read);
+            if (length >= 0 || read < size || size == READ_BLOCK_SIZE) return length;
+        }
+    }
+
+    static int headerLength(byte[] bytes, int read) {
+        if (!looksLikeHeader(bytes, 0, read)) return -1;
+
+        final int flags = bytes[3];
+        int length = HEADER_SIZE;
+        if ((flags & FLAG_EXTRA) != 0) {
+            if (length + 2 > read) return -1;
+            length += 2 + ((bytes[length] & 0xFF) | (bytes[length + 1] & 0xFF) << 8);
+        }
+        if ((flags & FLAG_NAME) != 0) length = skipZeroTerminated(bytes, length, read);
+        if (length >= 0 && (flags & FLAG_COMMENT) != 0) length = skipZeroTerminated(bytes, length, read);
+        if (length >= 0 && (flags & FLAG_HEADER_CRC) != 0) length += 2;
+        return length < 0 || length > read ? -1 : length;
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int offset, int length) {
+        for (int index = offset; index < length; index++) {
+            if (bytes[index] == 0) return index + 1;
+        }
+        return -1;
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private int read(byte[] bytes, long position) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            final int read = _channel.read(buffer, position + buffer.position());
+            if (read < 0) break;
+        }
+        return buffer.position();
+    }
+
+    private static int littleEndianInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF)
+                | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    //endregion
+}
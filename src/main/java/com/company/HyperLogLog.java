@@ -0,0 +1,140 @@
+package com.company;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct words of a stream in constant memory.
+ * <p>
+ * Every word is hashed to 64 bits. The first 'precision' bits pick a register, and the register keeps the
+ * longest run of leading zeros seen in the remaining bits. The registers of two sketches are merged by taking
+ * the maximum of each, which gives exactly the sketch of both streams together.
+ * <p>
+ * A sketch is not thread-safe, and is meant to be owned by a single parser.
+ */
+final class HyperLogLog implements WordSink {
+
+    //region Static Final Class Variables
+
+    static final int MIN_PRECISION = 4;
+    static final int MAX_PRECISION = 18;
+    static final int DEFAULT_PRECISION = 14;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final int _precision;
+    private final byte[] _registers;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param precision the number of hash bits that pick a register. The sketch has 2^precision registers
+     *                  of one byte each, and its standard error is 1.04 / sqrt(2^precision).
+     */
+    HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("'precision' must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ".");
+        }
+        _precision = precision;
+        _registers = new byte[1 << precision];
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        final long hash = hash64(word, offset, length);
+        final int register = (int) (hash >>> (64 - _precision));
+
+        //The rank is the position of the first one bit after the register bits, counting from one.
+        final long remaining = hash << _precision;
+        final int rank = remaining == 0 ? 64 - _precision + 1 : Long.numberOfLeadingZeros(remaining) + 1;
+        if (rank > _registers[register]) _registers[register] = (byte) rank;
+    }
+
+    /**
+     * Merges another sketch of the same precision into this one.
+     */
+    void merge(HyperLogLog other) {
+        if (other == null) throw new IllegalArgumentException("'other' cannot be null.");
+        if (other._precision != _precision) throw new IllegalArgumentException("Only sketches of the same precision can be merged.");
+        for (int register = 0; register < _registers.length; register++) {
+            if (other._registers[register] > _registers[register]) _registers[register] = other._registers[register];
+        }
+    }
+
+    //endregion
+
+    //region Estimation
+
+    /**
+     * @return the estimated number of distinct words.
+     */
+    long estimate() {
+        final int registerCount = _registers.length;
+        double inverseSum = 0;
+        int zeroRegisters = 0;
+        for (byte register : _registers) {
+            inverseSum += 1.0 / (1L << register);
+            if (register == 0) zeroRegisters++;
+        }
+        final double estimate = alpha(registerCount) * registerCount * registerCount / inverseSum;
+
+        //For small cardinalities, linear counting over the empty registers is more accurate.
+        if (estimate <= 2.5 * registerCount && zeroRegisters > 0) {
+            return Math.round(registerCount * Math.log((double) registerCount / zeroRegisters));
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return the relative standard error of the estimate.
+     */
+    double standardError() {
+        return 1.04 / Math.sqrt(_registers.length);
+    }
+
+    int precision() {
+        return _precision;
+    }
+
+    private static double alpha(int registerCount) {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    //endregion
+
+    //region Hashing
+
+    /**
+     * A 64-bit FNV-1a hash, finished with the MurmurHash3 mixer so that every bit depends on every input byte.
+     */
+    static long hash64(byte[] word, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        final int end = offset + length;
+        for (int index = offset; index < end; index++) {
+            hash ^= word[index];
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    //endregion
+}
@@ -0,0 +1,124 @@
+package com.company;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns the input arguments into the list of files to count.
+ * <p>
+ * An argument can be a file, a directory, which stands for every regular file under it, or a glob pattern such as
+ * "logs/**&#47;*.txt", which stands for every regular file it matches. The glob syntax is the one of
+ * {@link java.nio.file.FileSystem#getPathMatcher(String)}. A file or directory that exists is taken as it is, even
+ * if its name holds glob characters, such as "notes[1].txt". Anything else is passed on as it is, so that
+ * validation reports it.
+ */
+final class InputFiles {
+
+    //region Static Final Class Variables
+
+    private static final String GLOB_CHARACTERS = "*?[{";
+
+    //endregion
+
+    //region Constructor
+
+    private InputFiles() {
+    }
+
+    //endregion
+
+    //region Expansion
+
+    static String[] expand(String[] arguments) {
+        if (arguments == null) throw new IllegalArgumentException("'arguments' cannot be null.");
+
+        final List<String> filePath = new ArrayList<>();
+        for (String argument : arguments) {
+            if (!exists(argument) && isGlob(argument)) {
+                final List<String> matches = matchGlob(argument);
+                //A pattern that matches nothing is left for validation to report.
+                if (matches.isEmpty()) filePath.add(argument);
+                filePath.addAll(matches);
+            } else if (Files.isDirectory(Paths.get(argument))) {
+                filePath.addAll(walk(Paths.get(argument), path -> true));
+            } else {
+                filePath.add(argument);
+            }
+        }
+        return filePath.toArray(new String[0]);
+    }
+
+    private static boolean exists(String argument) {
+        try {
+            return Files.exists(Paths.get(argument));
+        } catch (InvalidPathException e) {
+            //Such as a pattern on a file system that does not allow its characters in a path.
+            return false;
+        }
+    }
+
+    static boolean isGlob(String argument) {
+        for (int index = 0; index < argument.length(); index++) {
+            if (GLOB_CHARACTERS.indexOf(argument.charAt(index)) >= 0) return true;
+        }
+        return false;
+    }
+
+    private static List<String> matchGlob(String pattern) {
+        //Walk only the part of the tree below the last directory before the first glob character.
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        final Path base = globBase(pattern);
+        if (!Files.isDirectory(base)) return Collections.emptyList();
+        return walk(base, matcher);
+    }
+
+    static Path globBase(String pattern) {
+        int firstGlob = 0;
+        while (GLOB_CHARACTERS.indexOf(pattern.charAt(firstGlob)) < 0) firstGlob++;
+        final int separator = Math.max(pattern.lastIndexOf('/', firstGlob), pattern.lastIndexOf(File.separatorChar, firstGlob));
+        if (separator < 0) return Paths.get("");
+        return Paths.get(separator == 0 ? pattern.substring(0, 1) : pattern.substring(0, separator));
+    }
+
+    private static List<String> walk(Path directory, PathMatcher matcher) {
+        final List<String> filePath = new ArrayList<>();
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && matcher.matches(file)) filePath.add(file.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    //Skip what cannot be listed, instead of losing the rest of the tree.
+                    final String errorHeader = "Exception in listing: " + file;
+                    ConsoleOutput.printIOException(errorHeader, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            final String errorHeader = "Exception in listing directory: " + directory;
+            ConsoleOutput.printIOException(errorHeader, e);
+        }
+
+        //The walk order depends on the file system. Sort, so that runs over the same tree see the same order.
+        Collections.sort(filePath);
+        return filePath;
+    }
+
+    //endregion
+}
@@ -1,34 +1,65 @@
 package com.company;
 
-import java.util.HashMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 
 /**
- * The callable class to parse one line at a time from a blocking queue passed in the constructor.
- * The result of parsing is stored in a local hash map.
+ * The callable class to parse one line at a time from a blocking queue passed in the constructor,
+ * or one batch of text at a time from a CharBatchRing.
+ * The lines are split into words by a WordTokenizer, and the words are counted into a local sink,
+ * usually a WordCountTable, which is the result of the call.
+ *
+ * @param <S> the type of the sink the words are counted into.
  */
-public class LineParser implements Callable<HashMap<String, Long>> {
+public class LineParser<S extends WordSink> implements Callable<S>, PipelineMetrics.ParserStage {
 
     //region Static Final Class Variables and Collections
 
-    private static final String NON_WORD_GREEDY_DELIMITER_REGEX = "\\W+";
     private final BlockingQueue<String> _lines;
-    private final HashMap<String, Long> _result = new HashMap<>();
+    private final CharBatchRing _batches;
+    private final S _result;
+    private final WordTokenizer _tokenizer = new WordTokenizer();
+
+    //endregion
+
+    //region Statistics
+
+    //Written by the parser thread only, and read once it is done.
+    private long _linesTaken;
+    private long _elapsedNanos;
+    private long _blockedNanos;
 
     //endregion
 
     //region Constructor
 
     /**
-     * The constructor of LineParser which takes in one parameter.
+     * The constructor of LineParser which takes in two parameters.
      *
      * @param lines an ArrayBlockingQueue of String.
      *              This is the buffer from which the LineParser reads the lines to parse.
+     * @param sink  the sink the words are counted into. It is returned by call().
      */
-    LineParser(BlockingQueue<String> lines) {
+    LineParser(BlockingQueue<String> lines, S sink) {
         if (lines == null) throw new IllegalArgumentException("The input line buffer cannot be null.");
+        if (sink == null) throw new IllegalArgumentException("'sink' cannot be null.");
         _lines = lines;
+        _batches = null;
+        _result = sink;
+    }
+
+    /**
+     * The constructor of LineParser which reads batches of text instead of single lines.
+     *
+     * @param batches the ring from which the LineParser takes the batches to parse, and to which it releases them.
+     * @param sink    the sink the words are counted into. It is returned by call().
+     */
+    LineParser(CharBatchRing batches, S sink) {
+        if (batches == null) throw new IllegalArgumentException("The input batch ring cannot be null.");
+        if (sink == null) throw new IllegalArgumentException("'sink' cannot be null.");
+        _lines = null;
+        _batches = batches;
+        _result = sink;
     }
 
     //endregion
@@ -36,7 +67,16 @@ public class LineParser implements Callable<HashMap<String, Long>> {
     //region Call method implementation
 
     @Override
-    public HashMap<String, Long> call() {
+    public S call() {
+        final long start = System.nanoTime();
+        try {
+            return _batches != null ? parseBatches() : parseLines();
+        } finally {
+            _elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    private S parseLines() {
         //The parser simply needs to read from the concurrent collection and process each line.
 
         /*
@@ -72,7 +112,9 @@ public class LineParser implements Callable<HashMap<String, Long>> {
         String line = "";//Line is set empty to quiet the compiler error about possible uninitialized line.
         while (true) {
             try {
+                final long takeStart = System.nanoTime();
                 line = _lines.take();
+                _blockedNanos += System.nanoTime() - takeStart;
                 if (line.equals(ConsoleOutput.END_MARKER)) {
                     //If END_MARKER is encountered, the collection is done.
                     //Put the END_MARKER back for other threads to read and break out of their while loop.
@@ -83,45 +125,69 @@ public class LineParser implements Callable<HashMap<String, Long>> {
                 final String errorHeader = "Parser thread interrupted while waiting for lines to parse.";
                 ConsoleOutput.printInterruptedException(errorHeader, e);
             }
-            addWordsToMap(parse(line));
+            _tokenizer.tokenize(line, _result);
+            _linesTaken++;
         }
         return _result;
     }
 
-    //region Line Parsing
+    private S parseBatches() {
+        //No END_MARKER is needed here. The ring returns null to every parser once it is closed and drained.
+        while (true) {
+            final CharBatch batch;
+            try {
+                final long takeStart = System.nanoTime();
+                batch = _batches.take();
+                _blockedNanos += System.nanoTime() - takeStart;
+            } catch (InterruptedException e) {
+                final String errorHeader = "Parser thread interrupted while waiting for batches to parse.";
+                ConsoleOutput.printInterruptedException(errorHeader, e);
+                continue;
+            }
+            if (batch == null) break;
 
-    /**
-     * I think the two methods below are a good candidate for extraction to a separate
-     * 'Parser' class. I'm leaving them here for now because of time constraints.
-     * <p>
-     * Reasons:
-     * 1. Parsing is a clear and separate responsibility. The two classes would be
-     * following the 'S' of SOLID principles.
-     * 2. In the separate class, these two methods would become public and be testable.
-     * 3. We could change the delimiterRegex to something else for 'accentuated words' OR
-     * 'another encoding', and quickly test if the new regex is working for lines that
-     * were being properly parsed earlier.
-     */
+            //A batch ends on a delimiter, so tokenizing it whole gives the same words as tokenizing it line by line.
+            _tokenizer.tokenize(batch.chars(), 0, batch.length(), _result);
 
-    private void addWordsToMap(String[] words) {
-        for (String word : words) {
-            //Skip empty words
-            if (word.equals("")) continue;
+            try {
+                _batches.release(batch);
+            } catch (InterruptedException e) {
+                final String errorHeader = "Parser thread interrupted while releasing a batch.";
+                ConsoleOutput.printInterruptedException(errorHeader, e);
+            }
+        }
+        return _result;
+    }
 
-            //Convert word to lowercase
-            word = word.toLowerCase();
+    //endregion
 
-            //Update the local word count
-            if (!_result.containsKey(word)) _result.put(word, 0L);
-            _result.put(word, _result.get(word) + 1);
-        }
+    //region Statistics Getters
+
+    @Override
+    public long words() {
+        return _tokenizer.words();
+    }
+
+    /**
+     * @return the lines parsed, counted by the line feeds in batches, or one per line taken from the queue.
+     */
+    @Override
+    public long lines() {
+        return _tokenizer.lines() + _linesTaken;
     }
 
-    private String[] parse(String line) {
-        return line.split(NON_WORD_GREEDY_DELIMITER_REGEX);
+    @Override
+    public long busyNanos() {
+        return _elapsedNanos - _blockedNanos;
     }
 
-    //endregion
+    /**
+     * @return the time spent waiting for text to parse.
+     */
+    @Override
+    public long blockedNanos() {
+        return _blockedNanos;
+    }
 
     //endregion
-}
\ No newline at end of file
+}
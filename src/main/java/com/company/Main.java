@@ -1,251 +1,301 @@
 package com.company;
 
-import java.io.File;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.*;
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The command line front end of the WordCounter engine. It turns the options into an engine, runs a single
+ * count with it and prints the result. With --serve, it keeps the engine running as a CountServer instead,
+ * and with --connect, it hands the count to such a server. With --stream, it counts a live stream and prints
+ * snapshots of the counts while the stream runs. With --coordinate, it hands shards of the input files to
+ * worker processes, which run with --join, and merges their counts.
+ */
 public class Main {
 
-    //region Static Final Class Variables and Collections
-
-    private static final int PARSER_TIMEOUT = 5;
-    private static final TimeUnit PARSER_TIMEOUT_UNIT = TimeUnit.SECONDS;
-    private static final ArrayList<Future<HashMap<String, Long>>> _parsers = new ArrayList<>();
-    private static final ArrayList<Callable<HashMap<String, Long>>> _lineParsers = new ArrayList<>();
-    private static HashMap<String, Long> result;
-
-    //endregion
-
-    public static void main(String[] filePath) {
-
-        //1. Validate the list of file paths.
-        validateInput(filePath);
-
-        //2. Orchestrate word count process if all the input file paths were valid.
-        orchestrateWordCount(filePath);
-
-        //3. Collect the results when the execution of threads is done.
-        mergeAndPrintResult();
-    }
-
-    //region Printing Results
-
-    private static void mergeAndPrintResult() {
-        ConsoleOutput.printMessageWithGaps("Merging individual parser results...");
-        result = mergeResults();
-        ConsoleOutput.printMessageWithGaps("Results merged.");
-        ConsoleOutput.blockPrintMap(result);
-    }
+    public static void main(String[] args) {
 
-    private static HashMap<String, Long> mergeResults() {
-        //Instantiate the map to be returned.
-        HashMap<String, Long> result = new HashMap<>();
-
-        //Merge the individual result of each line parser iteratively
-        for (Future<HashMap<String, Long>> parser : _parsers) {
+        //1. Separate the options from the list of file paths.
+        final RunOptions options = RunOptions.parse(args);
+        if (options.connect() > 0) {
+            sendToServer(options, args);
+            return;
+        }
+        if (options.output() == null && options.format() != RunOptions.OutputFormat.TEXT) {
+            //The results take the standard output, so keep it clean of messages.
+            ConsoleOutput.useStandardErrorForMessages();
+        }
+        if (options.coordinate() > 0) {
+            coordinate(options);
+            return;
+        }
 
-            //Merge the individual key in current line parser result
-            HashMap<String, Long> parserResult = null;
-            try {
-                parserResult = parser.get();
-            } catch (InterruptedException e) {
-                //Handle it the standard way for this project.
-                final String errorHeader = "Main interrupted while awaiting LineParser result.";
-                ConsoleOutput.printInterruptedException(errorHeader, e);
-            } catch (ExecutionException e) {
-                final Throwable cause = new Throwable(e).getCause();
-                final String errorHeader = "ExcecutionException thrown while Main was waiting to get individual results from Line Parser.";
-                ConsoleOutput.printExecutionException(errorHeader, cause, e);
+        //2. Count with an engine built from the options. The engine expands directories and glob patterns
+        //   into the files they stand for, and validates the list of file paths before counting.
+        //   Each parser counts into its own sink: a summary of the most frequent words in top-K mode,
+        //   a HyperLogLog sketch in cardinality mode, or exact counts split into one partition per core otherwise.
+        //3. Print the merged result.
+        try (WordCounter counter = buildCounter(options)) {
+            if (options.serve() > 0) {
+                serve(counter, options);
+                return;
             }
-
-            if (parserResult == null) {
-                final String message = "Line Parser returned a null result.";
-                ConsoleOutput.printMessageWithGapsAndLineBreaks(message);
-                continue;
+            if (options.stream()) {
+                stream(counter, options);
+                return;
             }
-
-            for (String key : parserResult.keySet()) {
-                if (!result.containsKey(key)) result.put(key, 0L);
-                result.put(key, result.get(key) + parserResult.get(key));
+            if (options.joinHost() != null) {
+                join(counter, options);
+                return;
             }
+            report(count(counter, options), options, counter.sortExecutor());
         }
-
-        //The results have been collected. Return them.
-        return result;
     }
 
-    //endregion
-
-    //region Orchestration
+    private static void report(WordCountResult result, RunOptions options, ExecutorService sortExecutor) {
+        final long outputStart = System.nanoTime();
+        printResult(result, options, sortExecutor);
+        result.metrics().recordStage(PipelineMetrics.Stage.OUTPUT, System.nanoTime() - outputStart);
 
-    private static void orchestrateWordCount(String[] filePath) {
-
-        //Initialize the buffer where producer and consumer will write/read data.
-        //Setting up a LinkedBlockingQueue, so that there is no space issue in the buffer.
-        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
-
-        //Initiate reader.
-        Thread reader = startReader(filePath, lines);
-
-        //Initiate parsers.
-        ExecutorService executor = startProcessors(lines);
+        //4. With --metrics, report how each stage of the pipeline did, and which one held the count back.
+        if (options.metrics() != null) writeMetrics(result.metrics(), options.metrics());
+    }
 
-        //First wait for reader thread to finish.
-        waitForReader(reader);
+    //region Engine
+
+    private static WordCounter buildCounter(RunOptions options) {
+        final WordCounter.Builder builder = WordCounter.builder()
+                .readerMode(options.readerMode())
+                .transport(options.transport())
+                .execution(options.execution())
+                .countStore(options.countStore())
+                .tokenizer(options.tokenizer())
+                .encoding(options.encoding())
+                .memoryBudget(options.memoryBudget());
+        if (options.readers() > 0) builder.readers(options.readers());
+        if (options.cacheDirectory() != null) {
+            builder.cache(options.cacheDirectory(), options.cacheVerifyContent(), options.cacheClear());
+        }
+        if (options.checkpointDirectory() != null) {
+            builder.checkpoint(options.checkpointDirectory(), options.checkpointIntervalMillis());
+        }
+        if (options.spillBudget() > 0) builder.spill(options.spillDirectory(), options.spillBudget());
+        if (options.ngrams() > 0) builder.ngrams(options.ngrams());
+        return builder.build();
+    }
 
-        //Soon after reader, parsers will be done. Wait for them.
-        waitForParsers(executor);
+    private static WordCountResult count(WordCounter counter, RunOptions options) {
+        switch (options.countMode()) {
+            case TOP:
+                return counter.countTop(options.topCapacity(), options.filePath());
+            case CARDINALITY:
+                return counter.countDistinct(options.precision(), options.filePath());
+            default:
+                return counter.count(options.filePath());
+        }
     }
 
-    //region Termination
+    //endregion
 
-    private static void waitForParsers(ExecutorService executor) {
-        //While ideally there is a scope for this method to be stuck in an infinite
-        //loop, but if everything else went well, the method should return with a
-        //graceful termination of the executor service.
+    //region Count Server
 
+    private static void serve(WordCounter counter, RunOptions options) {
         try {
-            //First, do a normal wait.
-            executor.awaitTermination(PARSER_TIMEOUT, PARSER_TIMEOUT_UNIT);
-
-            //If the executor service did not terminate in initial timeout,
-            //attempt to terminate it in a loop, notifying the user on console.
-            while (!executor.isTerminated()) {
-                System.out.println("ExecutorService still awaiting termination...");
-                executor.awaitTermination(PARSER_TIMEOUT, PARSER_TIMEOUT_UNIT);
-            }
-
-            //Print graceful parsers termination message.
-            ConsoleOutput.printMessageWithGaps("ExecutorService gracefully terminated.");
+            final CountServer server = new CountServer(counter, options.serve(), options.jobs(), options.queue(), options.maxJobBytes());
+            server.start();
+            ConsoleOutput.printMessageWithGaps("Count server listening on port " + server.port()
+                    + ", with its token in: " + CountServer.tokenFile(server.port()));
+            server.awaitShutdown();
+            ConsoleOutput.printMessageWithGaps("Count server stopped.");
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Cannot start the count server on port " + options.serve() + ".", e);
         } catch (InterruptedException e) {
-            final String errorHeader = "Main thread interrupted while awaiting termination of Line Parsers.";
-            ConsoleOutput.printInterruptedException(errorHeader, e);
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static void waitForReader(Thread reader) {
+    private static void sendToServer(RunOptions options, String[] args) {
         try {
-            //Just do a normal wait.
-            reader.join();
-
-            //Print graceful reader thread termination message.
-            ConsoleOutput.printMessageWithGaps("Reader thread gracefully terminated.");
-        } catch (InterruptedException e) {
-            final String errorHeader = "Interrupted when waiting for Reader thread to finish.";
-            ConsoleOutput.printInterruptedException(errorHeader, e);
+            if (options.shutdown()) {
+                CountClient.shutdown(options.connect());
+            } else if (options.output() == null) {
+                CountClient.send(options.connect(), args, System.out);
+            } else {
+                //The server writes no files for a job, so the answer is written here. A job the server turns
+                //away leaves an earlier output file as it was.
+                writeReplacing(options.output(), output -> CountClient.send(options.connect(), args, output));
+                ConsoleOutput.printMessageWithGaps("Results written to: " + options.output());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot reach the count server on port " + options.connect() + ".", e);
         }
     }
 
     //endregion
 
-    //region Invocation
+    //region Distributed Count
 
-    private static ExecutorService startProcessors(BlockingQueue<String> lines) {
-
-        //Calculate the number of consumer (aka LineParser) tasks
-        //Not a performance tuned decision, but initializing as many line parsers as the
-        //number of processors on the machine should be fine. For large enough input,
-        //this will use available cores efficiently.
-
-        //Since the availableProcessors() call returns the logical processors, the case
-        //of hyper-threading is also taken care of.
-
-        int processorCount = Runtime.getRuntime().availableProcessors();
-
-        //Start a executor service that will run a fixed number of threads.
-        ExecutorService executor = Executors.newFixedThreadPool(processorCount);
-
-        instantiateParsers(lines, processorCount);
-        invokeParsers(executor);
-
-        executor.shutdown(); //to disable any new tasks from being submitted.
-        return executor;
+    /**
+     * Counts the input files on the workers that join, one shard at a time, and prints the merged counts. The
+     * partitions of the counts are merged on one thread per core.
+     */
+    private static void coordinate(RunOptions options) {
+        //The coordinator has no engine, so the merged counts are sorted on threads of their own.
+        final ExecutorService sortExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("result-sorter-"));
+        try {
+            final ShardCoordinator coordinator = new ShardCoordinator(InputFiles.expand(options.filePath()), options.coordinate(),
+                    Runtime.getRuntime().availableProcessors(), options.shardSize(), options.workerTimeoutMillis());
+            ConsoleOutput.printMessageWithGaps("Coordinating " + coordinator.shardCount() + " shards on port " + coordinator.port()
+                    + ". Waiting for workers...");
+            final WordCountResult result = coordinator.count();
+            ConsoleOutput.printMessageWithGaps(coordinator.workerCount() + " workers counted the shards. "
+                    + coordinator.reassignedCount() + " shards went to another worker.");
+            report(result, options, sortExecutor);
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("The distributed count on port " + options.coordinate() + " failed.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sortExecutor.shutdown();
+        }
     }
 
-    private static void invokeParsers(ExecutorService executor) {
+    private static void join(WordCounter counter, RunOptions options) {
         try {
-            final List<Future<HashMap<String, Long>>> futureTaskList = executor.invokeAll(_lineParsers);
-            ConsoleOutput.printMessageWithGaps("Line Parsers invoked by the ExecutorService.");
-            _parsers.addAll(futureTaskList);
+            final int shards = new ShardWorker(counter, options.joinHost(), options.joinPort()).run();
+            ConsoleOutput.printMessageWithGaps("The distributed count is done. This worker counted " + shards + " shards.");
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Lost the coordinator at " + options.joinHost() + ":" + options.joinPort() + ".", e);
         } catch (InterruptedException e) {
-            final String errorHeader = "Main interrupted while awaiting invoke of Line Parsers.";
-            ConsoleOutput.printInterruptedException(errorHeader, e);
+            Thread.currentThread().interrupt();
         }
     }
 
-    private static void instantiateParsers(BlockingQueue<String> lines, int processorCount) {
-        for (int index = 0; index < processorCount; index++) {
-            LineParser callableParser = new LineParser(lines);
-            _lineParsers.add(callableParser);
+    //endregion
+
+    //region Stream
+
+    /**
+     * Counts a live stream, and prints a snapshot of its window at every snapshot interval. An output file is
+     * replaced at every snapshot, so that a reader of the file always finds a whole snapshot.
+     */
+    private static void stream(WordCounter counter, RunOptions options) {
+        final StreamWindow window = StreamWindow.of(options.window(), options.windowSizeMillis(), options.snapshotIntervalMillis());
+        final StreamCounter.SnapshotListener listener = (result, last) -> {
+            ConsoleOutput.printMessageWithGaps((last ? "Final snapshot" : "Snapshot") + " after "
+                    + TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos()) + " ms, " + window.describe() + ":");
+            if (options.output() == null) {
+                printResult(result, options, counter.sortExecutor());
+            } else {
+                replaceOutput(result, options, counter.sortExecutor());
+            }
+            if (last && options.metrics() != null) writeMetrics(result.metrics(), options.metrics());
+        };
+
+        final String input = options.streamInput();
+        if (RunOptions.STANDARD_INPUT.equals(input)) {
+            counter.countStream(System.in, window, listener);
+            return;
+        }
+        try (InputStream stream = Files.newInputStream(Paths.get(input))) {
+            counter.countStream(stream, window, listener);
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Exception in reading the stream: " + input, e);
         }
     }
 
-    private static Thread startReader(String[] filePath, BlockingQueue<String> lines) {
-        DiskFileReader diskFileReader = new DiskFileReader(filePath, lines);
-        Thread reader = new Thread(diskFileReader);
-        reader.start();
-        return reader;
+    private static void replaceOutput(WordCountResult result, RunOptions options, ExecutorService sortExecutor) {
+        try {
+            writeReplacing(options.output(), stream -> result.write(stream, options.format(), options.sort(), sortExecutor));
+            ConsoleOutput.printMessageWithGaps("Snapshot written to: " + options.output());
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Failed to write the snapshot to: " + options.output(), e);
+        }
     }
 
     //endregion
 
-    //endregion
-
-    //region Validation
-
-    private static void validateInput(String[] filePath) throws IllegalArgumentException {
-
-        //The standard input from command line is never null.
-        //But we're checking for the input in this case because it has been factored out
-        //in a method which can be called from other places within the class too.
+    //region Printing Results
 
-        ConsoleOutput.printMessageWithGaps("Validating input file paths...");
+    private static void printResult(WordCountResult result, RunOptions options, ExecutorService sortExecutor) {
+        switch (result.mode()) {
+            case TOP:
+                ConsoleOutput.blockPrintTopWords(result.summary(), options.top());
+                return;
+            case CARDINALITY:
+                ConsoleOutput.blockPrintCardinality(result.sketch());
+                return;
+            default:
+                break;
+        }
 
-        StringBuilder err = new StringBuilder();
-        if (filePath == null || filePath.length == 0) {
-            String nullOrEmptyListMessage = "No file path provided.";
-            throw new IllegalArgumentException(nullOrEmptyListMessage);
+        //Plain text on the console keeps the framing of the other console output.
+        if (options.output() == null && options.format() == RunOptions.OutputFormat.TEXT) {
+            ConsoleOutput.blockPrintResult(result, options.sort(), sortExecutor);
+            return;
         }
 
-        //Verify if each file path
-        for (String path : filePath) {
-            File inputFile = new File(path);
+        if (options.output() == null) {
             try {
-                //Is the given path a file?
-                if (!inputFile.isFile()) {
-                    err.append("\tInvalid File Path: ").append(path);
-                    err.append(ConsoleOutput.NEW_LINE);
-                    continue;
-                }
-                //If the path is a file, is it readable?
-                if (!inputFile.canRead()) {
-                    err.append("\tCannot Read File: ").append(path);
-                    err.append(ConsoleOutput.NEW_LINE);
-                }
-            } catch (SecurityException securityException) {
-                //The only exception this code can throw is SecurityException
-                //when a security manager exists and denies the read access.
-                err.append("\tRead access denied for file path: ").append(path);
-                err.append("\tDetailed Message: ").append(securityException.getMessage());
-                err.append(ConsoleOutput.NEW_LINE);
+                result.write(System.out, options.format(), options.sort(), sortExecutor);
+            } catch (IOException e) {
+                ConsoleOutput.printIOException("Failed to write the results to the standard output.", e);
             }
+            return;
         }
 
-        //If no error, say that and return.
-        if (err.length() == 0) {
-            ConsoleOutput.printMessageWithGaps("Done with input file path validation.");
-            return;
+        try (OutputStream output = Files.newOutputStream(Paths.get(options.output()))) {
+            result.write(output, options.format(), options.sort(), sortExecutor);
+            ConsoleOutput.printMessageWithGaps("Results written to: " + options.output());
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Failed to write the results to: " + options.output(), e);
+        }
+    }
+
+    private static void writeMetrics(PipelineMetrics metrics, String path) {
+        ConsoleOutput.printMessageWithGaps(metrics.summary());
+        try {
+            metrics.write(Paths.get(path));
+            ConsoleOutput.printMessageWithGaps("Metrics written to: " + path);
+        } catch (IOException e) {
+            ConsoleOutput.printIOException("Failed to write the metrics to: " + path, e);
         }
+    }
+
+    //endregion
+
+    //region Writing Files
+
+    /**
+     * Writes a file through a temporary file next to it, which is moved into place only once the writer is done, so a
+     * failed write leaves the file as it was.
+     */
+    private static void writeReplacing(String file, FileWriter writer) throws IOException {
+        final Path output = Paths.get(file).toAbsolutePath();
+        final Path temporary = Files.createTempFile(output.getParent(), output.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream stream = Files.newOutputStream(temporary)) {
+                writer.write(stream);
+            }
+            Files.move(temporary, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
 
-        //Now, if the String Builder is not empty, then there were errors.
-        //Show errors on the terminal and quit the program.
-        String errorMessage = "There were one or more errors with the input:"
-                + ConsoleOutput.NEW_LINE
-                + err.toString();
-        throw new IllegalArgumentException(errorMessage);
+    @FunctionalInterface
+    private interface FileWriter {
+        void write(OutputStream output) throws IOException;
     }
 
     //endregion
-}
\ No newline at end of file
+}
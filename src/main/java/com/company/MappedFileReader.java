@@ -0,0 +1,313 @@
+package com.company;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The class which can be put on a thread and used for reading input files by memory-mapping them.
+ * <p>
+ * Unlike the DiskFileReader, this reader does not decode or copy anything. It only maps each file
+ * and cuts the mapping into chunks that end on a word boundary. Parsing the chunks is left to the
+ * ChunkParsers, which tokenize the bytes without decoding them, so that parsing scales with the number
+ * of cores. Gzip and zip files are inflated into chunks by a CompressedChunkReader instead, and files
+ * that cannot be mapped, such as named pipes, are streamed into chunks by a ChunkAssembler.
+ * <p>
+ * A schedule may also hand out a range of a plain file, which is mapped and cut like a file of its own.
+ */
+public class MappedFileReader implements Runnable, PipelineMetrics.ReaderStage {
+
+    //region Static Final Class Variables
+
+    static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    //A single mapping cannot be larger than Integer.MAX_VALUE bytes, so bigger files are mapped in regions.
+    private static final int MAX_REGION_SIZE = 1024 * 1024 * 1024;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final FileSchedule _files;
+    private final BoundedChannel<FileChunk> _chunks;
+    private final int _chunkSize;
+    private final int _regionSize;
+    private final ExecutorService _inflateExecutor;
+
+    //endregion
+
+    //region Statistics
+
+    //Written by the reader thread only, and read once it is done.
+    private long _bytesRead;
+    private long _elapsedNanos;
+    private long _blockedNanos;
+
+    //endregion
+
+    //region Constructors
+
+    MappedFileReader(String[] filePath, BoundedChannel<FileChunk> chunks) {
+        this(filePath, chunks, DEFAULT_CHUNK_SIZE, MAX_REGION_SIZE);
+    }
+
+    MappedFileReader(String[] filePath, BoundedChannel<FileChunk> chunks, int chunkSize, int regionSize) {
+        this(schedule(filePath), chunks, chunkSize, regionSize);
+    }
+
+    /**
+     * A reader that shares its files with other readers. Only the last of them to finish closes the channel.
+     */
+    MappedFileReader(FileSchedule files, BoundedChannel<FileChunk> chunks) {
+        this(files, chunks, null);
+    }
+
+    /**
+     * @param inflateExecutor runs the tasks that inflate a compressed file in parallel. Without one, compressed
+     *                        files are inflated on the reader thread.
+     */
+    MappedFileReader(FileSchedule files, BoundedChannel<FileChunk> chunks, ExecutorService inflateExecutor) {
+        this(files, chunks, DEFAULT_CHUNK_SIZE, MAX_REGION_SIZE, inflateExecutor);
+    }
+
+    MappedFileReader(FileSchedule files, BoundedChannel<FileChunk> chunks, int chunkSize, int regionSize) {
+        this(files, chunks, chunkSize, regionSize, null);
+    }
+
+    MappedFileReader(FileSchedule files, BoundedChannel<FileChunk> chunks, int chunkSize, int regionSize,
+                     ExecutorService inflateExecutor) {
+        if (files == null) throw new IllegalArgumentException("'files' cannot be null.");
+        if (chunks == null) throw new IllegalArgumentException("'chunks' cannot be null.");
+        if (chunkSize <= 0) throw new IllegalArgumentException("'chunkSize' must be positive.");
+        if (regionSize < chunkSize) throw new IllegalArgumentException("'regionSize' cannot be smaller than 'chunkSize'.");
+        _files = files;
+        _chunks = chunks;
+        _chunkSize = chunkSize;
+        _regionSize = regionSize;
+        _inflateExecutor = inflateExecutor;
+    }
+
+    private static FileSchedule schedule(String[] filePath) {
+        if (filePath == null) throw new IllegalArgumentException("'filePath' cannot be null.");
+        return new FileSchedule(filePath);
+    }
+
+    //endregion
+
+    //region Run method implementation
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        try {
+            populateChunks();
+        } finally {
+            _elapsedNanos = System.nanoTime() - start;
+            if (_files.readerFinished()) markChannelAsDone();
+        }
+    }
+
+    private void markChannelAsDone() {
+        //Closing the channel tells every parser that the reading is done.
+        _chunks.close();
+        ConsoleOutput.printMessageWithGaps("Marked the chunk channel as done.");
+    }
+
+    private void populateChunks() {
+        ConsoleOutput.printMessageWithGaps("Mapping the input files...");
+        FileRange range;
+        while ((range = _files.nextRange()) != null) {
+            final String path = range.path();
+            try {
+                if (!range.isWholeFile()) {
+                    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                        mapFile(path, channel, range.start(), range.end());
+                    }
+                    _bytesRead += range.end() - range.start();
+                    ConsoleOutput.printMessageWithoutGaps("Done mapping range: " + range);
+                    continue;
+                }
+
+                //Compressed files cannot be mapped as text. They are inflated into chunks on the heap instead.
+                final CompressedInput.Format format = CompressedInput.detect(path);
+                if (format != CompressedInput.Format.PLAIN) {
+                    CompressedChunkReader.read(path, format, _chunks, _chunkSize, _inflateExecutor,
+                            Runtime.getRuntime().availableProcessors());
+                    _bytesRead += new File(path).length();
+                    ConsoleOutput.printMessageWithoutGaps("Done decompressing file: " + path);
+                    continue;
+                }
+
+                final Path file = Paths.get(path);
+                if (!Files.isRegularFile(file)) {
+                    streamFile(path, file);
+                    ConsoleOutput.printMessageWithoutGaps("Done streaming file: " + path);
+                    continue;
+                }
+
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    mapFile(path, channel, 0L, channel.size());
+                    _bytesRead += channel.size();
+                }
+                ConsoleOutput.printMessageWithoutGaps("Done mapping file: " + path);
+            } catch (IOException e) {
+                final String errorHeader = "Exception in mapping file: " + path;
+                ConsoleOutput.printIOException(errorHeader, e);
+            } catch (InterruptedException e) {
+                final String errorHeader = "Reader interrupted while mapping.";
+                ConsoleOutput.printInterruptedException(errorHeader, e);
+            }
+        }
+        ConsoleOutput.printMessageWithoutGaps("Done mapping all input files.");
+    }
+
+    /**
+     * Maps the bytes of a file from 'start' up to 'end', which is taken for the end of the text.
+     */
+    private void mapFile(String path, FileChannel channel, long start, long end) throws IOException, InterruptedException {
+        long position = start;
+        long sequence = 0;
+        while (position < end) {
+            //Map the next region and cut it into word-aligned chunks.
+            final int regionLength = (int) Math.min(_regionSize, end - position);
+            final boolean lastRegion = position + regionLength == end;
+            final MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionLength);
+
+            int chunkStart = 0;
+            while (chunkStart < regionLength) {
+                final int chunkEnd = alignedChunkEnd(region, chunkStart, Math.min(chunkStart + _chunkSize, regionLength), lastRegion);
+                if (chunkEnd <= chunkStart) break; //Leftover of a non-final region, re-mapped with the next region.
+                put(new FileChunk(path, sequence++, slice(region, chunkStart, chunkEnd)));
+                chunkStart = chunkEnd;
+            }
+            position += chunkStart;
+        }
+    }
+
+    /**
+     * Copies a file that cannot be mapped into chunks on the heap, cut the same way as a mapping.
+     */
+    private void streamFile(String path, Path file) throws IOException, InterruptedException {
+        final AtomicLong sequence = new AtomicLong();
+        final ChunkAssembler chunks = new ChunkAssembler(_chunkSize, false,
+                chunk -> put(new FileChunk(path, sequence.getAndIncrement(), chunk)));
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                chunks.write(buffer, 0, read);
+                _bytesRead += read;
+            }
+        }
+        chunks.finish();
+    }
+
+    private void put(FileChunk chunk) throws InterruptedException {
+        final long putStart = System.nanoTime();
+        _chunks.put(chunk);
+        _blockedNanos += System.nanoTime() - putStart;
+    }
+
+    //endregion
+
+    //region Chunk Alignment
+
+    /**
+     * Finds where a chunk starting at 'start' should end, so that it ends right after a delimiter byte.
+     *
+     * @param target     the preferred end of the chunk.
+     * @param lastRegion whether the region reaches the end of the file. The end of the file is always a boundary.
+     * @return the exclusive end of the chunk, or 'start' when the rest of a non-final region has no delimiter.
+     */
+    static int alignedChunkEnd(ByteBuffer region, int start, int target, boolean lastRegion) {
+        final int regionLength = region.limit();
+
+        //First, look forward from the preferred end for the next delimiter.
+        for (int index = target; index < regionLength; index++) {
+            if (isDelimiter(region.get(index))) return index + 1;
+        }
+        if (lastRegion) return regionLength;
+
+        //The rest of the region is one unfinished word. Cut before it and leave it for the next region.
+        for (int index = Math.min(target, regionLength) - 1; index >= start; index--) {
+            if (isDelimiter(region.get(index))) return index + 1;
+        }
+        //A word longer than a whole region is cut where the region ends.
+        return start == 0 ? regionLength : start;
+    }
+
+    /**
+     * A byte is a safe place to cut when it is an ASCII non-word character. Bytes above 0x7F are never
+     * used, since they may be part of a multi-byte character.
+     */
+    static boolean isDelimiter(byte b) {
+        return b >= 0 && !isWordCharacter((char) b);
+    }
+
+    /**
+     * The word characters of the "\W+" delimiter regex in LineParser: [a-zA-Z_0-9].
+     */
+    static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Chunks are cut only at ASCII bytes, and the parsers tokenize them without decoding them. That is only
+     * safe for charsets in which an ASCII byte always stands for itself, and every other byte belongs to a
+     * non-ASCII character.
+     */
+    static boolean supportsCharset(Charset charset) {
+        final String name = charset.name();
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125");
+    }
+
+    private static ByteBuffer slice(ByteBuffer region, int start, int end) {
+        final ByteBuffer view = region.duplicate();
+        view.position(start);
+        view.limit(end);
+        return view.slice();
+    }
+
+    //endregion
+
+    //region Statistics Getters
+
+    /**
+     * @return the size of the input files read so far, compressed files included as they are on disk.
+     */
+    @Override
+    public long bytesRead() {
+        return _bytesRead;
+    }
+
+    @Override
+    public long elapsedNanos() {
+        return _elapsedNanos;
+    }
+
+    /**
+     * @return the time spent waiting for room in the channel. The chunks of compressed files are not timed.
+     */
+    @Override
+    public long blockedNanos() {
+        return _blockedNanos;
+    }
+
+    //endregion
+}
@@ -0,0 +1,191 @@
+package com.company;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The merged result of an n-gram count: the counts of the single words, and the merged NGramTables of every order,
+ * as one PartitionedCounts for the ResultWriter. The partitions of the words come first, then those of the n-grams,
+ * order by order. An n-gram is written as its words joined by single spaces, such as "to be or".
+ * <p>
+ * The words of an n-gram are only looked up in the dictionary when it is visited or compared, into a buffer that is
+ * reused for the next one. The tokenizer never puts a space in a word, so comparing the joined bytes orders the
+ * n-grams word by word, and a word before every n-gram that starts with it.
+ */
+final class MergedNGramCounts implements PartitionedCounts {
+
+    //region Phrase
+
+    /**
+     * The bytes and count of one entry, single word or n-gram, copied out for a visit or a comparison.
+     */
+    private final class Phrase implements WordCountTable.Visitor {
+
+        private byte[] _bytes = new byte[64];
+        private int _length;
+        private long _count;
+
+        private Phrase of(int partition, int entry) {
+            if (partition < _words.partitionCount()) {
+                _words.visit(partition, entry, this);
+                return this;
+            }
+            final NGramTable table = _ngrams[partition - _words.partitionCount()];
+            _length = 0;
+            for (int position = 0; position < table.order(); position++) {
+                final int id = table.idOf(entry, position);
+                ensureRoom(_dictionary.wordLength(id) + 1);
+                if (position > 0) _bytes[_length++] = ' ';
+                _length += _dictionary.copyWord(id, _bytes, _length);
+            }
+            _count = table.countOf(entry);
+            return this;
+        }
+
+        @Override
+        public void visit(byte[] word, int offset, int length, long count) {
+            _length = 0;
+            ensureRoom(length);
+            System.arraycopy(word, offset, _bytes, 0, length);
+            _length = length;
+            _count = count;
+        }
+
+        private void ensureRoom(int needed) {
+            if (_bytes.length - _length < needed) _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _length + needed));
+        }
+
+        private int compareTo(Phrase other, boolean byCount) {
+            if (byCount) {
+                final int byCountDescending = Long.compare(other._count, _count);
+                if (byCountDescending != 0) return byCountDescending;
+            }
+            final int length = Math.min(_length, other._length);
+            for (int index = 0; index < length; index++) {
+                final int difference = (_bytes[index] & 0xFF) - (other._bytes[index] & 0xFF);
+                if (difference != 0) return difference;
+            }
+            return _length - other._length;
+        }
+    }
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final PartitionedWordCounts _words;
+    private final WordDictionary _dictionary;
+    private final NGramTable[] _ngrams;
+
+    //Reused by visit() and compareEntries(), which the ResultWriter calls on a single thread.
+    private final Phrase _visited = new Phrase();
+    private final Phrase _first = new Phrase();
+    private final Phrase _second = new Phrase();
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param words      the merged counts of the single words, made of the stripes of the dictionary.
+     * @param dictionary the dictionary the IDs of the n-grams are from.
+     * @param ngrams     the merged partitions of the n-grams, order by order.
+     */
+    MergedNGramCounts(PartitionedWordCounts words, WordDictionary dictionary, NGramTable[] ngrams) {
+        if (words == null) throw new IllegalArgumentException("'words' cannot be null.");
+        if (dictionary == null) throw new IllegalArgumentException("'dictionary' cannot be null.");
+        if (ngrams == null) throw new IllegalArgumentException("'ngrams' cannot be null.");
+        _words = words;
+        _dictionary = dictionary;
+        _ngrams = ngrams.clone();
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * @return the counts of the single words only.
+     */
+    PartitionedWordCounts words() {
+        return _words;
+    }
+
+    /**
+     * @return the number of distinct n-grams of every order, single words not included.
+     */
+    int ngramCount() {
+        int count = 0;
+        for (NGramTable table : _ngrams) count += table.size();
+        return count;
+    }
+
+    @Override
+    public int partitionCount() {
+        return _words.partitionCount() + _ngrams.length;
+    }
+
+    /**
+     * @return the number of distinct words and n-grams.
+     */
+    @Override
+    public int size() {
+        return _words.size() + ngramCount();
+    }
+
+    @Override
+    public void forEach(WordCountTable.Visitor visitor) {
+        _words.forEach(visitor);
+        final Phrase phrase = new Phrase();
+        for (int table = 0; table < _ngrams.length; table++) {
+            final int partition = _words.partitionCount() + table;
+            for (int entry = 0; entry < _ngrams[table].size(); entry++) {
+                phrase.of(partition, entry);
+                visitor.visit(phrase._bytes, 0, phrase._length, phrase._count);
+            }
+        }
+    }
+
+    /**
+     * Sorts the entries of a partition. The n-grams are looked up again at every comparison, into buffers of the
+     * call, so that partitions can be sorted on separate threads.
+     */
+    @Override
+    public int[] sortedEntries(int partition, boolean byCount) {
+        if (partition < _words.partitionCount()) return _words.sortedEntries(partition, byCount);
+        final Phrase first = new Phrase();
+        final Phrase second = new Phrase();
+        return WordCountTable.sortEntries(_ngrams[partition - _words.partitionCount()].size(),
+                (firstEntry, secondEntry) -> first.of(partition, firstEntry).compareTo(second.of(partition, secondEntry), byCount));
+    }
+
+    @Override
+    public void visit(int partition, int entry, WordCountTable.Visitor visitor) {
+        if (partition < _words.partitionCount()) {
+            _words.visit(partition, entry, visitor);
+            return;
+        }
+        _visited.of(partition, entry);
+        visitor.visit(_visited._bytes, 0, _visited._length, _visited._count);
+    }
+
+    @Override
+    public int compareEntries(int firstPartition, int firstEntry, int secondPartition, int secondEntry, boolean byCount) {
+        if (firstPartition < _words.partitionCount() && secondPartition < _words.partitionCount()) {
+            return _words.compareEntries(firstPartition, firstEntry, secondPartition, secondEntry, byCount);
+        }
+        return _first.of(firstPartition, firstEntry).compareTo(_second.of(secondPartition, secondEntry), byCount);
+    }
+
+    /**
+     * @return a copy of the words and n-grams as a map, for callers that need the Map API, such as the tests.
+     */
+    HashMap<String, Long> toMap() {
+        final HashMap<String, Long> map = new HashMap<>();
+        forEach((word, offset, length, count) -> map.put(new String(word, offset, length, StandardCharsets.ISO_8859_1), count));
+        return map;
+    }
+
+    //endregion
+}
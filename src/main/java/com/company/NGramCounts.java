@@ -0,0 +1,260 @@
+package com.company;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The counts of one parser in n-gram mode: the words, into WordIdCounts of a WordDictionary that every parser shares,
+ * and in the same pass the n-grams of every order from 2 to the highest, as tuples of the IDs of their words in
+ * NGramTables. The tables of an order are split by the hash of the n-gram into as many partitions as the dictionary
+ * has stripes, so that they are merged, and sorted when written, on separate threads.
+ * <p>
+ * The parser sees the chunks of a file in any order, and a chunk in the middle of a file does not know the words
+ * before it. So the n-grams counted here never cross the start of a chunk. Instead, for every chunk, the first and
+ * the last words it had are kept, up to one less than the highest order each. Once every parser is done,
+ * stitchChunks() walks the chunks of every file in order, and adds the n-grams that cross from one chunk into the
+ * next. Lines do not matter: the words of a chunk form one sequence, whatever line they are on.
+ * <p>
+ * Words that come outside of a chunk, without startChunk(), are counted as one sequence, without any edges.
+ */
+final class NGramCounts implements ChunkBoundarySink {
+
+    //region Static Final Class Variables
+
+    static final int MIN_ORDER = 2;
+    static final int MAX_ORDER = 8;
+
+    //endregion
+
+    //region Chunk Edges
+
+    /**
+     * The first and the last words of a chunk, as word IDs, up to one less than the highest order each.
+     */
+    private static final class ChunkEdges {
+
+        private final String _path;
+        private final long _sequence;
+        private final int[] _head;
+        private final int[] _tail;
+
+        //Whether the chunk had fewer words than its edges can hold, in which case the head is every word of it.
+        private final boolean _short;
+
+        private ChunkEdges(String path, long sequence, int[] head, int[] tail, boolean isShort) {
+            _path = path;
+            _sequence = sequence;
+            _head = head;
+            _tail = tail;
+            _short = isShort;
+        }
+    }
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final WordIdCounts _words;
+    private final int _maxOrder;
+
+    //The tables of order n are _tables[n - MIN_ORDER], one per partition.
+    private final NGramTable[][] _tables;
+    private final List<ChunkEdges> _edges = new ArrayList<>();
+
+    //The IDs of the last words of the current chunk, up to the highest order, the latest at the end.
+    private final int[] _recent;
+
+    //The IDs of the first words of the current chunk, up to one less than the highest order.
+    private final int[] _head;
+
+    //endregion
+
+    //region Variables
+
+    private int _recentLength;
+    private int _headLength;
+    private long _chunkWords;
+    private String _chunkPath;
+    private long _chunkSequence;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param maxOrder the highest order to count, from MIN_ORDER to MAX_ORDER. Every order below it is counted too.
+     */
+    NGramCounts(WordDictionary dictionary, int maxOrder) {
+        if (dictionary == null) throw new IllegalArgumentException("'dictionary' cannot be null.");
+        if (maxOrder < MIN_ORDER || maxOrder > MAX_ORDER) {
+            throw new IllegalArgumentException("'maxOrder' must be between " + MIN_ORDER + " and " + MAX_ORDER + ".");
+        }
+        _words = new WordIdCounts(dictionary);
+        _maxOrder = maxOrder;
+        _tables = new NGramTable[maxOrder - MIN_ORDER + 1][dictionary.stripeCount()];
+        for (int order = MIN_ORDER; order <= maxOrder; order++) {
+            for (int partition = 0; partition < dictionary.stripeCount(); partition++) {
+                _tables[order - MIN_ORDER][partition] = new NGramTable(order);
+            }
+        }
+        _recent = new int[maxOrder];
+        _head = new int[maxOrder - 1];
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void startChunk(String path, long sequence) {
+        _chunkPath = path;
+        _chunkSequence = sequence;
+        _recentLength = 0;
+        _headLength = 0;
+        _chunkWords = 0;
+    }
+
+    /**
+     * Counts the word, and every n-gram it ends, back to the start of the chunk.
+     */
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        final int id = _words.add(word, offset, length);
+        System.arraycopy(_recent, 1, _recent, 0, _maxOrder - 1);
+        _recent[_maxOrder - 1] = id;
+        if (_recentLength < _maxOrder) _recentLength++;
+        if (_headLength < _head.length) _head[_headLength++] = id;
+        _chunkWords++;
+
+        for (int order = MIN_ORDER; order <= _recentLength; order++) add(_recent, _maxOrder - order, order, 1L);
+    }
+
+    @Override
+    public void endChunk() {
+        if (_chunkPath == null) return;
+        final int tailLength = Math.min(_recentLength, _maxOrder - 1);
+        final int[] tail = Arrays.copyOfRange(_recent, _maxOrder - tailLength, _maxOrder);
+        _edges.add(new ChunkEdges(_chunkPath, _chunkSequence, Arrays.copyOf(_head, _headLength), tail, _chunkWords < _head.length));
+        _chunkPath = null;
+    }
+
+    private void add(int[] ids, int offset, int order, long count) {
+        final int hash = NGramTable.hash(ids, offset, order);
+        final NGramTable[] partitions = _tables[order - MIN_ORDER];
+        partitions[PartitionedWordCounts.partitionOf(hash, partitions.length)].add(hash, ids, offset, count);
+    }
+
+    //endregion
+
+    //region Stitching
+
+    /**
+     * Adds the n-grams that cross from one chunk into the next to the counts of the first parser. Call it once, after
+     * every parser is done, and before the merge.
+     * <p>
+     * The chunks of each file are walked in the order of the text. A carry holds the last words before the current
+     * chunk, which may come from more than one chunk when the chunks are short. Every n-gram that starts in the carry
+     * and ends in the first words of the chunk is added. Each crossing n-gram is added exactly once, at the chunk it
+     * ends in.
+     */
+    static void stitchChunks(List<NGramCounts> parserResults) {
+        if (parserResults == null || parserResults.isEmpty()) return;
+        final NGramCounts target = parserResults.get(0);
+        final Map<String, List<ChunkEdges>> files = new HashMap<>();
+        for (NGramCounts parserResult : parserResults) {
+            for (ChunkEdges edges : parserResult._edges) files.computeIfAbsent(edges._path, path -> new ArrayList<>()).add(edges);
+            parserResult._edges.clear();
+        }
+
+        final int carryCapacity = target._maxOrder - 1;
+        final int[] carry = new int[carryCapacity];
+        final int[] ngram = new int[target._maxOrder];
+        for (List<ChunkEdges> chunks : files.values()) {
+            chunks.sort((first, second) -> Long.compare(first._sequence, second._sequence));
+            int carryLength = 0;
+            for (ChunkEdges chunk : chunks) {
+                final int[] head = chunk._head;
+                for (int order = MIN_ORDER; order <= target._maxOrder; order++) {
+                    //'before' words from the carry, the rest from the head of the chunk.
+                    for (int before = Math.max(1, order - head.length); before <= Math.min(order - 1, carryLength); before++) {
+                        System.arraycopy(carry, carryLength - before, ngram, 0, before);
+                        System.arraycopy(head, 0, ngram, before, order - before);
+                        target.add(ngram, 0, order, 1L);
+                    }
+                }
+                carryLength = nextCarry(carry, carryLength, chunk);
+            }
+        }
+    }
+
+    /**
+     * @return the length of the carry after a chunk: its tail, or for a short chunk, the carry followed by all of
+     * its words, cut to the capacity of the carry.
+     */
+    private static int nextCarry(int[] carry, int carryLength, ChunkEdges chunk) {
+        if (!chunk._short) {
+            System.arraycopy(chunk._tail, 0, carry, 0, chunk._tail.length);
+            return chunk._tail.length;
+        }
+        final int[] words = chunk._head;
+        final int length = Math.min(carry.length, carryLength + words.length);
+        final int kept = length - words.length;
+        if (kept > 0) System.arraycopy(carry, carryLength - kept, carry, 0, kept);
+        final int fromWords = Math.min(words.length, length);
+        System.arraycopy(words, words.length - fromWords, carry, length - fromWords, fromWords);
+        return length;
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * Merges one partition of the n-grams of one order of every parser result into the largest of them, which is
+     * returned. Different partitions and orders can be merged on different threads, but the n-grams of the parser
+     * results cannot be used afterwards.
+     */
+    static NGramTable mergePartition(int order, int partition, List<NGramCounts> parserResults) {
+        //The largest partition is the starting point, so that most n-grams are not copied at all.
+        NGramTable largest = null;
+        for (NGramCounts parserResult : parserResults) {
+            final NGramTable table = parserResult.table(order, partition);
+            if (largest == null || table.size() > largest.size()) largest = table;
+        }
+        if (largest == null) return new NGramTable(order);
+        for (NGramCounts parserResult : parserResults) {
+            final NGramTable table = parserResult.table(order, partition);
+            if (table != largest) largest.merge(table);
+        }
+        return largest;
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * @return the counts of the single words.
+     */
+    WordIdCounts words() {
+        return _words;
+    }
+
+    int maxOrder() {
+        return _maxOrder;
+    }
+
+    int partitionCount() {
+        return _tables[0].length;
+    }
+
+    NGramTable table(int order, int partition) {
+        if (order < MIN_ORDER || order > _maxOrder) throw new IllegalArgumentException("No n-grams of order " + order + ".");
+        return _tables[order - MIN_ORDER][partition];
+    }
+
+    //endregion
+}
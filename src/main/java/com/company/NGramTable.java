@@ -0,0 +1,226 @@
+package com.company;
+
+import java.util.Arrays;
+
+/**
+ * The counts of the n-grams of one order, such as every pair of adjacent words. An n-gram is a tuple of the IDs its
+ * words have in a WordDictionary, and never a String: the IDs of all the entries are packed back to back in a single
+ * int array, n per entry, next to arrays of their hashes and counts. A bigram takes 8 bytes of IDs, however long its
+ * words are, and no object of its own.
+ * <p>
+ * Like the WordCountTable, the index is open addressing with linear probing, and maps a tuple to its entry. The
+ * table is not thread-safe. Each parser counts into its own tables, and the tables are merged afterwards.
+ */
+final class NGramTable {
+
+    //region Static Final Class Variables
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    //The index is grown when it is more than 70% full.
+    private static final int LOAD_FACTOR_PERCENT = 70;
+
+    //endregion
+
+    //region Final Variables
+
+    private final int _order;
+
+    //endregion
+
+    //region Variables
+
+    //The index: entry number plus one for every used slot, zero for free slots.
+    private int[] _slots;
+
+    //The entries, in insertion order: the hash, the word IDs and the count of every n-gram.
+    private int[] _hashes;
+    private int[] _ids;
+    private long[] _counts;
+    private int _size;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * @param order the number of words of every n-gram of the table.
+     */
+    NGramTable(int order) {
+        this(order, DEFAULT_CAPACITY);
+    }
+
+    NGramTable(int order, int expectedSize) {
+        if (order <= 0) throw new IllegalArgumentException("'order' must be positive.");
+        if (expectedSize < 0) throw new IllegalArgumentException("'expectedSize' cannot be negative.");
+        final int capacity = Math.max(16, expectedSize);
+        _order = order;
+        _slots = new int[slotCountFor(capacity)];
+        _hashes = new int[capacity];
+        _ids = new int[capacity * order];
+        _counts = new long[capacity];
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Adds a count to the n-gram whose IDs are ids[offset] to ids[offset + order - 1], adding it first if it was
+     * not in the table.
+     */
+    void add(int[] ids, int offset, long count) {
+        add(hash(ids, offset, _order), ids, offset, count);
+    }
+
+    /**
+     * Adds a count to an n-gram whose hash is already known, such as one routed here by NGramCounts.
+     */
+    void add(int hash, int[] ids, int offset, long count) {
+        final int mask = _slots.length - 1;
+        int slot = hash & mask;
+        int entryPlusOne;
+        while ((entryPlusOne = _slots[slot]) != 0) {
+            final int entry = entryPlusOne - 1;
+            if (_hashes[entry] == hash && idsEqual(entry, ids, offset)) {
+                _counts[entry] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        //An n-gram that was not seen before. Append it, then grow the index if it got too full.
+        _slots[slot] = appendEntry(hash, ids, offset, count) + 1;
+        if ((long) _size * 100 > (long) _slots.length * LOAD_FACTOR_PERCENT) growSlots();
+    }
+
+    /**
+     * Adds the counts of every n-gram of another table of the same order to this table.
+     */
+    void merge(NGramTable other) {
+        if (other == null) throw new IllegalArgumentException("'other' cannot be null.");
+        if (other._order != _order) throw new IllegalArgumentException("Only tables of the same order can be merged.");
+        for (int entry = 0; entry < other._size; entry++) {
+            add(other._hashes[entry], other._ids, entry * _order, other._counts[entry]);
+        }
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * @return the count of the n-gram of the given word IDs, or zero if it is not in the table.
+     */
+    long get(int... ids) {
+        if (ids == null || ids.length != _order) throw new IllegalArgumentException("'ids' must hold " + _order + " IDs.");
+        final int hash = hash(ids, 0, _order);
+        final int mask = _slots.length - 1;
+        int slot = hash & mask;
+        int entryPlusOne;
+        while ((entryPlusOne = _slots[slot]) != 0) {
+            final int entry = entryPlusOne - 1;
+            if (_hashes[entry] == hash && idsEqual(entry, ids, 0)) return _counts[entry];
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+
+    int order() {
+        return _order;
+    }
+
+    /**
+     * @return the number of distinct n-grams.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * @return the word ID at a position of the n-gram of an entry, from 0 to order - 1.
+     */
+    int idOf(int entry, int position) {
+        return _ids[entry * _order + position];
+    }
+
+    long countOf(int entry) {
+        return _counts[entry];
+    }
+
+    /**
+     * @return the bytes the arrays of the table take on the heap, used or not.
+     */
+    long memoryBytes() {
+        return 4L * _slots.length + 12L * _hashes.length + 4L * _ids.length;
+    }
+
+    //endregion
+
+    //region Hashing and Probing
+
+    /**
+     * @return the hash of a tuple of word IDs. The IDs are small numbers, so each one is mixed into all the bits,
+     * rather than summed like the bytes of a word.
+     */
+    static int hash(int[] ids, int offset, int order) {
+        int hash = 0;
+        final int end = offset + order;
+        for (int index = offset; index < end; index++) hash = (Integer.rotateLeft(hash, 5) ^ ids[index]) * 0x9E3779B1;
+
+        //Spread the bits, since the index only uses the low ones and the partitions the high ones.
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private boolean idsEqual(int entry, int[] ids, int offset) {
+        final int start = entry * _order;
+        for (int position = 0; position < _order; position++) {
+            if (_ids[start + position] != ids[offset + position]) return false;
+        }
+        return true;
+    }
+
+    //endregion
+
+    //region Growing
+
+    private int appendEntry(int hash, int[] ids, int offset, long count) {
+        if (_size == _counts.length) growEntries();
+        final int entry = _size++;
+        _hashes[entry] = hash;
+        System.arraycopy(ids, offset, _ids, entry * _order, _order);
+        _counts[entry] = count;
+        return entry;
+    }
+
+    private void growEntries() {
+        final int capacity = _counts.length * 2;
+        if ((long) capacity * _order > Integer.MAX_VALUE) throw new IllegalStateException("The n-gram table is full.");
+        _hashes = Arrays.copyOf(_hashes, capacity);
+        _ids = Arrays.copyOf(_ids, capacity * _order);
+        _counts = Arrays.copyOf(_counts, capacity);
+    }
+
+    private void growSlots() {
+        //The hashes are cached, so the index is rebuilt without touching the IDs.
+        final int[] slots = new int[_slots.length * 2];
+        final int mask = slots.length - 1;
+        for (int entry = 0; entry < _size; entry++) {
+            int slot = _hashes[entry] & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = entry + 1;
+        }
+        _slots = slots;
+    }
+
+    private static int slotCountFor(int entryCount) {
+        int slotCount = 16;
+        while ((long) slotCount * LOAD_FACTOR_PERCENT < (long) entryCount * 100) slotCount *= 2;
+        return slotCount;
+    }
+
+    //endregion
+}
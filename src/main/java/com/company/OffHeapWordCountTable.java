@@ -0,0 +1,351 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The WordCountTable, with its index, entries and words in direct byte buffers outside the Java heap. The garbage
+ * collector sees a handful of buffer objects per table, however many words it holds, and never copies or scans the
+ * memory behind them.
+ * <p>
+ * The layout is that of the WordCountTable: the words back to back in one buffer, the hash, word offset and word
+ * length of every entry in another, the counts in a third, and an open addressing index with linear probing that
+ * maps a word to its entry. A buffer that is full is copied into one twice its size. The memory of the old buffer
+ * goes back to the system when the garbage collector clears the buffer, since Java 8 has no way to free it at once.
+ * A direct buffer holds at most 2 GB, which is the limit of every part of the table.
+ * <p>
+ * The table is not thread-safe. Each parser counts into its own table, and the tables are merged afterwards.
+ */
+final class OffHeapWordCountTable implements WordSink {
+
+    //region Static Final Class Variables
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int AVERAGE_WORD_LENGTH = 8;
+
+    //The index is grown when it is more than 70% full.
+    private static final int LOAD_FACTOR_PERCENT = 70;
+
+    //An entry is its hash, word offset and word length, one int each.
+    private static final int ENTRY_BYTES = 12;
+    private static final int HASH_OFFSET = 0;
+    private static final int KEY_OFFSET_OFFSET = 4;
+    private static final int KEY_LENGTH_OFFSET = 8;
+
+    //endregion
+
+    //region Variables
+
+    //The index: entry number plus one for every used slot, zero for free slots.
+    private ByteBuffer _slots;
+    private int _slotCount;
+
+    //The entries, in insertion order, and their counts.
+    private ByteBuffer _entries;
+    private ByteBuffer _counts;
+    private int _capacity;
+    private int _size;
+
+    //The words of all entries, back to back.
+    private ByteBuffer _keys;
+    private int _keysLength;
+
+    //A view of the words with a position of its own, to read them back in bulk.
+    private ByteBuffer _keyReader;
+
+    //The word of the entry being visited, copied onto the heap for the Visitor.
+    private byte[] _word = new byte[64];
+
+    //endregion
+
+    //region Constructors
+
+    OffHeapWordCountTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of distinct words the table should hold before it has to grow.
+     */
+    OffHeapWordCountTable(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("'expectedSize' cannot be negative.");
+        _capacity = Math.max(16, expectedSize);
+        _slotCount = slotCountFor(_capacity);
+        _slots = allocate(4L * _slotCount);
+        _entries = allocate((long) ENTRY_BYTES * _capacity);
+        _counts = allocate(8L * _capacity);
+        _keys = allocate((long) _capacity * AVERAGE_WORD_LENGTH);
+        _keyReader = _keys.duplicate();
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts one occurrence of a word. This is what the tokenizer calls for every word.
+     */
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        add(WordCountTable.hash(word, offset, length), word, offset, length, 1L);
+    }
+
+    /**
+     * Adds a count to a word, adding the word first if it was not in the table.
+     */
+    void add(byte[] word, int offset, int length, long count) {
+        add(WordCountTable.hash(word, offset, length), word, offset, length, count);
+    }
+
+    /**
+     * Adds a count to a word whose hash is already known, such as one routed here by OffHeapWordCounts.
+     */
+    void add(int hash, byte[] word, int offset, int length, long count) {
+        final int mask = _slotCount - 1;
+        int slot = hash & mask;
+        int entryPlusOne;
+        while ((entryPlusOne = _slots.getInt(slot << 2)) != 0) {
+            final int entry = entryPlusOne - 1;
+            if (hashOf(entry) == hash && keyEquals(entry, word, offset, length)) {
+                final int countIndex = entry << 3;
+                _counts.putLong(countIndex, _counts.getLong(countIndex) + count);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        //A word that was not seen before. Append it, then grow the index if it got too full.
+        _slots.putInt(slot << 2, appendEntry(hash, word, offset, length, count) + 1);
+        if ((long) _size * 100 > (long) _slotCount * LOAD_FACTOR_PERCENT) growSlots();
+    }
+
+    /**
+     * Adds the counts of every word of another table to this table. The words go from buffer to buffer, through
+     * a small buffer on the heap, one at a time.
+     */
+    void merge(OffHeapWordCountTable other) {
+        if (other == null) throw new IllegalArgumentException("'other' cannot be null.");
+        for (int entry = 0; entry < other._size; entry++) {
+            final int length = other.keyLengthOf(entry);
+            final byte[] word = other.copyKey(entry);
+            add(other.hashOf(entry), word, 0, length, other.countOf(entry));
+        }
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * @return the count of a word, or zero if the word is not in the table.
+     */
+    long get(byte[] word, int offset, int length) {
+        final int entry = find(WordCountTable.hash(word, offset, length), word, offset, length);
+        return entry < 0 ? 0L : countOf(entry);
+    }
+
+    long get(String word) {
+        final byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+        return get(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the number of distinct words.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * @return the bytes the buffers of the table take outside the heap, used or not.
+     */
+    long memoryBytes() {
+        return (long) _slots.capacity() + _entries.capacity() + _counts.capacity() + _keys.capacity();
+    }
+
+    /**
+     * Visits every entry, in the order the words were first counted. The word of each entry is copied into a
+     * buffer on the heap that is reused for the next one.
+     */
+    void forEach(WordCountTable.Visitor visitor) {
+        for (int entry = 0; entry < _size; entry++) visit(entry, visitor);
+    }
+
+    /**
+     * Visits a single entry, such as one from sortedEntries.
+     */
+    void visit(int entry, WordCountTable.Visitor visitor) {
+        visitor.visit(copyKey(entry), 0, keyLengthOf(entry), countOf(entry));
+    }
+
+    /**
+     * @return a copy of the table on the heap, for callers that need a WordCountTable.
+     */
+    WordCountTable toTable() {
+        final WordCountTable table = new WordCountTable(_size);
+        forEach(table::add);
+        return table;
+    }
+
+    //endregion
+
+    //region Sorting
+
+    /**
+     * @return the entry numbers of the table, in the order of WordCountTable.sortedEntries.
+     */
+    int[] sortedEntries(boolean byCount) {
+        return WordCountTable.sortEntries(_size, (first, second) -> compareEntries(this, first, this, second, byCount));
+    }
+
+    /**
+     * Compares an entry of one table with an entry of another, in the order of sortedEntries.
+     */
+    static int compareEntries(OffHeapWordCountTable first, int firstEntry, OffHeapWordCountTable second, int secondEntry, boolean byCount) {
+        if (byCount) {
+            final int byCountDescending = Long.compare(second.countOf(secondEntry), first.countOf(firstEntry));
+            if (byCountDescending != 0) return byCountDescending;
+        }
+        final int firstOffset = first.keyOffsetOf(firstEntry);
+        final int secondOffset = second.keyOffsetOf(secondEntry);
+        final int firstLength = first.keyLengthOf(firstEntry);
+        final int secondLength = second.keyLengthOf(secondEntry);
+        final int length = Math.min(firstLength, secondLength);
+        for (int index = 0; index < length; index++) {
+            final int difference = (first._keys.get(firstOffset + index) & 0xFF) - (second._keys.get(secondOffset + index) & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return firstLength - secondLength;
+    }
+
+    //endregion
+
+    //region Entries
+
+    private int hashOf(int entry) {
+        return _entries.getInt(entry * ENTRY_BYTES + HASH_OFFSET);
+    }
+
+    private int keyOffsetOf(int entry) {
+        return _entries.getInt(entry * ENTRY_BYTES + KEY_OFFSET_OFFSET);
+    }
+
+    private int keyLengthOf(int entry) {
+        return _entries.getInt(entry * ENTRY_BYTES + KEY_LENGTH_OFFSET);
+    }
+
+    private long countOf(int entry) {
+        return _counts.getLong(entry << 3);
+    }
+
+    /**
+     * @return the reusable heap buffer, holding the word of the entry from index zero.
+     */
+    private byte[] copyKey(int entry) {
+        final int length = keyLengthOf(entry);
+        if (_word.length < length) _word = new byte[Math.max(_word.length * 2, length)];
+        _keyReader.position(keyOffsetOf(entry));
+        _keyReader.get(_word, 0, length);
+        return _word;
+    }
+
+    //endregion
+
+    //region Probing
+
+    private int find(int hash, byte[] word, int offset, int length) {
+        final int mask = _slotCount - 1;
+        int slot = hash & mask;
+        int entryPlusOne;
+        while ((entryPlusOne = _slots.getInt(slot << 2)) != 0) {
+            final int entry = entryPlusOne - 1;
+            if (hashOf(entry) == hash && keyEquals(entry, word, offset, length)) return entry;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int entry, byte[] word, int offset, int length) {
+        if (keyLengthOf(entry) != length) return false;
+        final int keyOffset = keyOffsetOf(entry);
+        for (int index = 0; index < length; index++) {
+            if (_keys.get(keyOffset + index) != word[offset + index]) return false;
+        }
+        return true;
+    }
+
+    //endregion
+
+    //region Growing
+
+    private int appendEntry(int hash, byte[] word, int offset, int length, long count) {
+        if (_size == _capacity) growEntries();
+        if (_keys.capacity() - _keysLength < length) growKeys(length);
+
+        _keys.position(_keysLength);
+        _keys.put(word, offset, length);
+        final int entry = _size++;
+        final int entryIndex = entry * ENTRY_BYTES;
+        _entries.putInt(entryIndex + HASH_OFFSET, hash);
+        _entries.putInt(entryIndex + KEY_OFFSET_OFFSET, _keysLength);
+        _entries.putInt(entryIndex + KEY_LENGTH_OFFSET, length);
+        _counts.putLong(entry << 3, count);
+        _keysLength += length;
+        return entry;
+    }
+
+    private void growEntries() {
+        final int capacity = (int) Math.min(Integer.MAX_VALUE / ENTRY_BYTES, _capacity * 2L);
+        if (capacity == _capacity) throw new IllegalStateException("The off-heap word count table is full.");
+        _entries = copyOf(_entries, (long) ENTRY_BYTES * capacity, ENTRY_BYTES * _size);
+        _counts = copyOf(_counts, 8L * capacity, 8 * _size);
+        _capacity = capacity;
+    }
+
+    private void growKeys(int needed) {
+        final long neededCapacity = (long) _keysLength + needed;
+        final long capacity = Math.max(neededCapacity, Math.min(Integer.MAX_VALUE, _keys.capacity() * 2L));
+        _keys = copyOf(_keys, capacity, _keysLength);
+        _keyReader = _keys.duplicate();
+    }
+
+    private void growSlots() {
+        _slotCount *= 2;
+        _slots = allocate(4L * _slotCount);
+
+        //The hashes are cached, so the index is rebuilt without touching the words.
+        final int mask = _slotCount - 1;
+        for (int entry = 0; entry < _size; entry++) {
+            int slot = hashOf(entry) & mask;
+            while (_slots.getInt(slot << 2) != 0) slot = (slot + 1) & mask;
+            _slots.putInt(slot << 2, entry + 1);
+        }
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer buffer, long capacity, int used) {
+        final ByteBuffer copy = allocate(capacity);
+        final ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        source.limit(used);
+        copy.put(source);
+        return copy;
+    }
+
+    /**
+     * @return a zeroed direct buffer in the byte order of the platform, so that its ints and longs are read and
+     * written without swapping their bytes.
+     */
+    private static ByteBuffer allocate(long capacity) {
+        if (capacity > Integer.MAX_VALUE) throw new IllegalStateException("The off-heap word count table is full.");
+        return ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static int slotCountFor(int entryCount) {
+        int slotCount = 16;
+        while ((long) slotCount * LOAD_FACTOR_PERCENT < (long) entryCount * 100) slotCount *= 2;
+        return slotCount;
+    }
+
+    //endregion
+}
@@ -0,0 +1,141 @@
+package com.company;
+
+import java.util.List;
+
+/**
+ * Word counts split by word hash into a fixed number of OffHeapWordCountTables, the off-heap counterpart of the
+ * PartitionedWordCounts. The words are routed to the partitions the same way, so partition i of every parser holds
+ * the same subset of words, and the partitions are merged on separate threads.
+ * <p>
+ * The merged partitions stay off the heap, and the ResultWriter reads them there, one entry at a time. Only
+ * toHeap() copies them into a PartitionedWordCounts.
+ */
+final class OffHeapWordCounts implements WordSink, PartitionedCounts {
+
+    //region Final Variables and Collections
+
+    private final OffHeapWordCountTable[] _partitions;
+
+    //endregion
+
+    //region Constructors
+
+    OffHeapWordCounts(int partitionCount) {
+        if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+        if (partitionCount > PartitionedWordCounts.MAX_PARTITIONS) {
+            throw new IllegalArgumentException("'partitionCount' cannot be larger than " + PartitionedWordCounts.MAX_PARTITIONS + ".");
+        }
+        _partitions = new OffHeapWordCountTable[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) _partitions[partition] = new OffHeapWordCountTable();
+    }
+
+    private OffHeapWordCounts(OffHeapWordCountTable[] partitions) {
+        _partitions = partitions;
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        final int hash = WordCountTable.hash(word, offset, length);
+        _partitions[PartitionedWordCounts.partitionOf(hash, _partitions.length)].add(hash, word, offset, length, 1L);
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * Merges one partition of every parser result into the largest of them, which is returned. Different
+     * partitions can be merged on different threads, but the parser results cannot be used afterwards.
+     *
+     * @param partition     the index of the partition to merge.
+     * @param parserResults the results to merge. They must all have the same number of partitions.
+     * @return the merged partition.
+     */
+    static OffHeapWordCountTable mergePartition(int partition, List<OffHeapWordCounts> parserResults) {
+        //The largest partition is the starting point, so that most words are not copied at all.
+        OffHeapWordCountTable largest = null;
+        for (OffHeapWordCounts parserResult : parserResults) {
+            if (parserResult._partitions.length <= partition) {
+                throw new IllegalArgumentException("Every parser result must have the same number of partitions.");
+            }
+            final OffHeapWordCountTable table = parserResult._partitions[partition];
+            if (largest == null || table.size() > largest.size()) largest = table;
+        }
+        if (largest == null) return new OffHeapWordCountTable();
+        for (OffHeapWordCounts parserResult : parserResults) {
+            final OffHeapWordCountTable table = parserResult._partitions[partition];
+            if (table != largest) largest.merge(table);
+        }
+        return largest;
+    }
+
+    /**
+     * @return the merged result, made of partitions returned by mergePartition, in partition order.
+     */
+    static OffHeapWordCounts of(OffHeapWordCountTable[] mergedPartitions) {
+        if (mergedPartitions == null || mergedPartitions.length == 0) {
+            throw new IllegalArgumentException("'mergedPartitions' cannot be null or empty.");
+        }
+        return new OffHeapWordCounts(mergedPartitions.clone());
+    }
+
+    //endregion
+
+    //region Queries
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (OffHeapWordCountTable partition : _partitions) size += partition.size();
+        return size;
+    }
+
+    @Override
+    public int partitionCount() {
+        return _partitions.length;
+    }
+
+    /**
+     * @return the off-heap bytes of all the partitions, used or not.
+     */
+    long memoryBytes() {
+        long bytes = 0;
+        for (OffHeapWordCountTable partition : _partitions) bytes += partition.memoryBytes();
+        return bytes;
+    }
+
+    @Override
+    public void forEach(WordCountTable.Visitor visitor) {
+        for (OffHeapWordCountTable partition : _partitions) partition.forEach(visitor);
+    }
+
+    @Override
+    public int[] sortedEntries(int partition, boolean byCount) {
+        return _partitions[partition].sortedEntries(byCount);
+    }
+
+    @Override
+    public void visit(int partition, int entry, WordCountTable.Visitor visitor) {
+        _partitions[partition].visit(entry, visitor);
+    }
+
+    @Override
+    public int compareEntries(int firstPartition, int firstEntry, int secondPartition, int secondEntry, boolean byCount) {
+        return OffHeapWordCountTable.compareEntries(_partitions[firstPartition], firstEntry, _partitions[secondPartition], secondEntry, byCount);
+    }
+
+    /**
+     * @return a copy of the counts on the heap, partition by partition, for callers that need a PartitionedWordCounts.
+     */
+    PartitionedWordCounts toHeap() {
+        final WordCountTable[] partitions = new WordCountTable[_partitions.length];
+        for (int partition = 0; partition < partitions.length; partition++) partitions[partition] = _partitions[partition].toTable();
+        return PartitionedWordCounts.of(partitions);
+    }
+
+    //endregion
+}
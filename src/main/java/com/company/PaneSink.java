@@ -0,0 +1,64 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sink of a parser whose counts are taken away while it runs: the counts of the current pane, which are
+ * swapped for empty ones whenever someone wants what was counted so far.
+ * A chunk is parsed under the lock of the sink, so a swap always falls between two chunks.
+ */
+final class PaneSink implements WordSink {
+
+    //region Final Variables
+
+    private final int _partitionCount;
+
+    //endregion
+
+    //region Variables
+
+    private PartitionedWordCounts _counts;
+
+    //endregion
+
+    //region Constructor
+
+    PaneSink(int partitionCount) {
+        _partitionCount = partitionCount;
+        _counts = new PartitionedWordCounts(partitionCount);
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        _counts.accept(word, offset, length);
+    }
+
+    /**
+     * Parses a chunk into the current pane, with a parser that counts into this sink.
+     */
+    synchronized void parse(ChunkParser<PaneSink> parser, ByteBuffer chunk) {
+        parser.parse(chunk);
+    }
+
+    /**
+     * @return the number of distinct words of the pane so far.
+     */
+    synchronized int size() {
+        return _counts.size();
+    }
+
+    /**
+     * @return the counts of the pane so far, which the sink never touches again.
+     */
+    synchronized PartitionedWordCounts swap() {
+        final PartitionedWordCounts pane = _counts;
+        _counts = new PartitionedWordCounts(_partitionCount);
+        return pane;
+    }
+
+    //endregion
+}
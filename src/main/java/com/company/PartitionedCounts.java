@@ -0,0 +1,39 @@
+package com.company;
+
+/**
+ * Exact word counts split into partitions of disjoint words, as the ResultWriter reads them: on the heap in a
+ * PartitionedWordCounts, or off the heap in an OffHeapWordCounts.
+ * <p>
+ * The entries of a partition are numbered from zero. Words are ordered byte by byte, like in
+ * WordCountTable.sortedEntries.
+ */
+interface PartitionedCounts {
+
+    int partitionCount();
+
+    /**
+     * @return the number of distinct words. Every word is in exactly one partition.
+     */
+    int size();
+
+    /**
+     * Visits every entry, one partition after the other.
+     */
+    void forEach(WordCountTable.Visitor visitor);
+
+    /**
+     * @return the entry numbers of a partition, by count from the highest, or by word. Different partitions can be
+     * sorted on different threads.
+     */
+    int[] sortedEntries(int partition, boolean byCount);
+
+    /**
+     * Visits a single entry of a partition, such as one from sortedEntries.
+     */
+    void visit(int partition, int entry, WordCountTable.Visitor visitor);
+
+    /**
+     * Compares two entries, of the same partition or not, in the order of sortedEntries.
+     */
+    int compareEntries(int firstPartition, int firstEntry, int secondPartition, int secondEntry, boolean byCount);
+}
@@ -0,0 +1,165 @@
+package com.company;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Word counts split by word hash into a fixed number of WordCountTables.
+ * <p>
+ * A parser counts into its own PartitionedWordCounts, so every word lands in the partition its hash picks.
+ * Since every parser uses the same number of partitions, partition i of every parser holds the same subset
+ * of words. The partitions can then be merged on separate threads, with no shared state, and the merged
+ * partitions make up the result without ever being collapsed into a single table.
+ */
+final class PartitionedWordCounts implements WordSink, PartitionedCounts {
+
+    //region Static Final Class Variables
+
+    //The partition is picked from the high 16 bits of the hash, see partitionOf(int).
+    static final int MAX_PARTITIONS = 1 << 16;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final WordCountTable[] _partitions;
+
+    //endregion
+
+    //region Constructors
+
+    PartitionedWordCounts(int partitionCount) {
+        if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+        if (partitionCount > MAX_PARTITIONS) throw new IllegalArgumentException("'partitionCount' cannot be larger than " + MAX_PARTITIONS + ".");
+        _partitions = new WordCountTable[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) _partitions[partition] = new WordCountTable();
+    }
+
+    private PartitionedWordCounts(WordCountTable[] partitions) {
+        _partitions = partitions;
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        final int hash = WordCountTable.hash(word, offset, length);
+        _partitions[partitionOf(hash)].add(hash, word, offset, length, 1L);
+    }
+
+    /**
+     * Adds a count to a word, such as a count loaded from the CountCache.
+     */
+    void add(byte[] word, int offset, int length, long count) {
+        final int hash = WordCountTable.hash(word, offset, length);
+        _partitions[partitionOf(hash)].add(hash, word, offset, length, count);
+    }
+
+    /**
+     * The tables index their slots with the low bits of the hash, so the partition is picked with the high
+     * bits. Otherwise every word of a partition would crowd into the same slots of its table.
+     */
+    private int partitionOf(int hash) {
+        return partitionOf(hash, _partitions.length);
+    }
+
+    /**
+     * The partition of a hash among the given number of partitions. A WordDictionary picks its stripes the same
+     * way, so that stripe i of a dictionary holds the words of partition i.
+     */
+    static int partitionOf(int hash, int partitionCount) {
+        return (int) (((hash >>> 16) * (long) partitionCount) >>> 16);
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * Merges one partition of every parser result. Different partitions can be merged on different threads.
+     *
+     * @param partition     the index of the partition to merge.
+     * @param parserResults the results to merge. They must all have the same number of partitions.
+     * @return the merged partition.
+     */
+    static WordCountTable mergePartition(int partition, List<PartitionedWordCounts> parserResults) {
+        final WordCountTable merged = new WordCountTable();
+        for (PartitionedWordCounts parserResult : parserResults) {
+            if (parserResult._partitions.length <= partition) {
+                throw new IllegalArgumentException("Every parser result must have the same number of partitions.");
+            }
+            merged.merge(parserResult._partitions[partition]);
+        }
+        return merged;
+    }
+
+    /**
+     * @return the merged result, made of partitions returned by mergePartition, in partition order.
+     */
+    static PartitionedWordCounts of(WordCountTable[] mergedPartitions) {
+        if (mergedPartitions == null || mergedPartitions.length == 0) {
+            throw new IllegalArgumentException("'mergedPartitions' cannot be null or empty.");
+        }
+        return new PartitionedWordCounts(mergedPartitions.clone());
+    }
+
+    //endregion
+
+    //region Queries
+
+    long get(String word) {
+        final byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+        final int hash = WordCountTable.hash(bytes, 0, bytes.length);
+        return _partitions[partitionOf(hash)].get(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (WordCountTable partition : _partitions) size += partition.size();
+        return size;
+    }
+
+    @Override
+    public int partitionCount() {
+        return _partitions.length;
+    }
+
+    WordCountTable partition(int partition) {
+        return _partitions[partition];
+    }
+
+    @Override
+    public void forEach(WordCountTable.Visitor visitor) {
+        for (WordCountTable partition : _partitions) partition.forEach(visitor);
+    }
+
+    @Override
+    public int[] sortedEntries(int partition, boolean byCount) {
+        return _partitions[partition].sortedEntries(byCount);
+    }
+
+    @Override
+    public void visit(int partition, int entry, WordCountTable.Visitor visitor) {
+        _partitions[partition].visit(entry, visitor);
+    }
+
+    @Override
+    public int compareEntries(int firstPartition, int firstEntry, int secondPartition, int secondEntry, boolean byCount) {
+        return WordCountTable.compareEntries(_partitions[firstPartition], firstEntry, _partitions[secondPartition], secondEntry, byCount);
+    }
+
+    /**
+     * @return a copy of all partitions as a single map, for the edges of the program only.
+     */
+    HashMap<String, Long> toMap() {
+        final HashMap<String, Long> map = new HashMap<>(size() * 4 / 3 + 1);
+        for (WordCountTable partition : _partitions) map.putAll(partition.toMap());
+        return map;
+    }
+
+    //endregion
+}
@@ -0,0 +1,377 @@
+package com.company;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * The metrics of one count, stage by stage: how fast the readers read and how long they waited for room in the
+ * queue, how many words each parser counted and how long it was busy or waiting for text, how full the queue
+ * between them was over time, and how long the merge and the output of the results took.
+ * <p>
+ * Readers and parsers keep their own counters while they run, as they keep their own results, and the metrics
+ * take a copy once they are done. So the hot loops share nothing. Only the depth of the queue is sampled
+ * while the count runs, on a separate thread.
+ * <p>
+ * From these, bottleneck() tells which stage held the count back. Every metric is also committed as a
+ * JDK Flight Recorder event, see FlightRecorderEvents.
+ */
+final class PipelineMetrics {
+
+    //region Stages
+
+    /**
+     * The statistics a reader keeps while it runs.
+     */
+    interface ReaderStage {
+        long bytesRead();
+
+        long elapsedNanos();
+
+        /**
+         * @return the time the reader waited for the parsers to make room for more text.
+         */
+        long blockedNanos();
+    }
+
+    /**
+     * The statistics a parser keeps while it runs.
+     */
+    interface ParserStage {
+        long words();
+
+        long lines();
+
+        long busyNanos();
+
+        /**
+         * @return the time the parser waited for text from the readers.
+         */
+        long blockedNanos();
+    }
+
+    enum Stage {
+        /**
+         * From the start of the readers until the last of them is done.
+         */
+        READ,
+        /**
+         * From the start of the readers until the last parser is done. It overlaps the read stage.
+         */
+        PARSE,
+        MERGE,
+        OUTPUT,
+        /**
+         * The checkpoints of a checkpointed count, added up. The parsers are paused while they are taken.
+         */
+        CHECKPOINT,
+        /**
+         * The sorted runs written by the parsers of a spilling count, added up over the parsers. It overlaps the
+         * parse stage.
+         */
+        SPILL
+    }
+
+    enum Bottleneck {
+        READER("reader-bound"),
+        PARSER("parser-bound"),
+        MERGE("merge-bound"),
+        OUTPUT("output-bound");
+
+        private final String _label;
+
+        Bottleneck(String label) {
+            _label = label;
+        }
+
+        @Override
+        public String toString() {
+            return _label;
+        }
+    }
+
+    //endregion
+
+    //region Static Final Class Variables
+
+    static final long QUEUE_SAMPLE_INTERVAL_MILLIS = 100;
+
+    //Five minutes of samples are kept in the report. Later samples only count towards the totals.
+    private static final int MAX_QUEUE_SAMPLES = 3000;
+
+    //Parsers that wait for text more than half of the time are starved by the readers.
+    private static final double STARVED_PARSER_SHARE = 0.5;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    //endregion
+
+    //region Stage Totals
+
+    private static final class ReaderTotals {
+        final long bytes;
+        final long elapsedNanos;
+        final long blockedNanos;
+
+        ReaderTotals(ReaderStage reader) {
+            bytes = reader.bytesRead();
+            elapsedNanos = reader.elapsedNanos();
+            blockedNanos = reader.blockedNanos();
+        }
+    }
+
+    private static final class ParserTotals {
+        final long words;
+        final long lines;
+        final long busyNanos;
+        final long blockedNanos;
+
+        ParserTotals(ParserStage parser) {
+            words = parser.words();
+            lines = parser.lines();
+            busyNanos = parser.busyNanos();
+            blockedNanos = parser.blockedNanos();
+        }
+    }
+
+    //endregion
+
+    //region Variables and Collections
+
+    //Guarded by this. The sampler thread records the queue depth while the thread of the count records the rest.
+    private final List<ReaderTotals> _readers = new ArrayList<>();
+    private final List<ParserTotals> _parsers = new ArrayList<>();
+    private final long[] _stageNanos = new long[Stage.values().length];
+    private int[] _queueSamples = new int[64];
+    private int _queueSampleCount;
+    private long _queueDepthSum;
+    private int _queueMaxDepth;
+    private int _queueCapacity;
+    private int _queueEmptySamples;
+    private int _queueFullSamples;
+
+    //endregion
+
+    //region Recording
+
+    synchronized void recordReader(ReaderStage reader) {
+        final ReaderTotals totals = new ReaderTotals(reader);
+        _readers.add(totals);
+        FlightRecorderEvents.READER_FINISHED.commit(totals.bytes, totals.elapsedNanos, totals.blockedNanos);
+    }
+
+    synchronized void recordParser(ParserStage parser) {
+        final ParserTotals totals = new ParserTotals(parser);
+        _parsers.add(totals);
+        FlightRecorderEvents.PARSER_FINISHED.commit(totals.words, totals.lines, totals.busyNanos, totals.blockedNanos);
+    }
+
+    /**
+     * Adds to the time of a stage. A count over several rounds of readers and parsers, as with the count cache,
+     * records each stage once per round.
+     */
+    synchronized void recordStage(Stage stage, long nanos) {
+        if (stage == null) throw new IllegalArgumentException("'stage' cannot be null.");
+        _stageNanos[stage.ordinal()] += nanos;
+        FlightRecorderEvents.STAGE_FINISHED.commit(stage.name().toLowerCase(Locale.ROOT), nanos);
+    }
+
+    /**
+     * @param capacity the most items the queue can hold, or 0 when it is unbounded.
+     */
+    synchronized void recordQueueDepth(int depth, int capacity) {
+        if (_queueSampleCount < MAX_QUEUE_SAMPLES) {
+            if (_queueSampleCount == _queueSamples.length) _queueSamples = Arrays.copyOf(_queueSamples, _queueSamples.length * 2);
+            _queueSamples[_queueSampleCount] = depth;
+        }
+        _queueSampleCount++;
+        _queueDepthSum += depth;
+        _queueMaxDepth = Math.max(_queueMaxDepth, depth);
+        _queueCapacity = Math.max(_queueCapacity, capacity);
+        if (depth == 0) _queueEmptySamples++;
+        if (capacity > 0 && depth >= capacity) _queueFullSamples++;
+        FlightRecorderEvents.QUEUE_DEPTH.commit(depth, capacity);
+    }
+
+    /**
+     * Samples the depth of a queue at a fixed rate, until the returned future is cancelled.
+     */
+    ScheduledFuture<?> sampleQueue(ScheduledExecutorService sampler, IntSupplier depth, int capacity) {
+        return sampler.scheduleAtFixedRate(() -> recordQueueDepth(depth.getAsInt(), capacity),
+                0, QUEUE_SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    //endregion
+
+    //region Getters
+
+    synchronized long stageNanos(Stage stage) {
+        return _stageNanos[stage.ordinal()];
+    }
+
+    synchronized long bytesRead() {
+        long bytes = 0;
+        for (ReaderTotals reader : _readers) bytes += reader.bytes;
+        return bytes;
+    }
+
+    synchronized long words() {
+        long words = 0;
+        for (ParserTotals parser : _parsers) words += parser.words;
+        return words;
+    }
+
+    synchronized long lines() {
+        long lines = 0;
+        for (ParserTotals parser : _parsers) lines += parser.lines;
+        return lines;
+    }
+
+    /**
+     * @return the share of their time the parsers spent waiting for text, from 0 to 1.
+     */
+    synchronized double parserBlockedShare() {
+        long busy = 0;
+        long blocked = 0;
+        for (ParserTotals parser : _parsers) {
+            busy += parser.busyNanos;
+            blocked += parser.blockedNanos;
+        }
+        return busy + blocked > 0 ? blocked / (double) (busy + blocked) : 0;
+    }
+
+    /**
+     * The stage that held the count back:
+     * <ul>
+     * <li>the merge or the output, when it took longer than reading and parsing together;</li>
+     * <li>otherwise the readers, when the parsers spent most of their time waiting for text;</li>
+     * <li>otherwise the parsers.</li>
+     * </ul>
+     */
+    synchronized Bottleneck bottleneck() {
+        final long parse = _stageNanos[Stage.PARSE.ordinal()];
+        final long merge = _stageNanos[Stage.MERGE.ordinal()];
+        final long output = _stageNanos[Stage.OUTPUT.ordinal()];
+        if (Math.max(merge, output) > parse) return merge >= output ? Bottleneck.MERGE : Bottleneck.OUTPUT;
+        return parserBlockedShare() > STARVED_PARSER_SHARE ? Bottleneck.READER : Bottleneck.PARSER;
+    }
+
+    //endregion
+
+    //region Report
+
+    /**
+     * @return a single line for the console, with the throughput of every stage and the bottleneck.
+     */
+    synchronized String summary() {
+        return String.format(Locale.ROOT, "Pipeline: read %.1f MB/s, parsed %.0f words/s, parsers waited %.0f%% of the time,"
+                        + " merge %.0f ms, output %.0f ms: %s.",
+                perSecond(bytesRead(), Stage.READ) / (1024 * 1024), perSecond(words(), Stage.PARSE),
+                parserBlockedShare() * 100, millis(_stageNanos[Stage.MERGE.ordinal()]),
+                millis(_stageNanos[Stage.OUTPUT.ordinal()]), bottleneck());
+    }
+
+    /**
+     * @return the whole report as a JSON object, with times in milliseconds.
+     */
+    synchronized String toJson() {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"bottleneck\": \"").append(bottleneck()).append("\",\n");
+
+        json.append("  \"stages\": {");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0) json.append(", ");
+            json.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("Millis\": ")
+                    .append(number(millis(_stageNanos[stage.ordinal()])));
+        }
+        json.append("},\n");
+
+        json.append("  \"bytes\": ").append(bytesRead())
+                .append(", \"bytesPerSecond\": ").append(number(perSecond(bytesRead(), Stage.READ)))
+                .append(", \"lines\": ").append(lines())
+                .append(", \"linesPerSecond\": ").append(number(perSecond(lines(), Stage.PARSE)))
+                .append(", \"words\": ").append(words())
+                .append(", \"wordsPerSecond\": ").append(number(perSecond(words(), Stage.PARSE))).append(",\n");
+
+        json.append("  \"readers\": [");
+        for (int index = 0; index < _readers.size(); index++) {
+            final ReaderTotals reader = _readers.get(index);
+            json.append(index == 0 ? "\n" : ",\n")
+                    .append("    {\"bytes\": ").append(reader.bytes)
+                    .append(", \"elapsedMillis\": ").append(number(millis(reader.elapsedNanos)))
+                    .append(", \"blockedMillis\": ").append(number(millis(reader.blockedNanos))).append('}');
+        }
+        json.append(_readers.isEmpty() ? "],\n" : "\n  ],\n");
+
+        json.append("  \"parsers\": [");
+        for (int index = 0; index < _parsers.size(); index++) {
+            final ParserTotals parser = _parsers.get(index);
+            final long elapsed = parser.busyNanos + parser.blockedNanos;
+            json.append(index == 0 ? "\n" : ",\n")
+                    .append("    {\"words\": ").append(parser.words)
+                    .append(", \"lines\": ").append(parser.lines)
+                    .append(", \"busyMillis\": ").append(number(millis(parser.busyNanos)))
+                    .append(", \"blockedMillis\": ").append(number(millis(parser.blockedNanos)))
+                    .append(", \"wordsPerSecond\": ").append(number(elapsed > 0 ? parser.words * NANOS_PER_SECOND / elapsed : 0)).append('}');
+        }
+        json.append(_parsers.isEmpty() ? "],\n" : "\n  ],\n");
+
+        json.append("  \"queue\": {\"capacity\": ").append(_queueCapacity)
+                .append(", \"sampleMillis\": ").append(QUEUE_SAMPLE_INTERVAL_MILLIS)
+                .append(", \"samples\": ").append(_queueSampleCount)
+                .append(", \"meanDepth\": ").append(number(_queueSampleCount > 0 ? _queueDepthSum / (double) _queueSampleCount : 0))
+                .append(", \"maxDepth\": ").append(_queueMaxDepth)
+                .append(", \"emptyShare\": ").append(number(share(_queueEmptySamples)))
+                .append(", \"fullShare\": ").append(number(share(_queueFullSamples)))
+                .append(", \"depths\": [");
+        for (int index = 0; index < Math.min(_queueSampleCount, MAX_QUEUE_SAMPLES); index++) {
+            if (index > 0) json.append(", ");
+            json.append(_queueSamples[index]);
+        }
+        json.append("]}\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    /**
+     * Writes the JSON report to a file, replacing it if it exists.
+     */
+    void write(Path path) throws IOException {
+        if (path == null) throw new IllegalArgumentException("'path' cannot be null.");
+        Files.write(path, toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private double perSecond(long amount, Stage stage) {
+        final long nanos = _stageNanos[stage.ordinal()];
+        return nanos > 0 ? amount * NANOS_PER_SECOND / nanos : 0;
+    }
+
+    private double share(int samples) {
+        return _queueSampleCount > 0 ? samples / (double) _queueSampleCount : 0;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    //endregion
+}
@@ -0,0 +1,348 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the word counts to a stream, in one of the output formats and sort orders of RunOptions.
+ * <p>
+ * The words and counts are written as bytes into one large buffer, which goes to the stream only when full.
+ * Nothing is locked and no String is built per word, so writing a vocabulary of millions of words costs about
+ * as much as copying its bytes.
+ * <p>
+ * Sorting is done per partition of the PartitionedCounts, since the partitions hold disjoint words. A large
+ * result is sorted in parallel, on the executor of the caller. The sorted partitions are then merged as they are written. The counts are read where they are, on the
+ * heap or off it, one entry at a time.
+ * <p>
+ * The formats:
+ * <ul>
+ * <li>TEXT: one {'word': count} per line, as printed on the console.</li>
+ * <li>JSON: one object, with a "word": count member per line.</li>
+ * <li>CSV: a word,count header, then one word,count per line.</li>
+ * <li>BINARY: the magic bytes "WCR1", the number of words, then the length, bytes and count of every word.
+ * The numbers are unsigned variable-length integers, seven bits per byte, lowest first.</li>
+ * </ul>
+ * The words of the tokenizer are made of ASCII letters, digits and underscores, and n-grams are such words joined
+ * by spaces, so none of the text formats needs any escaping.
+ */
+final class ResultWriter {
+
+    //region Static Final Class Variables
+
+    static final int BINARY_MAGIC = 0x57435231; //"WCR1"
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] NEW_LINE = ConsoleOutput.NEW_LINE.getBytes(StandardCharsets.US_ASCII);
+
+    //Fewer words are sorted faster on the calling thread than the tasks of a parallel sort start.
+    private static final int PARALLEL_SORT_MIN_WORDS = 64 * 1024;
+
+    //endregion
+
+    //region Final Variables
+
+    private final OutputStream _output;
+    private final RunOptions.OutputFormat _format;
+    private final RunOptions.SortOrder _sort;
+    private final ExecutorService _sortExecutor;
+    private final byte[] _buffer = new byte[BUFFER_SIZE];
+    private final byte[] _digits = new byte[20];
+
+    //endregion
+
+    //region Variables
+
+    private int _length;
+    private boolean _firstEntry;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param output the stream to write to. It is flushed, but not closed, by write().
+     */
+    ResultWriter(OutputStream output, RunOptions.OutputFormat format, RunOptions.SortOrder sort) {
+        this(output, format, sort, null);
+    }
+
+    /**
+     * @param sortExecutor sorts the partitions of a large result in parallel. Without one, they are sorted on the
+     *                     calling thread.
+     */
+    ResultWriter(OutputStream output, RunOptions.OutputFormat format, RunOptions.SortOrder sort, ExecutorService sortExecutor) {
+        if (output == null) throw new IllegalArgumentException("'output' cannot be null.");
+        if (format == null) throw new IllegalArgumentException("'format' cannot be null.");
+        if (sort == null) throw new IllegalArgumentException("'sort' cannot be null.");
+        _output = output;
+        _format = format;
+        _sort = sort;
+        _sortExecutor = sortExecutor;
+    }
+
+    //endregion
+
+    //region Writing
+
+    void write(PartitionedCounts counts) throws IOException {
+        if (counts == null) throw new IllegalArgumentException("'counts' cannot be null.");
+        _firstEntry = true;
+        try {
+            writeHeader(counts.size());
+            final WordCountTable.Visitor entryWriter = this::writeEntry;
+            if (_sort == RunOptions.SortOrder.NONE) {
+                counts.forEach(entryWriter);
+            } else {
+                writeSorted(counts, _sort == RunOptions.SortOrder.COUNT, entryWriter);
+            }
+            writeFooter();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        flushBuffer();
+        _output.flush();
+    }
+
+    /**
+     * Writes the counts of sorted runs, merging them as they are written. The runs are in word order, so any sort
+     * order but COUNT is written by word. The binary format starts with the number of words, which a merge only
+     * knows at its end, so it is not supported either.
+     */
+    void write(SortedRuns runs) throws IOException {
+        if (runs == null) throw new IllegalArgumentException("'runs' cannot be null.");
+        if (_sort == RunOptions.SortOrder.COUNT) throw new IllegalArgumentException("Sorted runs cannot be written by count.");
+        if (_format == RunOptions.OutputFormat.BINARY) throw new IllegalArgumentException("Sorted runs cannot be written in the binary format.");
+        _firstEntry = true;
+        try {
+            writeHeader(0);
+            runs.merge(this::writeEntry);
+            writeFooter();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        flushBuffer();
+        _output.flush();
+    }
+
+    private void writeHeader(int size) {
+        switch (_format) {
+            case JSON:
+                appendAscii("{");
+                appendNewLine();
+                break;
+            case CSV:
+                appendAscii("word,count");
+                appendNewLine();
+                break;
+            case BINARY:
+                appendInt(BINARY_MAGIC);
+                appendVarLong(size);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void writeEntry(byte[] word, int offset, int length, long count) {
+        switch (_format) {
+            case JSON:
+                if (!_firstEntry) {
+                    append((byte) ',');
+                    appendNewLine();
+                }
+                appendAscii("  \"");
+                append(word, offset, length);
+                appendAscii("\": ");
+                appendLong(count);
+                break;
+            case CSV:
+                append(word, offset, length);
+                append((byte) ',');
+                appendLong(count);
+                appendNewLine();
+                break;
+            case BINARY:
+                appendVarLong(length);
+                append(word, offset, length);
+                appendVarLong(count);
+                break;
+            default:
+                appendAscii("{'");
+                append(word, offset, length);
+                appendAscii("': ");
+                appendLong(count);
+                append((byte) '}');
+                appendNewLine();
+                break;
+        }
+        _firstEntry = false;
+    }
+
+    private void writeFooter() {
+        if (_format != RunOptions.OutputFormat.JSON) return;
+        if (!_firstEntry) appendNewLine();
+        append((byte) '}');
+        appendNewLine();
+    }
+
+    //endregion
+
+    //region Sorting
+
+    /**
+     * Sorts every partition on its own, then merges the sorted partitions with a heap of their heads.
+     */
+    private void writeSorted(PartitionedCounts counts, boolean byCount, WordCountTable.Visitor visitor) throws IOException {
+        final int partitionCount = counts.partitionCount();
+        final int[][] sorted = sortPartitions(counts, byCount);
+
+        final PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, partitionCount),
+                (first, second) -> counts.compareEntries(first.partition, first.current(), second.partition, second.current(), byCount));
+        for (int partition = 0; partition < partitionCount; partition++) {
+            if (sorted[partition].length > 0) heads.add(new Cursor(partition, sorted[partition]));
+        }
+
+        Cursor head;
+        while ((head = heads.poll()) != null) {
+            counts.visit(head.partition, head.current(), visitor);
+            if (++head.position < head.entries.length) heads.add(head);
+        }
+    }
+
+    private int[][] sortPartitions(PartitionedCounts counts, boolean byCount) throws IOException {
+        final int partitionCount = counts.partitionCount();
+        final int[][] sorted = new int[partitionCount][];
+        if (_sortExecutor == null || partitionCount == 1 || counts.size() < PARALLEL_SORT_MIN_WORDS) {
+            for (int partition = 0; partition < partitionCount; partition++) sorted[partition] = counts.sortedEntries(partition, byCount);
+            return sorted;
+        }
+
+        //No more sorters than cores, each taking every so many partitions, since the executor may not be bounded.
+        final int sorterCount = Math.min(partitionCount, Runtime.getRuntime().availableProcessors());
+        final List<Callable<Void>> sorters = new ArrayList<>();
+        for (int sorter = 0; sorter < sorterCount; sorter++) {
+            final int first = sorter;
+            sorters.add(() -> {
+                for (int partition = first; partition < partitionCount; partition += sorterCount) {
+                    sorted[partition] = counts.sortedEntries(partition, byCount);
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> result : _sortExecutor.invokeAll(sorters)) result.get();
+            return sorted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sorting the results.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to sort the results.", e.getCause());
+        }
+    }
+
+    /**
+     * The position in one sorted partition.
+     */
+    private static final class Cursor {
+        final int partition;
+        final int[] entries;
+        int position;
+
+        Cursor(int partition, int[] entries) {
+            this.partition = partition;
+            this.entries = entries;
+        }
+
+        int current() {
+            return entries[position];
+        }
+    }
+
+    //endregion
+
+    //region Buffer
+
+    private void append(byte b) {
+        if (_length == _buffer.length) flushBufferUnchecked();
+        _buffer[_length++] = b;
+    }
+
+    private void append(byte[] bytes, int offset, int length) {
+        while (length > 0) {
+            if (_length == _buffer.length) flushBufferUnchecked();
+            final int copied = Math.min(length, _buffer.length - _length);
+            System.arraycopy(bytes, offset, _buffer, _length, copied);
+            _length += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    private void appendAscii(String text) {
+        for (int index = 0; index < text.length(); index++) append((byte) text.charAt(index));
+    }
+
+    private void appendNewLine() {
+        append(NEW_LINE, 0, NEW_LINE.length);
+    }
+
+    /**
+     * Writes the decimal digits of a count, without going through a String.
+     */
+    private void appendLong(long value) {
+        if (value < 0) {
+            append((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                appendAscii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int start = _digits.length;
+        do {
+            _digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        append(_digits, start, _digits.length - start);
+    }
+
+    private void appendVarLong(long value) {
+        if (_buffer.length - _length < VarInts.MAX_LENGTH) flushBufferUnchecked();
+        _length = VarInts.write(_buffer, _length, value);
+    }
+
+    private void appendInt(int value) {
+        append((byte) (value >>> 24));
+        append((byte) (value >>> 16));
+        append((byte) (value >>> 8));
+        append((byte) value);
+    }
+
+    private void flushBuffer() throws IOException {
+        _output.write(_buffer, 0, _length);
+        _length = 0;
+    }
+
+    /**
+     * The visitors cannot throw a checked exception, so a failed write is carried out of them unchecked,
+     * and turned back into an IOException by write().
+     */
+    private void flushBufferUnchecked() {
+        try {
+            flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //endregion
+}
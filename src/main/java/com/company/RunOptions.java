@@ -0,0 +1,947 @@
+package com.company;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The command line options of a word count run.
+ * <p>
+ * Every argument that starts with "--" is an option in the "--name=value" form. All other arguments
+ * are the input file paths, in the order they were given.
+ */
+final class RunOptions {
+
+    //region Static Final Class Variables
+
+    private static final String OPTION_PREFIX = "--";
+    private static final String READER_OPTION = "reader";
+    private static final String TRANSPORT_OPTION = "transport";
+    private static final String MEMORY_BUDGET_OPTION = "memory-budget";
+    private static final String TOP_OPTION = "top";
+    private static final String TOP_CAPACITY_OPTION = "top-capacity";
+    private static final String CARDINALITY_OPTION = "cardinality";
+    private static final String PRECISION_OPTION = "precision";
+    private static final String READERS_OPTION = "readers";
+    private static final String OUTPUT_OPTION = "output";
+    private static final String FORMAT_OPTION = "format";
+    private static final String SORT_OPTION = "sort";
+    private static final String CACHE_OPTION = "cache";
+    private static final String CACHE_CLEAR_OPTION = "cache-clear";
+    private static final String CACHE_VERIFY_CONTENT_OPTION = "cache-verify-content";
+    private static final String SERVE_OPTION = "serve";
+    private static final String CONNECT_OPTION = "connect";
+    private static final String JOBS_OPTION = "jobs";
+    private static final String QUEUE_OPTION = "queue";
+    private static final String MAX_JOB_BYTES_OPTION = "max-job-bytes";
+    private static final String SHUTDOWN_OPTION = "shutdown";
+    private static final String METRICS_OPTION = "metrics";
+    private static final String EXECUTION_OPTION = "execution";
+    private static final String COUNTS_OPTION = "counts";
+    private static final String TOKENIZER_OPTION = "tokenizer";
+    private static final String ENCODING_OPTION = "encoding";
+    private static final String STREAM_OPTION = "stream";
+    private static final String SNAPSHOT_INTERVAL_OPTION = "snapshot-interval";
+    private static final String WINDOW_OPTION = "window";
+    private static final String WINDOW_SIZE_OPTION = "window-size";
+    private static final String CHECKPOINT_OPTION = "checkpoint";
+    private static final String CHECKPOINT_INTERVAL_OPTION = "checkpoint-interval";
+    private static final String SPILL_BUDGET_OPTION = "spill-budget";
+    private static final String SPILL_DIRECTORY_OPTION = "spill-directory";
+    private static final String NGRAMS_OPTION = "ngrams";
+    private static final String COORDINATE_OPTION = "coordinate";
+    private static final String JOIN_OPTION = "join";
+    private static final String SHARD_SIZE_OPTION = "shard-size";
+    private static final String WORKER_TIMEOUT_OPTION = "worker-timeout";
+
+    //The input of --stream that stands for the standard input.
+    static final String STANDARD_INPUT = "-";
+
+    static final int DEFAULT_SERVER_JOBS = 2;
+    static final int DEFAULT_SERVER_QUEUE = 64;
+
+    //Space-Saving needs several counters per reported word to keep the errors small.
+    private static final int COUNTERS_PER_TOP_WORD = 10;
+    private static final int MIN_TOP_CAPACITY = 1000;
+    private static final int MAX_PORT = 65535;
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 10_000L;
+    private static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 60_000L;
+
+    //endregion
+
+    //region Reader Modes
+
+    enum ReaderMode {
+        /**
+         * Memory-map the input files and parse whole chunks in parallel. Inputs that cannot be mapped, such as
+         * pipes, are streamed into the same chunks, and compressed files are inflated into them. Falls back to
+         * LINES for an encoding that chunks cannot be cut in.
+         */
+        MAPPED,
+        /**
+         * Decode the input files line by line on DiskFileReaders, one or more threads that share the files.
+         */
+        LINES
+    }
+
+    //endregion
+
+    //region Transports
+
+    enum Transport {
+        /**
+         * Hand reusable batches of text from the DiskFileReader to the LineParsers, through a CharBatchRing
+         * bounded by the memory budget.
+         */
+        BATCHED,
+        /**
+         * Hand one line at a time through an unbounded queue. Kept to compare against the batched transport.
+         */
+        QUEUE
+    }
+
+    //endregion
+
+    //region Executions
+
+    enum Execution {
+        /**
+         * Readers feed a queue that a fixed set of parsers drain, one per core.
+         */
+        PIPELINE,
+        /**
+         * One task per input file reads and parses it, on a virtual thread where the runtime has them.
+         * For inputs of many small files, where opening and reading the files is the bottleneck.
+         */
+        FILES
+    }
+
+    //endregion
+
+    //region Count Stores
+
+    enum CountStore {
+        /**
+         * Every parser counts into partitioned tables of its own, which hold a copy of every word it saw.
+         */
+        TABLES,
+        /**
+         * The parsers share a WordDictionary of word IDs, and count into dense arrays indexed by those IDs.
+         * Every word is stored once, and merging is a sum of arrays.
+         */
+        DICTIONARY,
+        /**
+         * Every parser counts into partitioned tables of its own, like TABLES, but in direct buffers off the heap.
+         * The counts are merged and written without being copied back onto the heap.
+         */
+        OFF_HEAP
+    }
+
+    //endregion
+
+    //region Tokenizers
+
+    enum Tokenizer {
+        /**
+         * Classify and fold one character at a time.
+         */
+        SCALAR,
+        /**
+         * Classify and fold the undecoded bytes of mapped chunks eight at a time, as the lanes of a long.
+         * Text that reaches the parsers as chars is still tokenized one character at a time.
+         */
+        SWAR
+    }
+
+    //endregion
+
+    //region Stream Windows
+
+    /**
+     * What the snapshots of a stream count hold.
+     */
+    enum Window {
+        /**
+         * Every word since the stream started.
+         */
+        CUMULATIVE,
+        /**
+         * Only the words of the last window. Windows follow each other without overlapping.
+         */
+        TUMBLING,
+        /**
+         * Only the words of the last window, which moves forward by one snapshot interval at every snapshot.
+         */
+        SLIDING
+    }
+
+    //endregion
+
+    //region Count Modes
+
+    enum CountMode {
+        /**
+         * Count every word exactly.
+         */
+        EXACT,
+        /**
+         * Report only the most frequent words, from fixed-size Space-Saving summaries.
+         */
+        TOP,
+        /**
+         * Report only the estimated number of distinct words, from HyperLogLog sketches.
+         */
+        CARDINALITY
+    }
+
+    /**
+     * How the ResultWriter writes the exact counts.
+     */
+    enum OutputFormat {
+        TEXT,
+        JSON,
+        CSV,
+        BINARY
+    }
+
+    enum SortOrder {
+        /**
+         * In no particular order, which costs nothing.
+         */
+        NONE,
+        /**
+         * By count, from the highest. Equal counts are ordered by word.
+         */
+        COUNT,
+        /**
+         * By word, alphabetically.
+         */
+        WORD
+    }
+
+    //endregion
+
+    //region Option Values
+
+    //Only assigned while parsing, with the defaults below for options that are not given.
+    private String[] _filePath;
+    private ReaderMode _readerMode = ReaderMode.MAPPED;
+    private Transport _transport = Transport.BATCHED;
+    private Execution _execution = Execution.PIPELINE;
+    private CountStore _countStore = CountStore.TABLES;
+    private Tokenizer _tokenizer = Tokenizer.SCALAR;
+    private Charset _encoding = StandardCharsets.UTF_8;
+    private long _memoryBudget = CharBatchRing.DEFAULT_MEMORY_BUDGET;
+    private int _top;
+    private int _topCapacity;
+    private boolean _cardinality;
+    private int _precision = HyperLogLog.DEFAULT_PRECISION;
+    private int _readers;
+    private String _output;
+    private OutputFormat _format = OutputFormat.TEXT;
+    private SortOrder _sort = SortOrder.NONE;
+    private String _cacheDirectory;
+    private boolean _cacheClear;
+    private boolean _cacheVerifyContent;
+    private int _serve;
+    private int _connect;
+    private int _jobs = DEFAULT_SERVER_JOBS;
+    private int _queue = DEFAULT_SERVER_QUEUE;
+    private long _maxJobBytes;
+    private boolean _shutdown;
+    private String _metrics;
+    private boolean _stream;
+    private long _snapshotIntervalMillis = DEFAULT_SNAPSHOT_INTERVAL_MILLIS;
+    private Window _window = Window.CUMULATIVE;
+    private long _windowSizeMillis;
+    private String _checkpointDirectory;
+    private long _checkpointIntervalMillis;
+    private long _spillBudget;
+    private String _spillDirectory;
+    private int _ngrams;
+    private int _coordinate;
+    private String _joinHost;
+    private int _joinPort;
+    private long _shardSize = ShardCoordinator.DEFAULT_SHARD_SIZE;
+    private long _workerTimeoutMillis = ShardCoordinator.DEFAULT_WORKER_TIMEOUT_MILLIS;
+
+    //endregion
+
+    //region Constructor
+
+    private RunOptions() {
+    }
+
+    //endregion
+
+    //region Parsing
+
+    /**
+     * Splits the command line arguments into options and input file paths.
+     *
+     * @throws IllegalArgumentException when an option is unknown or has an invalid value.
+     */
+    static RunOptions parse(String[] args) throws IllegalArgumentException {
+        if (args == null) throw new IllegalArgumentException("No file path provided.");
+
+        final RunOptions options = new RunOptions();
+        final List<String> filePath = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith(OPTION_PREFIX)) {
+                filePath.add(arg);
+                continue;
+            }
+
+            final int separator = arg.indexOf('=');
+            final String name = separator < 0 ? arg.substring(OPTION_PREFIX.length()) : arg.substring(OPTION_PREFIX.length(), separator);
+            final String value = separator < 0 ? "" : arg.substring(separator + 1);
+
+            if (READER_OPTION.equals(name)) {
+                options._readerMode = parseEnum(ReaderMode.class, name, value);
+            } else if (TRANSPORT_OPTION.equals(name)) {
+                options._transport = parseEnum(Transport.class, name, value);
+            } else if (MEMORY_BUDGET_OPTION.equals(name)) {
+                options._memoryBudget = parseSize(name, value);
+            } else if (TOP_OPTION.equals(name)) {
+                options._top = parsePositiveInt(name, value);
+            } else if (TOP_CAPACITY_OPTION.equals(name)) {
+                options._topCapacity = parsePositiveInt(name, value);
+            } else if (CARDINALITY_OPTION.equals(name)) {
+                options._cardinality = parseFlag(name, value);
+            } else if (PRECISION_OPTION.equals(name)) {
+                options._precision = parsePositiveInt(name, value);
+            } else if (READERS_OPTION.equals(name)) {
+                options._readers = parsePositiveInt(name, value);
+            } else if (OUTPUT_OPTION.equals(name)) {
+                options._output = parsePath(name, value);
+            } else if (FORMAT_OPTION.equals(name)) {
+                options._format = parseEnum(OutputFormat.class, name, value);
+            } else if (SORT_OPTION.equals(name)) {
+                options._sort = parseEnum(SortOrder.class, name, value);
+            } else if (CACHE_OPTION.equals(name)) {
+                options._cacheDirectory = parsePath(name, value);
+            } else if (SERVE_OPTION.equals(name)) {
+                options._serve = parsePort(name, value);
+            } else if (CONNECT_OPTION.equals(name)) {
+                options._connect = parsePort(name, value);
+            } else if (JOBS_OPTION.equals(name)) {
+                options._jobs = parsePositiveInt(name, value);
+            } else if (QUEUE_OPTION.equals(name)) {
+                options._queue = parseNonNegativeInt(name, value);
+            } else if (MAX_JOB_BYTES_OPTION.equals(name)) {
+                options._maxJobBytes = parseSize(name, value);
+            } else if (SHUTDOWN_OPTION.equals(name)) {
+                options._shutdown = parseFlag(name, value);
+            } else if (EXECUTION_OPTION.equals(name)) {
+                options._execution = parseEnum(Execution.class, name, value);
+            } else if (COUNTS_OPTION.equals(name)) {
+                options._countStore = parseEnum(CountStore.class, name, value);
+            } else if (TOKENIZER_OPTION.equals(name)) {
+                options._tokenizer = parseEnum(Tokenizer.class, name, value);
+            } else if (ENCODING_OPTION.equals(name)) {
+                options._encoding = parseCharset(name, value);
+            } else if (STREAM_OPTION.equals(name)) {
+                options._stream = parseFlag(name, value);
+            } else if (SNAPSHOT_INTERVAL_OPTION.equals(name)) {
+                options._snapshotIntervalMillis = parseDuration(name, value);
+            } else if (WINDOW_OPTION.equals(name)) {
+                options._window = parseEnum(Window.class, name, value);
+            } else if (WINDOW_SIZE_OPTION.equals(name)) {
+                options._windowSizeMillis = parseDuration(name, value);
+            } else if (CHECKPOINT_OPTION.equals(name)) {
+                options._checkpointDirectory = parsePath(name, value);
+            } else if (CHECKPOINT_INTERVAL_OPTION.equals(name)) {
+                options._checkpointIntervalMillis = parseDuration(name, value);
+            } else if (SPILL_BUDGET_OPTION.equals(name)) {
+                options._spillBudget = parseSize(name, value);
+            } else if (SPILL_DIRECTORY_OPTION.equals(name)) {
+                options._spillDirectory = parsePath(name, value);
+            } else if (NGRAMS_OPTION.equals(name)) {
+                options._ngrams = parsePositiveInt(name, value);
+            } else if (COORDINATE_OPTION.equals(name)) {
+                options._coordinate = parsePort(name, value);
+            } else if (JOIN_OPTION.equals(name)) {
+                final int portSeparator = value.lastIndexOf(':');
+                if (portSeparator <= 0) throw new IllegalArgumentException("Option --" + name + " needs a host:port address.");
+                options._joinHost = value.substring(0, portSeparator);
+                options._joinPort = parsePort(name, value.substring(portSeparator + 1));
+            } else if (SHARD_SIZE_OPTION.equals(name)) {
+                options._shardSize = parseSize(name, value);
+            } else if (WORKER_TIMEOUT_OPTION.equals(name)) {
+                options._workerTimeoutMillis = parseDuration(name, value);
+            } else if (METRICS_OPTION.equals(name)) {
+                options._metrics = parsePath(name, value);
+            } else if (CACHE_CLEAR_OPTION.equals(name)) {
+                options._cacheClear = parseFlag(name, value);
+            } else if (CACHE_VERIFY_CONTENT_OPTION.equals(name)) {
+                options._cacheVerifyContent = parseFlag(name, value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+
+        options._filePath = filePath.toArray(new String[0]);
+        if (options._topCapacity == 0) {
+            options._topCapacity = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_TOP_CAPACITY, (long) options._top * COUNTERS_PER_TOP_WORD));
+        }
+        if (options._top > options._topCapacity) {
+            throw new IllegalArgumentException("Option --" + TOP_CAPACITY_OPTION + " cannot be smaller than --" + TOP_OPTION + ".");
+        }
+        if (options._top > 0 && options._cardinality) {
+            throw new IllegalArgumentException("Options --" + TOP_OPTION + " and --" + CARDINALITY_OPTION + " cannot be combined.");
+        }
+        if (options.countMode() != CountMode.EXACT
+                && (options._output != null || options._format != OutputFormat.TEXT || options._sort != SortOrder.NONE)) {
+            throw new IllegalArgumentException("Options --" + OUTPUT_OPTION + ", --" + FORMAT_OPTION + " and --" + SORT_OPTION
+                    + " only apply to the exact count.");
+        }
+        if ((options._cacheClear || options._cacheVerifyContent) && options._cacheDirectory == null) {
+            throw new IllegalArgumentException("Options --" + CACHE_CLEAR_OPTION + " and --" + CACHE_VERIFY_CONTENT_OPTION
+                    + " need --" + CACHE_OPTION + ".");
+        }
+        if (options._serve > 0 && options._connect > 0) {
+            throw new IllegalArgumentException("Options --" + SERVE_OPTION + " and --" + CONNECT_OPTION + " cannot be combined.");
+        }
+        if (options._serve > 0 && options._filePath.length > 0) {
+            throw new IllegalArgumentException("Option --" + SERVE_OPTION + " takes no input files. The clients send them.");
+        }
+        if (options._shutdown && options._connect == 0) {
+            throw new IllegalArgumentException("Option --" + SHUTDOWN_OPTION + " needs --" + CONNECT_OPTION + ".");
+        }
+        if (options._precision < HyperLogLog.MIN_PRECISION || options._precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("Option --" + PRECISION_OPTION + " must be between "
+                    + HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION + ".");
+        }
+        validateStream(options);
+        validateCheckpoint(options);
+        validateSpill(options);
+        validateNGrams(options);
+        validateDistributed(options);
+        if (options._countStore == CountStore.OFF_HEAP
+                && (options._stream || options._cacheDirectory != null || options._checkpointDirectory != null)) {
+            throw new IllegalArgumentException("Option --" + COUNTS_OPTION + "=off-heap cannot be combined with --" + STREAM_OPTION
+                    + ", --" + CACHE_OPTION + " or --" + CHECKPOINT_OPTION + ".");
+        }
+        return options;
+    }
+
+    private static void validateSpill(RunOptions options) {
+        if (options._spillBudget == 0) {
+            if (options._spillDirectory != null) {
+                throw new IllegalArgumentException("Option --" + SPILL_DIRECTORY_OPTION + " needs --" + SPILL_BUDGET_OPTION + ".");
+            }
+            return;
+        }
+        if (options.countMode() != CountMode.EXACT) {
+            throw new IllegalArgumentException("Option --" + SPILL_BUDGET_OPTION + " only applies to the exact count.");
+        }
+        if (options._stream || options._serve > 0 || options._connect > 0 || options._cacheDirectory != null
+                || options._checkpointDirectory != null) {
+            throw new IllegalArgumentException("Option --" + SPILL_BUDGET_OPTION + " cannot be combined with --" + STREAM_OPTION
+                    + ", --" + SERVE_OPTION + ", --" + CONNECT_OPTION + ", --" + CACHE_OPTION + " or --" + CHECKPOINT_OPTION + ".");
+        }
+        if (options._sort == SortOrder.COUNT || options._format == OutputFormat.BINARY) {
+            throw new IllegalArgumentException("Option --" + SPILL_BUDGET_OPTION + " writes the counts by word as it merges them."
+                    + " It cannot be combined with --" + SORT_OPTION + "=count or --" + FORMAT_OPTION + "=binary.");
+        }
+        if (options._countStore != CountStore.TABLES) {
+            throw new IllegalArgumentException("Option --" + SPILL_BUDGET_OPTION + " keeps a table per parser on the heap."
+                    + " It cannot be combined with another --" + COUNTS_OPTION + ".");
+        }
+        if (options._spillDirectory == null) options._spillDirectory = System.getProperty("java.io.tmpdir");
+    }
+
+    private static void validateNGrams(RunOptions options) {
+        if (options._ngrams == 0) return;
+        if (options._ngrams < NGramCounts.MIN_ORDER || options._ngrams > NGramCounts.MAX_ORDER) {
+            throw new IllegalArgumentException("Option --" + NGRAMS_OPTION + " must be between " + NGramCounts.MIN_ORDER
+                    + " and " + NGramCounts.MAX_ORDER + ".");
+        }
+        if (options.countMode() != CountMode.EXACT) {
+            throw new IllegalArgumentException("Option --" + NGRAMS_OPTION + " only applies to the exact count.");
+        }
+        if (options._stream || options._serve > 0 || options._connect > 0 || options._cacheDirectory != null
+                || options._checkpointDirectory != null || options._spillBudget > 0) {
+            throw new IllegalArgumentException("Option --" + NGRAMS_OPTION + " cannot be combined with --" + STREAM_OPTION
+                    + ", --" + SERVE_OPTION + ", --" + CONNECT_OPTION + ", --" + CACHE_OPTION + ", --" + CHECKPOINT_OPTION
+                    + " or --" + SPILL_BUDGET_OPTION + ".");
+        }
+        if (options._countStore == CountStore.OFF_HEAP) {
+            throw new IllegalArgumentException("Option --" + NGRAMS_OPTION + " counts the words into a dictionary."
+                    + " It cannot be combined with --" + COUNTS_OPTION + "=off-heap.");
+        }
+        if (options._readerMode != ReaderMode.MAPPED || !MappedFileReader.supportsCharset(options._encoding)) {
+            throw new IllegalArgumentException("Option --" + NGRAMS_OPTION + " cuts the n-grams from chunks. It needs --"
+                    + READER_OPTION + "=mapped and an --" + ENCODING_OPTION + " that chunks can be cut in.");
+        }
+    }
+
+    private static void validateDistributed(RunOptions options) {
+        if (options._coordinate == 0) {
+            if (options._shardSize != ShardCoordinator.DEFAULT_SHARD_SIZE
+                    || options._workerTimeoutMillis != ShardCoordinator.DEFAULT_WORKER_TIMEOUT_MILLIS) {
+                throw new IllegalArgumentException("Options --" + SHARD_SIZE_OPTION + " and --" + WORKER_TIMEOUT_OPTION
+                        + " need --" + COORDINATE_OPTION + ".");
+            }
+            if (options._joinHost == null) return;
+        }
+        final String option = options._coordinate > 0 ? COORDINATE_OPTION : JOIN_OPTION;
+        if (options._coordinate > 0 && options._joinHost != null) {
+            throw new IllegalArgumentException("Options --" + COORDINATE_OPTION + " and --" + JOIN_OPTION + " cannot be combined.");
+        }
+        if (options.countMode() != CountMode.EXACT) {
+            throw new IllegalArgumentException("Option --" + option + " only applies to the exact count.");
+        }
+        if (options._stream || options._serve > 0 || options._connect > 0 || options._cacheDirectory != null
+                || options._checkpointDirectory != null || options._spillBudget > 0 || options._ngrams > 0) {
+            throw new IllegalArgumentException("Option --" + option + " cannot be combined with --" + STREAM_OPTION
+                    + ", --" + SERVE_OPTION + ", --" + CONNECT_OPTION + ", --" + CACHE_OPTION + ", --" + CHECKPOINT_OPTION
+                    + ", --" + SPILL_BUDGET_OPTION + " or --" + NGRAMS_OPTION + ".");
+        }
+        if (options._countStore != CountStore.TABLES) {
+            throw new IllegalArgumentException("Option --" + option + " sends and merges the counts in tables."
+                    + " It cannot be combined with another --" + COUNTS_OPTION + ".");
+        }
+        if (options._readerMode != ReaderMode.MAPPED || !MappedFileReader.supportsCharset(options._encoding)) {
+            throw new IllegalArgumentException("Option --" + option + " cuts the files into ranges. It needs --"
+                    + READER_OPTION + "=mapped and an --" + ENCODING_OPTION + " that chunks can be cut in.");
+        }
+        if (options._joinHost == null) return;
+        if (options._filePath.length > 0) {
+            throw new IllegalArgumentException("Option --" + JOIN_OPTION + " takes no input files. The coordinator sends them.");
+        }
+        if (options._output != null || options._format != OutputFormat.TEXT || options._sort != SortOrder.NONE
+                || options._metrics != null) {
+            throw new IllegalArgumentException("Option --" + JOIN_OPTION + " sends the counts to the coordinator."
+                    + " It cannot be combined with --" + OUTPUT_OPTION + ", --" + FORMAT_OPTION + ", --" + SORT_OPTION
+                    + " or --" + METRICS_OPTION + ".");
+        }
+    }
+
+    private static void validateCheckpoint(RunOptions options) {
+        if (options._checkpointDirectory == null) {
+            if (options._checkpointIntervalMillis > 0) {
+                throw new IllegalArgumentException("Option --" + CHECKPOINT_INTERVAL_OPTION + " needs --" + CHECKPOINT_OPTION + ".");
+            }
+            return;
+        }
+        if (options.countMode() != CountMode.EXACT) {
+            throw new IllegalArgumentException("Option --" + CHECKPOINT_OPTION + " only applies to the exact count.");
+        }
+        if (options._stream || options._serve > 0 || options._connect > 0 || options._cacheDirectory != null) {
+            throw new IllegalArgumentException("Option --" + CHECKPOINT_OPTION + " cannot be combined with --" + STREAM_OPTION
+                    + ", --" + SERVE_OPTION + ", --" + CONNECT_OPTION + " or --" + CACHE_OPTION + ".");
+        }
+        if (options._checkpointIntervalMillis == 0) options._checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+    }
+
+    private static void validateStream(RunOptions options) {
+        if (!options._stream) {
+            if (options._window != Window.CUMULATIVE || options._windowSizeMillis > 0
+                    || options._snapshotIntervalMillis != DEFAULT_SNAPSHOT_INTERVAL_MILLIS) {
+                throw new IllegalArgumentException("Options --" + SNAPSHOT_INTERVAL_OPTION + ", --" + WINDOW_OPTION
+                        + " and --" + WINDOW_SIZE_OPTION + " need --" + STREAM_OPTION + ".");
+            }
+            return;
+        }
+        if (options.countMode() != CountMode.EXACT) {
+            throw new IllegalArgumentException("Option --" + STREAM_OPTION + " only applies to the exact count.");
+        }
+        if (options._serve > 0 || options._connect > 0 || options._cacheDirectory != null) {
+            throw new IllegalArgumentException("Option --" + STREAM_OPTION + " cannot be combined with --" + SERVE_OPTION
+                    + ", --" + CONNECT_OPTION + " or --" + CACHE_OPTION + ".");
+        }
+        if (options._filePath.length > 1) {
+            throw new IllegalArgumentException("Option --" + STREAM_OPTION + " reads a single input: a file, a pipe, or "
+                    + STANDARD_INPUT + " for the standard input.");
+        }
+        if (options._window == Window.CUMULATIVE && options._windowSizeMillis > 0) {
+            throw new IllegalArgumentException("Option --" + WINDOW_SIZE_OPTION + " needs a tumbling or sliding --" + WINDOW_OPTION + ".");
+        }
+        if (options._window != Window.CUMULATIVE && options._windowSizeMillis == 0) {
+            throw new IllegalArgumentException("A " + options._window.name().toLowerCase(Locale.ROOT) + " --" + WINDOW_OPTION
+                    + " needs --" + WINDOW_SIZE_OPTION + ".");
+        }
+        if (options._window == Window.SLIDING && options._windowSizeMillis % options._snapshotIntervalMillis != 0) {
+            throw new IllegalArgumentException("Option --" + WINDOW_SIZE_OPTION + " of a sliding window must be a multiple of --"
+                    + SNAPSHOT_INTERVAL_OPTION + ".");
+        }
+    }
+
+    private static String parsePath(String name, String value) {
+        if (value.isEmpty()) throw new IllegalArgumentException("Option --" + name + " needs a path.");
+        return value;
+    }
+
+    /**
+     * Parses an on/off option. The option on its own, without a value, turns it on.
+     */
+    private static boolean parseFlag(String name, String value) {
+        if (value.isEmpty() || "true".equalsIgnoreCase(value)) return true;
+        if ("false".equalsIgnoreCase(value)) return false;
+        throw new IllegalArgumentException("Invalid value '" + value + "' for option --" + name + ".");
+    }
+
+    private static int parsePositiveInt(String name, String value) {
+        try {
+            final int number = Integer.parseInt(value);
+            if (number > 0) return number;
+        } catch (NumberFormatException e) {
+            //Reported below, the same way as a number that is not positive.
+        }
+        throw new IllegalArgumentException("Invalid value '" + value + "' for option --" + name + ".");
+    }
+
+    private static int parseNonNegativeInt(String name, String value) {
+        try {
+            final int number = Integer.parseInt(value);
+            if (number >= 0) return number;
+        } catch (NumberFormatException e) {
+            //Reported below, the same way as a negative number.
+        }
+        throw new IllegalArgumentException("Invalid value '" + value + "' for option --" + name + ".");
+    }
+
+    private static int parsePort(String name, String value) {
+        final int port = parsePositiveInt(name, value);
+        if (port > MAX_PORT) throw new IllegalArgumentException("Invalid value '" + value + "' for option --" + name + ".");
+        return port;
+    }
+
+    /**
+     * Parses a positive number of bytes, with an optional K, M or G suffix.
+     */
+    private static long parseSize(String name, String value) {
+        final String invalidValue = "Invalid value '" + value + "' for option --" + name + ".";
+        if (value.isEmpty()) throw new IllegalArgumentException(invalidValue);
+
+        long multiplier = 1;
+        String digits = value;
+        switch (Character.toUpperCase(value.charAt(value.length() - 1))) {
+            case 'K':
+                multiplier = 1024L;
+                break;
+            case 'M':
+                multiplier = 1024L * 1024;
+                break;
+            case 'G':
+                multiplier = 1024L * 1024 * 1024;
+                break;
+            default:
+                break;
+        }
+        if (multiplier != 1) digits = value.substring(0, value.length() - 1);
+
+        try {
+            final long size = Long.parseLong(digits) * multiplier;
+            if (size <= 0) throw new IllegalArgumentException(invalidValue);
+            return size;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(invalidValue);
+        }
+    }
+
+    /**
+     * Parses a positive duration in milliseconds, with an ms, s, m or h suffix. A plain number is in seconds.
+     */
+    private static long parseDuration(String name, String value) {
+        final String invalidValue = "Invalid value '" + value + "' for option --" + name + ".";
+        final String lowerCase = value.toLowerCase(Locale.ROOT);
+        long multiplier = 1000L;
+        String digits = lowerCase;
+        if (lowerCase.endsWith("ms")) {
+            multiplier = 1L;
+            digits = lowerCase.substring(0, lowerCase.length() - 2);
+        } else if (lowerCase.endsWith("s")) {
+            digits = lowerCase.substring(0, lowerCase.length() - 1);
+        } else if (lowerCase.endsWith("m")) {
+            multiplier = 60_000L;
+            digits = lowerCase.substring(0, lowerCase.length() - 1);
+        } else if (lowerCase.endsWith("h")) {
+            multiplier = 3_600_000L;
+            digits = lowerCase.substring(0, lowerCase.length() - 1);
+        }
+
+        try {
+            final long number = Long.parseLong(digits);
+            if (number <= 0 || number > Long.MAX_VALUE / multiplier) throw new IllegalArgumentException(invalidValue);
+            return number * multiplier;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(invalidValue);
+        }
+    }
+
+    private static Charset parseCharset(String name, String value) {
+        try {
+            return Charset.forName(value);
+        } catch (IllegalArgumentException e) {
+            //An illegal or unsupported charset name, reported like any other invalid value.
+            throw new IllegalArgumentException("Invalid value '" + value + "' for option --" + name + ".");
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        //A dash can stand for the underscore, as in --counts=off-heap.
+        final String constantName = value.replace('-', '_');
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(constantName)) return constant;
+        }
+        throw new IllegalArgumentException("Invalid value '" + value + "' for option --" + name + ".");
+    }
+
+    //endregion
+
+    //region Getters
+
+    String[] filePath() {
+        return _filePath;
+    }
+
+    ReaderMode readerMode() {
+        return _readerMode;
+    }
+
+    Transport transport() {
+        return _transport;
+    }
+
+    long memoryBudget() {
+        return _memoryBudget;
+    }
+
+    Execution execution() {
+        return _execution;
+    }
+
+    CountStore countStore() {
+        return _countStore;
+    }
+
+    Tokenizer tokenizer() {
+        return _tokenizer;
+    }
+
+    /**
+     * @return the charset of the input files. UTF-8 unless --encoding names another, whatever the platform default.
+     */
+    Charset encoding() {
+        return _encoding;
+    }
+
+    CountMode countMode() {
+        if (_top > 0) return CountMode.TOP;
+        if (_cardinality) return CountMode.CARDINALITY;
+        return CountMode.EXACT;
+    }
+
+    /**
+     * @return the number of most frequent words to report in top-K mode.
+     */
+    int top() {
+        return _top;
+    }
+
+    /**
+     * @return the number of Space-Saving counters each parser keeps in top-K mode.
+     */
+    int topCapacity() {
+        return _topCapacity;
+    }
+
+    /**
+     * @return the HyperLogLog precision in cardinality mode.
+     */
+    int precision() {
+        return _precision;
+    }
+
+    /**
+     * @return the number of reader threads asked for, or 0 to pick one from the number of cores.
+     */
+    int readers() {
+        return _readers;
+    }
+
+    /**
+     * @return the file to write the counts to, or null for the standard output.
+     */
+    String output() {
+        return _output;
+    }
+
+    OutputFormat format() {
+        return _format;
+    }
+
+    SortOrder sort() {
+        return _sort;
+    }
+
+    /**
+     * @return the directory of the per-file count cache, or null when the cache is not used.
+     */
+    String cacheDirectory() {
+        return _cacheDirectory;
+    }
+
+    boolean cacheClear() {
+        return _cacheClear;
+    }
+
+    boolean cacheVerifyContent() {
+        return _cacheVerifyContent;
+    }
+
+    /**
+     * @return the local port to serve count jobs on, or 0 to count the input files and exit.
+     */
+    int serve() {
+        return _serve;
+    }
+
+    /**
+     * @return the local port of the count server to send the job to, or 0 to count in this process.
+     */
+    int connect() {
+        return _connect;
+    }
+
+    /**
+     * @return the number of jobs the count server runs at the same time.
+     */
+    int jobs() {
+        return _jobs;
+    }
+
+    /**
+     * @return the number of jobs the count server lets wait, beyond the running ones, before it turns new ones away.
+     */
+    int queue() {
+        return _queue;
+    }
+
+    /**
+     * @return the total size of the input files of one job the count server accepts, or 0 for no limit.
+     */
+    long maxJobBytes() {
+        return _maxJobBytes;
+    }
+
+    /**
+     * @return whether to ask the count server of --connect to stop, instead of sending it a job.
+     */
+    boolean shutdown() {
+        return _shutdown;
+    }
+
+    /**
+     * @return the file to write the JSON report of the pipeline metrics to, or null for no report.
+     */
+    String metrics() {
+        return _metrics;
+    }
+
+    /**
+     * @return the directory to keep the checkpoint of the count in, or null for no checkpoints.
+     */
+    String checkpointDirectory() {
+        return _checkpointDirectory;
+    }
+
+    /**
+     * @return the shortest time between two checkpoints, when --checkpoint is given.
+     */
+    long checkpointIntervalMillis() {
+        return _checkpointIntervalMillis;
+    }
+
+    /**
+     * @return the heap the parsers may count in before they spill sorted runs to disk, or 0 to count in memory.
+     */
+    long spillBudget() {
+        return _spillBudget;
+    }
+
+    /**
+     * @return the directory of the sorted runs, when --spill-budget is given. The temporary directory by default.
+     */
+    String spillDirectory() {
+        return _spillDirectory;
+    }
+
+    /**
+     * @return the highest order of n-grams to count with the words, or 0 to count the words only.
+     */
+    int ngrams() {
+        return _ngrams;
+    }
+
+    /**
+     * @return the port to coordinate a distributed count of the input files on, or 0 to count in this process.
+     */
+    int coordinate() {
+        return _coordinate;
+    }
+
+    /**
+     * @return the host of the coordinator to count shards for, or null to count the input files in this process.
+     */
+    String joinHost() {
+        return _joinHost;
+    }
+
+    /**
+     * @return the port of the coordinator to count shards for, when --join is given.
+     */
+    int joinPort() {
+        return _joinPort;
+    }
+
+    /**
+     * @return the number of bytes of input the coordinator hands a worker at a time.
+     */
+    long shardSize() {
+        return _shardSize;
+    }
+
+    /**
+     * @return the time a worker may go without a heartbeat before the coordinator gives its shard to another one.
+     */
+    long workerTimeoutMillis() {
+        return _workerTimeoutMillis;
+    }
+
+    /**
+     * @return whether to count a live stream, with snapshots while it runs, instead of files to their end.
+     */
+    boolean stream() {
+        return _stream;
+    }
+
+    /**
+     * @return the input of --stream: the single file path given, or the standard input without one.
+     */
+    String streamInput() {
+        return _filePath.length == 0 ? STANDARD_INPUT : _filePath[0];
+    }
+
+    long snapshotIntervalMillis() {
+        return _snapshotIntervalMillis;
+    }
+
+    Window window() {
+        return _window;
+    }
+
+    /**
+     * @return the length of a tumbling or sliding window, or 0 for a cumulative one.
+     */
+    long windowSizeMillis() {
+        return _windowSizeMillis;
+    }
+
+    //endregion
+}
@@ -0,0 +1,406 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The coordinator of a distributed count, for inputs too large for the cores and memory of one machine.
+ * <p>
+ * The input is cut into shards of about the shard size each: small files are grouped, and plain files larger than
+ * a shard are cut into ranges that start and end right after a delimiter byte. ShardWorkers in other JVMs, on this
+ * machine or others, connect over TCP and take one shard at a time, so that faster workers count more shards.
+ * <p>
+ * Every worker counts its shard into as many partitions as the coordinator has, split by word hash the way the
+ * PartitionedWordCounts of a single count are, and sends them back encoded, see ShardProtocol. Partition i of
+ * every shard is merged into partition i of the coordinator, on a pool of merge threads, as soon as the shard is
+ * in. The partitions hold disjoint sets of words, so they merge in parallel, and the merged partitions are the
+ * result, like the merge of the parsers of a single count.
+ * <p>
+ * A worker that fails a shard, drops its connection or misses its heartbeats for the worker timeout loses its
+ * shard, which goes back to the front of the queue for the next worker. A shard only counts once all of its
+ * partitions are in, so the part of a shard from a lost worker is never merged. A shard that fails on
+ * MAX_ATTEMPTS workers fails the count. The coordinator waits for workers as long as there are shards left.
+ * <p>
+ * The connections are neither authenticated nor encrypted, so the workers and the coordinator must run on
+ * trusted networks.
+ */
+final class ShardCoordinator {
+
+    //region Static Final Class Variables
+
+    static final long DEFAULT_SHARD_SIZE = 64L * 1024 * 1024;
+    static final long DEFAULT_WORKER_TIMEOUT_MILLIS = 30_000L;
+    static final int MAX_ATTEMPTS = 3;
+
+    //A worker sends a few heartbeats per timeout, so that a late one does not cost it its shard.
+    private static final int HEARTBEATS_PER_TIMEOUT = 4;
+    private static final long POLL_MILLIS = 100L;
+    private static final long DONE_DELAY_MILLIS = 2_000L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Shard Task
+
+    /**
+     * A shard and how many workers it was lost by so far.
+     */
+    private static final class ShardTask {
+
+        private final int _id;
+        private final FileRange[] _ranges;
+        private int _attempts;
+
+        private ShardTask(int id, FileRange[] ranges) {
+            _id = id;
+            _ranges = ranges;
+        }
+    }
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final int _fileCount;
+    private final int _shardCount;
+    private final long _workerTimeoutMillis;
+    private final ServerSocket _server;
+    private final LinkedBlockingDeque<ShardTask> _pending = new LinkedBlockingDeque<>();
+    private final WordCountTable[] _partitions;
+    private final ExecutorService _handlers = Executors.newCachedThreadPool(new DaemonThreadFactory("shard-handler-"));
+    private final ExecutorService _mergers;
+    private final Set<Socket> _connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger _unmerged;
+    private final CountDownLatch _finished = new CountDownLatch(1);
+
+    //endregion
+
+    //region Statistics
+
+    private final AtomicInteger _workers = new AtomicInteger();
+    private final AtomicInteger _reassigned = new AtomicInteger();
+    private volatile long _lastResultNanos;
+    private volatile IOException _failure;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * Plans the shards of the files and starts to listen for workers, on every network interface.
+     *
+     * @param filePath            the input files, which must be regular files the workers can read at the same paths.
+     * @param port                the port to listen on, or 0 for any free port.
+     * @param partitionCount      the number of partitions the workers count into, and merge threads.
+     * @param shardSize           the number of bytes of input to hand a worker at a time.
+     * @param workerTimeoutMillis the time a worker may go without a heartbeat before its shard is taken away.
+     * @throws IllegalArgumentException when an input is not a regular file.
+     */
+    ShardCoordinator(String[] filePath, int port, int partitionCount, long shardSize, long workerTimeoutMillis) throws IOException {
+        if (filePath == null || filePath.length == 0) throw new IllegalArgumentException("No file path provided.");
+        if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+        if (partitionCount > PartitionedWordCounts.MAX_PARTITIONS) {
+            throw new IllegalArgumentException("'partitionCount' cannot be larger than " + PartitionedWordCounts.MAX_PARTITIONS + ".");
+        }
+        if (shardSize <= 0) throw new IllegalArgumentException("'shardSize' must be positive.");
+        if (workerTimeoutMillis < HEARTBEATS_PER_TIMEOUT) {
+            throw new IllegalArgumentException("'workerTimeoutMillis' must be at least " + HEARTBEATS_PER_TIMEOUT + ".");
+        }
+
+        final List<FileRange[]> shards = planShards(filePath, shardSize);
+        for (int index = 0; index < shards.size(); index++) _pending.add(new ShardTask(index, shards.get(index)));
+        _fileCount = filePath.length;
+        _shardCount = shards.size();
+        _unmerged = new AtomicInteger(shards.size());
+        _workerTimeoutMillis = workerTimeoutMillis;
+        _partitions = new WordCountTable[partitionCount];
+        for (int partition = 0; partition < partitionCount; partition++) _partitions[partition] = new WordCountTable();
+        _mergers = Executors.newFixedThreadPool(partitionCount, new DaemonThreadFactory("shard-merger-"));
+        _server = new ServerSocket();
+        _server.bind(new InetSocketAddress(port));
+    }
+
+    //endregion
+
+    //region Planning
+
+    /**
+     * Cuts the files into shards of about shardSize bytes each. Small files are grouped into shards, in the order
+     * given, and large plain files are cut into ranges that end right after a delimiter. A compressed file is never
+     * cut, however large it is.
+     *
+     * @return the files and ranges of every shard, with absolute paths.
+     */
+    static List<FileRange[]> planShards(String[] filePath, long shardSize) throws IOException {
+        final List<FileRange[]> shards = new ArrayList<>();
+        final List<FileRange> group = new ArrayList<>();
+        long groupBytes = 0;
+        for (String path : filePath) {
+            final Path file = Paths.get(path).toAbsolutePath();
+            if (!Files.isRegularFile(file)) throw new IllegalArgumentException("A distributed count reads regular files only: " + path);
+            final long size = Files.size(file);
+            if (size > shardSize && CompressedInput.detect(file.toString()) == CompressedInput.Format.PLAIN) {
+                cutRanges(file, size, shardSize, shards);
+                continue;
+            }
+            group.add(FileRange.whole(file.toString()));
+            groupBytes += size;
+            if (groupBytes >= shardSize) {
+                shards.add(group.toArray(new FileRange[0]));
+                group.clear();
+                groupBytes = 0;
+            }
+        }
+        if (!group.isEmpty()) shards.add(group.toArray(new FileRange[0]));
+        return shards;
+    }
+
+    private static void cutRanges(Path file, long size, long shardSize, List<FileRange[]> shards) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = 0;
+            while (start < size) {
+                final long end = size - start <= shardSize ? size : boundaryAfter(channel, start + shardSize, size);
+                shards.add(new FileRange[]{new FileRange(file.toString(), start, end)});
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * @return the position right after the first delimiter at or after 'position', or the size of the file.
+     */
+    private static long boundaryAfter(FileChannel channel, long position, long size) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long offset = position;
+        while (offset < size) {
+            buffer.clear();
+            final int read = channel.read(buffer, offset);
+            if (read < 0) break;
+            for (int index = 0; index < read; index++) {
+                if (MappedFileReader.isDelimiter(buffer.get(index))) return offset + index + 1;
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Hands out the shards to the workers that connect, and waits until every shard is counted and merged.
+     *
+     * @throws IOException when a shard failed on MAX_ATTEMPTS workers.
+     */
+    WordCountResult count() throws IOException, InterruptedException {
+        final long start = System.nanoTime();
+        _handlers.submit(this::acceptWorkers);
+        try {
+            _finished.await();
+        } finally {
+            stop();
+        }
+        if (_failure != null) throw _failure;
+
+        final long end = System.nanoTime();
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, _lastResultNanos - start);
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, end - _lastResultNanos);
+        return WordCountResult.exact(PartitionedWordCounts.of(_partitions), _fileCount, end - start, metrics);
+    }
+
+    private void acceptWorkers() {
+        while (!_server.isClosed()) {
+            try {
+                final Socket socket = _server.accept();
+                _connections.add(socket);
+                _handlers.submit(() -> serveWorker(socket));
+            } catch (IOException e) {
+                if (!_server.isClosed()) ConsoleOutput.printIOException("Cannot accept a shard worker.", e);
+            }
+        }
+    }
+
+    /**
+     * Hands shards to one worker until every shard is done, or the worker is lost.
+     */
+    private void serveWorker(Socket socket) {
+        final String worker = String.valueOf(socket.getRemoteSocketAddress());
+        ShardTask shard = null;
+        try {
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, _workerTimeoutMillis));
+            socket.setTcpNoDelay(true);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            ShardProtocol.readHello(input);
+            ConsoleOutput.printMessageWithGaps("Shard worker " + _workers.incrementAndGet() + " joined from " + worker + ".");
+
+            while ((shard = nextShard()) != null) {
+                final int heartbeatMillis = (int) Math.max(1, Math.min(Integer.MAX_VALUE, _workerTimeoutMillis / HEARTBEATS_PER_TIMEOUT));
+                ShardProtocol.writeShard(output, new ShardProtocol.Shard(shard._id, _partitions.length, heartbeatMillis, shard._ranges));
+                final String failure = awaitResult(input, shard);
+                if (failure != null) reassign(shard, worker + " failed it: " + failure);
+                shard = null;
+            }
+            output.writeByte(ShardProtocol.DONE);
+            output.flush();
+        } catch (IOException e) {
+            if (shard != null) reassign(shard, worker + " was lost: " + e);
+        } catch (InterruptedException e) {
+            if (shard != null) reassign(shard, "the coordinator stopped.");
+            Thread.currentThread().interrupt();
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * @return the next shard to count, once there is one, or null when the count is over.
+     */
+    private ShardTask nextShard() throws InterruptedException {
+        while (_finished.getCount() > 0) {
+            final ShardTask shard = _pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (shard != null) return shard;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the heartbeats of a worker until the result of its shard comes in, and merges the result.
+     *
+     * @return null for a shard that was counted, or the reason the worker gave for failing it.
+     */
+    private String awaitResult(DataInputStream input, ShardTask shard) throws IOException {
+        while (true) {
+            final byte type = input.readByte();
+            if (type == ShardProtocol.HEARTBEAT) continue;
+            if (type != ShardProtocol.RESULT && type != ShardProtocol.FAILED) throw new IOException("Unexpected message " + type + ".");
+            final int id = input.readInt();
+            if (id != shard._id) throw new IOException("Result of shard " + id + " instead of shard " + shard._id + ".");
+            if (type == ShardProtocol.FAILED) return input.readUTF();
+            merge(shard, ShardProtocol.readPartitions(input, _partitions.length));
+            return null;
+        }
+    }
+
+    /**
+     * Merges every partition of a shard into the partition of the coordinator on its own task. The count is done
+     * once the last partition of the last shard is merged.
+     */
+    private void merge(ShardTask shard, byte[][] partitions) {
+        _lastResultNanos = System.nanoTime();
+        final AtomicInteger unmergedPartitions = new AtomicInteger(partitions.length);
+        for (int partition = 0; partition < partitions.length; partition++) {
+            final int index = partition;
+            _mergers.submit(() -> {
+                try {
+                    synchronized (_partitions[index]) {
+                        ShardProtocol.addPartition(partitions[index], _partitions[index]);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    //Part of the shard may be merged already, so it cannot be counted again.
+                    fail(new IOException("Cannot merge partition " + index + " of shard " + shard._id + ".", e));
+                    return;
+                }
+                if (unmergedPartitions.decrementAndGet() == 0 && _unmerged.decrementAndGet() == 0) _finished.countDown();
+            });
+        }
+    }
+
+    private void reassign(ShardTask shard, String reason) {
+        _reassigned.incrementAndGet();
+        if (++shard._attempts >= MAX_ATTEMPTS) {
+            fail(new IOException("Shard " + shard._id + " failed on " + shard._attempts + " workers. The last one: " + reason));
+            return;
+        }
+        ConsoleOutput.printMessageWithGaps("Shard " + shard._id + " goes to another worker, since " + reason);
+        _pending.addFirst(shard);
+    }
+
+    private void fail(IOException failure) {
+        if (_failure == null) _failure = failure;
+        _finished.countDown();
+    }
+
+    //endregion
+
+    //region Life Cycle
+
+    /**
+     * @return the port the coordinator listens on, which is the one picked by the system when it was created with 0.
+     */
+    int port() {
+        return _server.getLocalPort();
+    }
+
+    /**
+     * Stops taking workers. The idle workers are told that the count is done, and the connections of the others
+     * are closed.
+     */
+    private void stop() throws InterruptedException {
+        close(_server);
+        _handlers.shutdown();
+        if (!_handlers.awaitTermination(DONE_DELAY_MILLIS, TimeUnit.MILLISECONDS)) {
+            for (Socket socket : _connections) close(socket);
+        }
+        _mergers.shutdown();
+        _mergers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    private void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //Nothing more to do with it.
+        }
+        if (closeable instanceof Socket) _connections.remove(closeable);
+    }
+
+    //endregion
+
+    //region Statistics Getters
+
+    int shardCount() {
+        return _shardCount;
+    }
+
+    /**
+     * @return the number of workers that joined so far.
+     */
+    int workerCount() {
+        return _workers.get();
+    }
+
+    /**
+     * @return the number of times a shard was taken from a worker and handed to another one.
+     */
+    int reassignedCount() {
+        return _reassigned.get();
+    }
+
+    //endregion
+}
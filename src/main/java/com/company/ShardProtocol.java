@@ -0,0 +1,218 @@
+package com.company;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The messages a ShardCoordinator and its ShardWorkers exchange over TCP, in the big-endian form of the Data streams.
+ * <p>
+ * A worker opens the connection with a hello. From then on, the coordinator sends it a shard, or tells it that the
+ * count is done. While a worker counts a shard, it sends a heartbeat every interval the shard asks for, then the
+ * result of the shard, or the reason it failed, and waits for the next shard.
+ * <p>
+ * A result holds the counts of the shard split by word hash into the partitions the shard asks for. Every
+ * partition is sent as its length in bytes, then the length, bytes and count of every word, as unsigned
+ * variable-length integers like in the binary output. The coordinator keeps a partition as these bytes until it
+ * merges them into its own partition.
+ */
+final class ShardProtocol {
+
+    //region Static Final Class Variables
+
+    //"WCSH", then the version of the messages.
+    static final int MAGIC = 0x57435348;
+    static final int VERSION = 1;
+
+    //From the coordinator to a worker.
+    static final byte SHARD = 1;
+    static final byte DONE = 2;
+
+    //From a worker to the coordinator.
+    static final byte HEARTBEAT = 3;
+    static final byte RESULT = 4;
+    static final byte FAILED = 5;
+
+    //endregion
+
+    //region Shard
+
+    /**
+     * A shard as a worker receives it: the files and ranges of files to count, and how to send their counts back.
+     */
+    static final class Shard {
+
+        private final int _id;
+        private final int _partitionCount;
+        private final int _heartbeatMillis;
+        private final FileRange[] _ranges;
+
+        Shard(int id, int partitionCount, int heartbeatMillis, FileRange[] ranges) {
+            if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+            if (heartbeatMillis <= 0) throw new IllegalArgumentException("'heartbeatMillis' must be positive.");
+            if (ranges == null) throw new IllegalArgumentException("'ranges' cannot be null.");
+            _id = id;
+            _partitionCount = partitionCount;
+            _heartbeatMillis = heartbeatMillis;
+            _ranges = ranges.clone();
+        }
+
+        int id() {
+            return _id;
+        }
+
+        int partitionCount() {
+            return _partitionCount;
+        }
+
+        int heartbeatMillis() {
+            return _heartbeatMillis;
+        }
+
+        FileRange[] ranges() {
+            return _ranges.clone();
+        }
+    }
+
+    //endregion
+
+    //region Constructor
+
+    private ShardProtocol() {
+    }
+
+    //endregion
+
+    //region Hello
+
+    static void writeHello(DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.flush();
+    }
+
+    /**
+     * @throws IOException when the other end is not a worker of this version.
+     */
+    static void readHello(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) throw new IOException("Not a shard worker.");
+        final int version = input.readInt();
+        if (version != VERSION) throw new IOException("Shard worker of version " + version + ", expected " + VERSION + ".");
+    }
+
+    //endregion
+
+    //region Shards
+
+    static void writeShard(DataOutputStream output, Shard shard) throws IOException {
+        output.writeByte(SHARD);
+        output.writeInt(shard._id);
+        output.writeInt(shard._partitionCount);
+        output.writeInt(shard._heartbeatMillis);
+        output.writeInt(shard._ranges.length);
+        for (FileRange range : shard._ranges) {
+            output.writeUTF(range.path());
+            output.writeLong(range.start());
+            output.writeLong(range.end());
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads a shard, once its SHARD type byte is read.
+     */
+    static Shard readShard(DataInputStream input) throws IOException {
+        final int id = input.readInt();
+        final int partitionCount = input.readInt();
+        final int heartbeatMillis = input.readInt();
+        final int rangeCount = input.readInt();
+        if (partitionCount <= 0 || partitionCount > PartitionedWordCounts.MAX_PARTITIONS || heartbeatMillis <= 0 || rangeCount < 0) {
+            throw new IOException("Corrupt shard " + id + ".");
+        }
+        final FileRange[] ranges = new FileRange[rangeCount];
+        for (int index = 0; index < rangeCount; index++) {
+            final String path = input.readUTF();
+            final long start = input.readLong();
+            final long end = input.readLong();
+            try {
+                ranges[index] = new FileRange(path, start, end);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Corrupt range in shard " + id + ": " + e.getMessage());
+            }
+        }
+        return new Shard(id, partitionCount, heartbeatMillis, ranges);
+    }
+
+    //endregion
+
+    //region Results
+
+    /**
+     * Writes the counts of a shard, partition by partition. The counts must have the partition count of the shard.
+     */
+    static void writeResult(DataOutputStream output, int shardId, PartitionedWordCounts counts) throws IOException {
+        final ByteArrayOutputStream partition = new ByteArrayOutputStream();
+        final DataOutputStream entries = new DataOutputStream(partition);
+        output.writeByte(RESULT);
+        output.writeInt(shardId);
+        for (int index = 0; index < counts.partitionCount(); index++) {
+            partition.reset();
+            try {
+                counts.partition(index).forEach((word, offset, length, count) -> {
+                    try {
+                        VarInts.write(entries, length);
+                        entries.write(word, offset, length);
+                        VarInts.write(entries, count);
+                    } catch (IOException e) {
+                        //A ByteArrayOutputStream does not throw.
+                        throw new IllegalStateException(e);
+                    }
+                });
+                entries.flush();
+            } catch (IllegalStateException e) {
+                throw new IOException("Cannot encode partition " + index + " of shard " + shardId + ".", e);
+            }
+            output.writeInt(partition.size());
+            partition.writeTo(output);
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the encoded partitions of a result, once its RESULT type byte and shard ID are read.
+     */
+    static byte[][] readPartitions(DataInputStream input, int partitionCount) throws IOException {
+        final byte[][] partitions = new byte[partitionCount][];
+        for (int index = 0; index < partitionCount; index++) {
+            final int length = input.readInt();
+            if (length < 0) throw new IOException("Corrupt result: partition " + index + " of " + length + " bytes.");
+            partitions[index] = new byte[length];
+            input.readFully(partitions[index]);
+        }
+        return partitions;
+    }
+
+    /**
+     * Adds the counts of an encoded partition to a table.
+     */
+    static void addPartition(byte[] partition, WordCountTable table) throws IOException {
+        final int[] position = {0};
+        while (position[0] < partition.length) {
+            final int length = (int) VarInts.read(partition, position);
+            if (length < 0 || length > partition.length - position[0]) throw new IOException("Corrupt result: a word past the partition.");
+            final int offset = position[0];
+            position[0] += length;
+            table.add(WordCountTable.hash(partition, offset, length), partition, offset, length, VarInts.read(partition, position));
+        }
+    }
+
+    static void writeFailure(DataOutputStream output, int shardId, String reason) throws IOException {
+        output.writeByte(FAILED);
+        output.writeInt(shardId);
+        output.writeUTF(reason == null ? "" : reason);
+        output.flush();
+    }
+
+    //endregion
+}
@@ -0,0 +1,165 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A worker of a distributed count. It connects to a ShardCoordinator, counts the shards the coordinator hands it
+ * with the reader and parser pipeline of its WordCounter, and sends back their counts, split into the partitions
+ * the coordinator merges by. It stops when the coordinator says that the count is done, or goes away.
+ * <p>
+ * The input files are read from the paths the coordinator sends, so every worker needs to see them at the same
+ * paths, such as on a shared file system. A shard with a file the worker cannot read is sent back as failed, and
+ * the coordinator hands it to another worker.
+ */
+final class ShardWorker {
+
+    //region Static Final Class Variables
+
+    //A worker may start before its coordinator listens, so it keeps trying to connect for a while.
+    static final long CONNECT_TIMEOUT_MILLIS = 30_000L;
+    private static final long CONNECT_RETRY_MILLIS = 250L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Final Variables
+
+    private final WordCounter _counter;
+    private final String _host;
+    private final int _port;
+    private final ScheduledExecutorService _heartbeats = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("shard-heartbeat-"));
+
+    //endregion
+
+    //region Statistics
+
+    private int _shardsCounted;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param host the host of the coordinator.
+     * @param port the port the coordinator listens on.
+     */
+    ShardWorker(WordCounter counter, String host, int port) {
+        if (counter == null) throw new IllegalArgumentException("'counter' cannot be null.");
+        if (host == null) throw new IllegalArgumentException("'host' cannot be null.");
+        if (port <= 0) throw new IllegalArgumentException("'port' must be positive.");
+        _counter = counter;
+        _host = host;
+        _port = port;
+    }
+
+    //endregion
+
+    //region Working
+
+    /**
+     * Counts shards until the coordinator says that the count is done.
+     *
+     * @return the number of shards this worker counted.
+     * @throws IOException when the coordinator cannot be reached, or the connection to it is lost.
+     */
+    int run() throws IOException, InterruptedException {
+        try (Socket socket = connect()) {
+            socket.setTcpNoDelay(true);
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            ShardProtocol.writeHello(output);
+            ConsoleOutput.printMessageWithGaps("Joined the coordinator at " + _host + ":" + _port + ".");
+
+            while (true) {
+                final byte type = input.readByte();
+                if (type == ShardProtocol.DONE) return _shardsCounted;
+                if (type != ShardProtocol.SHARD) throw new IOException("Unexpected message " + type + " from the coordinator.");
+                countShard(ShardProtocol.readShard(input), output);
+            }
+        } finally {
+            _heartbeats.shutdownNow();
+        }
+    }
+
+    private Socket connect() throws IOException, InterruptedException {
+        final long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            final Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(_host, _port));
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() >= deadline) throw e;
+                Thread.sleep(CONNECT_RETRY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Counts a shard while a heartbeat tells the coordinator that the worker is still at it, then sends the
+     * counts, or the reason they could not be counted.
+     */
+    private void countShard(ShardProtocol.Shard shard, DataOutputStream output) throws IOException {
+        ConsoleOutput.printMessageWithGaps("Counting shard " + shard.id() + "...");
+        final ScheduledFuture<?> heartbeat = _heartbeats.scheduleAtFixedRate(() -> {
+            try {
+                synchronized (output) {
+                    output.writeByte(ShardProtocol.HEARTBEAT);
+                    output.flush();
+                }
+            } catch (IOException e) {
+                //The count finds out that the connection is lost when it sends its result.
+            }
+        }, shard.heartbeatMillis(), shard.heartbeatMillis(), TimeUnit.MILLISECONDS);
+
+        final PartitionedWordCounts counts;
+        try {
+            checkReadable(shard.ranges());
+            counts = _counter.countRanges(shard.ranges(), shard.partitionCount()).counts();
+        } catch (IOException | RuntimeException e) {
+            heartbeat.cancel(false);
+            ConsoleOutput.printMessageWithGaps("Failed to count shard " + shard.id() + ": " + e.getMessage());
+            synchronized (output) {
+                ShardProtocol.writeFailure(output, shard.id(), e.getMessage());
+            }
+            return;
+        }
+        heartbeat.cancel(false);
+        synchronized (output) {
+            ShardProtocol.writeResult(output, shard.id(), counts);
+        }
+        _shardsCounted++;
+        ConsoleOutput.printMessageWithGaps("Sent the counts of shard " + shard.id() + ".");
+    }
+
+    /**
+     * The readers report a file they cannot read and go on with the next one. A shard must not come back with
+     * a file missing, so the files are checked before the count.
+     */
+    private static void checkReadable(FileRange[] ranges) throws IOException {
+        for (FileRange range : ranges) {
+            final Path file = Paths.get(range.path());
+            if (!Files.isRegularFile(file) || !Files.isReadable(file)) throw new IOException("Cannot read file: " + range.path());
+            if (!range.isWholeFile() && Files.size(file) < range.end()) {
+                throw new IOException("File is shorter than its range: " + range);
+            }
+        }
+    }
+
+    //endregion
+}
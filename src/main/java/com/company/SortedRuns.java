@@ -0,0 +1,307 @@
+package com.company;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The counts of a count that did not fit in memory: runs of words and counts on disk, each sorted by word, that
+ * are merged into one sorted sequence as they are read, without ever holding more than the head of every run.
+ * <p>
+ * A run is written by a SpillingWordCounts when its table reaches its budget. Its entries are the length, bytes and
+ * count of every word, as unsigned variable-length integers like in the binary output, ending with a zero length.
+ * The same word can be in several runs, so the merge sums the counts of equal words.
+ * <p>
+ * Every open run takes a read buffer, so the runs are merged at most MAX_FAN_IN at a time. More runs than that are
+ * first merged into longer runs, in as many passes as it takes.
+ * <p>
+ * The runs are deleted once merged, so the counts can be merged once only.
+ */
+final class SortedRuns {
+
+    //region Static Final Class Variables
+
+    static final int MAX_FAN_IN = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String RUN_PREFIX = "wordcount-run-";
+    private static final String RUN_SUFFIX = ".run";
+
+    //endregion
+
+    //region Final Variables
+
+    private final Path _directory;
+    private final List<Path> _runs;
+
+    //endregion
+
+    //region Variables
+
+    private boolean _merged;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param directory the directory of the runs, where the longer runs of a multi-pass merge go as well.
+     * @param runs      the run files, which the merge deletes.
+     */
+    SortedRuns(Path directory, List<Path> runs) {
+        if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+        if (runs == null) throw new IllegalArgumentException("'runs' cannot be null.");
+        _directory = directory;
+        _runs = new ArrayList<>(runs);
+    }
+
+    //endregion
+
+    //region Writing Runs
+
+    /**
+     * Writes the entries of a table to a new run file in the directory, sorted by word.
+     *
+     * @return the run file.
+     */
+    static Path writeRun(Path directory, WordCountTable table) throws IOException {
+        if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+        if (table == null) throw new IllegalArgumentException("'table' cannot be null.");
+        final int[] entries = table.sortedEntries(false);
+        return writeRun(directory, visitor -> {
+            for (int entry : entries) table.visit(entry, visitor);
+        });
+    }
+
+    /**
+     * Writes the entries a source hands to its visitor to a new run file. They must come sorted by word.
+     */
+    private static Path writeRun(Path directory, EntrySource source) throws IOException {
+        final Path run = Files.createTempFile(directory, RUN_PREFIX, RUN_SUFFIX);
+        try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(run), BUFFER_SIZE)) {
+            try {
+                source.visitAll((word, offset, length, count) -> {
+                    try {
+                        VarInts.write(output, length);
+                        output.write(word, offset, length);
+                        VarInts.write(output, count);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            VarInts.write(output, 0);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * @return the number of runs the counts are in.
+     */
+    int runCount() {
+        return _runs.size();
+    }
+
+    /**
+     * @return the size of the run files on disk.
+     */
+    long bytes() throws IOException {
+        long bytes = 0;
+        for (Path run : _runs) bytes += Files.size(run);
+        return bytes;
+    }
+
+    /**
+     * Visits every word of the runs once, sorted by word, with the sum of its counts, and deletes the runs.
+     * An exception thrown by the visitor stops the merge and comes out of it as it is.
+     */
+    void merge(WordCountTable.Visitor visitor) throws IOException {
+        if (visitor == null) throw new IllegalArgumentException("'visitor' cannot be null.");
+        if (_merged) throw new IllegalStateException("The runs are already merged.");
+        _merged = true;
+        List<Path> runs = _runs;
+        try {
+            while (runs.size() > MAX_FAN_IN) runs = mergePass(runs);
+            mergeRuns(runs, visitor);
+        } finally {
+            deleteRuns(runs);
+            deleteRuns(_runs);
+        }
+    }
+
+    /**
+     * Merges the runs MAX_FAN_IN at a time into longer runs, and deletes the merged ones.
+     */
+    private List<Path> mergePass(List<Path> runs) throws IOException {
+        final List<Path> merged = new ArrayList<>();
+        try {
+            for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                final List<Path> group = runs.subList(from, Math.min(runs.size(), from + MAX_FAN_IN));
+                merged.add(writeRun(_directory, visitor -> mergeRuns(group, visitor)));
+            }
+        } catch (IOException | RuntimeException e) {
+            deleteRuns(merged);
+            throw e;
+        } finally {
+            deleteRuns(runs);
+        }
+        return merged;
+    }
+
+    /**
+     * Merges the runs with a heap of their current words, summing the counts of equal words.
+     */
+    private static void mergeRuns(List<Path> runs, WordCountTable.Visitor visitor) throws IOException {
+        final PriorityQueue<RunReader> heads = new PriorityQueue<>(Math.max(1, runs.size()), RunReader::compareTo);
+        final List<RunReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (Path run : runs) {
+                final RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) heads.add(reader);
+            }
+
+            byte[] word = new byte[64];
+            int length = 0;
+            long count = 0;
+            RunReader head;
+            while ((head = heads.poll()) != null) {
+                if (length > 0 && head.equals(word, length)) {
+                    count += head.count();
+                } else {
+                    if (length > 0) visitor.visit(word, 0, length, count);
+                    if (word.length < head.length()) word = new byte[Math.max(word.length * 2, head.length())];
+                    length = head.copyWord(word);
+                    count = head.count();
+                }
+                if (head.next()) heads.add(head);
+            }
+            if (length > 0) visitor.visit(word, 0, length, count);
+        } finally {
+            for (RunReader reader : readers) reader.close();
+        }
+    }
+
+    private static void deleteRuns(List<Path> runs) throws IOException {
+        for (Path run : runs) Files.deleteIfExists(run);
+    }
+
+    //endregion
+
+    //region Run Reader
+
+    /**
+     * Something that hands its entries to a visitor, such as a table or a merge.
+     */
+    @FunctionalInterface
+    private interface EntrySource {
+        void visitAll(WordCountTable.Visitor visitor) throws IOException;
+    }
+
+    /**
+     * The current entry of one run, read through a buffer.
+     */
+    private static final class RunReader implements Comparable<RunReader> {
+
+        private final Path _run;
+        private final InputStream _input;
+        private byte[] _word = new byte[64];
+        private int _length;
+        private long _count;
+
+        RunReader(Path run) throws IOException {
+            _run = run;
+            _input = new BufferedInputStream(Files.newInputStream(run), BUFFER_SIZE);
+        }
+
+        /**
+         * Reads the next entry.
+         *
+         * @return false at the end of the run.
+         */
+        boolean next() throws IOException {
+            final long length = readVarLong();
+            if (length == 0) return false;
+            if (length > Integer.MAX_VALUE) throw new IOException("Corrupt run " + _run + ": a word of " + length + " bytes.");
+            _length = (int) length;
+            if (_word.length < _length) _word = new byte[Math.max(_word.length * 2, _length)];
+            readFully(_word, _length);
+            _count = readVarLong();
+            return true;
+        }
+
+        int length() {
+            return _length;
+        }
+
+        long count() {
+            return _count;
+        }
+
+        int copyWord(byte[] target) {
+            System.arraycopy(_word, 0, target, 0, _length);
+            return _length;
+        }
+
+        boolean equals(byte[] word, int length) {
+            if (length != _length) return false;
+            for (int index = 0; index < length; index++) {
+                if (word[index] != _word[index]) return false;
+            }
+            return true;
+        }
+
+        /**
+         * Compares the current words byte by byte, in the order of WordCountTable.sortedEntries.
+         */
+        @Override
+        public int compareTo(RunReader other) {
+            final int length = Math.min(_length, other._length);
+            for (int index = 0; index < length; index++) {
+                final int difference = (_word[index] & 0xFF) - (other._word[index] & 0xFF);
+                if (difference != 0) return difference;
+            }
+            return _length - other._length;
+        }
+
+        void close() throws IOException {
+            _input.close();
+        }
+
+        private void readFully(byte[] bytes, int length) throws IOException {
+            int read = 0;
+            while (read < length) {
+                final int n = _input.read(bytes, read, length - read);
+                if (n < 0) throw new EOFException("Run " + _run + " ends in the middle of a word.");
+                read += n;
+            }
+        }
+
+        private long readVarLong() throws IOException {
+            try {
+                return VarInts.read(_input);
+            } catch (IOException e) {
+                throw new IOException("Corrupt run " + _run + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,359 @@
+package com.company;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fixed-size summary of the most frequent words of a stream, using the Space-Saving algorithm.
+ * <p>
+ * The summary keeps at most 'capacity' counters, no matter how many distinct words the stream has. A word
+ * that has a counter is counted exactly from then on. A word that has no counter takes over the counter with
+ * the smallest count, and inherits that count as its possible error. So the count of a word in the summary
+ * is never too low, and is at most 'error' too high.
+ * <p>
+ * Summaries of different parsers are merged with merge(...), which keeps the same guarantees.
+ * A summary is not thread-safe, and is meant to be owned by a single parser.
+ */
+final class SpaceSavingSummary implements WordSink {
+
+    //region Heavy Hitter
+
+    /**
+     * A word of the summary, with its estimated count.
+     */
+    static final class HeavyHitter {
+
+        private final String _word;
+        private final long _count;
+        private final long _error;
+
+        HeavyHitter(String word, long count, long error) {
+            _word = word;
+            _count = count;
+            _error = error;
+        }
+
+        String word() {
+            return _word;
+        }
+
+        /**
+         * @return the estimated count, which is never lower than the true count.
+         */
+        long count() {
+            return _count;
+        }
+
+        /**
+         * @return how much the estimated count can be higher than the true count.
+         */
+        long error() {
+            return _error;
+        }
+
+        /**
+         * @return the lowest the true count can be.
+         */
+        long lowerBound() {
+            return _count - _error;
+        }
+    }
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final int _capacity;
+
+    //The counters.
+    private final byte[][] _keys;
+    private final int[] _keyLengths;
+    private final int[] _hashes;
+    private final long[] _counts;
+    private final long[] _errors;
+
+    //A min-heap of counters by count, and the position of every counter in it.
+    private final int[] _heap;
+    private final int[] _heapPositions;
+
+    //An open addressing index from word to counter: counter plus one for used slots, zero for free slots.
+    private final int[] _slots;
+
+    //endregion
+
+    //region Variables
+
+    private int _size;
+    private long _totalCount;
+
+    //The highest count a word without a counter can have. Only merged summaries can have more than the minimum.
+    private long _unlistedBound;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param capacity the number of counters. The more counters, the smaller the errors.
+     */
+    SpaceSavingSummary(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("'capacity' must be positive.");
+        _capacity = capacity;
+        _keys = new byte[capacity][];
+        _keyLengths = new int[capacity];
+        _hashes = new int[capacity];
+        _counts = new long[capacity];
+        _errors = new long[capacity];
+        _heap = new int[capacity];
+        _heapPositions = new int[capacity];
+        int slotCount = 16;
+        while (slotCount < capacity * 2) slotCount *= 2;
+        _slots = new int[slotCount];
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        _totalCount++;
+        final int hash = WordCountTable.hash(word, offset, length);
+        final int counter = find(hash, word, offset, length);
+
+        if (counter >= 0) {
+            //A word with a counter is counted exactly.
+            _counts[counter]++;
+            siftDown(_heapPositions[counter]);
+        } else if (_size < _capacity) {
+            //There is still a free counter.
+            addCounter(hash, word, offset, length, 1L, 0L);
+        } else {
+            //Take over the counter with the smallest count. Its count becomes the error of the new word.
+            final int minimum = _heap[0];
+            removeFromIndex(minimum);
+            setKey(minimum, hash, word, offset, length);
+            _errors[minimum] = _counts[minimum];
+            _counts[minimum]++;
+            addToIndex(minimum);
+            siftDown(0);
+        }
+    }
+
+    private void addCounter(int hash, byte[] word, int offset, int length, long count, long error) {
+        final int counter = _size++;
+        setKey(counter, hash, word, offset, length);
+        _counts[counter] = count;
+        _errors[counter] = error;
+        addToIndex(counter);
+        _heap[counter] = counter;
+        _heapPositions[counter] = counter;
+        siftUp(counter);
+    }
+
+    private void setKey(int counter, int hash, byte[] word, int offset, int length) {
+        //The key buffers are reused, and only grow for longer words.
+        if (_keys[counter] == null || _keys[counter].length < length) _keys[counter] = new byte[Math.max(16, length)];
+        System.arraycopy(word, offset, _keys[counter], 0, length);
+        _keyLengths[counter] = length;
+        _hashes[counter] = hash;
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * Merges the summaries of several parsers into one summary of the given capacity.
+     * <p>
+     * A word missing from a full summary may still have occurred up to that summary's minimum count, so that
+     * minimum is added to both its count and its error. This keeps the count an upper bound, and the error
+     * covers the difference.
+     */
+    static SpaceSavingSummary merge(List<SpaceSavingSummary> summaries, int capacity) {
+        final HashMap<String, long[]> union = new HashMap<>();
+        long totalCount = 0;
+        long totalMinimum = 0;
+
+        for (SpaceSavingSummary summary : summaries) {
+            final long minimum = summary.unlistedBound();
+            totalCount += summary._totalCount;
+            totalMinimum += minimum;
+            for (int counter = 0; counter < summary._size; counter++) {
+                final String word = new String(summary._keys[counter], 0, summary._keyLengths[counter], StandardCharsets.ISO_8859_1);
+                final long[] countAndError = union.computeIfAbsent(word, key -> new long[2]);
+                countAndError[0] += summary._counts[counter] - minimum;
+                countAndError[1] += summary._errors[counter] - minimum;
+            }
+        }
+
+        //Keep the words with the highest counts.
+        final List<HeavyHitter> candidates = new ArrayList<>(union.size());
+        for (Map.Entry<String, long[]> entry : union.entrySet()) {
+            final long[] countAndError = entry.getValue();
+            candidates.add(new HeavyHitter(entry.getKey(), countAndError[0] + totalMinimum, countAndError[1] + totalMinimum));
+        }
+        sort(candidates);
+
+        final SpaceSavingSummary merged = new SpaceSavingSummary(capacity);
+        for (int index = 0; index < Math.min(capacity, candidates.size()); index++) {
+            final HeavyHitter candidate = candidates.get(index);
+            final byte[] word = candidate.word().getBytes(StandardCharsets.ISO_8859_1);
+            merged.addCounter(WordCountTable.hash(word, 0, word.length), word, 0, word.length, candidate.count(), candidate.error());
+        }
+        merged._totalCount = totalCount;
+
+        //A word that did not make it, or that no summary had, can have at most the count of the best word
+        //that was dropped, or the sum of the minimums.
+        final long bestDropped = candidates.size() > capacity ? candidates.get(capacity).count() : 0L;
+        merged._unlistedBound = Math.max(totalMinimum, bestDropped);
+        return merged;
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * @return the number of words in the stream, counted exactly.
+     */
+    long totalCount() {
+        return _totalCount;
+    }
+
+    int capacity() {
+        return _capacity;
+    }
+
+    /**
+     * @return the highest count any word that is not in the summary can have.
+     */
+    long unlistedBound() {
+        final long minimum = _size < _capacity ? 0L : _counts[_heap[0]];
+        return Math.max(minimum, _unlistedBound);
+    }
+
+    /**
+     * @return the 'k' words with the highest counts, highest first.
+     */
+    List<HeavyHitter> top(int k) {
+        final List<HeavyHitter> hitters = new ArrayList<>(_size);
+        for (int counter = 0; counter < _size; counter++) {
+            hitters.add(new HeavyHitter(new String(_keys[counter], 0, _keyLengths[counter], StandardCharsets.ISO_8859_1),
+                    _counts[counter], _errors[counter]));
+        }
+        sort(hitters);
+        return Collections.unmodifiableList(hitters.subList(0, Math.min(k, hitters.size())));
+    }
+
+    /**
+     * A word of the top 'k' is guaranteed to be in the true top 'k' if its lower bound is at least this
+     * threshold, which is the highest possible count of any word ranked below 'k'.
+     */
+    long guaranteedTopThreshold(int k) {
+        final List<HeavyHitter> ranked = top(k + 1);
+        return ranked.size() > k ? Math.max(ranked.get(k).count(), unlistedBound()) : unlistedBound();
+    }
+
+    private static void sort(List<HeavyHitter> hitters) {
+        hitters.sort((first, second) -> first.count() != second.count()
+                ? Long.compare(second.count(), first.count())
+                : first.word().compareTo(second.word()));
+    }
+
+    //endregion
+
+    //region Index
+
+    private int find(int hash, byte[] word, int offset, int length) {
+        final int mask = _slots.length - 1;
+        int slot = hash & mask;
+        int counterPlusOne;
+        while ((counterPlusOne = _slots[slot]) != 0) {
+            final int counter = counterPlusOne - 1;
+            if (_hashes[counter] == hash && keyEquals(counter, word, offset, length)) return counter;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int counter, byte[] word, int offset, int length) {
+        if (_keyLengths[counter] != length) return false;
+        final byte[] key = _keys[counter];
+        for (int index = 0; index < length; index++) {
+            if (key[index] != word[offset + index]) return false;
+        }
+        return true;
+    }
+
+    private void addToIndex(int counter) {
+        final int mask = _slots.length - 1;
+        int slot = _hashes[counter] & mask;
+        while (_slots[slot] != 0) slot = (slot + 1) & mask;
+        _slots[slot] = counter + 1;
+    }
+
+    /**
+     * Removes a counter from the index, shifting back the entries after it so that no probe chain is broken.
+     */
+    private void removeFromIndex(int counter) {
+        final int mask = _slots.length - 1;
+        int slot = _hashes[counter] & mask;
+        while (_slots[slot] != counter + 1) slot = (slot + 1) & mask;
+        _slots[slot] = 0;
+
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (_slots[next] == 0) return;
+            final int home = _hashes[_slots[next] - 1] & mask;
+
+            //Move the entry into the hole, unless its home slot lies cyclically between the hole and itself.
+            final boolean homeBetween = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (!homeBetween) {
+                _slots[slot] = _slots[next];
+                _slots[next] = 0;
+                slot = next;
+            }
+        }
+    }
+
+    //endregion
+
+    //region Heap
+
+    private void siftUp(int position) {
+        final int counter = _heap[position];
+        while (position > 0) {
+            final int parent = (position - 1) / 2;
+            if (_counts[_heap[parent]] <= _counts[counter]) break;
+            moveInHeap(_heap[parent], position);
+            position = parent;
+        }
+        moveInHeap(counter, position);
+    }
+
+    private void siftDown(int position) {
+        final int counter = _heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= _size) break;
+            if (child + 1 < _size && _counts[_heap[child + 1]] < _counts[_heap[child]]) child++;
+            if (_counts[counter] <= _counts[_heap[child]]) break;
+            moveInHeap(_heap[child], position);
+            position = child;
+        }
+        moveInHeap(counter, position);
+    }
+
+    private void moveInHeap(int counter, int position) {
+        _heap[position] = counter;
+        _heapPositions[counter] = position;
+    }
+
+    //endregion
+}
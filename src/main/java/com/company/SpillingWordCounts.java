@@ -0,0 +1,96 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The sink of a parser whose vocabulary may not fit in memory. It counts into a WordCountTable until the table
+ * takes more than its budget, then writes the table to disk as a run sorted by word, and starts over with an empty
+ * table. The runs of all the parsers are merged by SortedRuns, as the result is written.
+ * <p>
+ * A word that comes back after a spill is counted again in the next table, so the memory of a parser stays within
+ * its budget however many distinct words the input has. The budget is checked after every new word, and the table
+ * doubles its arrays when it grows, so it may take up to twice the budget just before a spill.
+ */
+final class SpillingWordCounts implements WordSink {
+
+    //region Final Variables and Collections
+
+    private final Path _directory;
+    private final long _budgetBytes;
+    private final List<Path> _runs = new ArrayList<>();
+
+    //endregion
+
+    //region Variables
+
+    private WordCountTable _table = new WordCountTable();
+    private long _spillNanos;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param directory   the directory to write the runs to. It must exist.
+     * @param budgetBytes the heap the table may take before it is spilled.
+     */
+    SpillingWordCounts(Path directory, long budgetBytes) {
+        if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+        if (budgetBytes <= 0) throw new IllegalArgumentException("'budgetBytes' must be positive.");
+        _directory = directory;
+        _budgetBytes = budgetBytes;
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts one occurrence of a word, and spills the table if the word made it go over the budget.
+     *
+     * @throws UncheckedIOException when the run cannot be written.
+     */
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        final int size = _table.size();
+        _table.accept(word, offset, length);
+
+        //Only a new word can grow the table.
+        if (_table.size() != size && _table.memoryBytes() > _budgetBytes) spill();
+    }
+
+    /**
+     * Spills what is left in the table, once the parser is done.
+     *
+     * @return the runs of the parser.
+     */
+    List<Path> finish() {
+        if (_table.size() > 0) spill();
+        _table = new WordCountTable(0);
+        return new ArrayList<>(_runs);
+    }
+
+    /**
+     * @return the time spent writing runs.
+     */
+    long spillNanos() {
+        return _spillNanos;
+    }
+
+    private void spill() {
+        final long start = System.nanoTime();
+        try {
+            _runs.add(SortedRuns.writeRun(_directory, _table));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot spill the counts to: " + _directory, e);
+        }
+        _table = new WordCountTable();
+        _spillNanos += System.nanoTime() - start;
+    }
+
+    //endregion
+}
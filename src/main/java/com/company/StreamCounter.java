@@ -0,0 +1,212 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counts a live stream, such as a log piped into the standard input, and publishes snapshots of its counts while
+ * it runs, without stopping the parsers and without waiting for the end of the stream.
+ * <p>
+ * A reader cuts the stream into chunks with a ChunkAssembler, and hands over what has arrived as soon as the
+ * stream has nothing more to read right away, so a quiet stream is counted as it goes. Each parser counts into a
+ * pane, the counts of one snapshot interval. At every snapshot, the pane of each parser is swapped for an empty
+ * one, between two chunks, and the panes are merged on the snapshot thread. The StreamWindow then decides what
+ * the snapshot holds: everything so far, or only the last window, so that old counts expire.
+ */
+final class StreamCounter {
+
+    //region Snapshot Listener
+
+    /**
+     * Receives the snapshots of a stream count, on the thread that runs the count, one after the other.
+     */
+    @FunctionalInterface
+    interface SnapshotListener {
+
+        /**
+         * @param result the counts of the snapshot. They are only valid for the duration of the call.
+         * @param last   whether the stream has ended, and this is the final snapshot.
+         */
+        void snapshot(WordCountResult result, boolean last);
+    }
+
+    //endregion
+
+    //region Static Final Class Variables
+
+    private static final int CHUNKS_PER_PARSER = 2;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final ExecutorService _parserExecutor;
+    private final ExecutorService _readerExecutor;
+    private final int _parserCount;
+    private final int _partitionCount;
+    private final Charset _encoding;
+    private final RunOptions.Tokenizer _tokenizer;
+    private final int _chunkSize;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param encoding a charset the stream can be cut into chunks in, see MappedFileReader.supportsCharset.
+     */
+    StreamCounter(ExecutorService parserExecutor, ExecutorService readerExecutor, int parserCount, int partitionCount,
+                  Charset encoding, RunOptions.Tokenizer tokenizer, int chunkSize) {
+        if (parserExecutor == null) throw new IllegalArgumentException("'parserExecutor' cannot be null.");
+        if (readerExecutor == null) throw new IllegalArgumentException("'readerExecutor' cannot be null.");
+        if (parserCount <= 0) throw new IllegalArgumentException("'parserCount' must be positive.");
+        if (partitionCount <= 0) throw new IllegalArgumentException("'partitionCount' must be positive.");
+        if (encoding == null) throw new IllegalArgumentException("'encoding' cannot be null.");
+        if (!MappedFileReader.supportsCharset(encoding)) {
+            throw new IllegalArgumentException("A stream in " + encoding.name() + " cannot be cut into chunks.");
+        }
+        if (tokenizer == null) throw new IllegalArgumentException("'tokenizer' cannot be null.");
+        if (chunkSize <= 0) throw new IllegalArgumentException("'chunkSize' must be positive.");
+        _parserExecutor = parserExecutor;
+        _readerExecutor = readerExecutor;
+        _parserCount = parserCount;
+        _partitionCount = partitionCount;
+        _encoding = encoding;
+        _tokenizer = tokenizer;
+        _chunkSize = chunkSize;
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts the stream until it ends, publishing a snapshot at the end of every pane of the window, and a final
+     * one once the stream has ended. The stream is not closed.
+     */
+    void count(InputStream input, StreamWindow window, SnapshotListener listener) {
+        if (input == null) throw new IllegalArgumentException("'input' cannot be null.");
+        if (window == null) throw new IllegalArgumentException("'window' cannot be null.");
+        if (listener == null) throw new IllegalArgumentException("'listener' cannot be null.");
+        final long start = System.nanoTime();
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final BoundedChannel<ByteBuffer> chunks = new BoundedChannel<>(_parserCount * CHUNKS_PER_PARSER);
+        final CountDownLatch parsersDone = new CountDownLatch(_parserCount);
+        final AtomicBoolean parserFailed = new AtomicBoolean();
+
+        final List<PaneSink> panes = new ArrayList<>();
+        final List<ChunkParser<PaneSink>> parsers = new ArrayList<>();
+        final List<Future<?>> parserTasks = new ArrayList<>();
+        for (int index = 0; index < _parserCount; index++) {
+            final PaneSink pane = new PaneSink(_partitionCount);
+            final ChunkParser<PaneSink> parser = new ChunkParser<>(_encoding, _tokenizer, pane);
+            panes.add(pane);
+            parsers.add(parser);
+            parserTasks.add(_parserExecutor.submit(() -> {
+                try {
+                    ByteBuffer chunk;
+                    while ((chunk = chunks.take()) != null) pane.parse(parser, chunk);
+                } catch (InterruptedException | RuntimeException | Error e) {
+                    //The count is short a chunk now. Closing the channel stops the reader, which could otherwise
+                    //wait forever for room once every parser is gone, and lets the other parsers end.
+                    parserFailed.set(true);
+                    chunks.close();
+                    throw e;
+                } finally {
+                    parsersDone.countDown();
+                }
+                return null;
+            }));
+        }
+        final Future<?> reader = _readerExecutor.submit(() -> {
+            try {
+                read(input, chunks);
+            } catch (IllegalStateException e) {
+                //The channel was closed under the reader by a failed parser, which is reported on its own.
+                if (!parserFailed.get()) throw e;
+            } finally {
+                //Whatever happened, let the parsers drain the channel and stop.
+                chunks.close();
+            }
+            return null;
+        });
+        ConsoleOutput.printMessageWithGaps("Counting the stream, with a snapshot of " + window.describe()
+                + " every " + window.paneMillis() + " ms.");
+
+        try {
+            final long paneNanos = TimeUnit.MILLISECONDS.toNanos(window.paneMillis());
+            long nextSnapshot = start + paneNanos;
+            boolean ended = false;
+            while (!ended) {
+                ended = parsersDone.await(Math.max(0L, nextSnapshot - System.nanoTime()), TimeUnit.NANOSECONDS);
+                nextSnapshot += paneNanos;
+                publish(panes, window, ended, start, metrics, listener);
+            }
+        } catch (InterruptedException e) {
+            final String errorHeader = "Interrupted while taking snapshots of the stream.";
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+            chunks.close();
+            reader.cancel(true);
+            return;
+        }
+
+        if (parserFailed.get()) {
+            //The reader may be blocked on a stream that has nothing to read yet, so it is not waited for.
+            reader.cancel(true);
+        } else {
+            awaitTask(reader, "Exception in reading the stream.");
+        }
+        for (Future<?> parserTask : parserTasks) awaitTask(parserTask, "ExcecutionException thrown by a stream parser.");
+        for (ChunkParser<PaneSink> parser : parsers) metrics.recordParser(parser);
+    }
+
+    private void read(InputStream input, BoundedChannel<ByteBuffer> chunks) throws IOException, InterruptedException {
+        final ChunkAssembler assembler = new ChunkAssembler(_chunkSize, false, chunks::put);
+        final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            assembler.write(buffer, 0, read);
+
+            //Nothing more has arrived yet. Hand over the complete words, so the next snapshot counts them.
+            if (input.available() == 0) assembler.flush();
+        }
+        assembler.finish();
+    }
+
+    /**
+     * Swaps the pane of every parser for an empty one, merges the panes, and publishes the window.
+     */
+    private static void publish(List<PaneSink> panes, StreamWindow window, boolean last, long start,
+                                PipelineMetrics metrics, SnapshotListener listener) {
+        final long mergeStart = System.nanoTime();
+        final List<PartitionedWordCounts> paneCounts = new ArrayList<>(panes.size());
+        for (PaneSink pane : panes) paneCounts.add(pane.swap());
+        final PartitionedWordCounts counts = window.add(StreamWindow.merge(paneCounts));
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, System.nanoTime() - mergeStart);
+        listener.snapshot(WordCountResult.exact(counts, 1, System.nanoTime() - start, metrics), last);
+    }
+
+    private static void awaitTask(Future<?> task, String errorHeader) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            ConsoleOutput.printInterruptedException("Interrupted while awaiting the stream tasks.", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = new Throwable(e).getCause();
+            ConsoleOutput.printExecutionException(errorHeader, cause, e);
+        }
+    }
+
+    //endregion
+}
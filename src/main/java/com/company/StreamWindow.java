@@ -0,0 +1,136 @@
+package com.company;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the panes of a stream count, the counts of one snapshot interval each, into the counts of a snapshot.
+ * <ul>
+ * <li>CUMULATIVE: every pane is added to a running total, so a snapshot holds everything since the start.</li>
+ * <li>TUMBLING: a pane is as long as the window, and a snapshot holds only the pane that just ended.
+ * Windows do not overlap, and the counts start from zero in every window.</li>
+ * <li>SLIDING: a snapshot holds the last panes that fit in the window, so it moves forward by one pane at every
+ * snapshot. The oldest pane expires as the newest comes in.</li>
+ * </ul>
+ * A window is fed by a single thread, the one that takes the snapshots.
+ */
+final class StreamWindow {
+
+    //region Final Variables and Collections
+
+    private final RunOptions.Window _kind;
+    private final long _paneMillis;
+    private final int _panesPerWindow;
+
+    //The last panes of a sliding window, oldest first.
+    private final ArrayDeque<PartitionedWordCounts> _panes = new ArrayDeque<>();
+
+    //endregion
+
+    //region Variables
+
+    //The running total of a cumulative window.
+    private PartitionedWordCounts _total;
+
+    //endregion
+
+    //region Constructor
+
+    private StreamWindow(RunOptions.Window kind, long paneMillis, int panesPerWindow) {
+        _kind = kind;
+        _paneMillis = paneMillis;
+        _panesPerWindow = panesPerWindow;
+    }
+
+    /**
+     * @param kind           how the panes are combined.
+     * @param sizeMillis     the length of a tumbling or sliding window. Ignored for a cumulative one.
+     * @param intervalMillis the time between two snapshots. A tumbling window takes one snapshot per window instead,
+     *                       and a sliding window must be a whole number of intervals long.
+     */
+    static StreamWindow of(RunOptions.Window kind, long sizeMillis, long intervalMillis) {
+        if (kind == null) throw new IllegalArgumentException("'kind' cannot be null.");
+        if (intervalMillis <= 0) throw new IllegalArgumentException("'intervalMillis' must be positive.");
+        switch (kind) {
+            case TUMBLING:
+                if (sizeMillis <= 0) throw new IllegalArgumentException("A tumbling window needs a positive size.");
+                return new StreamWindow(kind, sizeMillis, 1);
+            case SLIDING:
+                if (sizeMillis <= 0) throw new IllegalArgumentException("A sliding window needs a positive size.");
+                if (sizeMillis % intervalMillis != 0) {
+                    throw new IllegalArgumentException("A sliding window must be a whole number of snapshot intervals long.");
+                }
+                final long panes = sizeMillis / intervalMillis;
+                if (panes > Integer.MAX_VALUE) throw new IllegalArgumentException("A sliding window cannot hold that many snapshot intervals.");
+                return new StreamWindow(kind, intervalMillis, (int) panes);
+            default:
+                return new StreamWindow(kind, intervalMillis, 1);
+        }
+    }
+
+    //endregion
+
+    //region Panes
+
+    /**
+     * @return how long each pane lasts, which is also the time between two snapshots.
+     */
+    long paneMillis() {
+        return _paneMillis;
+    }
+
+    /**
+     * Adds the pane that just ended, and returns the counts of the window as of now. The returned counts must not
+     * be changed by the caller, and the pane must not be used after it is added.
+     */
+    PartitionedWordCounts add(PartitionedWordCounts pane) {
+        if (pane == null) throw new IllegalArgumentException("'pane' cannot be null.");
+        switch (_kind) {
+            case TUMBLING:
+                return pane;
+            case SLIDING:
+                _panes.addLast(pane);
+                if (_panes.size() > _panesPerWindow) _panes.removeFirst();
+                return merge(new ArrayList<>(_panes));
+            default:
+                if (_total == null) {
+                    _total = pane;
+                } else {
+                    //Both have the same partitions, so the pane is added partition by partition, in place.
+                    for (int partition = 0; partition < _total.partitionCount(); partition++) {
+                        _total.partition(partition).merge(pane.partition(partition));
+                    }
+                }
+                return _total;
+        }
+    }
+
+    /**
+     * @return a description of what a snapshot covers, for the messages of the stream count.
+     */
+    String describe() {
+        switch (_kind) {
+            case TUMBLING:
+                return "tumbling window of " + _paneMillis + " ms";
+            case SLIDING:
+                return "sliding window of " + _paneMillis * _panesPerWindow + " ms";
+            default:
+                return "everything so far";
+        }
+    }
+
+    /**
+     * Merges panes into new tables, leaving the panes as they were.
+     */
+    static PartitionedWordCounts merge(List<PartitionedWordCounts> panes) {
+        if (panes == null || panes.isEmpty()) throw new IllegalArgumentException("'panes' cannot be null or empty.");
+        final WordCountTable[] merged = new WordCountTable[panes.get(0).partitionCount()];
+        for (int partition = 0; partition < merged.length; partition++) {
+            merged[partition] = PartitionedWordCounts.mergePartition(partition, panes);
+        }
+        return PartitionedWordCounts.of(merged);
+    }
+
+    //endregion
+}
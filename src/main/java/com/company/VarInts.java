@@ -0,0 +1,85 @@
+package com.company;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The unsigned variable-length integers of the binary formats: seven bits per byte, lowest first, with the high bit
+ * set on every byte but the last. The count cache, the spilled runs, the shard results and the binary output all
+ * write their lengths and counts this way.
+ */
+final class VarInts {
+
+    //region Static Final Class Variables
+
+    /**
+     * The most bytes a number takes, which is ten for a number of all 64 bits.
+     */
+    static final int MAX_LENGTH = 10;
+
+    //endregion
+
+    //region Constructor
+
+    private VarInts() {
+    }
+
+    //endregion
+
+    //region Writing
+
+    static void write(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    /**
+     * Writes a number at the offset of a buffer, which must have room for MAX_LENGTH bytes there.
+     *
+     * @return the offset right after the number.
+     */
+    static int write(byte[] buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    //endregion
+
+    //region Reading
+
+    static long read(InputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = input.read();
+            if (b < 0) throw new EOFException("The input ends in the middle of a number.");
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("A number of more than 64 bits.");
+    }
+
+    /**
+     * Reads a number at position[0] of the bytes, and moves the position past it.
+     */
+    static long read(byte[] bytes, int[] position) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= bytes.length) throw new EOFException("The bytes end in the middle of a number.");
+            final int b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("A number of more than 64 bits.");
+    }
+
+    //endregion
+}
@@ -0,0 +1,64 @@
+package com.company;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors that start a virtual thread per task, where the runtime has them (Java 21 and later).
+ * <p>
+ * The project compiles for Java 8, so Executors.newVirtualThreadPerTaskExecutor() is looked up by reflection.
+ * On an older runtime, a fixed pool of daemon platform threads takes its place.
+ */
+final class VirtualThreads {
+
+    //region Static Final Class Variables
+
+    //Null when the runtime has no virtual threads.
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findFactory();
+
+    //endregion
+
+    //region Constructor
+
+    private VirtualThreads() {
+    }
+
+    //endregion
+
+    //region Executors
+
+    static boolean available() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * @param fallbackThreads the number of platform threads to run the tasks on, without virtual threads.
+     * @param fallbackPrefix  the start of the names of those platform threads.
+     */
+    static ExecutorService newThreadPerTaskExecutor(int fallbackThreads, String fallbackPrefix) {
+        if (fallbackThreads <= 0) throw new IllegalArgumentException("'fallbackThreads' must be positive.");
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                ConsoleOutput.printMessageWithGaps("Cannot start virtual threads: " + e + ". Using platform threads.");
+            }
+        }
+        return Executors.newFixedThreadPool(fallbackThreads, new DaemonThreadFactory(fallbackPrefix));
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static Method findFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,201 @@
+package com.company;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The outcome of one count of a WordCounter: the merged sink of the count mode it ran in, how long it took,
+ * and the metrics of its pipeline.
+ * <p>
+ * Only the accessor of the mode that ran may be called. The others throw, rather than return an empty sink
+ * that could be taken for a real result.
+ * <p>
+ * The exact counts of an off-heap count are written from where they are, and only copied onto the heap for
+ * counts(). The exact counts of a spilling count are not in memory, but in SortedRuns on disk. Such a result can
+ * only be written, once, and is merged while it is written. An n-gram count writes its n-grams after the words,
+ * while counts() only has the words.
+ */
+final class WordCountResult {
+
+    //region Final Variables
+
+    private final RunOptions.CountMode _mode;
+    private final PartitionedWordCounts _counts;
+    private final SpaceSavingSummary _summary;
+    private final HyperLogLog _sketch;
+    private final SortedRuns _runs;
+    private final OffHeapWordCounts _offHeapCounts;
+    private final MergedNGramCounts _ngramCounts;
+    private final int _fileCount;
+    private final long _elapsedNanos;
+    private final PipelineMetrics _metrics;
+
+    //endregion
+
+    //region Constructor
+
+    private WordCountResult(RunOptions.CountMode mode, PartitionedWordCounts counts, SpaceSavingSummary summary,
+                            HyperLogLog sketch, SortedRuns runs, OffHeapWordCounts offHeapCounts, MergedNGramCounts ngramCounts,
+                            int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (metrics == null) throw new IllegalArgumentException("'metrics' cannot be null.");
+        _mode = mode;
+        _counts = counts;
+        _summary = summary;
+        _sketch = sketch;
+        _runs = runs;
+        _offHeapCounts = offHeapCounts;
+        _ngramCounts = ngramCounts;
+        _fileCount = fileCount;
+        _elapsedNanos = elapsedNanos;
+        _metrics = metrics;
+    }
+
+    static WordCountResult exact(PartitionedWordCounts counts, int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (counts == null) throw new IllegalArgumentException("'counts' cannot be null.");
+        return new WordCountResult(RunOptions.CountMode.EXACT, counts, null, null, null, null, null, fileCount, elapsedNanos, metrics);
+    }
+
+    static WordCountResult top(SpaceSavingSummary summary, int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (summary == null) throw new IllegalArgumentException("'summary' cannot be null.");
+        return new WordCountResult(RunOptions.CountMode.TOP, null, summary, null, null, null, null, fileCount, elapsedNanos, metrics);
+    }
+
+    static WordCountResult cardinality(HyperLogLog sketch, int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (sketch == null) throw new IllegalArgumentException("'sketch' cannot be null.");
+        return new WordCountResult(RunOptions.CountMode.CARDINALITY, null, null, sketch, null, null, null, fileCount, elapsedNanos, metrics);
+    }
+
+    /**
+     * @param runs the exact counts, spilled to disk by the parsers.
+     */
+    static WordCountResult spilled(SortedRuns runs, int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (runs == null) throw new IllegalArgumentException("'runs' cannot be null.");
+        return new WordCountResult(RunOptions.CountMode.EXACT, null, null, null, runs, null, null, fileCount, elapsedNanos, metrics);
+    }
+
+    /**
+     * @param counts the exact counts, in off-heap tables.
+     */
+    static WordCountResult offHeap(OffHeapWordCounts counts, int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (counts == null) throw new IllegalArgumentException("'counts' cannot be null.");
+        return new WordCountResult(RunOptions.CountMode.EXACT, null, null, null, null, counts, null, fileCount, elapsedNanos, metrics);
+    }
+
+    /**
+     * @param counts the exact counts of the words and of their n-grams.
+     */
+    static WordCountResult ngrams(MergedNGramCounts counts, int fileCount, long elapsedNanos, PipelineMetrics metrics) {
+        if (counts == null) throw new IllegalArgumentException("'counts' cannot be null.");
+        return new WordCountResult(RunOptions.CountMode.EXACT, null, null, null, null, null, counts, fileCount, elapsedNanos, metrics);
+    }
+
+    //endregion
+
+    //region Getters
+
+    RunOptions.CountMode mode() {
+        return _mode;
+    }
+
+    /**
+     * @return the exact counts of every word. Off-heap counts are copied onto the heap at every call, so a result
+     * that is only written should be written with write(). The n-grams of an n-gram count are not included.
+     */
+    PartitionedWordCounts counts() {
+        requireMode(RunOptions.CountMode.EXACT);
+        if (_runs != null) throw new IllegalStateException("The counts of a spilling count are on disk. They can only be written.");
+        if (_offHeapCounts != null) return _offHeapCounts.toHeap();
+        if (_ngramCounts != null) return _ngramCounts.words();
+        return _counts;
+    }
+
+    /**
+     * @return the counts of the words and of their n-grams, of a count with n-grams.
+     */
+    MergedNGramCounts ngrams() {
+        requireMode(RunOptions.CountMode.EXACT);
+        if (_ngramCounts == null) throw new IllegalStateException("The count did not count n-grams.");
+        return _ngramCounts;
+    }
+
+    /**
+     * @return whether the exact counts are in sorted runs on disk, rather than in memory.
+     */
+    boolean spilled() {
+        return _runs != null;
+    }
+
+    /**
+     * @return the merged Space-Saving summary of the most frequent words.
+     */
+    SpaceSavingSummary summary() {
+        requireMode(RunOptions.CountMode.TOP);
+        return _summary;
+    }
+
+    /**
+     * @return the merged HyperLogLog sketch of the distinct words.
+     */
+    HyperLogLog sketch() {
+        requireMode(RunOptions.CountMode.CARDINALITY);
+        return _sketch;
+    }
+
+    /**
+     * @return the number of input files, after directories and glob patterns were expanded.
+     */
+    int fileCount() {
+        return _fileCount;
+    }
+
+    long elapsedNanos() {
+        return _elapsedNanos;
+    }
+
+    /**
+     * @return the metrics of the pipeline of the count. The caller adds the time of the output, if it writes one.
+     */
+    PipelineMetrics metrics() {
+        return _metrics;
+    }
+
+    //endregion
+
+    //region Writing
+
+    /**
+     * Writes the exact counts to a stream, which is flushed but not closed. Spilled counts are merged as they are
+     * written, always by word, and cannot be written again.
+     */
+    void write(OutputStream output, RunOptions.OutputFormat format, RunOptions.SortOrder sort) throws IOException {
+        write(output, format, sort, null);
+    }
+
+    /**
+     * @param sortExecutor sorts a large result in parallel, see WordCounter.sortExecutor().
+     */
+    void write(OutputStream output, RunOptions.OutputFormat format, RunOptions.SortOrder sort,
+               ExecutorService sortExecutor) throws IOException {
+        final ResultWriter writer = new ResultWriter(output, format, sort, sortExecutor);
+        if (_runs != null) {
+            writer.write(_runs);
+            return;
+        }
+        if (_ngramCounts != null) {
+            writer.write(_ngramCounts);
+            return;
+        }
+        writer.write(_offHeapCounts != null ? _offHeapCounts : counts());
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private void requireMode(RunOptions.CountMode mode) {
+        if (_mode != mode) throw new IllegalStateException("The result of a " + _mode + " count has no " + mode + " result.");
+    }
+
+    //endregion
+}
@@ -0,0 +1,376 @@
+package com.company;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * A word count table specialized for the words of a WordTokenizer, used instead of a HashMap of String to Long.
+ * <p>
+ * The words are stored back to back in one byte array, and the counts in a long array, so counting a word
+ * that was seen before allocates nothing. Entries are kept densely in insertion order, and an open addressing
+ * index with linear probing maps a word to its entry. The hash of every entry is cached, so probing mostly
+ * compares ints, and growing the index never re-hashes a word.
+ * <p>
+ * The table is not thread-safe. Each parser counts into its own table, and the tables are merged afterwards.
+ */
+final class WordCountTable implements WordSink {
+
+    //region Static Final Class Variables
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int AVERAGE_WORD_LENGTH = 8;
+
+    //The index is grown when it is more than 70% full.
+    private static final int LOAD_FACTOR_PERCENT = 70;
+
+    //endregion
+
+    //region Visitor
+
+    /**
+     * Receives the entries of a table, one at a time. Like for a WordSink, the word array is only valid for
+     * the duration of the call.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        void visit(byte[] word, int offset, int length, long count);
+    }
+
+    //endregion
+
+    //region Variables
+
+    //The index: entry number plus one for every used slot, zero for free slots.
+    private int[] _slots;
+
+    //The entries, in insertion order.
+    private int[] _hashes;
+    private int[] _keyOffsets;
+    private int[] _keyLengths;
+    private long[] _counts;
+    private int _size;
+
+    //The words of all entries, back to back.
+    private byte[] _keys;
+    private int _keysLength;
+
+    //endregion
+
+    //region Constructors
+
+    WordCountTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of distinct words the table should hold before it has to grow.
+     */
+    WordCountTable(int expectedSize) {
+        if (expectedSize < 0) throw new IllegalArgumentException("'expectedSize' cannot be negative.");
+        final int entryCapacity = Math.max(16, expectedSize);
+        _slots = new int[slotCountFor(entryCapacity)];
+        _hashes = new int[entryCapacity];
+        _keyOffsets = new int[entryCapacity];
+        _keyLengths = new int[entryCapacity];
+        _counts = new long[entryCapacity];
+        _keys = new byte[entryCapacity * AVERAGE_WORD_LENGTH];
+    }
+
+    private WordCountTable(int[] hashes, int[] keyOffsets, int[] keyLengths, long[] counts, int size, byte[] keys, int keysLength) {
+        _hashes = hashes;
+        _keyOffsets = keyOffsets;
+        _keyLengths = keyLengths;
+        _counts = counts;
+        _size = size;
+        _keys = keys;
+        _keysLength = keysLength;
+        _slots = new int[slotCountFor(Math.max(16, size))];
+        rebuildSlots();
+    }
+
+    /**
+     * Builds a table on entry arrays filled elsewhere, such as the stripe of a WordDictionary, without copying
+     * the words. The table takes over the arrays.
+     *
+     * @param counts the count of every entry. It is copied only when it is shorter than the other entry arrays.
+     */
+    static WordCountTable wrap(int[] hashes, int[] keyOffsets, int[] keyLengths, long[] counts, int size, byte[] keys, int keysLength) {
+        if (hashes == null || keyOffsets == null || keyLengths == null || counts == null || keys == null) {
+            throw new IllegalArgumentException("The entry arrays cannot be null.");
+        }
+        final int capacity = hashes.length;
+        if (capacity == 0 || keyOffsets.length != capacity || keyLengths.length != capacity) {
+            throw new IllegalArgumentException("The entry arrays must have the same, positive length.");
+        }
+        if (size < 0 || size > capacity || counts.length < size) throw new IllegalArgumentException("'size' is out of range.");
+        if (keysLength < 0 || keysLength > keys.length) throw new IllegalArgumentException("'keysLength' is out of range.");
+        final long[] entryCounts = counts.length == capacity ? counts : Arrays.copyOf(counts, capacity);
+        return new WordCountTable(hashes, keyOffsets, keyLengths, entryCounts, size, keys, keysLength);
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts one occurrence of a word. This is what the tokenizer calls for every word.
+     */
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        add(word, offset, length, 1L);
+    }
+
+    /**
+     * Adds a count to a word, adding the word first if it was not in the table.
+     */
+    void add(byte[] word, int offset, int length, long count) {
+        add(hash(word, offset, length), word, offset, length, count);
+    }
+
+    /**
+     * Adds the counts of every word of another table to this table.
+     */
+    void merge(WordCountTable other) {
+        if (other == null) throw new IllegalArgumentException("'other' cannot be null.");
+        for (int entry = 0; entry < other._size; entry++) {
+            add(other._hashes[entry], other._keys, other._keyOffsets[entry], other._keyLengths[entry], other._counts[entry]);
+        }
+    }
+
+    /**
+     * Adds a count to a word whose hash is already known, such as one routed here by PartitionedWordCounts.
+     */
+    void add(int hash, byte[] word, int offset, int length, long count) {
+        final int mask = _slots.length - 1;
+        int slot = hash & mask;
+        int entryPlusOne;
+        while ((entryPlusOne = _slots[slot]) != 0) {
+            final int entry = entryPlusOne - 1;
+            if (_hashes[entry] == hash && keyEquals(entry, word, offset, length)) {
+                _counts[entry] += count;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        //A word that was not seen before. Append it, then grow the index if it got too full.
+        _slots[slot] = appendEntry(hash, word, offset, length, count) + 1;
+        if ((long) _size * 100 > (long) _slots.length * LOAD_FACTOR_PERCENT) growSlots();
+    }
+
+    //endregion
+
+    //region Queries
+
+    /**
+     * @return the count of a word, or zero if the word is not in the table.
+     */
+    long get(byte[] word, int offset, int length) {
+        final int entry = find(hash(word, offset, length), word, offset, length);
+        return entry < 0 ? 0L : _counts[entry];
+    }
+
+    long get(String word) {
+        final byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+        return get(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the number of distinct words.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * @return the bytes the arrays of the table take on the heap, used or not.
+     */
+    long memoryBytes() {
+        return 4L * _slots.length + 20L * _hashes.length + _keys.length;
+    }
+
+    /**
+     * Visits every entry, in the order the words were first counted.
+     */
+    void forEach(Visitor visitor) {
+        for (int entry = 0; entry < _size; entry++) {
+            visitor.visit(_keys, _keyOffsets[entry], _keyLengths[entry], _counts[entry]);
+        }
+    }
+
+    /**
+     * @return a copy of the table as a map, for callers that need the Map API. It costs a String and a Long
+     * per word, so it is meant for the edges of the program only.
+     */
+    HashMap<String, Long> toMap() {
+        final HashMap<String, Long> map = new HashMap<>(_size * 4 / 3 + 1);
+        forEach((word, offset, length, count) -> map.put(new String(word, offset, length, StandardCharsets.ISO_8859_1), count));
+        return map;
+    }
+
+    //endregion
+
+    //region Sorting
+
+    /**
+     * @return the entry numbers of the table, by count from the highest, or by word. Words are compared byte by
+     * byte, which for the ASCII words of the tokenizer is alphabetical order. Equal counts are ordered by word.
+     */
+    int[] sortedEntries(boolean byCount) {
+        return sortEntries(_size, (first, second) -> compareEntries(this, first, this, second, byCount));
+    }
+
+    /**
+     * @return the entry numbers 0 to size - 1, sorted with the given comparison of two entry numbers. The sort is
+     * stable, and shared with the tables that keep their entries elsewhere, such as the OffHeapWordCountTable.
+     */
+    static int[] sortEntries(int size, IntBinaryOperator comparison) {
+        final int[] entries = new int[size];
+        for (int entry = 0; entry < size; entry++) entries[entry] = entry;
+        final int[] scratch = new int[size];
+        mergeSort(entries, scratch, 0, size, comparison);
+        return entries;
+    }
+
+    /**
+     * Compares an entry of one table with an entry of another, in the order of sortedEntries.
+     */
+    static int compareEntries(WordCountTable first, int firstEntry, WordCountTable second, int secondEntry, boolean byCount) {
+        if (byCount) {
+            final int byCountDescending = Long.compare(second._counts[secondEntry], first._counts[firstEntry]);
+            if (byCountDescending != 0) return byCountDescending;
+        }
+        final int firstOffset = first._keyOffsets[firstEntry];
+        final int secondOffset = second._keyOffsets[secondEntry];
+        final int firstLength = first._keyLengths[firstEntry];
+        final int secondLength = second._keyLengths[secondEntry];
+        final int length = Math.min(firstLength, secondLength);
+        for (int index = 0; index < length; index++) {
+            final int difference = (first._keys[firstOffset + index] & 0xFF) - (second._keys[secondOffset + index] & 0xFF);
+            if (difference != 0) return difference;
+        }
+        return firstLength - secondLength;
+    }
+
+    /**
+     * Visits a single entry, such as one from sortedEntries.
+     */
+    void visit(int entry, Visitor visitor) {
+        visitor.visit(_keys, _keyOffsets[entry], _keyLengths[entry], _counts[entry]);
+    }
+
+    /**
+     * A merge sort of entry numbers, since an int[] cannot be sorted with a Comparator without boxing every entry.
+     */
+    private static void mergeSort(int[] entries, int[] scratch, int from, int to, IntBinaryOperator comparison) {
+        if (to - from < 2) return;
+        final int middle = (from + to) >>> 1;
+        mergeSort(entries, scratch, from, middle, comparison);
+        mergeSort(entries, scratch, middle, to, comparison);
+        if (comparison.applyAsInt(entries[middle - 1], entries[middle]) <= 0) return;
+
+        System.arraycopy(entries, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int index = from; index < to; index++) {
+            if (right >= to || (left < middle && comparison.applyAsInt(scratch[left], scratch[right]) <= 0)) {
+                entries[index] = scratch[left++];
+            } else {
+                entries[index] = scratch[right++];
+            }
+        }
+    }
+
+    //endregion
+
+    //region Hashing and Probing
+
+    static int hash(byte[] word, int offset, int length) {
+        int hash = 0;
+        final int end = offset + length;
+        for (int index = offset; index < end; index++) hash = 31 * hash + word[index];
+
+        //Spread the bits, since the index only uses the low ones.
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private int find(int hash, byte[] word, int offset, int length) {
+        final int mask = _slots.length - 1;
+        int slot = hash & mask;
+        int entryPlusOne;
+        while ((entryPlusOne = _slots[slot]) != 0) {
+            final int entry = entryPlusOne - 1;
+            if (_hashes[entry] == hash && keyEquals(entry, word, offset, length)) return entry;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int entry, byte[] word, int offset, int length) {
+        if (_keyLengths[entry] != length) return false;
+        final int keyOffset = _keyOffsets[entry];
+        for (int index = 0; index < length; index++) {
+            if (_keys[keyOffset + index] != word[offset + index]) return false;
+        }
+        return true;
+    }
+
+    //endregion
+
+    //region Growing
+
+    private int appendEntry(int hash, byte[] word, int offset, int length, long count) {
+        if (_size == _counts.length) growEntries();
+        if (_keys.length - _keysLength < length) growKeys(length);
+
+        System.arraycopy(word, offset, _keys, _keysLength, length);
+        final int entry = _size++;
+        _hashes[entry] = hash;
+        _keyOffsets[entry] = _keysLength;
+        _keyLengths[entry] = length;
+        _counts[entry] = count;
+        _keysLength += length;
+        return entry;
+    }
+
+    private void growEntries() {
+        final int capacity = _counts.length * 2;
+        _hashes = Arrays.copyOf(_hashes, capacity);
+        _keyOffsets = Arrays.copyOf(_keyOffsets, capacity);
+        _keyLengths = Arrays.copyOf(_keyLengths, capacity);
+        _counts = Arrays.copyOf(_counts, capacity);
+    }
+
+    private void growKeys(int needed) {
+        _keys = Arrays.copyOf(_keys, Math.max(_keys.length * 2, _keysLength + needed));
+    }
+
+    private void growSlots() {
+        _slots = new int[_slots.length * 2];
+        rebuildSlots();
+    }
+
+    private void rebuildSlots() {
+        //The hashes are cached, so the index is rebuilt without touching the words.
+        final int[] slots = _slots;
+        final int mask = slots.length - 1;
+        for (int entry = 0; entry < _size; entry++) {
+            int slot = _hashes[entry] & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = entry + 1;
+        }
+    }
+
+    private static int slotCountFor(int entryCount) {
+        int slotCount = 16;
+        while ((long) slotCount * LOAD_FACTOR_PERCENT < (long) entryCount * 100) slotCount *= 2;
+        return slotCount;
+    }
+
+    //endregion
+}
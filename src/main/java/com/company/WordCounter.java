@@ -0,0 +1,1059 @@
+package com.company;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * The word count engine: reads a set of input files with readers, counts their words on parsers and merges the
+ * parser results, in one of the three count modes.
+ * <p>
+ * An engine is built once and then runs any number of counts, also at the same time from different threads.
+ * Its parser threads, reader threads and the reusable batches of the batched transport are shared by all of
+ * its counts, so a count after the first one starts on warm threads without allocating its buffers again.
+ * All the state of a single count lives on the stack of the thread that called it, metrics included:
+ * each result carries the PipelineMetrics of its count.
+ * <p>
+ * The threads of an engine are daemon threads. close() stops them once the running counts are done.
+ */
+final class WordCounter implements AutoCloseable {
+
+    //region Static Final Class Variables
+
+    private static final int PARSER_TIMEOUT = 5;
+    private static final TimeUnit PARSER_TIMEOUT_UNIT = TimeUnit.SECONDS;
+    private static final int CHUNKS_PER_PARSER = 2;
+    private static final int CORES_PER_READER = 4;
+
+    //The file tasks of all the counts of an engine keep at most this many files open at once.
+    private static final int MAX_OPEN_FILES = 256;
+
+    //And hold at most this many bytes of them in memory at once, which leaves room for several streamed chunks.
+    private static final int MAX_FILE_BUFFER_BYTES = 64 * 1024 * 1024;
+
+    //Without virtual threads, the file tasks block a platform thread each, so there are a few per core.
+    private static final int FILE_THREADS_PER_CORE = 8;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final int _threads;
+    private final int _partitionCount;
+    private final RunOptions.ReaderMode _readerMode;
+    private final RunOptions.Transport _transport;
+    private final RunOptions.Execution _execution;
+    private final RunOptions.CountStore _countStore;
+    private final RunOptions.Tokenizer _tokenizer;
+    private final Charset _encoding;
+    private final long _memoryBudget;
+    private final int _readers;
+    private final CountCache _cache;
+    private final CheckpointStore _checkpoints;
+    private final long _checkpointIntervalMillis;
+    private final Path _spillDirectory;
+    private final long _spillBudget;
+    private final int _ngramOrder;
+    private final ExecutorService _parserExecutor;
+    private final ExecutorService _readerExecutor;
+    private final ScheduledExecutorService _queueSampler;
+
+    //Only for the FILES execution: one task per input file, and the permits for the files they open and the bytes
+    //they read. The bytes are handed out in order, so that a large reservation is not starved by small ones.
+    private final ExecutorService _fileExecutor;
+    private final Semaphore _openFiles = new Semaphore(MAX_OPEN_FILES);
+    private final Semaphore _fileBufferBytes = new Semaphore(MAX_FILE_BUFFER_BYTES, true);
+
+    //Rings of the batched transport that are not in use by a count. They all have the same memory budget.
+    private final Queue<CharBatchRing> _rings = new ConcurrentLinkedQueue<>();
+
+    //endregion
+
+    //region Constructor
+
+    private WordCounter(Builder builder) {
+        _threads = builder._threads;
+        _partitionCount = builder._partitions > 0 ? builder._partitions : builder._threads;
+        _readerMode = builder._readerMode;
+        _transport = builder._transport;
+        _execution = builder._execution;
+        _countStore = builder._countStore;
+        _tokenizer = builder._tokenizer;
+        _encoding = builder._encoding;
+        _memoryBudget = builder._memoryBudget;
+        _readers = builder._readers;
+        _cache = openCache(builder);
+        _checkpoints = openCheckpoints(builder);
+        _checkpointIntervalMillis = builder._checkpointIntervalMillis;
+        _spillDirectory = openSpillDirectory(builder);
+        _spillBudget = builder._spillBudget;
+        _ngramOrder = builder._ngramOrder;
+        _parserExecutor = Executors.newFixedThreadPool(_threads, new DaemonThreadFactory("word-counter-parser-"));
+        _readerExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("word-counter-reader-"));
+        _queueSampler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("word-counter-sampler-"));
+        _fileExecutor = _execution == RunOptions.Execution.FILES
+                ? VirtualThreads.newThreadPerTaskExecutor(FILE_THREADS_PER_CORE * Runtime.getRuntime().availableProcessors(), "word-counter-file-")
+                : null;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    //endregion
+
+    //region Builder
+
+    static final class Builder {
+
+        private int _threads = Runtime.getRuntime().availableProcessors();
+        private int _partitions;
+        private RunOptions.ReaderMode _readerMode = RunOptions.ReaderMode.MAPPED;
+        private RunOptions.Transport _transport = RunOptions.Transport.BATCHED;
+        private RunOptions.Execution _execution = RunOptions.Execution.PIPELINE;
+        private RunOptions.CountStore _countStore = RunOptions.CountStore.TABLES;
+        private RunOptions.Tokenizer _tokenizer = RunOptions.Tokenizer.SCALAR;
+        private Charset _encoding = StandardCharsets.UTF_8;
+        private long _memoryBudget = CharBatchRing.DEFAULT_MEMORY_BUDGET;
+        private int _readers;
+        private String _cacheDirectory;
+        private boolean _cacheVerifyContent;
+        private boolean _cacheClear;
+        private String _checkpointDirectory;
+        private long _checkpointIntervalMillis;
+        private String _spillDirectory;
+        private long _spillBudget;
+        private int _ngramOrder;
+
+        private Builder() {
+        }
+
+        /**
+         * @param threads the number of parser threads, and of parsers per count. By default, one per core.
+         */
+        Builder threads(int threads) {
+            if (threads <= 0) throw new IllegalArgumentException("'threads' must be positive.");
+            _threads = threads;
+            return this;
+        }
+
+        /**
+         * @param partitions the number of partitions the exact counts are split into, and merged in parallel.
+         *                   By default, one per parser thread.
+         */
+        Builder partitions(int partitions) {
+            if (partitions <= 0 || partitions > PartitionedWordCounts.MAX_PARTITIONS) {
+                throw new IllegalArgumentException("'partitions' must be between 1 and " + PartitionedWordCounts.MAX_PARTITIONS + ".");
+            }
+            _partitions = partitions;
+            return this;
+        }
+
+        Builder readerMode(RunOptions.ReaderMode readerMode) {
+            if (readerMode == null) throw new IllegalArgumentException("'readerMode' cannot be null.");
+            _readerMode = readerMode;
+            return this;
+        }
+
+        Builder transport(RunOptions.Transport transport) {
+            if (transport == null) throw new IllegalArgumentException("'transport' cannot be null.");
+            _transport = transport;
+            return this;
+        }
+
+        /**
+         * @param execution whether to run the files through the reader and parser pipeline, or on a task each.
+         */
+        Builder execution(RunOptions.Execution execution) {
+            if (execution == null) throw new IllegalArgumentException("'execution' cannot be null.");
+            _execution = execution;
+            return this;
+        }
+
+        /**
+         * @param countStore whether the parsers of an exact count keep tables of their own, on the heap or off it, or
+         *                   share a dictionary. Counts with the cache or checkpoints keep off-heap counts on the heap.
+         */
+        Builder countStore(RunOptions.CountStore countStore) {
+            if (countStore == null) throw new IllegalArgumentException("'countStore' cannot be null.");
+            _countStore = countStore;
+            return this;
+        }
+
+        /**
+         * @param tokenizer how the parsers of mapped chunks and file tasks scan the bytes for words.
+         */
+        Builder tokenizer(RunOptions.Tokenizer tokenizer) {
+            if (tokenizer == null) throw new IllegalArgumentException("'tokenizer' cannot be null.");
+            _tokenizer = tokenizer;
+            return this;
+        }
+
+        /**
+         * @param encoding the charset of the input files. UTF-8 by default, whatever the platform default is.
+         */
+        Builder encoding(Charset encoding) {
+            if (encoding == null) throw new IllegalArgumentException("'encoding' cannot be null.");
+            _encoding = encoding;
+            return this;
+        }
+
+        /**
+         * @param memoryBudget the bytes the batches of one count may take, with the batched transport.
+         */
+        Builder memoryBudget(long memoryBudget) {
+            if (memoryBudget <= 0) throw new IllegalArgumentException("'memoryBudget' must be positive.");
+            _memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * @param readers the number of reader threads per count. By default, one per four cores.
+         */
+        Builder readers(int readers) {
+            if (readers <= 0) throw new IllegalArgumentException("'readers' must be positive.");
+            _readers = readers;
+            return this;
+        }
+
+        /**
+         * Keeps the exact counts of every input file in a CountCache, in the given directory.
+         *
+         * @param clear whether to drop every entry of the cache when the engine is built.
+         */
+        Builder cache(String directory, boolean verifyContent, boolean clear) {
+            if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+            _cacheDirectory = directory;
+            _cacheVerifyContent = verifyContent;
+            _cacheClear = clear;
+            return this;
+        }
+
+        /**
+         * Takes checkpoints of every exact count in the given directory, at most every intervalMillis, and resumes
+         * a count of the same files from its checkpoint. A directory holds the checkpoint of a single count, so the
+         * counts of such an engine must not run at the same time.
+         */
+        Builder checkpoint(String directory, long intervalMillis) {
+            if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+            if (intervalMillis <= 0) throw new IllegalArgumentException("'intervalMillis' must be positive.");
+            _checkpointDirectory = directory;
+            _checkpointIntervalMillis = intervalMillis;
+            return this;
+        }
+
+        /**
+         * Lets the parsers of every exact count spill their counts to sorted runs in the given directory, once their
+         * tables take more than their share of the budget. The counts of such a result are merged as they are
+         * written, sorted by word. The count store does not apply: every parser keeps a table of its own.
+         *
+         * @param budgetBytes the heap the tables of all the parsers of a count may take together.
+         */
+        Builder spill(String directory, long budgetBytes) {
+            if (directory == null) throw new IllegalArgumentException("'directory' cannot be null.");
+            if (budgetBytes <= 0) throw new IllegalArgumentException("'budgetBytes' must be positive.");
+            _spillDirectory = directory;
+            _spillBudget = budgetBytes;
+            return this;
+        }
+
+        /**
+         * Counts the n-grams of every order from 2 to maxOrder with the words of every exact count, in the same pass.
+         * The n-grams are cut from chunks, so they need the mapped reader and a charset chunks can be cut in. The
+         * cache, checkpoints, spilling and the count store do not apply: the words are counted into a dictionary.
+         */
+        Builder ngrams(int maxOrder) {
+            if (maxOrder < NGramCounts.MIN_ORDER || maxOrder > NGramCounts.MAX_ORDER) {
+                throw new IllegalArgumentException("'maxOrder' must be between " + NGramCounts.MIN_ORDER + " and " + NGramCounts.MAX_ORDER + ".");
+            }
+            _ngramOrder = maxOrder;
+            return this;
+        }
+
+        WordCounter build() {
+            return new WordCounter(this);
+        }
+    }
+
+    //endregion
+
+    //region Counting
+
+    /**
+     * Counts every word of the inputs exactly. With a spill directory, the result holds the counts in sorted runs
+     * on disk, see WordCountResult.spilled(). With n-grams, it holds the n-grams next to the words, see
+     * WordCountResult.ngrams().
+     *
+     * @param inputs file paths, directories and glob patterns.
+     * @throws IllegalArgumentException when there is no input, or an input is not a readable file.
+     */
+    WordCountResult count(String... inputs) {
+        final long start = System.nanoTime();
+        final String[] filePath = prepareInputs(inputs);
+        final PipelineMetrics metrics = new PipelineMetrics();
+        if (_ngramOrder > 0) return countNGrams(filePath, start, metrics);
+        if (_spillDirectory != null) return countSpilled(filePath, start, metrics);
+        if (_countStore == RunOptions.CountStore.OFF_HEAP && _checkpoints == null && _cache == null) {
+            final OffHeapWordCounts counts = countOffHeap(filePath, metrics);
+            return WordCountResult.offHeap(counts, filePath.length, System.nanoTime() - start, metrics);
+        }
+        final PartitionedWordCounts counts;
+        if (_checkpoints != null) {
+            counts = countWithCheckpoints(filePath, metrics);
+        } else if (_cache != null) {
+            counts = countWithCache(filePath, metrics);
+        } else {
+            counts = countExact(filePath, metrics);
+        }
+        return WordCountResult.exact(counts, filePath.length, System.nanoTime() - start, metrics);
+    }
+
+    /**
+     * Counts every word of a shard of a distributed count exactly, for a ShardWorker. Whole files are read like in
+     * count(), ranges of files are mapped and cut into chunks. The counts are kept in tables on the heap, whatever
+     * the count store of the engine.
+     *
+     * @param partitionCount the number of partitions of the counts, the same for every shard of the count, so that
+     *                       the ShardCoordinator merges partition i of every shard into its own partition i.
+     * @throws IllegalStateException when the encoding of the engine cannot be cut into chunks.
+     */
+    WordCountResult countRanges(FileRange[] ranges, int partitionCount) {
+        if (ranges == null || ranges.length == 0) throw new IllegalArgumentException("'ranges' cannot be null or empty.");
+        if (!MappedFileReader.supportsCharset(_encoding)) {
+            throw new IllegalStateException("Ranges of files cannot be counted in " + _encoding.name() + ".");
+        }
+        final long start = System.nanoTime();
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final List<PartitionedWordCounts> parserCounts = runRangeParsers(ranges, () -> new PartitionedWordCounts(partitionCount), metrics);
+        final PartitionedWordCounts counts = parserCounts.isEmpty()
+                ? new PartitionedWordCounts(partitionCount)
+                : mergeCounts(parserCounts, "parser", metrics);
+        return WordCountResult.exact(counts, ranges.length, System.nanoTime() - start, metrics);
+    }
+
+    /**
+     * Finds the most frequent words of the inputs, in Space-Saving summaries of a fixed number of counters.
+     */
+    WordCountResult countTop(int capacity, String... inputs) {
+        if (capacity <= 0) throw new IllegalArgumentException("'capacity' must be positive.");
+        final long start = System.nanoTime();
+        final String[] filePath = prepareInputs(inputs);
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final List<SpaceSavingSummary> summaries = runParsers(filePath, () -> new SpaceSavingSummary(capacity), metrics);
+
+        ConsoleOutput.printMessageWithGaps("Merging individual parser summaries...");
+        final long mergeStart = System.nanoTime();
+        final SpaceSavingSummary summary = SpaceSavingSummary.merge(summaries, capacity);
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, System.nanoTime() - mergeStart);
+        ConsoleOutput.printMessageWithGaps("Summaries merged.");
+        return WordCountResult.top(summary, filePath.length, System.nanoTime() - start, metrics);
+    }
+
+    /**
+     * Estimates the number of distinct words of the inputs, with HyperLogLog sketches of the given precision.
+     */
+    WordCountResult countDistinct(int precision, String... inputs) {
+        final long start = System.nanoTime();
+        final HyperLogLog sketch = new HyperLogLog(precision);
+        final String[] filePath = prepareInputs(inputs);
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final List<HyperLogLog> parserSketches = runParsers(filePath, () -> new HyperLogLog(precision), metrics);
+
+        //Merging sketches is a register-wise maximum, cheap enough to do serially.
+        final long mergeStart = System.nanoTime();
+        for (HyperLogLog parserSketch : parserSketches) sketch.merge(parserSketch);
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, System.nanoTime() - mergeStart);
+        ConsoleOutput.printMessageWithGaps("Sketches merged.");
+        return WordCountResult.cardinality(sketch, filePath.length, System.nanoTime() - start, metrics);
+    }
+
+    /**
+     * Counts a live stream exactly, on the parser threads of the engine, and hands the listener a snapshot of the
+     * window at the end of each of its panes, and a last one when the stream ends. Returns once the stream has
+     * ended. The stream is not closed.
+     *
+     * @throws IllegalArgumentException when the encoding of the engine cannot be cut into chunks.
+     */
+    void countStream(InputStream input, StreamWindow window, StreamCounter.SnapshotListener listener) {
+        if (_parserExecutor.isShutdown()) throw new IllegalStateException("The word counter is closed.");
+        new StreamCounter(_parserExecutor, _readerExecutor, _threads, _partitionCount, _encoding, _tokenizer,
+                MappedFileReader.DEFAULT_CHUNK_SIZE).count(input, window, listener);
+    }
+
+    /**
+     * @return the executor to sort a result on while it is written. It is the reader executor, which starts a thread
+     * for every task, so that the sort never waits behind the parsers of a stream or of another job.
+     */
+    ExecutorService sortExecutor() {
+        return _readerExecutor;
+    }
+
+    /**
+     * Stops the threads of the engine once the tasks it was given are done. No count can start after this.
+     */
+    @Override
+    public void close() {
+        _parserExecutor.shutdown();
+        _readerExecutor.shutdown();
+        _queueSampler.shutdown();
+        if (_fileExecutor != null) _fileExecutor.shutdown();
+    }
+
+    //endregion
+
+    //region Count Cache
+
+    private PartitionedWordCounts countWithCache(String[] filePath, PipelineMetrics metrics) {
+        final List<PartitionedWordCounts> fileResults = new ArrayList<>();
+        final List<String> missed = new ArrayList<>();
+        final Map<String, CountCache.Fingerprint> fingerprints = new LinkedHashMap<>();
+        for (String path : filePath) {
+            if (fingerprints.containsKey(path)) {
+                //A file given twice is counted once, and its counts are added twice.
+                missed.add(path);
+                continue;
+            }
+
+            //The fingerprint is taken before the file is counted, so that a change during the count is noticed.
+            final CountCache.Fingerprint fingerprint;
+            try {
+                fingerprint = _cache.fingerprint(path);
+            } catch (IOException e) {
+                ConsoleOutput.printIOException("Cannot take the fingerprint of file: " + path + ". Counting it without the cache.", e);
+                missed.add(path);
+                fingerprints.put(path, null);
+                continue;
+            }
+
+            //An unchanged file skips the reader and parsers, and is merged straight from the cache.
+            final PartitionedWordCounts cached = new PartitionedWordCounts(_partitionCount);
+            if (_cache.load(path, fingerprint, cached)) {
+                fileResults.add(cached);
+                continue;
+            }
+            missed.add(path);
+            fingerprints.put(path, fingerprint);
+        }
+
+        //Otherwise, the files are counted together, each into counts of its own, so that they can be stored for the next run.
+        if (!missed.isEmpty()) {
+            final long start = System.nanoTime();
+            final Map<String, PartitionedWordCounts> counts = countEachFile(fingerprints.keySet(), metrics);
+            final long countNanos = System.nanoTime() - start;
+            storeEachFile(fingerprints, counts, countNanos);
+            for (String path : missed) fileResults.add(counts.get(path));
+        }
+        ConsoleOutput.printCacheStatistics(_cache.hits(), _cache.misses(), _cache.savedNanos());
+        return mergeCounts(fileResults, "file", metrics);
+    }
+
+    /**
+     * Counts the files in one run of the pipeline, each into counts of its own. The line parsers cannot tell the
+     * files apart, so with the line reader, every file is counted on its own.
+     */
+    private Map<String, PartitionedWordCounts> countEachFile(Collection<String> filePaths, PipelineMetrics metrics) {
+        final Map<String, PartitionedWordCounts> counts = new HashMap<>();
+        if (!parsesChunks()) {
+            for (String path : filePaths) counts.put(path, countExact(new String[]{path}, metrics));
+            return counts;
+        }
+
+        final List<FileWordCounts> parserCounts = runParsers(filePaths.toArray(new String[0]),
+                () -> new FileWordCounts(filePaths, _partitionCount), metrics);
+        for (String path : filePaths) {
+            final List<PartitionedWordCounts> fileCounts = new ArrayList<>();
+            for (FileWordCounts parser : parserCounts) {
+                if (parser.counts(path) != null) fileCounts.add(parser.counts(path));
+            }
+            if (fileCounts.isEmpty()) {
+                counts.put(path, new PartitionedWordCounts(_partitionCount));
+            } else {
+                counts.put(path, fileCounts.size() == 1 ? fileCounts.get(0) : mergeResults(fileCounts, metrics));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Stores the counts of every file that has a fingerprint. The files were counted together, so each is taken
+     * to have cost its share of the time by size.
+     */
+    private void storeEachFile(Map<String, CountCache.Fingerprint> fingerprints, Map<String, PartitionedWordCounts> counts, long countNanos) {
+        long totalSize = 0;
+        for (CountCache.Fingerprint fingerprint : fingerprints.values()) {
+            if (fingerprint != null) totalSize += fingerprint.size();
+        }
+        for (Map.Entry<String, CountCache.Fingerprint> file : fingerprints.entrySet()) {
+            final CountCache.Fingerprint fingerprint = file.getValue();
+            if (fingerprint == null) continue;
+            final long fileNanos = totalSize == 0 ? 0L : (long) (countNanos * (fingerprint.size() / (double) totalSize));
+            _cache.store(file.getKey(), fingerprint, counts.get(file.getKey()), fileNanos);
+        }
+    }
+
+    /**
+     * @return whether the counts run through ChunkParsers, which tell their sinks the file of every chunk.
+     */
+    private boolean parsesChunks() {
+        if (!MappedFileReader.supportsCharset(_encoding)) return false;
+        return _execution == RunOptions.Execution.FILES || _readerMode == RunOptions.ReaderMode.MAPPED;
+    }
+
+    private static CountCache openCache(Builder builder) {
+        if (builder._cacheDirectory == null) return null;
+        try {
+            final CountCache cache = new CountCache(Paths.get(builder._cacheDirectory), builder._cacheVerifyContent,
+                    builder._encoding, builder._tokenizer);
+            if (builder._cacheClear) cache.clear();
+            return cache;
+        } catch (IOException e) {
+            final String errorHeader = "Cannot use the count cache in: " + builder._cacheDirectory + ". Counting without it.";
+            ConsoleOutput.printIOException(errorHeader, e);
+            return null;
+        }
+    }
+
+    //endregion
+
+    //region Checkpoints
+
+    private PartitionedWordCounts countWithCheckpoints(String[] filePath, PipelineMetrics metrics) {
+        if (_parserExecutor.isShutdown()) throw new IllegalStateException("The word counter is closed.");
+        if (!MappedFileReader.supportsCharset(_encoding)) {
+            ConsoleOutput.printMessageWithGaps("Encoding " + _encoding.name() + " cannot be cut into chunks. Counting without checkpoints.");
+            return countExact(filePath, metrics);
+        }
+        return new CheckpointedCounter(_parserExecutor, _threads, _partitionCount, _encoding, _tokenizer,
+                MappedFileReader.DEFAULT_CHUNK_SIZE, _checkpoints, _checkpointIntervalMillis).count(filePath, metrics);
+    }
+
+    private static CheckpointStore openCheckpoints(Builder builder) {
+        if (builder._checkpointDirectory == null) return null;
+        try {
+            return new CheckpointStore(Paths.get(builder._checkpointDirectory));
+        } catch (IOException e) {
+            final String errorHeader = "Cannot keep checkpoints in: " + builder._checkpointDirectory + ". Counting without them.";
+            ConsoleOutput.printIOException(errorHeader, e);
+            return null;
+        }
+    }
+
+    //endregion
+
+    //region Spilling
+
+    /**
+     * Counts the files with a SpillingWordCounts per parser, each with an equal share of the budget, and leaves
+     * the merge of their runs to the writer of the result.
+     */
+    private WordCountResult countSpilled(String[] filePath, long start, PipelineMetrics metrics) {
+        final long parserBudget = Math.max(1L, _spillBudget / _threads);
+        final List<SpillingWordCounts> parserCounts = runParsers(filePath, () -> new SpillingWordCounts(_spillDirectory, parserBudget), metrics);
+
+        final List<Path> runs = new ArrayList<>();
+        long spillNanos = 0;
+        for (SpillingWordCounts counts : parserCounts) {
+            runs.addAll(counts.finish());
+            spillNanos += counts.spillNanos();
+        }
+        metrics.recordStage(PipelineMetrics.Stage.SPILL, spillNanos);
+        ConsoleOutput.printMessageWithGaps("Counts spilled to " + runs.size() + " sorted run(s) in " + _spillDirectory
+                + ". They are merged as the results are written.");
+        return WordCountResult.spilled(new SortedRuns(_spillDirectory, runs), filePath.length, System.nanoTime() - start, metrics);
+    }
+
+    private static Path openSpillDirectory(Builder builder) {
+        if (builder._spillDirectory == null) return null;
+        try {
+            return Files.createDirectories(Paths.get(builder._spillDirectory));
+        } catch (IOException e) {
+            final String errorHeader = "Cannot spill the counts to: " + builder._spillDirectory + ". Counting in memory.";
+            ConsoleOutput.printIOException(errorHeader, e);
+            return null;
+        }
+    }
+
+    //endregion
+
+    //region N-Grams
+
+    /**
+     * Counts the words and n-grams of the files in one pass, with an NGramCounts per parser that share a dictionary.
+     * Once the parsers are done, the n-grams that cross the chunk boundaries are added, and the words are merged
+     * stripe by stripe, and the n-grams partition by partition of every order.
+     */
+    private WordCountResult countNGrams(String[] filePath, long start, PipelineMetrics metrics) {
+        if (_readerMode != RunOptions.ReaderMode.MAPPED || !MappedFileReader.supportsCharset(_encoding)) {
+            throw new IllegalStateException("N-grams are counted from chunks, which need the mapped reader and a charset"
+                    + " chunks can be cut in, not " + _encoding.name() + ".");
+        }
+        final WordDictionary dictionary = new WordDictionary(_partitionCount);
+        final List<NGramCounts> parserCounts = runParsers(filePath, () -> new NGramCounts(dictionary, _ngramOrder), metrics);
+
+        ConsoleOutput.printMessageWithGaps("Stitching the n-grams across chunk boundaries...");
+        final long stitchStart = System.nanoTime();
+        NGramCounts.stitchChunks(parserCounts);
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, System.nanoTime() - stitchStart);
+
+        ConsoleOutput.printMessageWithGaps("Summing individual parser counts...");
+        final List<WordIdCounts> wordCounts = new ArrayList<>();
+        for (NGramCounts counts : parserCounts) wordCounts.add(counts.words());
+        final PartitionedWordCounts words = wordCounts.isEmpty()
+                ? new PartitionedWordCounts(1)
+                : mergePartitions(_partitionCount, stripe -> WordIdCounts.mergeStripe(stripe, wordCounts), metrics);
+
+        //The partitions of every order in one array, so that all of them are merged at once.
+        final NGramTable[] ngrams = new NGramTable[(_ngramOrder - NGramCounts.MIN_ORDER + 1) * _partitionCount];
+        mergeEachPartition(ngrams, index -> NGramCounts.mergePartition(NGramCounts.MIN_ORDER + index / _partitionCount,
+                index % _partitionCount, parserCounts), metrics);
+        final MergedNGramCounts merged = new MergedNGramCounts(words, dictionary, ngrams);
+        ConsoleOutput.printMessageWithGaps("Results merged: " + merged.words().size() + " words and "
+                + merged.ngramCount() + " n-grams of up to " + _ngramOrder + " words.");
+        return WordCountResult.ngrams(merged, filePath.length, System.nanoTime() - start, metrics);
+    }
+
+    //endregion
+
+    //region Off-Heap Counts
+
+    /**
+     * Counts the files into off-heap tables, and merges them partition by partition, without leaving the buffers.
+     */
+    private OffHeapWordCounts countOffHeap(String[] filePath, PipelineMetrics metrics) {
+        final List<OffHeapWordCounts> parserCounts = runParsers(filePath, () -> new OffHeapWordCounts(_partitionCount), metrics);
+        ConsoleOutput.printMessageWithGaps("Merging individual parser results...");
+        final OffHeapWordCountTable[] mergedPartitions = new OffHeapWordCountTable[_partitionCount];
+        mergeEachPartition(mergedPartitions, partition -> OffHeapWordCounts.mergePartition(partition, parserCounts), metrics);
+        final OffHeapWordCounts merged = OffHeapWordCounts.of(mergedPartitions);
+        ConsoleOutput.printMessageWithGaps("Results merged, " + (merged.memoryBytes() >> 20) + " MB off the heap.");
+        return merged;
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * Counts the files into the count store of the engine, and merges the parser results. Off-heap counts are only
+     * kept by count(), so here they are counted into tables on the heap.
+     */
+    private PartitionedWordCounts countExact(String[] filePath, PipelineMetrics metrics) {
+        if (_countStore == RunOptions.CountStore.DICTIONARY) {
+            final WordDictionary dictionary = new WordDictionary(_partitionCount);
+            final List<WordIdCounts> parserCounts = runParsers(filePath, () -> new WordIdCounts(dictionary), metrics);
+            ConsoleOutput.printMessageWithGaps("Summing individual parser counts...");
+            final PartitionedWordCounts merged = parserCounts.isEmpty()
+                    ? new PartitionedWordCounts(1)
+                    : mergePartitions(_partitionCount, stripe -> WordIdCounts.mergeStripe(stripe, parserCounts), metrics);
+            ConsoleOutput.printMessageWithGaps("Results merged.");
+            return merged;
+        }
+        return mergeCounts(runParsers(filePath, () -> new PartitionedWordCounts(_partitionCount), metrics), "parser", metrics);
+    }
+
+    private PartitionedWordCounts mergeCounts(List<PartitionedWordCounts> results, String source, PipelineMetrics metrics) {
+        ConsoleOutput.printMessageWithGaps("Merging individual " + source + " results...");
+        final PartitionedWordCounts merged = mergeResults(results, metrics);
+        ConsoleOutput.printMessageWithGaps("Results merged.");
+        return merged;
+    }
+
+    private PartitionedWordCounts mergeResults(List<PartitionedWordCounts> results, PipelineMetrics metrics) {
+        if (results.isEmpty()) return new PartitionedWordCounts(1);
+        return mergePartitions(results.get(0).partitionCount(), partition -> PartitionedWordCounts.mergePartition(partition, results), metrics);
+    }
+
+    /**
+     * Merges partition i of every result on its own task. The partitions hold
+     * disjoint sets of words, so the merges share nothing.
+     */
+    private PartitionedWordCounts mergePartitions(int partitionCount, IntFunction<WordCountTable> mergePartition, PipelineMetrics metrics) {
+        final WordCountTable[] mergedPartitions = new WordCountTable[partitionCount];
+        mergeEachPartition(mergedPartitions, mergePartition, metrics);
+        return PartitionedWordCounts.of(mergedPartitions);
+    }
+
+    /**
+     * Merges partition i of every result on its own task, into mergedPartitions[i].
+     * <p>
+     * A partition that fails to merge fails the whole count, since the result would miss every word of it. The
+     * failure of the merge is thrown as it is when unchecked, and in an IllegalStateException otherwise.
+     */
+    private <T> void mergeEachPartition(T[] mergedPartitions, IntFunction<T> mergePartition, PipelineMetrics metrics) {
+        final long start = System.nanoTime();
+        final int partitionCount = mergedPartitions.length;
+        final List<Future<T>> mergedFutures = new ArrayList<>();
+        for (int partition = 0; partition < partitionCount; partition++) {
+            final int index = partition;
+            mergedFutures.add(_parserExecutor.submit(() -> mergePartition.apply(index)));
+        }
+
+        try {
+            for (int partition = 0; partition < partitionCount; partition++) {
+                mergedPartitions[partition] = mergedFutures.get(partition).get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<T> merge : mergedFutures) merge.cancel(true);
+            final String errorHeader = "Interrupted while awaiting the partition merges.";
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(errorHeader, e);
+        } catch (ExecutionException e) {
+            for (Future<T> merge : mergedFutures) merge.cancel(true);
+            final Throwable cause = e.getCause();
+            final String errorHeader = "ExcecutionException thrown while merging the partitions.";
+            ConsoleOutput.printExecutionException(errorHeader, cause, e);
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("A partition failed to merge.", cause);
+        }
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, System.nanoTime() - start);
+    }
+
+    //endregion
+
+    //region Orchestration
+
+    /**
+     * Runs the readers and one parser per parser thread over the files, and returns the sinks the parsers
+     * counted into, once every parser is done. Their statistics, and samples of the depth of the queue
+     * between them, go to the metrics of the count.
+     */
+    private <S extends WordSink> List<S> runParsers(String[] filePath, Supplier<S> sinkFactory, PipelineMetrics metrics) {
+        if (_parserExecutor.isShutdown()) throw new IllegalStateException("The word counter is closed.");
+        if (_execution == RunOptions.Execution.FILES && canRunFileTasks()) return runFileTasks(filePath, sinkFactory, metrics);
+        final RunOptions.ReaderMode readerMode = resolveReaderMode();
+        final long start = System.nanoTime();
+        final List<PipelineMetrics.ReaderStage> readerStages = new ArrayList<>();
+        final List<PipelineMetrics.ParserStage> parserStages = new ArrayList<>();
+        CharBatchRing ring = null;
+        final List<Future<?>> readers;
+        final List<Future<S>> parsers;
+        final ScheduledFuture<?> sampling;
+
+        if (readerMode == RunOptions.ReaderMode.MAPPED) {
+            //The chunks are big, so keep only a few of them in flight per parser.
+            final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(_threads * CHUNKS_PER_PARSER);
+            final FileSchedule files = schedule(filePath, readerCount(filePath.length));
+
+            readers = startReaders(files, () -> new MappedFileReader(files, chunks, _readerExecutor), readerStages);
+            parsers = startParsers(() -> new ChunkParser<>(chunks, _encoding, _tokenizer, sinkFactory.get()), parserStages);
+            sampling = sampleQueue(metrics, chunks::size, chunks.capacity());
+        } else if (_transport == RunOptions.Transport.BATCHED) {
+            //A fixed number of reusable batches, so that a fast reader cannot fill up the heap.
+            final CharBatchRing batches = acquireRing();
+            ring = batches;
+
+            //A reader holds up to two batches while it cuts one, so leave a batch for the parsers to work on.
+            final int readerCount = Math.min(readerCount(filePath.length), Math.max(1, batches.batchCount() / 2 - 1));
+            final FileSchedule files = schedule(filePath, readerCount);
+
+            readers = startReaders(files, () -> new DiskFileReader(files, _encoding, batches), readerStages);
+            parsers = startParsers(() -> new LineParser<>(batches, sinkFactory.get()), parserStages);
+            sampling = sampleQueue(metrics, batches::publishedCount, batches.batchCount());
+        } else {
+            //Setting up a LinkedBlockingQueue, so that there is no space issue in the buffer.
+            final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+            final FileSchedule files = schedule(filePath, readerCount(filePath.length));
+
+            readers = startReaders(files, () -> new DiskFileReader(files, _encoding, lines), readerStages);
+            parsers = startParsers(() -> new LineParser<>(lines, sinkFactory.get()), parserStages);
+            sampling = sampleQueue(metrics, lines::size, 0);
+        }
+
+        final List<S> results = awaitPipeline(start, readers, parsers, sampling, readerStages, parserStages, metrics);
+        if (ring != null) releaseRing(ring);
+        return results;
+    }
+
+    /**
+     * Runs the mapped readers over files and ranges of files, and one chunk parser per parser thread, for a
+     * ShardWorker. The ranges are read in the order given.
+     */
+    private <S extends WordSink> List<S> runRangeParsers(FileRange[] ranges, Supplier<S> sinkFactory, PipelineMetrics metrics) {
+        if (_parserExecutor.isShutdown()) throw new IllegalStateException("The word counter is closed.");
+        final long start = System.nanoTime();
+        final List<PipelineMetrics.ReaderStage> readerStages = new ArrayList<>();
+        final List<PipelineMetrics.ParserStage> parserStages = new ArrayList<>();
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(_threads * CHUNKS_PER_PARSER);
+        final FileSchedule files = new FileSchedule(ranges, readerCount(ranges.length));
+
+        final List<Future<?>> readers = startReaders(files, () -> new MappedFileReader(files, chunks, _readerExecutor), readerStages);
+        final List<Future<S>> parsers = startParsers(() -> new ChunkParser<>(chunks, _encoding, _tokenizer, sinkFactory.get()), parserStages);
+        final ScheduledFuture<?> sampling = sampleQueue(metrics, chunks::size, chunks.capacity());
+        return awaitPipeline(start, readers, parsers, sampling, readerStages, parserStages, metrics);
+    }
+
+    /**
+     * Waits for the readers, then for the parsers, and adds their statistics to the metrics of the count.
+     */
+    private <S extends WordSink> List<S> awaitPipeline(long start, List<Future<?>> readers, List<Future<S>> parsers, ScheduledFuture<?> sampling,
+                                                       List<PipelineMetrics.ReaderStage> readerStages,
+                                                       List<PipelineMetrics.ParserStage> parserStages, PipelineMetrics metrics) {
+        //First wait for the readers to finish. Soon after them, the parsers will be done.
+        final List<S> results;
+        try {
+            waitForReaders(readers);
+            metrics.recordStage(PipelineMetrics.Stage.READ, System.nanoTime() - start);
+            results = collectParserResults(parsers);
+            metrics.recordStage(PipelineMetrics.Stage.PARSE, System.nanoTime() - start);
+        } finally {
+            sampling.cancel(false);
+        }
+        for (PipelineMetrics.ReaderStage reader : readerStages) metrics.recordReader(reader);
+        for (PipelineMetrics.ParserStage parser : parserStages) metrics.recordParser(parser);
+        return results;
+    }
+
+    /**
+     * Runs a task per file instead of the pipeline. The tasks count into one parser per parser thread,
+     * which they borrow chunk by chunk.
+     */
+    private <S extends WordSink> List<S> runFileTasks(String[] filePath, Supplier<S> sinkFactory, PipelineMetrics metrics) {
+        final List<ChunkParser<S>> parsers = new ArrayList<>();
+        for (int index = 0; index < _threads; index++) parsers.add(new ChunkParser<>(_encoding, _tokenizer, sinkFactory.get()));
+        final FileTaskCounter<S> files = new FileTaskCounter<>(_fileExecutor, _openFiles, _fileBufferBytes, parsers,
+                MappedFileReader.DEFAULT_CHUNK_SIZE);
+
+        final List<S> results = files.count(filePath);
+        metrics.recordStage(PipelineMetrics.Stage.READ, files.elapsedNanos());
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, files.elapsedNanos());
+        metrics.recordReader(files);
+        for (ChunkParser<S> parser : parsers) metrics.recordParser(parser);
+        return results;
+    }
+
+    /**
+     * The file tasks cut large files into chunks at ASCII delimiters, like the MappedFileReader, so they need
+     * the same kind of charset.
+     */
+    private boolean canRunFileTasks() {
+        if (MappedFileReader.supportsCharset(_encoding)) return true;
+        ConsoleOutput.printMessageWithGaps("Encoding " + _encoding.name() + " cannot be cut into chunks. Falling back to the pipeline.");
+        return false;
+    }
+
+    private <R extends Runnable & PipelineMetrics.ReaderStage> List<Future<?>> startReaders(
+            FileSchedule files, Supplier<R> readerFactory, List<PipelineMetrics.ReaderStage> stages) {
+        final List<Future<?>> readers = new ArrayList<>();
+        for (int index = 0; index < files.readerCount(); index++) {
+            final R reader = readerFactory.get();
+            stages.add(reader);
+            readers.add(_readerExecutor.submit(reader));
+        }
+        return readers;
+    }
+
+    private <S extends WordSink, P extends Callable<S> & PipelineMetrics.ParserStage> List<Future<S>> startParsers(
+            Supplier<P> parserFactory, List<PipelineMetrics.ParserStage> stages) {
+        //As many parsers as parser threads. By default, that is the number of logical processors,
+        //which uses the available cores for large enough input.
+        final List<Future<S>> parsers = new ArrayList<>();
+        for (int index = 0; index < _threads; index++) {
+            final P parser = parserFactory.get();
+            stages.add(parser);
+            parsers.add(_parserExecutor.submit(parser));
+        }
+        ConsoleOutput.printMessageWithGaps("Line Parsers submitted to the ExecutorService.");
+        return parsers;
+    }
+
+    /**
+     * Samples the depth of the queue between the readers and the parsers while they run.
+     *
+     * @param capacity the most items the queue can hold, or 0 when it is unbounded.
+     */
+    private ScheduledFuture<?> sampleQueue(PipelineMetrics metrics, IntSupplier depth, int capacity) {
+        return metrics.sampleQueue(_queueSampler, depth, capacity);
+    }
+
+    /**
+     * The readers take the largest files first, so that a huge file is not left for the end,
+     * with a single reader feeding all the parsers.
+     */
+    private static FileSchedule schedule(String[] filePath, int readerCount) {
+        return FileSchedule.largestFirst(filePath, readerCount);
+    }
+
+    /**
+     * More readers than files would have nothing to do. Without a reader count, one reader per four cores.
+     */
+    private int readerCount(int fileCount) {
+        final int requested = _readers > 0 ? _readers : Math.max(1, Runtime.getRuntime().availableProcessors() / CORES_PER_READER);
+        return Math.max(1, Math.min(requested, fileCount));
+    }
+
+    /**
+     * Cutting the input into chunks needs an ASCII compatible charset. For any other encoding, fall back to
+     * reading lines with the DiskFileReader, which decodes them. Files that cannot be mapped, such as pipes,
+     * are streamed into chunks by the MappedFileReader.
+     */
+    private RunOptions.ReaderMode resolveReaderMode() {
+        if (_readerMode != RunOptions.ReaderMode.MAPPED) return _readerMode;
+
+        if (!MappedFileReader.supportsCharset(_encoding)) {
+            ConsoleOutput.printMessageWithGaps("Encoding " + _encoding.name() + " cannot be mapped. Falling back to reading lines.");
+            return RunOptions.ReaderMode.LINES;
+        }
+        return RunOptions.ReaderMode.MAPPED;
+    }
+
+    //region Termination
+
+    private static void waitForReaders(List<Future<?>> readers) {
+        try {
+            for (Future<?> reader : readers) reader.get();
+
+            //Print graceful reader termination message.
+            ConsoleOutput.printMessageWithGaps(readers.size() == 1
+                    ? "Reader thread gracefully terminated."
+                    : readers.size() + " reader threads gracefully terminated.");
+        } catch (InterruptedException e) {
+            final String errorHeader = "Interrupted when waiting for Reader thread to finish.";
+            ConsoleOutput.printInterruptedException(errorHeader, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = new Throwable(e).getCause();
+            final String errorHeader = "ExcecutionException thrown by a Reader thread.";
+            ConsoleOutput.printExecutionException(errorHeader, cause, e);
+        }
+    }
+
+    /**
+     * Waits for every parser, and collects the sinks they counted into.
+     */
+    private static <S extends WordSink> List<S> collectParserResults(List<Future<S>> parsers) {
+        final List<S> parserResults = new ArrayList<>();
+        for (Future<S> parser : parsers) {
+            S parserResult = null;
+            try {
+                parserResult = awaitParser(parser);
+            } catch (InterruptedException e) {
+                //Handle it the standard way for this project.
+                final String errorHeader = "Interrupted while awaiting LineParser result.";
+                ConsoleOutput.printInterruptedException(errorHeader, e);
+            } catch (ExecutionException e) {
+                final Throwable cause = new Throwable(e).getCause();
+                final String errorHeader = "ExcecutionException thrown while waiting to get individual results from Line Parser.";
+                ConsoleOutput.printExecutionException(errorHeader, cause, e);
+            }
+
+            if (parserResult == null) {
+                final String message = "Line Parser returned a null result.";
+                ConsoleOutput.printMessageWithGapsAndLineBreaks(message);
+                continue;
+            }
+
+            parserResults.add(parserResult);
+        }
+        ConsoleOutput.printMessageWithGaps("Line Parsers gracefully terminated.");
+        return parserResults;
+    }
+
+    /**
+     * Waits for a parser, notifying the user on console every time the timeout passes.
+     */
+    private static <S> S awaitParser(Future<S> parser) throws InterruptedException, ExecutionException {
+        while (true) {
+            try {
+                return parser.get(PARSER_TIMEOUT, PARSER_TIMEOUT_UNIT);
+            } catch (TimeoutException e) {
+                ConsoleOutput.printMessageWithoutGaps("Line Parsers still running...");
+            }
+        }
+    }
+
+    //endregion
+
+    //region Batch Rings
+
+    private CharBatchRing acquireRing() {
+        final CharBatchRing ring = _rings.poll();
+        return ring != null ? ring : new CharBatchRing(_memoryBudget);
+    }
+
+    /**
+     * A ring goes back to the pool only when all of its batches came back. Otherwise it is left to the garbage collector.
+     */
+    private void releaseRing(CharBatchRing ring) {
+        if (ring.reopen()) _rings.offer(ring);
+    }
+
+    //endregion
+
+    //endregion
+
+    //region Validation
+
+    private static String[] prepareInputs(String[] inputs) {
+        if (inputs == null || inputs.length == 0) throw new IllegalArgumentException("No file path provided.");
+
+        //Expand directories and glob patterns into the files they stand for, and validate the list of file paths.
+        final String[] filePath = InputFiles.expand(inputs);
+        validateInput(filePath);
+        return filePath;
+    }
+
+    private static void validateInput(String[] filePath) throws IllegalArgumentException {
+        ConsoleOutput.printMessageWithGaps("Validating input file paths...");
+
+        StringBuilder err = new StringBuilder();
+        if (filePath == null || filePath.length == 0) {
+            String nullOrEmptyListMessage = "No file path provided.";
+            throw new IllegalArgumentException(nullOrEmptyListMessage);
+        }
+
+        //Verify if each file path
+        for (String path : filePath) {
+            File inputFile = new File(path);
+            try {
+                //Is the given path a file? Special files, such as named pipes, are read as well.
+                if (!inputFile.exists() || inputFile.isDirectory()) {
+                    err.append("\tInvalid File Path: ").append(path);
+                    err.append(ConsoleOutput.NEW_LINE);
+                    continue;
+                }
+                //If the path is a file, is it readable?
+                if (!inputFile.canRead()) {
+                    err.append("\tCannot Read File: ").append(path);
+                    err.append(ConsoleOutput.NEW_LINE);
+                }
+            } catch (SecurityException securityException) {
+                //The only exception this code can throw is SecurityException
+                //when a security manager exists and denies the read access.
+                err.append("\tRead access denied for file path: ").append(path);
+                err.append("\tDetailed Message: ").append(securityException.getMessage());
+                err.append(ConsoleOutput.NEW_LINE);
+            }
+        }
+
+        //If no error, say that and return.
+        if (err.length() == 0) {
+            ConsoleOutput.printMessageWithGaps("Done with input file path validation.");
+            return;
+        }
+
+        //Now, if the String Builder is not empty, then there were errors.
+        String errorMessage = "There were one or more errors with the input:"
+                + ConsoleOutput.NEW_LINE
+                + err.toString();
+        throw new IllegalArgumentException(errorMessage);
+    }
+
+    //endregion
+}
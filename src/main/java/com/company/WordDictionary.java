@@ -0,0 +1,330 @@
+package com.company;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A word to ID dictionary that all the parsers of a count share, so that each word is stored once, however many
+ * parsers see it. The parsers count into WordIdCounts, dense long arrays indexed by the IDs of the dictionary.
+ * <p>
+ * The dictionary is split into stripes by word hash, the same way PartitionedWordCounts picks a partition.
+ * Looking up a word that is already in its stripe takes no lock: the index of a stripe is an AtomicIntegerArray,
+ * and an entry is only published in the index once its word is in place. Only a word that is not found takes the
+ * lock of its stripe, looks again, and adds the word. Most words of a text are repeats, so the locks are rare.
+ * <p>
+ * Within a stripe, the words get entry numbers 0, 1, 2 and so on. The ID of a word is its entry number times the
+ * number of stripes, plus its stripe.
+ */
+final class WordDictionary {
+
+    //region Static Final Class Variables
+
+    private static final int DEFAULT_STRIPE_CAPACITY = 1024;
+    private static final int AVERAGE_WORD_LENGTH = 8;
+
+    //The index of a stripe is grown when it is more than 50% full. Lookups take no lock, so keep them short.
+    private static final int LOAD_FACTOR_PERCENT = 50;
+
+    //endregion
+
+    //region Visitor
+
+    /**
+     * Receives the words of a dictionary with their IDs. The word array is only valid for the duration of the call.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        void visit(int id, byte[] word, int offset, int length);
+    }
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final Stripe[] _stripes;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param stripeCount the number of stripes, usually the number of partitions of the count.
+     */
+    WordDictionary(int stripeCount) {
+        if (stripeCount <= 0) throw new IllegalArgumentException("'stripeCount' must be positive.");
+        if (stripeCount > PartitionedWordCounts.MAX_PARTITIONS) {
+            throw new IllegalArgumentException("'stripeCount' cannot be larger than " + PartitionedWordCounts.MAX_PARTITIONS + ".");
+        }
+        _stripes = new Stripe[stripeCount];
+        for (int stripe = 0; stripe < stripeCount; stripe++) _stripes[stripe] = new Stripe();
+    }
+
+    //endregion
+
+    //region Lookups
+
+    int stripeCount() {
+        return _stripes.length;
+    }
+
+    int stripeOf(int hash) {
+        return PartitionedWordCounts.partitionOf(hash, _stripes.length);
+    }
+
+    /**
+     * Finds the entry number of a word in its stripe, adding the word first if it is not in the dictionary.
+     *
+     * @param stripe the stripe of the word, from stripeOf(hash).
+     * @param hash   the hash of the word, from WordCountTable.hash.
+     */
+    int entryOf(int stripe, int hash, byte[] word, int offset, int length) {
+        return _stripes[stripe].entryOf(hash, word, offset, length);
+    }
+
+    /**
+     * @return the ID of a word, adding the word first if it is not in the dictionary.
+     */
+    int idOf(byte[] word, int offset, int length) {
+        final int hash = WordCountTable.hash(word, offset, length);
+        final int stripe = stripeOf(hash);
+        return idOf(stripe, entryOf(stripe, hash, word, offset, length));
+    }
+
+    int idOf(int stripe, int entry) {
+        final long id = (long) entry * _stripes.length + stripe;
+        if (id > Integer.MAX_VALUE) throw new IllegalStateException("The dictionary has run out of IDs.");
+        return (int) id;
+    }
+
+    /**
+     * @return the word with the given ID.
+     */
+    String word(int id) {
+        final Stripe stripe = stripeOfId(id);
+        final int entry = entryOfId(stripe, id);
+        final Entries entries = stripe._entries;
+        return new String(entries._keys, entries._keyOffsets[entry], entries._keyLengths[entry], StandardCharsets.ISO_8859_1);
+    }
+
+    private Stripe stripeOfId(int id) {
+        if (id < 0) throw new IllegalArgumentException("'id' cannot be negative.");
+        return _stripes[id % _stripes.length];
+    }
+
+    private int entryOfId(Stripe stripe, int id) {
+        final int entry = id / _stripes.length;
+        //The size is read first: entries below it are in the entry arrays read after it.
+        if (entry >= stripe.size()) throw new IllegalArgumentException("No word with ID " + id + ".");
+        return entry;
+    }
+
+    /**
+     * @return the length in bytes of the word with the given ID.
+     */
+    int wordLength(int id) {
+        final Stripe stripe = stripeOfId(id);
+        return stripe._entries._keyLengths[entryOfId(stripe, id)];
+    }
+
+    /**
+     * Copies the bytes of the word with the given ID into an array, which must have room for wordLength(id) bytes.
+     *
+     * @return the length of the word.
+     */
+    int copyWord(int id, byte[] target, int offset) {
+        final Stripe stripe = stripeOfId(id);
+        final int entry = entryOfId(stripe, id);
+        final Entries entries = stripe._entries;
+        final int length = entries._keyLengths[entry];
+        System.arraycopy(entries._keys, entries._keyOffsets[entry], target, offset, length);
+        return length;
+    }
+
+    /**
+     * @return the number of words in a stripe, which is also the number of entry numbers it has given out.
+     */
+    int stripeSize(int stripe) {
+        return _stripes[stripe].size();
+    }
+
+    /**
+     * @return the number of distinct words.
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : _stripes) size += stripe.size();
+        return size;
+    }
+
+    /**
+     * Visits every word with its ID, one stripe after the other. Words added while it runs may be missed.
+     */
+    void forEach(Visitor visitor) {
+        for (int stripe = 0; stripe < _stripes.length; stripe++) {
+            final int size = _stripes[stripe].size();
+            final Entries entries = _stripes[stripe]._entries;
+            for (int entry = 0; entry < size; entry++) {
+                visitor.visit(idOf(stripe, entry), entries._keys, entries._keyOffsets[entry], entries._keyLengths[entry]);
+            }
+        }
+    }
+
+    //endregion
+
+    //region Result
+
+    /**
+     * Turns a stripe into a WordCountTable with the given counts, without copying its words. The table takes over
+     * the arrays of the stripe, so the dictionary must not be used for counting any more.
+     *
+     * @param counts the count of every entry of the stripe, by entry number.
+     */
+    WordCountTable toTable(int stripe, long[] counts) {
+        return _stripes[stripe].toTable(counts);
+    }
+
+    //endregion
+
+    //region Stripe
+
+    /**
+     * The entry arrays of a stripe. They are replaced by larger copies when they are full, and a lookup always
+     * reads the current ones after it finds an entry in the index, so it never sees arrays without that entry.
+     */
+    private static final class Entries {
+
+        private final int[] _hashes;
+        private final int[] _keyOffsets;
+        private final int[] _keyLengths;
+        private final byte[] _keys;
+
+        private Entries(int[] hashes, int[] keyOffsets, int[] keyLengths, byte[] keys) {
+            _hashes = hashes;
+            _keyOffsets = keyOffsets;
+            _keyLengths = keyLengths;
+            _keys = keys;
+        }
+    }
+
+    private static final class Stripe {
+
+        //The index: entry number plus one for every used slot, zero for free slots. Replaced when it grows.
+        private volatile AtomicIntegerArray _slots = new AtomicIntegerArray(slotCountFor(DEFAULT_STRIPE_CAPACITY));
+        private volatile Entries _entries = new Entries(new int[DEFAULT_STRIPE_CAPACITY], new int[DEFAULT_STRIPE_CAPACITY],
+                new int[DEFAULT_STRIPE_CAPACITY], new byte[DEFAULT_STRIPE_CAPACITY * AVERAGE_WORD_LENGTH]);
+        private volatile int _size;
+
+        //Only changed under the lock of the stripe.
+        private int _keysLength;
+
+        int size() {
+            return _size;
+        }
+
+        int entryOf(int hash, byte[] word, int offset, int length) {
+            final int entry = find(_slots, hash, word, offset, length);
+            return entry >= 0 ? entry : add(hash, word, offset, length);
+        }
+
+        /**
+         * Probes an index without a lock. Every entry number read from the index was published after its entry,
+         * so the entry arrays read after it hold that entry.
+         */
+        private int find(AtomicIntegerArray slots, int hash, byte[] word, int offset, int length) {
+            final int mask = slots.length() - 1;
+            int slot = hash & mask;
+            int entryPlusOne;
+            while ((entryPlusOne = slots.get(slot)) != 0) {
+                final int entry = entryPlusOne - 1;
+                final Entries entries = _entries;
+                if (entries._hashes[entry] == hash && keyEquals(entries, entry, word, offset, length)) return entry;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private synchronized int add(int hash, byte[] word, int offset, int length) {
+            //Another parser may have added the word since the lookup.
+            final AtomicIntegerArray slots = _slots;
+            final int mask = slots.length() - 1;
+            int slot = hash & mask;
+            int entryPlusOne;
+            while ((entryPlusOne = slots.get(slot)) != 0) {
+                final int entry = entryPlusOne - 1;
+                final Entries entries = _entries;
+                if (entries._hashes[entry] == hash && keyEquals(entries, entry, word, offset, length)) return entry;
+                slot = (slot + 1) & mask;
+            }
+
+            //Write the entry first, and only then publish it in the index.
+            final int entry = appendEntry(hash, word, offset, length);
+            slots.lazySet(slot, entry + 1);
+            _size = entry + 1;
+            if ((long) _size * 100 > (long) slots.length() * LOAD_FACTOR_PERCENT) growSlots();
+            return entry;
+        }
+
+        private int appendEntry(int hash, byte[] word, int offset, int length) {
+            final int entry = _size;
+            Entries entries = _entries;
+            if (entry == entries._hashes.length || entries._keys.length - _keysLength < length) {
+                entries = grow(entries, entry, length);
+                _entries = entries;
+            }
+            System.arraycopy(word, offset, entries._keys, _keysLength, length);
+            entries._hashes[entry] = hash;
+            entries._keyOffsets[entry] = _keysLength;
+            entries._keyLengths[entry] = length;
+            _keysLength += length;
+            return entry;
+        }
+
+        private Entries grow(Entries entries, int size, int needed) {
+            final int capacity = size == entries._hashes.length ? size * 2 : entries._hashes.length;
+            final int keyCapacity = Math.max(entries._keys.length * 2, _keysLength + needed);
+            return new Entries(Arrays.copyOf(entries._hashes, capacity), Arrays.copyOf(entries._keyOffsets, capacity),
+                    Arrays.copyOf(entries._keyLengths, capacity), Arrays.copyOf(entries._keys, keyCapacity));
+        }
+
+        private void growSlots() {
+            //The hashes are cached, so the index is rebuilt without touching the words.
+            final int[] hashes = _entries._hashes;
+            final AtomicIntegerArray slots = new AtomicIntegerArray(_slots.length() * 2);
+            final int mask = slots.length() - 1;
+            for (int entry = 0; entry < _size; entry++) {
+                int slot = hashes[entry] & mask;
+                while (slots.get(slot) != 0) slot = (slot + 1) & mask;
+                slots.lazySet(slot, entry + 1);
+            }
+            _slots = slots;
+        }
+
+        synchronized WordCountTable toTable(long[] counts) {
+            if (counts == null || counts.length < _size) {
+                throw new IllegalArgumentException("'counts' must have a count for every entry of the stripe.");
+            }
+            final Entries entries = _entries;
+            return WordCountTable.wrap(entries._hashes, entries._keyOffsets, entries._keyLengths, counts,
+                    _size, entries._keys, _keysLength);
+        }
+
+        private static boolean keyEquals(Entries entries, int entry, byte[] word, int offset, int length) {
+            if (entries._keyLengths[entry] != length) return false;
+            final byte[] keys = entries._keys;
+            final int keyOffset = entries._keyOffsets[entry];
+            for (int index = 0; index < length; index++) {
+                if (keys[keyOffset + index] != word[offset + index]) return false;
+            }
+            return true;
+        }
+
+        private static int slotCountFor(int entryCount) {
+            int slotCount = 16;
+            while ((long) slotCount * LOAD_FACTOR_PERCENT < (long) entryCount * 100) slotCount *= 2;
+            return slotCount;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,113 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The counts of one parser, as dense long arrays indexed by the IDs of a WordDictionary that every parser of the
+ * count shares. There is one array per stripe of the dictionary, indexed by entry number.
+ * <p>
+ * Counting a word is a dictionary lookup and an array increment. Merging the parsers is an element-wise sum of
+ * their arrays, stripe by stripe, and the merged arrays become the counts of the WordCountTables the stripes turn
+ * into, so the words are never copied.
+ */
+final class WordIdCounts implements WordSink {
+
+    //region Static Final Class Variables
+
+    private static final int INITIAL_STRIPE_LENGTH = 1024;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final WordDictionary _dictionary;
+    private final long[][] _counts;
+
+    //endregion
+
+    //region Constructor
+
+    WordIdCounts(WordDictionary dictionary) {
+        if (dictionary == null) throw new IllegalArgumentException("'dictionary' cannot be null.");
+        _dictionary = dictionary;
+        _counts = new long[dictionary.stripeCount()][];
+        for (int stripe = 0; stripe < _counts.length; stripe++) _counts[stripe] = new long[INITIAL_STRIPE_LENGTH];
+    }
+
+    //endregion
+
+    //region Counting
+
+    @Override
+    public void accept(byte[] word, int offset, int length) {
+        add(word, offset, length);
+    }
+
+    /**
+     * Counts one occurrence of a word, like accept().
+     *
+     * @return the ID of the word in the dictionary.
+     */
+    int add(byte[] word, int offset, int length) {
+        final int hash = WordCountTable.hash(word, offset, length);
+        final int stripe = _dictionary.stripeOf(hash);
+        final int entry = _dictionary.entryOf(stripe, hash, word, offset, length);
+        long[] counts = _counts[stripe];
+        if (entry >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(entry + 1, counts.length * 2));
+            _counts[stripe] = counts;
+        }
+        counts[entry]++;
+        return _dictionary.idOf(stripe, entry);
+    }
+
+    //endregion
+
+    //region Queries
+
+    WordDictionary dictionary() {
+        return _dictionary;
+    }
+
+    /**
+     * @return the count of the word with the given ID, or zero if this parser did not see it.
+     */
+    long get(int id) {
+        if (id < 0) throw new IllegalArgumentException("'id' cannot be negative.");
+        final long[] counts = _counts[id % _counts.length];
+        final int entry = id / _counts.length;
+        return entry < counts.length ? counts[entry] : 0L;
+    }
+
+    //endregion
+
+    //region Merging
+
+    /**
+     * Sums one stripe of every parser, and turns the stripe of the dictionary into a table with those counts.
+     * Different stripes can be merged on different threads, once every parser is done.
+     *
+     * @param parserResults the results to merge. They must all count into the same dictionary.
+     */
+    static WordCountTable mergeStripe(int stripe, List<WordIdCounts> parserResults) {
+        if (parserResults == null || parserResults.isEmpty()) {
+            throw new IllegalArgumentException("'parserResults' cannot be null or empty.");
+        }
+        final WordDictionary dictionary = parserResults.get(0)._dictionary;
+        final long[] merged = new long[dictionary.stripeSize(stripe)];
+        for (WordIdCounts parserResult : parserResults) {
+            if (parserResult._dictionary != dictionary) {
+                throw new IllegalArgumentException("Every parser result must count into the same dictionary.");
+            }
+            final long[] counts = parserResult._counts[stripe];
+            final int length = Math.min(counts.length, merged.length);
+
+            //A plain loop over two arrays, which the JIT compiler vectorizes.
+            for (int entry = 0; entry < length; entry++) merged[entry] += counts[entry];
+        }
+        return dictionary.toTable(stripe, merged);
+    }
+
+    //endregion
+}
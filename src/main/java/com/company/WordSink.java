@@ -0,0 +1,20 @@
+package com.company;
+
+/**
+ * The receiver of the words found by a WordTokenizer.
+ */
+@FunctionalInterface
+interface WordSink {
+
+    /**
+     * Called once for every word. The word is already lower case, and consists of ASCII word characters only.
+     * <p>
+     * The array is the tokenizer's reusable buffer. It is only valid for the duration of the call, so a sink
+     * that keeps the word must copy it.
+     *
+     * @param word   the buffer holding the word.
+     * @param offset the index of the first byte of the word.
+     * @param length the number of bytes in the word. Always positive.
+     */
+    void accept(byte[] word, int offset, int length);
+}
@@ -0,0 +1,261 @@
+package com.company;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+
+/**
+ * A single-pass scanner that splits text into words with the same semantics as the "\W+" regex
+ * and lower-cases them, without a regex and without allocating per word.
+ * <p>
+ * A word is a run of [a-zA-Z_0-9] characters. Everything else, including every non-ASCII character,
+ * is a delimiter. Since words are ASCII only, each word is folded into a reusable byte buffer and
+ * handed to a WordSink. Upper case is folded the locale independent way, so 'I' always becomes 'i'.
+ * <p>
+ * Text that is still in the bytes of a charset in which an ASCII byte always stands for itself, and every other
+ * byte is part of a non-ASCII character, can be tokenized without decoding it first. Every non-ASCII byte is then a
+ * delimiter, like the non-ASCII character it belongs to. The SWAR backend does that eight bytes at a time: it reads
+ * them as a long, and classifies and lower-cases all of them with a few arithmetic operations. Only the blocks in
+ * which a word starts or ends are walked byte by byte. The scalar backend walks every byte.
+ * <p>
+ * An instance keeps state between calls and is meant to be owned by a single parser thread.
+ */
+final class WordTokenizer {
+
+    //region Static Final Class Variables
+
+    private static final int INITIAL_WORD_CAPACITY = 64;
+    private static final int CASE_OFFSET = 'a' - 'A';
+
+    //Repeated in every byte of a long, for the SWAR backend.
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    //endregion
+
+    //region Final Variables and Collections
+
+    private final RunOptions.Tokenizer _backend;
+
+    //endregion
+
+    //region Variables
+
+    private byte[] _word = new byte[INITIAL_WORD_CAPACITY];
+
+    //The word buffer as little endian longs, for the SWAR backend to append eight bytes with one store.
+    private ByteBuffer _wordLongs = ByteBuffer.wrap(_word).order(ByteOrder.LITTLE_ENDIAN);
+
+    //The totals over every call, for the pipeline metrics.
+    private long _words;
+    private long _lines;
+
+    //endregion
+
+    //region Constructors
+
+    WordTokenizer() {
+        this(RunOptions.Tokenizer.SCALAR);
+    }
+
+    /**
+     * @param backend how tokenize(ByteBuffer, WordSink) scans the bytes. Chars are always scanned one at a time.
+     */
+    WordTokenizer(RunOptions.Tokenizer backend) {
+        if (backend == null) throw new IllegalArgumentException("'backend' cannot be null.");
+        _backend = backend;
+    }
+
+    //endregion
+
+    //region Tokenizing
+
+    /**
+     * Finds the words in a range of chars and hands each of them to the sink.
+     */
+    void tokenize(char[] chars, int offset, int length, WordSink sink) {
+        final int end = offset + length;
+        int wordLength = 0;
+        for (int index = offset; index < end; index++) wordLength = take(chars[index], wordLength, sink);
+        endWord(wordLength, sink);
+    }
+
+    /**
+     * Finds the words in a sequence of chars, such as a line, and hands each of them to the sink.
+     */
+    void tokenize(CharSequence text, WordSink sink) {
+        if (text instanceof CharBuffer && ((CharBuffer) text).hasArray()) {
+            final CharBuffer buffer = (CharBuffer) text;
+            tokenize(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), sink);
+            return;
+        }
+
+        final int length = text.length();
+        int wordLength = 0;
+        for (int index = 0; index < length; index++) wordLength = take(text.charAt(index), wordLength, sink);
+        endWord(wordLength, sink);
+    }
+
+    /**
+     * Finds the words in the remaining bytes of a buffer, and consumes them. The bytes must be in a charset for
+     * which MappedFileReader.supportsCharset is true, and must end on a word boundary.
+     */
+    void tokenize(ByteBuffer bytes, WordSink sink) {
+        final int wordLength = _backend == RunOptions.Tokenizer.SWAR
+                ? tokenizeSwar(bytes, sink)
+                : takeBytes(bytes, bytes.position(), bytes.limit(), 0, sink);
+        endWord(wordLength, sink);
+        bytes.position(bytes.limit());
+    }
+
+    /**
+     * @return the length of the word that goes on past the last whole block.
+     */
+    private int tokenizeSwar(ByteBuffer bytes, WordSink sink) {
+        //Little endian, so that byte i of a block is bits 8i to 8i + 7 of its long.
+        final ByteBuffer blocks = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        final int end = blocks.limit();
+        final int blockEnd = end - Long.BYTES;
+        int index = blocks.position();
+        int wordLength = 0;
+        long lines = 0;
+        for (; index <= blockEnd; index += Long.BYTES) {
+            final long block = blocks.getLong(index);
+            final long ascii = ~block & HIGH_BITS;
+
+            //Setting bit 5 lower-cases a letter, and turns no other character into one.
+            final long letters = inRange(block | (LOW_BITS << 5), 'a', 'z') & ascii;
+            final long wordBytes = letters | ((inRange(block, '0', '9') | inRange(block, '_', '_')) & ascii);
+            final long folded = block | (letters >>> 2);
+            lines += Long.bitCount(inRange(block, '\n', '\n') & ascii);
+
+            //Make sure eight bytes fit after the word, so that whole blocks can be stored.
+            if (wordLength + Long.BYTES > _word.length) growWord();
+            if (wordBytes == HIGH_BITS) {
+                //Eight word characters: the word goes on.
+                _wordLongs.putLong(wordLength, folded);
+                wordLength += Long.BYTES;
+            } else if (wordBytes == 0) {
+                //Eight delimiters: a word that was going on ends here.
+                wordLength = endWord(wordLength, sink);
+            } else {
+                //Runs of word characters and delimiters, taken one run at a time. A run of word characters is
+                //stored with the rest of the block after it, which the next word overwrites.
+                final long delimiters = ~wordBytes & HIGH_BITS;
+                int position = 0;
+                while (position < Long.BYTES) {
+                    final int shift = position * Byte.SIZE;
+                    if (((wordBytes >>> shift) & 0x80) != 0) {
+                        final int run = runLength(delimiters >>> shift, position);
+                        _wordLongs.putLong(wordLength, folded >>> shift);
+                        wordLength += run;
+                        position += run;
+                    } else {
+                        wordLength = endWord(wordLength, sink);
+                        position += runLength(wordBytes >>> shift, position);
+                    }
+                }
+            }
+        }
+        _lines += lines;
+
+        //The last few bytes, one at a time.
+        return takeBytes(blocks, index, end, wordLength, sink);
+    }
+
+    /**
+     * Takes the bytes of a range one at a time.
+     *
+     * @return the length of the word that goes on past the range.
+     */
+    private int takeBytes(ByteBuffer bytes, int from, int end, int wordLength, WordSink sink) {
+        //A negative byte is part of a non-ASCII character, and so a delimiter.
+        for (int index = from; index < end; index++) wordLength = take((char) bytes.get(index), wordLength, sink);
+        return wordLength;
+    }
+
+    /**
+     * Takes the next character of the text: a word character is folded onto the word, and any other character
+     * ends the word.
+     *
+     * @return the length of the word after the character.
+     */
+    private int take(char c, int wordLength, WordSink sink) {
+        if (MappedFileReader.isWordCharacter(c)) {
+            if (wordLength == _word.length) growWord();
+            _word[wordLength] = fold(c);
+            return wordLength + 1;
+        }
+        if (c == '\n') _lines++;
+        return endWord(wordLength, sink);
+    }
+
+    /**
+     * Hands the word to the sink, if there is one.
+     *
+     * @return the length of the word after it ended, which is 0.
+     */
+    private int endWord(int wordLength, WordSink sink) {
+        if (wordLength > 0) {
+            sink.accept(_word, 0, wordLength);
+            _words++;
+        }
+        return 0;
+    }
+
+    //endregion
+
+    //region Statistics
+
+    /**
+     * @return the number of words handed to a sink so far.
+     */
+    long words() {
+        return _words;
+    }
+
+    /**
+     * @return the number of line feeds seen so far. Text handed over a line at a time has none.
+     */
+    long lines() {
+        return _lines;
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private static byte fold(char c) {
+        return (byte) (c >= 'A' && c <= 'Z' ? c + CASE_OFFSET : c);
+    }
+
+    private void growWord() {
+        final byte[] grown = new byte[_word.length * 2];
+        System.arraycopy(_word, 0, grown, 0, _word.length);
+        _word = grown;
+        _wordLongs = ByteBuffer.wrap(grown).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * The high bit of every byte of the block that is between low and high, both ASCII. Non-ASCII bytes are
+     * compared by their low seven bits, so the caller masks them out. With seven bits, adding to a byte never
+     * carries into the next one.
+     */
+    private static long inRange(long block, int low, int high) {
+        final long seven = block & SEVEN_BITS;
+        final long atLeastLow = seven + (0x80 - low) * LOW_BITS;
+        final long aboveHigh = seven + (0x7F - high) * LOW_BITS;
+        return atLeastLow & ~aboveHigh & HIGH_BITS;
+    }
+
+    /**
+     * The number of bytes before the first byte whose high bit is set in the shifted mask, at most up to the end
+     * of the block.
+     */
+    private static int runLength(long shiftedMask, int position) {
+        return shiftedMask == 0 ? Long.BYTES - position : Long.numberOfTrailingZeros(shiftedMask) >>> 3;
+    }
+
+    //endregion
+}
@@ -0,0 +1,203 @@
+package com.company;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A small benchmark harness, without dependencies: runs a benchmark a few times to warm up the JIT, then times
+ * a number of measured runs, and keeps the mean, standard deviation and best time of those.
+ * <p>
+ * Each run returns the number of bytes it processed, so that the throughput can be reported, and so that
+ * the JIT cannot drop the work as unused. A garbage collection is asked for before every measured run,
+ * to keep garbage of one run from being collected in the next.
+ * <p>
+ * Results are saved as CSV, one line per benchmark and corpus, with a label such as a commit id. Two such
+ * files can be compared, which prints the change of every benchmark they have in common.
+ * <p>
+ * It is not JMH, and does not guard against what JMH does. All the benchmarks of a run share one JVM, so the
+ * profile the JIT built for an earlier one shapes the code of a later one. Only the returned byte count keeps
+ * the JIT from dropping the work, and the timer is read around whole runs, not per operation. Changes of a few
+ * percent are within its noise. For those, run one benchmark per JVM with --only, several times.
+ */
+final class BenchmarkRunner {
+
+    //region Benchmark
+
+    @FunctionalInterface
+    interface Benchmark {
+        /**
+         * @return the number of bytes processed by the run.
+         */
+        long run() throws Exception;
+    }
+
+    //endregion
+
+    //region Result
+
+    static final class Result {
+        private static final String CSV_HEADER = "label,benchmark,corpus,iterations,mean_ms,stddev_ms,min_ms,mb_per_s";
+
+        final String label;
+        final String benchmark;
+        final String corpus;
+        final int iterations;
+        final double meanMillis;
+        final double stddevMillis;
+        final double minMillis;
+        final double megabytesPerSecond;
+
+        Result(String label, String benchmark, String corpus, int iterations, double meanMillis, double stddevMillis,
+               double minMillis, double megabytesPerSecond) {
+            this.label = label;
+            this.benchmark = benchmark;
+            this.corpus = corpus;
+            this.iterations = iterations;
+            this.meanMillis = meanMillis;
+            this.stddevMillis = stddevMillis;
+            this.minMillis = minMillis;
+            this.megabytesPerSecond = megabytesPerSecond;
+        }
+
+        String key() {
+            return benchmark + "@" + corpus;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%s,%s,%d,%.3f,%.3f,%.3f,%.1f",
+                    label, benchmark, corpus, iterations, meanMillis, stddevMillis, minMillis, megabytesPerSecond);
+        }
+
+        static Result parseCsv(String line) {
+            final String[] fields = line.split(",");
+            if (fields.length != 8) throw new IllegalArgumentException("Not a benchmark result: " + line);
+            return new Result(fields[0], fields[1], fields[2], Integer.parseInt(fields[3]), Double.parseDouble(fields[4]),
+                    Double.parseDouble(fields[5]), Double.parseDouble(fields[6]), Double.parseDouble(fields[7]));
+        }
+    }
+
+    //endregion
+
+    //region Final Variables
+
+    private final String _label;
+    private final int _warmups;
+    private final int _iterations;
+    private final PrintStream _log;
+    private final List<Result> _results = new ArrayList<>();
+
+    //endregion
+
+    //region Variables
+
+    //Everything the runs returned, so that no run is dead code.
+    private long _consumed;
+
+    //endregion
+
+    //region Constructor
+
+    BenchmarkRunner(String label, int warmups, int iterations, PrintStream log) {
+        if (label == null || label.isEmpty() || label.contains(",")) throw new IllegalArgumentException("'label' must be a non-empty word.");
+        if (warmups < 0) throw new IllegalArgumentException("'warmups' cannot be negative.");
+        if (iterations <= 0) throw new IllegalArgumentException("'iterations' must be positive.");
+        if (log == null) throw new IllegalArgumentException("'log' cannot be null.");
+        _label = label;
+        _warmups = warmups;
+        _iterations = iterations;
+        _log = log;
+    }
+
+    //endregion
+
+    //region Measuring
+
+    Result measure(String benchmark, String corpus, Benchmark run) throws Exception {
+        for (int warmup = 0; warmup < _warmups; warmup++) _consumed += run.run();
+
+        final double[] millis = new double[_iterations];
+        long bytes = 0;
+        for (int iteration = 0; iteration < _iterations; iteration++) {
+            System.gc();
+            final long start = System.nanoTime();
+            bytes = run.run();
+            millis[iteration] = (System.nanoTime() - start) / 1e6;
+            _consumed += bytes;
+        }
+
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        for (double value : millis) {
+            sum += value;
+            min = Math.min(min, value);
+        }
+        final double mean = sum / millis.length;
+        double squares = 0;
+        for (double value : millis) squares += (value - mean) * (value - mean);
+        final double stddev = millis.length > 1 ? Math.sqrt(squares / (millis.length - 1)) : 0;
+        final double throughput = mean > 0 ? bytes / (1024.0 * 1024.0) / (mean / 1000.0) : 0;
+
+        final Result result = new Result(_label, benchmark, corpus, _iterations, mean, stddev, min, throughput);
+        _results.add(result);
+        _log.println(String.format(Locale.ROOT, "%-22s %-10s %10.2f ms  +- %8.2f  (min %10.2f)  %9.1f MB/s",
+                benchmark, corpus, mean, stddev, min, throughput));
+        return result;
+    }
+
+    List<Result> results() {
+        return _results;
+    }
+
+    //endregion
+
+    //region Saving and Comparing
+
+    void save(Path path) throws IOException {
+        try (BufferedWriter output = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            output.write(Result.CSV_HEADER);
+            output.newLine();
+            for (Result result : _results) {
+                output.write(result.toCsv());
+                output.newLine();
+            }
+        }
+    }
+
+    static List<Result> load(Path path) throws IOException {
+        final List<Result> results = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.equals(Result.CSV_HEADER)) continue;
+            results.add(Result.parseCsv(line));
+        }
+        return results;
+    }
+
+    /**
+     * Prints the change of the mean time of every benchmark found in both lists. Negative is faster.
+     * A change smaller than the larger of the two standard deviations is marked as noise.
+     */
+    static void compare(List<Result> baseline, List<Result> current, PrintStream output) {
+        final Map<String, Result> baselineByKey = new HashMap<>();
+        for (Result result : baseline) baselineByKey.put(result.key(), result);
+
+        for (Result result : current) {
+            final Result before = baselineByKey.get(result.key());
+            if (before == null) continue;
+            final double change = (result.meanMillis - before.meanMillis) / before.meanMillis * 100.0;
+            final boolean noise = Math.abs(result.meanMillis - before.meanMillis) < Math.max(result.stddevMillis, before.stddevMillis);
+            output.println(String.format(Locale.ROOT, "%-22s %-10s %10.2f -> %10.2f ms  %+7.1f%%%s",
+                    result.benchmark, result.corpus, before.meanMillis, result.meanMillis, change, noise ? "  (noise)" : ""));
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,87 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for BoundedChannel class.
+ */
+class BoundedChannelTest {
+
+    @Test
+    void instantiationShouldThrowWithNonPositiveCapacity() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new BoundedChannel<String>(0));
+        assertEquals("'capacity' must be positive.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void takeShouldDrainItemsBeforeReportingTheEndOfStream() throws InterruptedException {
+        final BoundedChannel<String> channel = new BoundedChannel<>(2);
+        channel.put("a");
+        channel.put("b");
+        channel.close();
+        assertEquals("a", channel.take());
+        assertEquals("b", channel.take());
+        assertNull(channel.take());
+        assertNull(channel.take());
+    }
+
+    @Test
+    void putShouldThrowAfterClose() {
+        final BoundedChannel<String> channel = new BoundedChannel<>(1);
+        channel.close();
+        assertThrows(IllegalStateException.class, () -> channel.put("a"));
+    }
+
+    @Test
+    void reopenShouldAcceptItemsOnlyOnceDrained() throws InterruptedException {
+        final BoundedChannel<String> channel = new BoundedChannel<>(2);
+        channel.put("a");
+        channel.close();
+        assertThrows(IllegalStateException.class, channel::reopen);
+
+        assertEquals("a", channel.take());
+        channel.reopen();
+        channel.put("b");
+        assertEquals("b", channel.take());
+    }
+
+    @Test
+    void everyConsumerShouldSeeTheEndOfStream() throws InterruptedException {
+
+        //region Arrange
+
+        final int itemCount = 10000;
+        final BoundedChannel<Integer> channel = new BoundedChannel<>(4);
+        final AtomicLong sum = new AtomicLong();
+        final Thread[] consumers = new Thread[3];
+        for (int index = 0; index < consumers.length; index++) {
+            consumers[index] = new Thread(() -> {
+                try {
+                    Integer item;
+                    while ((item = channel.take()) != null) sum.addAndGet(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumers[index].start();
+        }
+
+        //endregion
+
+        //region Act
+
+        //The capacity is much smaller than the item count, so the producer is held back by the consumers.
+        for (int item = 1; item <= itemCount; item++) channel.put(item);
+        channel.close();
+        for (Thread consumer : consumers) consumer.join();
+
+        //endregion
+
+        assertEquals((long) itemCount * (itemCount + 1) / 2, sum.get());
+    }
+}
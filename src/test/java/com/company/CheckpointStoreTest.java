@@ -0,0 +1,127 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for CheckpointStore class.
+ */
+class CheckpointStoreTest {
+
+    private Path _directory;
+    private Path _first;
+    private Path _second;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        _directory = Files.createTempDirectory("checkpoint");
+        _first = Files.createTempFile("checkpoint-first", ".txt");
+        _second = Files.createTempFile("checkpoint-second", ".txt");
+        Files.write(_first, "one two three\n".getBytes(StandardCharsets.US_ASCII));
+        Files.write(_second, "four five six\nseven\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(_first);
+        Files.deleteIfExists(_second);
+        try (Stream<Path> paths = Files.walk(_directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void loadShouldReturnTheSavedProgressAndCounts() throws IOException {
+
+        //region Arrange
+
+        final String[] filePath = {_first.toString(), _second.toString()};
+        final CheckpointStore store = new CheckpointStore(_directory);
+        final CheckpointStore.Progress saved = new CheckpointStore.Progress(2);
+        saved.complete(0);
+        saved.advance(1, 14);
+        store.save(filePath, saved, countsOf("one", "two", "three", "four", "five", "six", "six"));
+
+        //endregion
+
+        //region Act
+
+        final CheckpointStore.Progress progress = new CheckpointStore.Progress(2);
+        final PartitionedWordCounts counts = new PartitionedWordCounts(2);
+        final boolean loaded = store.load(filePath, progress, counts);
+
+        //endregion
+
+        //region Assert
+
+        assertTrue(loaded);
+        assertTrue(progress.done(0));
+        assertFalse(progress.done(1));
+        assertEquals(14, progress.offset(1));
+        assertEquals(1, progress.doneCount());
+        assertEquals(6, counts.size());
+        assertEquals(2L, counts.get("six"));
+
+        //endregion
+    }
+
+    @Test
+    void checkpointOfAnotherJobShouldBeIgnored() throws IOException {
+        final CheckpointStore store = new CheckpointStore(_directory);
+        final CheckpointStore.Progress saved = new CheckpointStore.Progress(1);
+        saved.complete(0);
+        store.save(new String[]{_first.toString()}, saved, countsOf("one", "two", "three"));
+
+        final CheckpointStore.Progress progress = new CheckpointStore.Progress(1);
+        final PartitionedWordCounts counts = new PartitionedWordCounts(2);
+        assertFalse(store.load(new String[]{_second.toString()}, progress, counts));
+        assertFalse(progress.done(0));
+        assertEquals(0, counts.size());
+    }
+
+    @Test
+    void checkpointOfAChangedFileShouldBeIgnored() throws IOException {
+        final String[] filePath = {_first.toString()};
+        final CheckpointStore store = new CheckpointStore(_directory);
+        store.save(filePath, new CheckpointStore.Progress(1), countsOf("one"));
+        Files.write(_first, "one two three four\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertFalse(store.load(filePath, new CheckpointStore.Progress(1), new PartitionedWordCounts(2)));
+    }
+
+    @Test
+    void deletedCheckpointShouldNotLoad() throws IOException {
+        final String[] filePath = {_first.toString()};
+        final CheckpointStore store = new CheckpointStore(_directory);
+        store.save(filePath, new CheckpointStore.Progress(1), countsOf("one"));
+        store.delete();
+
+        assertFalse(store.load(filePath, new CheckpointStore.Progress(1), new PartitionedWordCounts(2)));
+        try (Stream<Path> paths = Files.list(_directory)) {
+            assertEquals(0, paths.count());
+        }
+    }
+
+    private static PartitionedWordCounts countsOf(String... words) {
+        final Map<String, Long> map = new HashMap<>();
+        for (String word : words) map.merge(word, 1L, Long::sum);
+        final PartitionedWordCounts counts = new PartitionedWordCounts(2);
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            final byte[] bytes = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+            counts.add(bytes, 0, bytes.length, entry.getValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,129 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for CheckpointedCounter class.
+ */
+class CheckpointedCounterTest {
+
+    private static final int CHUNK_SIZE = 64;
+
+    private Path _directory;
+    private Path _input;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        _directory = Files.createTempDirectory("checkpointed-counter");
+        _input = _directory.resolve("input.txt");
+
+        //Far more chunks than fit in the channel.
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < 64 * 1024) text.append("more words than the parsers can take ");
+        Files.write(_input, text.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(_directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void countShouldFailWhenEveryParserFails() throws IOException {
+        //Every parser is interrupted as it starts, so it dies at its first take from the channel.
+        final ExecutorService parserExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory("checkpoint-test-parser-")) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                thread.interrupt();
+            }
+        };
+        try {
+            final CheckpointedCounter counter = counter(parserExecutor, 2);
+            final IllegalStateException illegalStateException = assertThrows(IllegalStateException.class,
+                    () -> counter.count(new String[]{_input.toString()}, new PipelineMetrics()));
+            assertEquals("A parser of the checkpointed count failed. Resume from the last checkpoint.", illegalStateException.getMessage());
+        } finally {
+            parserExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void anInterruptedCountShouldFailAndStayInterrupted() throws Exception {
+
+        //region Arrange
+
+        //The only parser thread is busy, so the reader fills the channel and waits for room in it.
+        final ExecutorService parserExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("checkpoint-test-parser-"));
+        final CountDownLatch release = new CountDownLatch(1);
+        parserExecutor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final CheckpointedCounter counter = counter(parserExecutor, 1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicReference<Boolean> interrupted = new AtomicReference<>();
+        final Thread reader = new Thread(() -> {
+            try {
+                counter.count(new String[]{_input.toString()}, new PipelineMetrics());
+            } catch (RuntimeException e) {
+                failure.set(e);
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+
+        //endregion
+
+        try {
+
+            //region Act
+
+            reader.start();
+            while (reader.getState() != Thread.State.WAITING && reader.isAlive()) Thread.sleep(1);
+            reader.interrupt();
+            reader.join(10000);
+
+            //endregion
+
+            //region Assert
+
+            assertFalse(reader.isAlive());
+            assertTrue(failure.get() instanceof IllegalStateException);
+            assertEquals("Interrupted while reading the files. Resume from the last checkpoint.", failure.get().getMessage());
+            assertEquals(Boolean.TRUE, interrupted.get());
+
+            //endregion
+        } finally {
+            release.countDown();
+            parserExecutor.shutdownNow();
+        }
+    }
+
+    private CheckpointedCounter counter(ExecutorService parserExecutor, int parserCount) throws IOException {
+        return new CheckpointedCounter(parserExecutor, parserCount, 2, StandardCharsets.US_ASCII, RunOptions.Tokenizer.SCALAR,
+                CHUNK_SIZE, new CheckpointStore(_directory.resolve("checkpoints")), 60000);
+    }
+}
@@ -0,0 +1,82 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for ChunkAssembler class.
+ */
+class ChunkAssemblerTest {
+
+    @Test
+    void chunksShouldEndOnDelimitersAndAddUpToTheInput() throws InterruptedException {
+        final List<String> chunks = new ArrayList<>();
+        final ChunkAssembler assembler = new ChunkAssembler(8, false, chunk -> chunks.add(text(chunk)));
+        write(assembler, "one two three four");
+        assembler.finish();
+
+        assertEquals("one two three four", String.join("", chunks));
+        for (int index = 0; index < chunks.size() - 1; index++) assertTrue(chunks.get(index).endsWith(" "));
+    }
+
+    @Test
+    void edgesShouldBeHeldBackForTheNeighbours() throws InterruptedException {
+        final List<String> chunks = new ArrayList<>();
+        final ChunkAssembler assembler = new ChunkAssembler(8, true, chunk -> chunks.add(text(chunk)));
+        write(assembler, "ing the middle of a wo");
+        assembler.finish();
+
+        assertEquals("ing", new String(assembler.head(), StandardCharsets.US_ASCII));
+        assertEquals("wo", new String(assembler.tail(), StandardCharsets.US_ASCII));
+        assertEquals(" the middle of a ", String.join("", chunks));
+        assertTrue(assembler.delimited());
+    }
+
+    @Test
+    void streamWithoutDelimitersShouldBeAllHead() throws InterruptedException {
+        final List<String> chunks = new ArrayList<>();
+        final ChunkAssembler assembler = new ChunkAssembler(8, true, chunk -> chunks.add(text(chunk)));
+        write(assembler, "word");
+        assembler.finish();
+
+        assertTrue(chunks.isEmpty());
+        assertEquals("word", new String(assembler.head(), StandardCharsets.US_ASCII));
+        assertEquals(0, assembler.tail().length);
+        assertFalse(assembler.delimited());
+    }
+
+    @Test
+    void flushShouldEmitTheCompleteWordsAndKeepThePartialOne() throws InterruptedException {
+        final List<String> chunks = new ArrayList<>();
+        final ChunkAssembler assembler = new ChunkAssembler(64, false, chunk -> chunks.add(text(chunk)));
+        write(assembler, "a live str");
+        assembler.flush();
+        assertEquals("a live ", String.join("", chunks));
+
+        write(assembler, "eam");
+        assembler.flush();
+        assertEquals(1, chunks.size());
+
+        write(assembler, "\n");
+        assembler.flush();
+        assembler.finish();
+        assertEquals("a live stream\n", String.join("", chunks));
+    }
+
+    private static void write(ChunkAssembler assembler, String text) throws InterruptedException {
+        //One byte at a time, so that every buffer boundary is crossed.
+        for (byte b : text.getBytes(StandardCharsets.US_ASCII)) assembler.write(new byte[]{b}, 0, 1);
+    }
+
+    private static String text(ByteBuffer chunk) {
+        final byte[] bytes = new byte[chunk.remaining()];
+        chunk.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,104 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit Test class for ChunkParser class.
+ */
+class ChunkParserTest {
+
+    @Test
+    void chunkParserShouldThrowForNullChunks() {
+        BoundedChannel<FileChunk> chunks = null;
+        IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new ChunkParser<>(chunks, new WordCountTable()));
+        assertEquals("The input chunk buffer cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void parserWithoutChannelShouldCountTheChunksHandedToIt() {
+        final ChunkParser<WordCountTable> parser = new ChunkParser<>(StandardCharsets.UTF_8, new WordCountTable());
+        parser.parse(chunkOf("I like dogs. Dogs are cute.").bytes());
+        parser.parse(chunkOf("Are these things like the others?").bytes());
+        assertEquals(9, parser.result().size());
+        assertEquals(2, parser.result().get("dogs"));
+        assertEquals(12, parser.words());
+
+        final IllegalStateException illegalStateException = assertThrows(IllegalStateException.class, parser::call);
+        assertEquals("A parser without a channel is fed by parse().", illegalStateException.getMessage());
+    }
+
+    @Test
+    void verifyResultForProblemDescriptionSample() throws InterruptedException {
+
+        //region Arrange
+
+        BoundedChannel<FileChunk> chunks = new BoundedChannel<>(2);
+        chunks.put(chunkOf("I like dogs. Dogs are cute."));
+        chunks.put(chunkOf("Are these things like the others?"));
+        chunks.close();
+
+        //endregion
+
+        //region Act
+
+        HashMap<String, Long> result = new ChunkParser<>(chunks, StandardCharsets.UTF_8, new WordCountTable()).call().toMap();
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(9, result.size());
+        assertEquals(2L, result.get("dogs").longValue());
+        assertEquals(2L, result.get("are").longValue());
+        assertEquals(1L, result.get("others").longValue());
+
+        //endregion
+    }
+
+    @Test
+    void resultShouldMatchLineParserForMappedFile() throws IOException {
+
+        //region Arrange
+
+        final String sep = File.separator;
+        final String filePath = new File(".").getAbsolutePath()
+                + sep + "src"
+                + sep + "test"
+                + sep + "resources"
+                + sep + "TestData"
+                + sep + "My_Queen.txt";
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>(Files.readAllLines(Paths.get(filePath), StandardCharsets.UTF_8));
+        lines.add(ConsoleOutput.END_MARKER);
+        BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1000);
+        new MappedFileReader(new String[]{filePath}, chunks, 1000, 10000).run();
+
+        //endregion
+
+        //region Act
+
+        HashMap<String, Long> expected = new LineParser<>(lines, new WordCountTable()).call().toMap();
+        HashMap<String, Long> actual = new ChunkParser<>(chunks, StandardCharsets.UTF_8, new WordCountTable()).call().toMap();
+
+        //endregion
+
+        assertEquals(expected, actual);
+    }
+
+    private static FileChunk chunkOf(String text) {
+        return new FileChunk("test", ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
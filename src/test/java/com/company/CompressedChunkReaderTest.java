@@ -0,0 +1,96 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for CompressedChunkReader and CompressedInput classes.
+ */
+class CompressedChunkReaderTest {
+
+    private Path _file;
+    private ExecutorService _executor;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        _file = Files.createTempFile("compressed", ".bin");
+        _executor = Executors.newCachedThreadPool(new DaemonThreadFactory("compressed-test-"));
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        _executor.shutdownNow();
+        Files.deleteIfExists(_file);
+    }
+
+    @Test
+    void detectShouldRecognizeFormatsByTheirFirstBytes() throws IOException {
+        Files.write(_file, "plain text".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(CompressedInput.Format.PLAIN, CompressedInput.detect(_file.toString()));
+
+        Files.write(_file, GzipMemberChainTest.members(new byte[]{'a'}, Deflater.DEFAULT_COMPRESSION, 0));
+        assertEquals(CompressedInput.Format.GZIP, CompressedInput.detect(_file.toString()));
+
+        writeZip("a.txt", "a");
+        assertEquals(CompressedInput.Format.ZIP, CompressedInput.detect(_file.toString()));
+
+        Files.write(_file, new byte[0]);
+        assertEquals(CompressedInput.Format.PLAIN, CompressedInput.detect(_file.toString()));
+    }
+
+    @Test
+    void zipEntriesShouldBeCountedAsSeparateFiles() throws IOException, InterruptedException {
+        //The first entry ends and the second one starts without a delimiter, which must still split the words.
+        writeZip("first.txt", "I like dogs", "dir/second.txt", "dogs are cute", "third.txt", "Are these things like the others?");
+
+        final HashMap<String, Long> result = read(CompressedInput.Format.ZIP, 4);
+
+        assertEquals(GzipMemberChainTest.countPlain(
+                "I like dogs dogs are cute Are these things like the others?".getBytes(StandardCharsets.US_ASCII)), result);
+        assertEquals(2L, result.get("dogs").longValue());
+        //Fewer tasks than entries, so that each task reads more than one.
+        assertEquals(result, read(CompressedInput.Format.ZIP, 2));
+    }
+
+    @Test
+    void gzipShouldCountLikeThePlainText() throws IOException, InterruptedException {
+        final byte[] text = Files.readAllBytes(GzipMemberChainTest.hamlet());
+        Files.write(_file, GzipMemberChainTest.members(text, Deflater.BEST_SPEED, 0, 5000, 5001, 90000));
+
+        assertEquals(GzipMemberChainTest.countPlain(text), read(CompressedInput.Format.GZIP, 3));
+        assertEquals(GzipMemberChainTest.countPlain(text), read(CompressedInput.Format.GZIP, 1));
+    }
+
+    private HashMap<String, Long> read(CompressedInput.Format format, int threads) throws IOException, InterruptedException {
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1 << 16);
+        CompressedChunkReader.read(_file.toString(), format, chunks, 1000, _executor, threads);
+        chunks.close();
+        return new ChunkParser<>(chunks, StandardCharsets.UTF_8, new WordCountTable()).call().toMap();
+    }
+
+    private void writeZip(String... namesAndTexts) throws IOException {
+        try (OutputStream file = Files.newOutputStream(_file);
+             ZipOutputStream zip = new ZipOutputStream(file)) {
+            for (int index = 0; index < namesAndTexts.length; index += 2) {
+                zip.putNextEntry(new ZipEntry(namesAndTexts[index]));
+                zip.write(namesAndTexts[index + 1].getBytes(StandardCharsets.US_ASCII));
+                zip.closeEntry();
+            }
+        }
+    }
+}
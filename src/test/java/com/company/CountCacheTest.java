@@ -0,0 +1,241 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for CountCache class.
+ */
+class CountCacheTest {
+
+    private Path _directory;
+    private Path _input;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        _directory = Files.createTempDirectory("count-cache");
+        _input = Files.createTempFile("count-cache-input", ".txt");
+        Files.write(_input, "I like dogs, dogs are cute".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(_input);
+        try (Stream<Path> paths = Files.walk(_directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void instantiationShouldThrowWithNullDirectory() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new CountCache(null, false));
+        assertEquals("'directory' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void loadShouldMissBeforeStore() throws IOException {
+        final CountCache cache = new CountCache(_directory, false);
+        final PartitionedWordCounts sink = new PartitionedWordCounts(2);
+        assertFalse(load(cache, sink));
+        assertEquals(0, sink.size());
+        assertEquals(1, cache.misses());
+        assertEquals(0, cache.hits());
+    }
+
+    @Test
+    void loadShouldReturnStoredCounts() throws IOException {
+
+        //region Arrange
+
+        final PartitionedWordCounts counts = countsOf("i", "like", "dogs", "dogs", "are", "cute");
+        store(new CountCache(_directory, false), counts, 1_000_000L);
+
+        //endregion
+
+        //region Act
+
+        final CountCache cache = new CountCache(_directory, false);
+        final PartitionedWordCounts loaded = new PartitionedWordCounts(3);
+        final boolean hit = load(cache, loaded);
+
+        //endregion
+
+        //region Assert
+
+        assertTrue(hit);
+        assertEquals(1, cache.hits());
+        assertEquals(counts.toMap(), loaded.toMap());
+
+        //endregion
+    }
+
+    @Test
+    void loadShouldMissAfterFileChanged() throws IOException {
+        final CountCache cache = new CountCache(_directory, false);
+        store(cache, countsOf("i", "like", "dogs"), 0L);
+
+        Files.write(_input, "I like cats".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(load(cache, new PartitionedWordCounts(2)));
+    }
+
+    @Test
+    void loadShouldMissAfterSameSizeRewriteOnlyWithContentVerification() throws IOException {
+
+        //region Arrange
+
+        final FileTime modified = Files.getLastModifiedTime(_input);
+        store(new CountCache(_directory, true), countsOf("i", "like", "dogs"), 0L);
+
+        //A rewrite of the same size that keeps the modified time is invisible to the fingerprint alone.
+        Files.write(_input, "I like cats, cats are cute".getBytes(StandardCharsets.US_ASCII));
+        Files.setLastModifiedTime(_input, modified);
+
+        //endregion
+
+        //region Act & Assert
+
+        assertTrue(load(new CountCache(_directory, false), new PartitionedWordCounts(2)));
+        assertFalse(load(new CountCache(_directory, true), new PartitionedWordCounts(2)));
+
+        //endregion
+    }
+
+    @Test
+    void loadShouldMissWhenTheEncodingChanged() throws IOException {
+
+        //region Arrange
+
+        Files.write(_input, "to be or not to be".getBytes(StandardCharsets.UTF_16));
+        final HashMap<String, Long> expected = new HashMap<>();
+        expected.put("to", 2L);
+        expected.put("be", 2L);
+        expected.put("or", 1L);
+        expected.put("not", 1L);
+
+        //endregion
+
+        //region Act
+
+        //The UTF-8 count of UTF-16 text is stored first, then the same file is counted in UTF-16.
+        final HashMap<String, Long> utf8;
+        try (WordCounter counter = WordCounter.builder().threads(1).cache(_directory.toString(), false, false).build()) {
+            utf8 = counter.count(_input.toString()).counts().toMap();
+        }
+        final HashMap<String, Long> utf16;
+        try (WordCounter counter = WordCounter.builder().threads(1).cache(_directory.toString(), false, false)
+                .encoding(StandardCharsets.UTF_16).build()) {
+            utf16 = counter.count(_input.toString()).counts().toMap();
+        }
+
+        //endregion
+
+        //region Assert
+
+        assertNotEquals(expected, utf8);
+        assertEquals(expected, utf16);
+        assertFalse(load(new CountCache(_directory, false, StandardCharsets.UTF_16LE, RunOptions.Tokenizer.SCALAR),
+                new PartitionedWordCounts(2)));
+        assertTrue(load(new CountCache(_directory, false, StandardCharsets.UTF_16, RunOptions.Tokenizer.SCALAR),
+                new PartitionedWordCounts(2)));
+
+        //endregion
+    }
+
+    @Test
+    void clearShouldRemoveEntries() throws IOException {
+        final CountCache cache = new CountCache(_directory, false);
+        store(cache, countsOf("i", "like", "dogs"), 0L);
+        cache.clear();
+        assertFalse(load(cache, new PartitionedWordCounts(2)));
+    }
+
+    @Test
+    void missesShouldBeCountedTogetherAndStoredFileByFile() throws IOException {
+
+        //region Arrange
+
+        final Path other = _directory.resolve("other.txt");
+        final Path archive = _directory.resolve("archive.zip");
+        Files.write(other, "dogs are dogs".getBytes(StandardCharsets.US_ASCII));
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("cats.txt"));
+            zip.write("cats are cute".getBytes(StandardCharsets.US_ASCII));
+            zip.closeEntry();
+        }
+        final String hamlet = GzipMemberChainTest.hamlet().toString();
+        final Path cache = _directory.resolve("cache");
+
+        //endregion
+
+        for (RunOptions.ReaderMode readerMode : RunOptions.ReaderMode.values()) {
+            try (WordCounter counter = WordCounter.builder().threads(2).readerMode(readerMode).cache(cache.toString(), false, true).build();
+                 WordCounter plain = WordCounter.builder().threads(2).build()) {
+
+                //region Act
+
+                //The first count misses every file, the second hits every one. The input is given twice.
+                final String[] inputs = {_input.toString(), other.toString(), archive.toString(), hamlet, _input.toString()};
+                final HashMap<String, Long> missed = counter.count(inputs).counts().toMap();
+                final HashMap<String, Long> hit = counter.count(inputs).counts().toMap();
+
+                //endregion
+
+                //region Assert
+
+                assertEquals(plain.count(inputs).counts().toMap(), missed, readerMode.name());
+                assertEquals(missed, hit, readerMode.name());
+                final CountCache entries = new CountCache(cache, false);
+                for (String input : new String[]{_input.toString(), other.toString(), archive.toString(), hamlet}) {
+                    final PartitionedWordCounts loaded = new PartitionedWordCounts(2);
+                    assertTrue(entries.load(input, entries.fingerprint(input), loaded), input);
+                    assertEquals(plain.count(input).counts().toMap(), loaded.toMap(), input);
+                }
+
+                //endregion
+            }
+        }
+    }
+
+    @Test
+    void storeShouldSkipAFileThatChangedWhileItWasCounted() throws IOException {
+        final CountCache cache = new CountCache(_directory, false);
+        final CountCache.Fingerprint fingerprint = cache.fingerprint(_input.toString());
+
+        //The file grows between its fingerprint and the store of its counts.
+        Files.write(_input, "I like dogs, dogs are cute and cats too".getBytes(StandardCharsets.US_ASCII));
+        assertFalse(cache.store(_input.toString(), fingerprint, countsOf("i", "like", "dogs"), 0L));
+        assertFalse(load(cache, new PartitionedWordCounts(2)));
+    }
+
+    private boolean store(CountCache cache, PartitionedWordCounts counts, long countNanos) throws IOException {
+        return cache.store(_input.toString(), cache.fingerprint(_input.toString()), counts, countNanos);
+    }
+
+    private boolean load(CountCache cache, PartitionedWordCounts sink) throws IOException {
+        return cache.load(_input.toString(), cache.fingerprint(_input.toString()), sink);
+    }
+
+    private static PartitionedWordCounts countsOf(String... words) {
+        final PartitionedWordCounts counts = new PartitionedWordCounts(3);
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            counts.accept(bytes, 0, bytes.length);
+        }
+        return counts;
+    }
+}
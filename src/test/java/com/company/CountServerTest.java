@@ -0,0 +1,134 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for CountServer and CountClient classes.
+ */
+class CountServerTest {
+
+    private static final String PROBLEM_TEXT = new File(".").getAbsolutePath()
+            + File.separator + "src"
+            + File.separator + "test"
+            + File.separator + "resources"
+            + File.separator + "TestData"
+            + File.separator + "problemText.txt";
+
+    @Test
+    void instantiationShouldThrowWithNullCounter() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new CountServer(null, 0, 1, 0, 0));
+        assertEquals("'counter' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void jobsShouldBeAnsweredWithTheResultInTheRequestedFormat() throws IOException {
+        try (WordCounter counter = WordCounter.builder().threads(2).build()) {
+            final CountServer server = new CountServer(counter, 0, 2, 4, 0);
+            server.start();
+            try {
+                //Twice, since the second job runs on the warm engine of the first.
+                for (int job = 0; job < 2; job++) {
+                    final String csv = send(server, "--format=csv", "--sort=count", PROBLEM_TEXT);
+                    final String[] lines = csv.split("\r?\n");
+                    assertEquals(10, lines.length);
+                    assertEquals("word,count", lines[0]);
+                    assertEquals(Arrays.asList("are,2", "dogs,2", "like,2"), Arrays.asList(lines).subList(1, 4));
+                }
+
+                final String distinct = send(server, "--cardinality", PROBLEM_TEXT);
+                assertTrue(distinct.startsWith("{'distinctWords': 9,"), distinct);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    void jobsShouldBeTurnedAwayWithTheReason() throws IOException {
+        try (WordCounter counter = WordCounter.builder().threads(1).build()) {
+            //A limit of ten bytes, smaller than the problem text.
+            final CountServer server = new CountServer(counter, 0, 1, 0, 10);
+            server.start();
+            try {
+                final IllegalStateException tooLarge = assertThrows(IllegalStateException.class,
+                        () -> send(server, PROBLEM_TEXT));
+                assertTrue(tooLarge.getMessage().contains("(413)"), tooLarge.getMessage());
+
+                final IllegalStateException badOption = assertThrows(IllegalStateException.class,
+                        () -> send(server, "--sort=sideways", PROBLEM_TEXT));
+                assertTrue(badOption.getMessage().contains("(400)"), badOption.getMessage());
+                assertTrue(badOption.getMessage().contains("--sort"), badOption.getMessage());
+
+                //Options of the engine, and files written by the server.
+                for (String option : new String[]{"--reader=lines", "--cache=/tmp", "--metrics=/tmp/metrics.json"}) {
+                    final IllegalStateException unsupported = assertThrows(IllegalStateException.class,
+                            () -> send(server, option, PROBLEM_TEXT));
+                    assertTrue(unsupported.getMessage().contains("(400)"), unsupported.getMessage());
+                    assertTrue(unsupported.getMessage().contains(option.substring(0, option.indexOf('='))), unsupported.getMessage());
+                }
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    void requestsShouldBeTurnedAwayWithoutTheTokenOrFromAWebPage() throws IOException {
+        try (WordCounter counter = WordCounter.builder().threads(1).build()) {
+            final CountServer server = new CountServer(counter, 0, 1, 0, 0);
+            server.start();
+            try {
+                final String token = new String(Files.readAllBytes(CountServer.tokenFile(server.port())), StandardCharsets.US_ASCII);
+                final String host = "Host: 127.0.0.1:" + server.port();
+                final String tokenHeader = CountServer.TOKEN_HEADER + ": " + token;
+
+                assertEquals(CountServer.OK, status(server, host, tokenHeader));
+                assertEquals(CountServer.FORBIDDEN, status(server, host));
+                final String otherToken = (token.charAt(0) == '0' ? "1" : "0") + token.substring(1);
+                assertEquals(CountServer.FORBIDDEN, status(server, host, CountServer.TOKEN_HEADER + ": " + otherToken));
+                assertEquals(CountServer.FORBIDDEN, status(server, host, tokenHeader, "Origin: http://example.com"));
+                assertEquals(CountServer.FORBIDDEN, status(server, "Host: example.com:" + server.port(), tokenHeader));
+                assertEquals(CountServer.OK, status(server, "Host: localhost", tokenHeader));
+            } finally {
+                server.stop();
+            }
+            assertFalse(Files.exists(CountServer.tokenFile(server.port())));
+        }
+    }
+
+    /**
+     * Asks for the status over a plain socket, since HttpURLConnection does not let the Host and Origin headers be set.
+     */
+    private static int status(CountServer server, String... headers) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", server.port())) {
+            final StringBuilder request = new StringBuilder("GET /status HTTP/1.1\r\n");
+            for (String header : headers) request.append(header).append("\r\n");
+            request.append("Connection: close\r\n\r\n");
+            final OutputStream output = socket.getOutputStream();
+            output.write(request.toString().getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            final String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+    }
+
+    private static String send(CountServer server, String... arguments) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CountClient.send(server.port(), arguments, output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -4,12 +4,15 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.Deflater;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -46,6 +49,52 @@ class DiskFileReaderTest {
         assertSame(ConsoleOutput.END_MARKER, lines.peek());
     }
 
+    @Test
+    void instantiationShouldThrowWithNullBatches() {
+        final CharBatchRing batches = null;
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new DiskFileReader(new String[0], batches));
+        assertEquals("'batches' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void batchesShouldEndOnDelimitersAndAddUpToTheInputFile() throws IOException, InterruptedException {
+
+        //region Arrange
+
+        final String sep = File.separator;
+        final String pathToTextFile = new File(".").getAbsolutePath()
+                + sep + "src"
+                + sep + "test"
+                + sep + "resources"
+                + sep + "TestData"
+                + sep + "hamlet.txt";
+        final String filePath = new File(pathToTextFile).getPath();
+        final String expectedText = new String(Files.readAllBytes(Paths.get(filePath)), StandardCharsets.UTF_8);
+
+        //Small batches, with enough of them to hold the whole file so that the reader never blocks.
+        final int batchChars = 100;
+        final CharBatchRing batches = new CharBatchRing(2L * expectedText.length() * 2, batchChars);
+
+        //endregion
+
+        //region Act
+
+        new DiskFileReader(new String[]{filePath}, batches).run();
+        final StringBuilder actualText = new StringBuilder();
+        CharBatch batch;
+        while ((batch = batches.take()) != null) {
+            final char lastChar = batch.chars()[batch.length() - 1];
+            assertTrue(!MappedFileReader.isWordCharacter(lastChar) || actualText.length() + batch.length() == expectedText.length());
+            actualText.append(batch.chars(), 0, batch.length());
+            batches.release(batch);
+        }
+
+        //endregion
+
+        assertEquals(expectedText, actualText.toString());
+    }
+
     @Test
     void linesShouldContainEachNonNullLineOfAnInputFile() throws IOException, InterruptedException {
 
@@ -77,4 +126,30 @@ class DiskFileReaderTest {
 
         assertLinesMatch(expectedLines, actualLines);
     }
-}
\ No newline at end of file
+
+    @Test
+    void linesShouldBeDecompressedFromAMultiMemberGzipFile() throws IOException, InterruptedException {
+
+        //region Arrange
+
+        final byte[] text = Files.readAllBytes(GzipMemberChainTest.hamlet());
+        final Path gzip = Files.createTempFile("hamlet", ".gz");
+        Files.write(gzip, GzipMemberChainTest.members(text, Deflater.DEFAULT_COMPRESSION, 0, text.length / 3, text.length / 2));
+        List<String> expectedLines = Files.readAllLines(GzipMemberChainTest.hamlet());
+        expectedLines.add(ConsoleOutput.END_MARKER);
+
+        //endregion
+
+        //region Act
+
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        new DiskFileReader(new String[]{gzip.toString()}, lines).run();
+        List<String> actualLines = new LinkedList<>();
+        lines.drainTo(actualLines);
+        Files.delete(gzip);
+
+        //endregion
+
+        assertLinesMatch(expectedLines, actualLines);
+    }
+}
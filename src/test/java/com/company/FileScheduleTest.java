@@ -0,0 +1,73 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for FileSchedule class.
+ */
+class FileScheduleTest {
+
+    private Path _small;
+    private Path _large;
+    private Path _medium;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        _small = Files.createTempFile("schedule-small", ".txt");
+        _large = Files.createTempFile("schedule-large", ".txt");
+        _medium = Files.createTempFile("schedule-medium", ".txt");
+        Files.write(_small, new byte[10]);
+        Files.write(_large, new byte[1000]);
+        Files.write(_medium, new byte[100]);
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(_small);
+        Files.deleteIfExists(_large);
+        Files.deleteIfExists(_medium);
+    }
+
+    @Test
+    void instantiationShouldThrowWithNonPositiveReaderCount() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new FileSchedule(new String[0], 0));
+        assertEquals("'readerCount' must be positive.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void nextShouldHandOutEveryFileOnceInOrder() {
+        final FileSchedule files = new FileSchedule(new String[]{"b", "a"});
+        assertEquals("b", files.next());
+        assertEquals("a", files.next());
+        assertNull(files.next());
+        assertNull(files.next());
+    }
+
+    @Test
+    void largestFirstShouldHandOutLargestFilesFirstAndUnknownSizesLast() {
+        final FileSchedule files = FileSchedule.largestFirst(new String[]{
+                "no such file", _small.toString(), _large.toString(), _medium.toString()}, 2);
+        assertEquals(_large.toString(), files.next());
+        assertEquals(_medium.toString(), files.next());
+        assertEquals(_small.toString(), files.next());
+        assertEquals("no such file", files.next());
+        assertNull(files.next());
+    }
+
+    @Test
+    void onlyTheLastReaderShouldFinishTheSchedule() {
+        final FileSchedule files = new FileSchedule(new String[0], 3);
+        assertFalse(files.readerFinished());
+        assertFalse(files.readerFinished());
+        assertTrue(files.readerFinished());
+    }
+}
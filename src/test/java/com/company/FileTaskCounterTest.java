@@ -0,0 +1,111 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for FileTaskCounter class.
+ */
+class FileTaskCounterTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private Path _directory;
+    private ExecutorService _executor;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        _directory = Files.createTempDirectory("file-task-counter");
+        _executor = Executors.newCachedThreadPool(new DaemonThreadFactory("file-task-test-"));
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        _executor.shutdownNow();
+        try (Stream<Path> paths = Files.walk(_directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void instantiationShouldThrowWithNullBufferBytes() {
+        final List<ChunkParser<PartitionedWordCounts>> parsers =
+                Collections.singletonList(new ChunkParser<>(StandardCharsets.UTF_8, new PartitionedWordCounts(1)));
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new FileTaskCounter<>(_executor, new Semaphore(1), null, parsers, CHUNK_SIZE));
+        assertEquals("'bufferBytes' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void countShouldHandBackEveryBufferByteWithRoomForOneStreamAtATime() throws IOException {
+
+        //region Arrange
+
+        //Small plain files, a small gzip file and a file larger than a chunk.
+        final List<String> paths = new ArrayList<>();
+        for (int index = 0; index < 50; index++) {
+            final Path file = _directory.resolve("small-" + index + ".txt");
+            Files.write(file, "to be or not to be".getBytes(StandardCharsets.US_ASCII));
+            paths.add(file.toString());
+        }
+        final Path gzip = _directory.resolve("small.txt.gz");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            output.write("that is the question".getBytes(StandardCharsets.US_ASCII));
+        }
+        paths.add(gzip.toString());
+        final Path large = _directory.resolve("large.txt");
+        final StringBuilder text = new StringBuilder();
+        while (text.length() <= 4 * CHUNK_SIZE) text.append("whether tis nobler ");
+        Files.write(large, text.toString().getBytes(StandardCharsets.US_ASCII));
+        paths.add(large.toString());
+
+        //Room for one small compressed file or one stream, and nothing beside it.
+        final int budget = 2 * CHUNK_SIZE + 64 * 1024;
+        final Semaphore bufferBytes = new Semaphore(budget, true);
+        final List<ChunkParser<PartitionedWordCounts>> parsers = new ArrayList<>();
+        for (int index = 0; index < 2; index++) parsers.add(new ChunkParser<>(StandardCharsets.UTF_8, new PartitionedWordCounts(2)));
+        final FileTaskCounter<PartitionedWordCounts> counter = new FileTaskCounter<>(_executor, new Semaphore(16), bufferBytes, parsers, CHUNK_SIZE);
+
+        //endregion
+
+        //region Act
+
+        final HashMap<String, Long> counts = new HashMap<>();
+        for (PartitionedWordCounts result : counter.count(paths.toArray(new String[0]))) {
+            result.forEach((word, offset, length, count) ->
+                    counts.merge(new String(word, offset, length, StandardCharsets.US_ASCII), count, Long::sum));
+        }
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(budget, bufferBytes.availablePermits());
+        assertEquals(Long.valueOf(100), counts.get("to"));
+        assertEquals(Long.valueOf(50), counts.get("not"));
+        assertEquals(Long.valueOf(1), counts.get("question"));
+        assertEquals(Long.valueOf(text.length() / "whether tis nobler ".length()), counts.get("nobler"));
+        assertEquals(Files.size(large) + Files.size(gzip) + 50 * 18, counter.bytesRead());
+
+        //endregion
+    }
+}
@@ -0,0 +1,235 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for GzipMemberChain class.
+ */
+class GzipMemberChainTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private Path _gzip;
+    private ExecutorService _executor;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        _gzip = Files.createTempFile("members", ".gz");
+        _executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        _executor.shutdownNow();
+        Files.deleteIfExists(_gzip);
+    }
+
+    @Test
+    void membersSplitInsideWordsShouldCountLikeThePlainText() throws IOException, InterruptedException {
+
+        //region Arrange
+
+        final byte[] text = Files.readAllBytes(hamlet());
+        //Cut at odd offsets, so that most members start and end in the middle of a word.
+        Files.write(_gzip, members(text, Deflater.DEFAULT_COMPRESSION, 0, 7, 1234, 20001, 20002, 65537, text.length / 2));
+
+        //endregion
+
+        //region Act & Assert
+
+        assertEquals(countPlain(text), countChain(_executor));
+        assertEquals(countPlain(text), countChain(null));
+
+        //endregion
+    }
+
+    @Test
+    void lookalikeHeadersInsideMembersShouldBeRejected() throws IOException, InterruptedException {
+
+        //region Arrange
+
+        //Stored (uncompressed) deflate blocks keep the text as it is, so a gzip header in the text
+        //shows up in the compressed file as a candidate that is not a member.
+        final byte[] fakeHeader = {0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, 3};
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (int repeat = 0; repeat < 50; repeat++) {
+            text.write("some words before ".getBytes(StandardCharsets.US_ASCII));
+            text.write(fakeHeader);
+            text.write(" and after".getBytes(StandardCharsets.US_ASCII));
+        }
+        final byte[] plain = text.toByteArray();
+        Files.write(_gzip, members(plain, Deflater.NO_COMPRESSION, 0, plain.length / 3, plain.length / 2 + 5));
+
+        //endregion
+
+        //region Act
+
+        final HashMap<String, Long> actual = countChain(_executor);
+
+        //endregion
+
+        //region Assert
+
+        try (FileChannel channel = FileChannel.open(_gzip, StandardOpenOption.READ)) {
+            assertTrue(GzipMemberChain.findCandidates(channel, 0, channel.size()).length > 3);
+        }
+        assertEquals(countPlain(plain), actual);
+        assertEquals(50L, actual.get("before").longValue());
+
+        //endregion
+    }
+
+    @Test
+    void aSingleMemberShouldNotBeScannedForHeaders() throws IOException, InterruptedException {
+        //The stored text holds header lookalikes, which a scan would take for candidates.
+        final byte[] fakeHeader = {0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, 3};
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        for (int repeat = 0; repeat < 50; repeat++) {
+            text.write("a member of its own ".getBytes(StandardCharsets.US_ASCII));
+            text.write(fakeHeader);
+        }
+        Files.write(_gzip, members(text.toByteArray(), Deflater.NO_COMPRESSION, 0));
+
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1 << 16);
+        final GzipMemberChain chain;
+        try (FileChannel channel = FileChannel.open(_gzip, StandardOpenOption.READ)) {
+            chain = new GzipMemberChain(_gzip.toString(), channel, chunks, CHUNK_SIZE);
+            chain.run(_executor, 4);
+        }
+        chunks.close();
+
+        assertEquals(1, chain.candidateCount());
+        assertEquals(countPlain(text.toByteArray()), new ChunkParser<>(chunks, StandardCharsets.UTF_8, new WordCountTable()).call().toMap());
+    }
+
+    @Test
+    void chunksSortedBySequenceShouldBeTheTextInOrder() throws IOException, InterruptedException {
+
+        //region Arrange
+
+        final byte[] text = Files.readAllBytes(hamlet());
+        Files.write(_gzip, members(text, Deflater.DEFAULT_COMPRESSION, 0, 7, 1234, 20001, 20002, 65537, text.length / 2));
+
+        //endregion
+
+        //region Act
+
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1 << 16);
+        try (FileChannel channel = FileChannel.open(_gzip, StandardOpenOption.READ)) {
+            new GzipMemberChain(_gzip.toString(), channel, chunks, CHUNK_SIZE).run(_executor, 4);
+        }
+        chunks.close();
+        final List<FileChunk> received = new ArrayList<>();
+        FileChunk chunk;
+        while ((chunk = chunks.take()) != null) received.add(chunk);
+
+        //endregion
+
+        //region Assert
+
+        received.sort((first, second) -> Long.compare(first.sequence(), second.sequence()));
+        final ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (FileChunk each : received) {
+            final ByteBuffer bytes = each.bytes();
+            while (bytes.hasRemaining()) joined.write(bytes.get());
+        }
+        assertArrayEquals(text, joined.toByteArray());
+
+        //endregion
+    }
+
+    @Test
+    void corruptTrailerShouldFail() throws IOException {
+        final byte[] gzip = members("a few words".getBytes(StandardCharsets.US_ASCII), Deflater.DEFAULT_COMPRESSION, 0);
+        gzip[gzip.length - 5] ^= 1;
+        Files.write(_gzip, gzip);
+        assertThrows(IOException.class, () -> countChain(_executor));
+    }
+
+    @Test
+    void looksLikeHeaderShouldCheckTheFixedHeaderFields() {
+        final byte[] header = {0x1F, (byte) 0x8B, 8, 0, 0, 0, 0, 0, 0, 3};
+        assertTrue(GzipMemberChain.looksLikeHeader(header, 0, header.length));
+        assertFalse(GzipMemberChain.looksLikeHeader(header, 0, header.length - 1));
+
+        final byte[] reservedFlag = header.clone();
+        reservedFlag[3] = (byte) 0x80;
+        assertFalse(GzipMemberChain.looksLikeHeader(reservedFlag, 0, reservedFlag.length));
+
+        final byte[] unknownSystem = header.clone();
+        unknownSystem[9] = 100;
+        assertFalse(GzipMemberChain.looksLikeHeader(unknownSystem, 0, unknownSystem.length));
+    }
+
+    private HashMap<String, Long> countChain(ExecutorService executor) throws IOException, InterruptedException {
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1 << 16);
+        try (FileChannel channel = FileChannel.open(_gzip, StandardOpenOption.READ)) {
+            new GzipMemberChain(_gzip.toString(), channel, chunks, CHUNK_SIZE).run(executor, 4);
+        }
+        chunks.close();
+        return new ChunkParser<>(chunks, StandardCharsets.UTF_8, new WordCountTable()).call().toMap();
+    }
+
+    static HashMap<String, Long> countPlain(byte[] text) {
+        final WordCountTable counts = new WordCountTable();
+        new WordTokenizer().tokenize(new String(text, StandardCharsets.UTF_8), counts);
+        return counts.toMap();
+    }
+
+    /**
+     * Compresses each piece of the text, between the given offsets, as a gzip member of its own.
+     */
+    static byte[] members(byte[] text, int level, int... starts) throws IOException {
+        final ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        for (int index = 0; index < starts.length; index++) {
+            final int end = index + 1 < starts.length ? starts[index + 1] : text.length;
+            try (GZIPOutputStream member = new GZIPOutputStream(gzip) {
+                {
+                    def.setLevel(level);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    //Finish the member, but leave the shared stream open for the next one.
+                    finish();
+                }
+            }) {
+                member.write(Arrays.copyOfRange(text, starts[index], end));
+            }
+        }
+        return gzip.toByteArray();
+    }
+
+    static Path hamlet() {
+        final String sep = File.separator;
+        return Paths.get(new File(".").getAbsolutePath()
+                + sep + "src"
+                + sep + "test"
+                + sep + "resources"
+                + sep + "TestData"
+                + sep + "hamlet.txt");
+    }
+}
@@ -0,0 +1,85 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for HyperLogLog class.
+ */
+class HyperLogLogTest {
+
+    @Test
+    void instantiationShouldThrowWithOutOfRangePrecision() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+        assertEquals("'precision' must be between 4 and 18.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void repeatedWordsShouldNotChangeTheEstimate() {
+        final HyperLogLog sketch = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        for (int repeat = 0; repeat < 100; repeat++) count(sketch, "i", "like", "dogs", "dogs", "are", "cute");
+        assertEquals(5L, sketch.estimate());
+    }
+
+    @Test
+    void estimateShouldBeWithinThreeStandardErrors() {
+        final int distinctWords = 200000;
+        final HyperLogLog sketch = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        for (int index = 0; index < distinctWords; index++) count(sketch, "w" + index);
+
+        final double relativeError = Math.abs(sketch.estimate() - distinctWords) / (double) distinctWords;
+        assertTrue(relativeError < 3 * sketch.standardError(), "relative error " + relativeError);
+    }
+
+    @Test
+    void mergedSketchShouldEqualTheSketchOfBothStreams() {
+
+        //region Arrange
+
+        final HyperLogLog first = new HyperLogLog(10);
+        final HyperLogLog second = new HyperLogLog(10);
+        final HyperLogLog both = new HyperLogLog(10);
+        for (int index = 0; index < 5000; index++) {
+            final String word = "w" + index;
+            count(index % 2 == 0 ? first : second, word);
+            count(both, word);
+        }
+
+        //endregion
+
+        //region Act
+
+        first.merge(second);
+
+        //endregion
+
+        assertEquals(both.estimate(), first.estimate());
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new HyperLogLog(11)));
+    }
+
+    @Test
+    void reportShouldUseADecimalPointInAnyLocale() {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            final HyperLogLog sketch = new HyperLogLog(HyperLogLog.MIN_PRECISION);
+            count(sketch, "to", "be", "or", "not");
+            assertTrue(ConsoleOutput.cardinalityText(sketch).matches("(?s)\\{'distinctWords': \\d+, 'standardError': 0\\.\\d{4}, .*"),
+                    ConsoleOutput.cardinalityText(sketch));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static void count(HyperLogLog sketch, String... words) {
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            sketch.accept(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for InputFiles class.
+ */
+class InputFilesTest {
+
+    private Path _directory;
+
+    @BeforeEach
+    void createTree() throws IOException {
+        //root/a.txt, root/b.log, root/nested/c.txt, root/nested/deeper/d.txt
+        _directory = Files.createTempDirectory("input-files");
+        Files.createDirectories(_directory.resolve("nested").resolve("deeper"));
+        Files.write(_directory.resolve("a.txt"), new byte[1]);
+        Files.write(_directory.resolve("b.log"), new byte[1]);
+        Files.write(_directory.resolve("nested").resolve("c.txt"), new byte[1]);
+        Files.write(_directory.resolve("nested").resolve("deeper").resolve("d.txt"), new byte[1]);
+    }
+
+    @AfterEach
+    void deleteTree() throws IOException {
+        try (Stream<Path> paths = Files.walk(_directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void expandShouldThrowWithNullArguments() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> InputFiles.expand(null));
+        assertEquals("'arguments' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void expandShouldReadDirectoriesRecursively() {
+        final String[] filePath = InputFiles.expand(new String[]{_directory.toString()});
+        assertArrayEquals(new String[]{
+                _directory.resolve("a.txt").toString(),
+                _directory.resolve("b.log").toString(),
+                _directory.resolve("nested").resolve("c.txt").toString(),
+                _directory.resolve("nested").resolve("deeper").resolve("d.txt").toString()}, filePath);
+    }
+
+    @Test
+    void expandShouldMatchGlobPatterns() {
+        final String root = _directory.toString();
+        assertArrayEquals(new String[]{_directory.resolve("a.txt").toString()},
+                InputFiles.expand(new String[]{root + "/*.txt"}));
+        assertArrayEquals(new String[]{
+                        _directory.resolve("nested").resolve("c.txt").toString(),
+                        _directory.resolve("nested").resolve("deeper").resolve("d.txt").toString()},
+                InputFiles.expand(new String[]{root + "/**/*.txt"}));
+    }
+
+    @Test
+    void expandShouldPassOnPlainPathsAndUnmatchedPatterns() {
+        final String[] arguments = {"bad File Path", _directory + "/*.csv"};
+        assertEquals(Arrays.asList(arguments), Arrays.asList(InputFiles.expand(arguments)));
+    }
+
+    @Test
+    void expandShouldTakeExistingPathsWithGlobCharactersLiterally() throws IOException {
+        final Path brackets = Files.write(_directory.resolve("notes[1].txt"), new byte[1]);
+        final Path braces = Files.write(_directory.resolve("a{b}.txt"), new byte[1]);
+        //As patterns, these would match notes1.txt and ab.txt instead.
+        Files.write(_directory.resolve("notes1.txt"), new byte[1]);
+        Files.write(_directory.resolve("ab.txt"), new byte[1]);
+        assertArrayEquals(new String[]{brackets.toString(), braces.toString()},
+                InputFiles.expand(new String[]{brackets.toString(), braces.toString()}));
+
+        final Path directory = Files.createDirectory(_directory.resolve("logs[old]"));
+        final Path log = Files.write(directory.resolve("e.txt"), new byte[1]);
+        assertArrayEquals(new String[]{log.toString()}, InputFiles.expand(new String[]{directory.toString()}));
+    }
+
+    @Test
+    void globBaseShouldStopBeforeTheFirstGlobCharacter() {
+        assertEquals(Paths.get("logs/2020"), InputFiles.globBase("logs/2020/*/x?.txt"));
+        assertEquals(Paths.get("/"), InputFiles.globBase("/*.txt"));
+        assertEquals(Paths.get(""), InputFiles.globBase("*.txt"));
+    }
+}
@@ -18,10 +18,56 @@ class LineParserTest {
     void lineParserShouldThrowForNullLines() {
         BlockingQueue<String> lines = null;
         IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
-                () -> new LineParser(lines));
+                () -> new LineParser<>(lines, new WordCountTable()));
         assertEquals("The input line buffer cannot be null.", illegalArgumentException.getMessage());
     }
 
+    @Test
+    void lineParserShouldThrowForNullBatches() {
+        CharBatchRing batches = null;
+        IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new LineParser<>(batches, new WordCountTable()));
+        assertEquals("The input batch ring cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void batchResultShouldMatchLineResultForProblemDescriptionSample() throws InterruptedException {
+
+        //region Arrange
+
+        final String[] sample = {"I like dogs. Dogs are cute.", "Are these things like the others?"};
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        CharBatchRing batches = new CharBatchRing(1024, 64);
+        for (String line : sample) {
+            lines.add(line);
+            CharBatch batch = batches.acquire();
+            line.getChars(0, line.length(), batch.chars(), 0);
+            batch.setLength(line.length());
+            batches.publish(batch);
+        }
+        lines.add(ConsoleOutput.END_MARKER);
+        batches.close();
+
+        //endregion
+
+        //region Act
+
+        HashMap<String, Long> expected = new LineParser<>(lines, new WordCountTable()).call().toMap();
+        HashMap<String, Long> actual = new LineParser<>(batches, new WordCountTable()).call().toMap();
+
+        //endregion
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void lineParserShouldThrowForNullSink() {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new LineParser<>(lines, null));
+        assertEquals("'sink' cannot be null.", illegalArgumentException.getMessage());
+    }
+
     @Test
     void resultShouldBeEmptyForEmptyLines() {
 
@@ -34,7 +80,7 @@ class LineParserTest {
 
         //region Act
 
-        HashMap<String, Long> result = new LineParser(lines).call();
+        HashMap<String, Long> result = new LineParser<>(lines, new WordCountTable()).call().toMap();
 
         //endregion
 
@@ -55,7 +101,7 @@ class LineParserTest {
 
         //region Act
 
-        HashMap<String, Long> result = new LineParser(lines).call();
+        HashMap<String, Long> result = new LineParser<>(lines, new WordCountTable()).call().toMap();
 
         //endregion
 
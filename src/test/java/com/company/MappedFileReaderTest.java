@@ -0,0 +1,97 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for MappedFileReader class.
+ */
+class MappedFileReaderTest {
+
+    @Test
+    void instantiationShouldThrowWithNullChunks() {
+        final BoundedChannel<FileChunk> chunks = null;
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new MappedFileReader(new String[0], chunks));
+        assertEquals("'chunks' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void instantiationShouldThrowWithNullPaths() {
+        final String[] filePath = null;
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new MappedFileReader(filePath, new BoundedChannel<>(1)));
+        assertEquals("'filePath' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void chunksShouldBeClosedWhenReadingIsDone() throws InterruptedException {
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1);
+        new MappedFileReader(new String[0], chunks).run();
+        assertTrue(chunks.isClosed());
+        assertNull(chunks.take());
+    }
+
+    @Test
+    void chunksShouldBeClosedOnlyByTheLastReaderOfASharedSchedule() throws InterruptedException {
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(1);
+        final FileSchedule files = new FileSchedule(new String[0], 2);
+        new MappedFileReader(files, chunks).run();
+        assertFalse(chunks.isClosed());
+        new MappedFileReader(files, chunks).run();
+        assertTrue(chunks.isClosed());
+    }
+
+    @Test
+    void chunksShouldEndOnDelimitersAndAddUpToTheInputFile() throws IOException, InterruptedException {
+
+        //region Arrange
+
+        final String sep = File.separator;
+        final String filePath = new File(".").getAbsolutePath()
+                + sep + "src"
+                + sep + "test"
+                + sep + "resources"
+                + sep + "TestData"
+                + sep + "hamlet.txt";
+        final byte[] expectedBytes = Files.readAllBytes(Paths.get(filePath));
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(expectedBytes.length);
+
+        //endregion
+
+        //region Act
+
+        //Small chunks and regions, so that a lot of boundaries are exercised.
+        new MappedFileReader(new String[]{filePath}, chunks, 100, 1000).run();
+        List<FileChunk> actualChunks = new LinkedList<>();
+        FileChunk chunk;
+        while ((chunk = chunks.take()) != null) actualChunks.add(chunk);
+
+        //endregion
+
+        //region Assert
+
+        final ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+        for (FileChunk actualChunk : actualChunks) {
+            final ByteBuffer bytes = actualChunk.bytes();
+            final byte[] chunkBytes = new byte[bytes.remaining()];
+            bytes.get(chunkBytes);
+            assertTrue(MappedFileReader.isDelimiter(chunkBytes[chunkBytes.length - 1])
+                    || actualBytes.size() + chunkBytes.length == expectedBytes.length);
+            actualBytes.write(chunkBytes);
+        }
+        assertArrayEquals(expectedBytes, actualBytes.toByteArray());
+
+        //endregion
+    }
+}
@@ -0,0 +1,154 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for NGramTable, NGramCounts and MergedNGramCounts classes.
+ */
+class NGramCountsTest {
+
+    @Test
+    void instantiationShouldThrowWithAnOrderOutOfRange() {
+        final WordDictionary dictionary = new WordDictionary(2);
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new NGramCounts(dictionary, NGramCounts.MAX_ORDER + 1));
+        assertEquals("'maxOrder' must be between 2 and 8.", illegalArgumentException.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> new NGramCounts(dictionary, 1));
+        assertThrows(IllegalArgumentException.class, () -> new NGramTable(0));
+    }
+
+    @Test
+    void tableShouldCountTuplesAcrossGrowth() {
+
+        //region Arrange
+
+        final Random random = new Random(42);
+        final NGramTable first = new NGramTable(3, 0);
+        final NGramTable second = new NGramTable(3);
+        final HashMap<List<Integer>, Long> expected = new HashMap<>();
+
+        //endregion
+
+        //region Act
+
+        for (int index = 0; index < 50000; index++) {
+            final int[] ids = {7, random.nextInt(30), random.nextInt(30), random.nextInt(30)};
+            (index % 2 == 0 ? first : second).add(ids, 1, 1L);
+            expected.merge(Arrays.asList(ids[1], ids[2], ids[3]), 1L, Long::sum);
+        }
+        first.merge(second);
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(expected.size(), first.size());
+        for (int entry = 0; entry < first.size(); entry++) {
+            final List<Integer> ids = Arrays.asList(first.idOf(entry, 0), first.idOf(entry, 1), first.idOf(entry, 2));
+            assertEquals(expected.get(ids), Long.valueOf(first.countOf(entry)));
+            assertEquals(first.countOf(entry), first.get(ids.get(0), ids.get(1), ids.get(2)));
+        }
+        assertEquals(0L, first.get(30, 30, 30));
+        assertThrows(IllegalArgumentException.class, () -> first.merge(new NGramTable(2)));
+
+        //endregion
+    }
+
+    @Test
+    void chunksInAnyOrderShouldCountLikeTheWholeText() throws IOException {
+
+        //region Arrange
+
+        final byte[] text = Files.readAllBytes(GzipMemberChainTest.hamlet());
+
+        //Cut after random delimiters, so that many chunks hold a few words only, and some none at all.
+        final Random random = new Random(7);
+        final List<FileChunk> chunks = new ArrayList<>();
+        int start = 0;
+        for (int index = 0; index < text.length; index++) {
+            if (!MappedFileReader.isDelimiter(text[index]) || random.nextInt(8) != 0) continue;
+            chunks.add(new FileChunk("hamlet", 2L * chunks.size(), ByteBuffer.wrap(text, start, index + 1 - start).slice()));
+            if (random.nextInt(10) == 0) chunks.add(new FileChunk("hamlet", 2L * chunks.size(), ByteBuffer.allocate(0)));
+            start = index + 1;
+        }
+        chunks.add(new FileChunk("hamlet", 2L * chunks.size(), ByteBuffer.wrap(text, start, text.length - start).slice()));
+        Collections.shuffle(chunks, random);
+
+        final WordDictionary wholeDictionary = new WordDictionary(4);
+        final NGramCounts whole = new NGramCounts(wholeDictionary, 4);
+        new ChunkParser<>(StandardCharsets.UTF_8, whole).parse(new FileChunk("hamlet", ByteBuffer.wrap(text)));
+
+        //endregion
+
+        //region Act
+
+        final WordDictionary dictionary = new WordDictionary(4);
+        final List<ChunkParser<NGramCounts>> parsers = Arrays.asList(
+                new ChunkParser<>(StandardCharsets.UTF_8, new NGramCounts(dictionary, 4)),
+                new ChunkParser<>(StandardCharsets.UTF_8, new NGramCounts(dictionary, 4)));
+        for (int index = 0; index < chunks.size(); index++) parsers.get(index % 2).parse(chunks.get(index));
+        final List<NGramCounts> parserCounts = Arrays.asList(parsers.get(0).result(), parsers.get(1).result());
+        NGramCounts.stitchChunks(parserCounts);
+
+        //endregion
+
+        //region Assert
+
+        assertTrue(chunks.size() > 1000);
+        final HashMap<String, Long> expected = merge(Collections.singletonList(whole), wholeDictionary).toMap();
+        assertEquals(expected, merge(parserCounts, dictionary).toMap());
+        assertEquals(1L, expected.get("to be or not").longValue());
+        assertEquals(12L, expected.get("i pray you").longValue());
+
+        //endregion
+    }
+
+    @Test
+    void mergedCountsShouldBeWrittenWithTheWordsInEitherOrder() throws IOException {
+        final WordDictionary dictionary = new WordDictionary(2);
+        final NGramCounts counts = new NGramCounts(dictionary, 2);
+        new ChunkParser<>(StandardCharsets.UTF_8, counts).parse(new FileChunk("text", ByteBuffer.wrap("b a b a c".getBytes(StandardCharsets.US_ASCII))));
+        final MergedNGramCounts merged = merge(Collections.singletonList(counts), dictionary);
+
+        assertEquals(3, merged.words().size());
+        assertEquals(3, merged.ngramCount());
+        assertEquals("word,count\na,2\na b,1\na c,1\nb,2\nb a,2\nc,1\n", write(merged, RunOptions.SortOrder.WORD));
+        assertEquals("word,count\na,2\nb,2\nb a,2\na b,1\na c,1\nc,1\n", write(merged, RunOptions.SortOrder.COUNT));
+    }
+
+    private static MergedNGramCounts merge(List<NGramCounts> parserCounts, WordDictionary dictionary) {
+        final List<WordIdCounts> wordCounts = new ArrayList<>();
+        for (NGramCounts counts : parserCounts) wordCounts.add(counts.words());
+        final WordCountTable[] stripes = new WordCountTable[dictionary.stripeCount()];
+        for (int stripe = 0; stripe < stripes.length; stripe++) stripes[stripe] = WordIdCounts.mergeStripe(stripe, wordCounts);
+
+        final int maxOrder = parserCounts.get(0).maxOrder();
+        final List<NGramTable> ngrams = new ArrayList<>();
+        for (int order = NGramCounts.MIN_ORDER; order <= maxOrder; order++) {
+            for (int partition = 0; partition < dictionary.stripeCount(); partition++) {
+                ngrams.add(NGramCounts.mergePartition(order, partition, parserCounts));
+            }
+        }
+        return new MergedNGramCounts(PartitionedWordCounts.of(stripes), dictionary, ngrams.toArray(new NGramTable[0]));
+    }
+
+    private static String write(MergedNGramCounts counts, RunOptions.SortOrder sort) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ResultWriter(output, RunOptions.OutputFormat.CSV, sort).write(counts);
+        return output.toString("US-ASCII").replace(ConsoleOutput.NEW_LINE, "\n");
+    }
+}
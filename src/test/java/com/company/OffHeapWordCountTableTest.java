@@ -0,0 +1,114 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for OffHeapWordCountTable and OffHeapWordCounts classes.
+ */
+class OffHeapWordCountTableTest {
+
+    @Test
+    void instantiationShouldThrowWithNegativeSize() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapWordCountTable(-1));
+        assertEquals("'expectedSize' cannot be negative.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void countsShouldMatchTheHeapTableAcrossGrowth() {
+
+        //region Arrange
+
+        //More distinct words than the initial capacity, so that the entries, keys and index all grow.
+        final Random random = new Random(42);
+        final OffHeapWordCountTable offHeap = new OffHeapWordCountTable(0);
+        final WordCountTable onHeap = new WordCountTable(0);
+
+        //endregion
+
+        //region Act
+
+        for (int index = 0; index < 100000; index++) {
+            final byte[] bytes = ("  w" + random.nextInt(20000) + "abcdefghij".substring(random.nextInt(10))).getBytes(StandardCharsets.US_ASCII);
+            offHeap.accept(bytes, 2, bytes.length - 2);
+            onHeap.accept(bytes, 2, bytes.length - 2);
+        }
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(onHeap.size(), offHeap.size());
+        assertEquals(onHeap.toMap(), offHeap.toTable().toMap());
+        for (String word : onHeap.toMap().keySet()) assertEquals(onHeap.get(word), offHeap.get(word));
+        assertEquals(0L, offHeap.get("missing"));
+        assertTrue(offHeap.memoryBytes() > 0);
+
+        //endregion
+    }
+
+    @Test
+    void sortedEntriesShouldBeInTheOrderOfTheHeapTable() {
+        final OffHeapWordCountTable offHeap = new OffHeapWordCountTable();
+        final WordCountTable onHeap = new WordCountTable();
+        for (String word : new String[]{"pear", "apple", "pear", "ap", "fig", "apple", "zucchini", "pear"}) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            offHeap.accept(bytes, 0, bytes.length);
+            onHeap.accept(bytes, 0, bytes.length);
+        }
+
+        for (boolean byCount : new boolean[]{true, false}) {
+            assertArrayEquals(onHeap.sortedEntries(byCount), offHeap.sortedEntries(byCount));
+        }
+        final List<String> visited = new ArrayList<>();
+        for (int entry : offHeap.sortedEntries(true)) {
+            offHeap.visit(entry, (word, offset, length, count) -> visited.add(new String(word, offset, length, StandardCharsets.US_ASCII) + "=" + count));
+        }
+        assertEquals(Arrays.asList("pear=3", "apple=2", "ap=1", "fig=1", "zucchini=1"), visited);
+    }
+
+    @Test
+    void mergedPartitionsShouldAddTheCountsOfEveryParser() {
+
+        //region Arrange
+
+        final OffHeapWordCounts first = new OffHeapWordCounts(4);
+        final OffHeapWordCounts second = new OffHeapWordCounts(4);
+        final HashMap<String, Long> expected = new HashMap<>();
+        for (int index = 0; index < 5000; index++) {
+            final String word = "w" + (index % 700);
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            (index % 3 == 0 ? first : second).accept(bytes, 0, bytes.length);
+            expected.merge(word, 1L, Long::sum);
+        }
+
+        //endregion
+
+        //region Act
+
+        final List<OffHeapWordCounts> parserCounts = Arrays.asList(first, second);
+        final OffHeapWordCountTable[] partitions = new OffHeapWordCountTable[4];
+        for (int partition = 0; partition < partitions.length; partition++) {
+            partitions[partition] = OffHeapWordCounts.mergePartition(partition, parserCounts);
+        }
+        final OffHeapWordCounts merged = OffHeapWordCounts.of(partitions);
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(expected.size(), merged.size());
+        assertEquals(expected, merged.toHeap().toMap());
+
+        //endregion
+    }
+}
@@ -0,0 +1,80 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for PartitionedWordCounts class.
+ */
+class PartitionedWordCountsTest {
+
+    @Test
+    void instantiationShouldThrowWithNonPositivePartitionCount() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new PartitionedWordCounts(0));
+        assertEquals("'partitionCount' must be positive.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void partitionsShouldHoldDisjointWords() {
+        final PartitionedWordCounts counts = countsOf(4, "a", "b", "c", "d", "e", "f", "g", "a");
+        final HashMap<String, Long> seen = new HashMap<>();
+        for (int partition = 0; partition < counts.partitionCount(); partition++) {
+            for (String word : counts.partition(partition).toMap().keySet()) assertNull(seen.put(word, 1L));
+        }
+        assertEquals(7, counts.size());
+        assertEquals(2L, counts.get("a"));
+    }
+
+    @Test
+    void mergedPartitionsShouldMatchSerialMerge() {
+
+        //region Arrange
+
+        final List<PartitionedWordCounts> parserResults = new ArrayList<>(Arrays.asList(
+                countsOf(3, "I", "like", "dogs", "dogs", "are", "cute"),
+                countsOf(3, "are", "these", "things", "like", "the", "others")));
+        final HashMap<String, Long> expected = new HashMap<>();
+        for (PartitionedWordCounts parserResult : parserResults) {
+            parserResult.toMap().forEach((word, count) -> expected.merge(word, count, Long::sum));
+        }
+
+        //endregion
+
+        //region Act
+
+        final WordCountTable[] merged = new WordCountTable[3];
+        for (int partition = 0; partition < merged.length; partition++) {
+            merged[partition] = PartitionedWordCounts.mergePartition(partition, parserResults);
+        }
+        final PartitionedWordCounts result = PartitionedWordCounts.of(merged);
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(expected, result.toMap());
+        assertEquals(9, result.size());
+        assertEquals(2L, result.get("dogs"));
+        assertEquals(2L, result.get("are"));
+        assertEquals(2L, result.get("like"));
+
+        //endregion
+    }
+
+    private static PartitionedWordCounts countsOf(int partitionCount, String... words) {
+        final PartitionedWordCounts counts = new PartitionedWordCounts(partitionCount);
+        for (String word : words) {
+            final byte[] bytes = word.toLowerCase().getBytes(StandardCharsets.US_ASCII);
+            counts.accept(bytes, 0, bytes.length);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,306 @@
+package com.company;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The benchmarks of every stage of the pipeline in isolation, and of the whole pipeline:
+ * <ul>
+ * <li>reader.lines and reader.mapped: the DiskFileReader and the MappedFileReader, with a consumer that only
+ * hands the batches and chunks back. The mapped reader does not touch the pages of the file, the parsers do,
+ * so it mostly measures the cost of mapping and cutting.</li>
+ * <li>tokenizer: the WordTokenizer over text already in memory.</li>
+ * <li>tokenizer.bytes and tokenizer.swar: the WordTokenizer over the undecoded bytes of the text, with the scalar
+ * and the SWAR backends.</li>
+ * <li>table: counting words that are already tokenized into a WordCountTable.</li>
+ * <li>merge: merging the partitions of four parser results, one after another on one thread.</li>
+ * <li>pipeline.mapped and pipeline.lines: an exact count by a WordCounter that is reused between runs.</li>
+ * <li>pipeline.swar: the same as pipeline.mapped, with the SWAR tokenizer.</li>
+ * <li>pipeline.files: the same, with a task per file instead of the pipeline, on virtual threads where the
+ * runtime has them.</li>
+ * </ul>
+ * Each runs on the TestData files, on a generated ZipfCorpus, and on the same kind of text split into many
+ * small files. They are timed by the BenchmarkRunner, a harness of this project rather than JMH, with the limits
+ * it lists. Run it from the test classpath:
+ * <pre>
+ * PipelineBenchmarks [--size=64M] [--vocabulary=100000] [--skew=1.0] [--seed=42] [--warmups=3] [--iterations=5]
+ *                    [--files=4096] [--file-size=4K]
+ *                    [--only=table] [--label=abc123] [--results=results.csv] [--compare=baseline.csv]
+ * </pre>
+ */
+final class PipelineBenchmarks {
+
+    //region Static Final Class Variables
+
+    private static final int MERGED_PARSER_RESULTS = 4;
+    private static final int MERGED_PARTITIONS = 4;
+    private static final String TEST_DATA = "src" + File.separator + "test" + File.separator + "resources"
+            + File.separator + "TestData";
+
+    //endregion
+
+    //region Corpus
+
+    /**
+     * A set of input files, with its text also in memory for the stages that do not read files.
+     */
+    private static final class Corpus {
+        final String name;
+        final String[] filePath;
+        final long bytes;
+        final char[] text;
+        final byte[] content;
+
+        //The words of the text, packed one after another, for the stages after the tokenizer.
+        final byte[] words;
+        final int[] wordEnds;
+
+        Corpus(String name, String[] filePath) throws IOException {
+            this.name = name;
+            this.filePath = filePath;
+            final StringBuilder all = new StringBuilder();
+            long total = 0;
+            for (String path : filePath) {
+                final byte[] content = Files.readAllBytes(Paths.get(path));
+                total += content.length;
+                all.append(new String(content, StandardCharsets.ISO_8859_1)).append('\n');
+            }
+            this.bytes = total;
+            this.text = all.toString().toCharArray();
+            this.content = all.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+            final PackedWords packed = new PackedWords();
+            new WordTokenizer().tokenize(text, 0, text.length, packed);
+            this.words = packed.bytes();
+            this.wordEnds = packed.ends();
+        }
+    }
+
+    /**
+     * Packs the words of a tokenizer into one array, and remembers where each of them ends.
+     */
+    private static final class PackedWords implements WordSink {
+        private byte[] _bytes = new byte[1 << 16];
+        private int[] _ends = new int[1 << 12];
+        private int _length;
+        private int _count;
+
+        @Override
+        public void accept(byte[] word, int offset, int length) {
+            if (_length + length > _bytes.length) _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _length + length));
+            if (_count == _ends.length) _ends = Arrays.copyOf(_ends, _ends.length * 2);
+            System.arraycopy(word, offset, _bytes, _length, length);
+            _length += length;
+            _ends[_count++] = _length;
+        }
+
+        byte[] bytes() {
+            return Arrays.copyOf(_bytes, _length);
+        }
+
+        int[] ends() {
+            return Arrays.copyOf(_ends, _count);
+        }
+    }
+
+    //endregion
+
+    //region Main
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = parseOptions(args);
+        final long size = parseSize(options.getOrDefault("size", "64M"));
+        final int vocabulary = Integer.parseInt(options.getOrDefault("vocabulary", String.valueOf(ZipfCorpus.DEFAULT_VOCABULARY)));
+        final double skew = Double.parseDouble(options.getOrDefault("skew", String.valueOf(ZipfCorpus.DEFAULT_SKEW)));
+        final long seed = Long.parseLong(options.getOrDefault("seed", String.valueOf(ZipfCorpus.DEFAULT_SEED)));
+        final int files = Integer.parseInt(options.getOrDefault("files", "4096"));
+        final long fileSize = parseSize(options.getOrDefault("file-size", "4K"));
+        final String only = options.get("only");
+        final BenchmarkRunner runner = new BenchmarkRunner(options.getOrDefault("label", "current"),
+                Integer.parseInt(options.getOrDefault("warmups", "3")),
+                Integer.parseInt(options.getOrDefault("iterations", "5")),
+                System.out);
+
+        //The engine's progress messages would drown the results.
+        ConsoleOutput.useMessageStream(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                //Discarded.
+            }
+        }));
+
+        final Path zipfFile = Files.createTempFile("zipf-corpus", ".txt");
+        final Path smallFiles = Files.createTempDirectory("zipf-files");
+        try {
+            final ZipfCorpus zipf = new ZipfCorpus(seed, vocabulary, skew);
+            zipf.write(zipfFile, size);
+            final List<Corpus> corpora = new ArrayList<>();
+            corpora.add(new Corpus("testdata", InputFiles.expand(new String[]{TEST_DATA})));
+            corpora.add(new Corpus("zipf", new String[]{zipfFile.toString()}));
+            corpora.add(new Corpus("files", zipf.writeFiles(smallFiles, files, fileSize)));
+
+            System.out.println("Generated a corpus of " + size + " bytes, and " + files + " files of " + fileSize + " bytes, "
+                    + vocabulary + " words, skew " + skew + ", seed " + seed + ".");
+            System.out.println(VirtualThreads.available() ? "File tasks run on virtual threads." : "File tasks run on platform threads.");
+            try (WordCounter mappedCounter = WordCounter.builder().build();
+                 WordCounter linesCounter = WordCounter.builder().readerMode(RunOptions.ReaderMode.LINES).build();
+                 WordCounter filesCounter = WordCounter.builder().execution(RunOptions.Execution.FILES).build();
+                 WordCounter swarCounter = WordCounter.builder().tokenizer(RunOptions.Tokenizer.SWAR).build()) {
+                for (Corpus corpus : corpora) {
+                    run(runner, only, "reader.lines", corpus, () -> readLines(corpus));
+                    run(runner, only, "reader.mapped", corpus, () -> readMapped(corpus));
+                    run(runner, only, "tokenizer", corpus, () -> tokenize(corpus));
+                    run(runner, only, "tokenizer.bytes", corpus, () -> tokenize(corpus, RunOptions.Tokenizer.SCALAR));
+                    run(runner, only, "tokenizer.swar", corpus, () -> tokenize(corpus, RunOptions.Tokenizer.SWAR));
+                    run(runner, only, "table", corpus, () -> countTable(corpus));
+                    final List<PartitionedWordCounts> parserResults = parserResults(corpus);
+                    run(runner, only, "merge", corpus, () -> merge(corpus, parserResults));
+                    run(runner, only, "pipeline.mapped", corpus, () -> pipeline(mappedCounter, corpus));
+                    run(runner, only, "pipeline.lines", corpus, () -> pipeline(linesCounter, corpus));
+                    run(runner, only, "pipeline.swar", corpus, () -> pipeline(swarCounter, corpus));
+                    run(runner, only, "pipeline.files", corpus, () -> pipeline(filesCounter, corpus));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(zipfFile);
+            try (DirectoryStream<Path> generated = Files.newDirectoryStream(smallFiles)) {
+                for (Path file : generated) Files.delete(file);
+            }
+            Files.delete(smallFiles);
+        }
+
+        if (options.containsKey("results")) runner.save(Paths.get(options.get("results")));
+        if (options.containsKey("compare")) {
+            System.out.println();
+            System.out.println("Compared with " + options.get("compare") + ":");
+            BenchmarkRunner.compare(BenchmarkRunner.load(Paths.get(options.get("compare"))), runner.results(), System.out);
+        }
+    }
+
+    private static void run(BenchmarkRunner runner, String only, String benchmark, Corpus corpus,
+                            BenchmarkRunner.Benchmark run) throws Exception {
+        if (only != null && !benchmark.contains(only)) return;
+        runner.measure(benchmark, corpus.name, run);
+    }
+
+    //endregion
+
+    //region Stages
+
+    private static long readLines(Corpus corpus) throws InterruptedException {
+        final CharBatchRing batches = new CharBatchRing(CharBatchRing.DEFAULT_MEMORY_BUDGET);
+        final Thread reader = new Thread(new DiskFileReader(corpus.filePath, batches));
+        reader.start();
+        long chars = 0;
+        CharBatch batch;
+        while ((batch = batches.take()) != null) {
+            chars += batch.length();
+            batches.release(batch);
+        }
+        reader.join();
+        return chars;
+    }
+
+    private static long readMapped(Corpus corpus) throws InterruptedException {
+        final BoundedChannel<FileChunk> chunks = new BoundedChannel<>(Runtime.getRuntime().availableProcessors() * 2);
+        final Thread reader = new Thread(new MappedFileReader(corpus.filePath, chunks));
+        reader.start();
+        long bytes = 0;
+        FileChunk chunk;
+        while ((chunk = chunks.take()) != null) bytes += chunk.bytes().remaining();
+        reader.join();
+        return bytes;
+    }
+
+    private static long tokenize(Corpus corpus) {
+        final long[] wordBytes = new long[1];
+        new WordTokenizer().tokenize(corpus.text, 0, corpus.text.length, (word, offset, length) -> wordBytes[0] += length);
+        return corpus.text.length + (wordBytes[0] & 1);
+    }
+
+    private static long tokenize(Corpus corpus, RunOptions.Tokenizer backend) {
+        final long[] wordBytes = new long[1];
+        new WordTokenizer(backend).tokenize(ByteBuffer.wrap(corpus.content), (word, offset, length) -> wordBytes[0] += length);
+        return corpus.content.length + (wordBytes[0] & 1);
+    }
+
+    private static long countTable(Corpus corpus) {
+        final WordCountTable table = new WordCountTable();
+        int start = 0;
+        for (int end : corpus.wordEnds) {
+            table.accept(corpus.words, start, end - start);
+            start = end;
+        }
+        return corpus.words.length + (table.size() & 1);
+    }
+
+    /**
+     * Splits the words into the results of a few parsers, as the parsers of a real count would.
+     */
+    private static List<PartitionedWordCounts> parserResults(Corpus corpus) {
+        final List<PartitionedWordCounts> results = new ArrayList<>();
+        for (int parser = 0; parser < MERGED_PARSER_RESULTS; parser++) results.add(new PartitionedWordCounts(MERGED_PARTITIONS));
+        int start = 0;
+        for (int index = 0; index < corpus.wordEnds.length; index++) {
+            final int end = corpus.wordEnds[index];
+            results.get(index % MERGED_PARSER_RESULTS).accept(corpus.words, start, end - start);
+            start = end;
+        }
+        return results;
+    }
+
+    private static long merge(Corpus corpus, List<PartitionedWordCounts> parserResults) {
+        long size = 0;
+        for (int partition = 0; partition < MERGED_PARTITIONS; partition++) {
+            size += PartitionedWordCounts.mergePartition(partition, parserResults).size();
+        }
+        return corpus.words.length + (size & 1);
+    }
+
+    private static long pipeline(WordCounter counter, Corpus corpus) {
+        return corpus.bytes + (counter.count(corpus.filePath).counts().size() & 1);
+    }
+
+    //endregion
+
+    //region Options
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new LinkedHashMap<>();
+        final List<String> known = Arrays.asList("size", "vocabulary", "skew", "seed", "warmups", "iterations",
+                "files", "file-size", "only", "label", "results", "compare");
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) throw new IllegalArgumentException("Expected --name=value: " + arg);
+            final String name = arg.substring(2, separator);
+            if (!known.contains(name)) throw new IllegalArgumentException("Unknown option: " + arg);
+            options.put(name, arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    /**
+     * Parses a number of bytes, with an optional K, M or G suffix.
+     */
+    static long parseSize(String value) {
+        final char suffix = Character.toUpperCase(value.charAt(value.length() - 1));
+        final long multiplier = suffix == 'K' ? 1024L : suffix == 'M' ? 1024L * 1024 : suffix == 'G' ? 1024L * 1024 * 1024 : 1L;
+        final String digits = multiplier == 1 ? value : value.substring(0, value.length() - 1);
+        return Long.parseLong(digits) * multiplier;
+    }
+
+    //endregion
+}
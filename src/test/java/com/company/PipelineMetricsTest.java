@@ -0,0 +1,133 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for PipelineMetrics and FlightRecorderEvents classes.
+ */
+class PipelineMetricsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void starvedParsersShouldMakeTheCountReaderBound() {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordParser(parser(1000, SECOND, 3 * SECOND));
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, 4 * SECOND);
+        assertEquals(0.75, metrics.parserBlockedShare(), 1e-9);
+        assertEquals(PipelineMetrics.Bottleneck.READER, metrics.bottleneck());
+    }
+
+    @Test
+    void busyParsersShouldMakeTheCountParserBound() {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordParser(parser(1000, 3 * SECOND, SECOND));
+        metrics.recordParser(parser(1000, 4 * SECOND, 0));
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, 4 * SECOND);
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, SECOND);
+        assertEquals(PipelineMetrics.Bottleneck.PARSER, metrics.bottleneck());
+        assertEquals(2000, metrics.words());
+    }
+
+    @Test
+    void aMergeOrOutputLongerThanParsingShouldBeTheBottleneck() {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordParser(parser(1000, SECOND, 0));
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, SECOND);
+        metrics.recordStage(PipelineMetrics.Stage.MERGE, 2 * SECOND);
+        assertEquals(PipelineMetrics.Bottleneck.MERGE, metrics.bottleneck());
+
+        metrics.recordStage(PipelineMetrics.Stage.OUTPUT, 3 * SECOND);
+        assertEquals(PipelineMetrics.Bottleneck.OUTPUT, metrics.bottleneck());
+        assertEquals("output-bound", metrics.bottleneck().toString());
+    }
+
+    @Test
+    void reportShouldHoldEveryStage() {
+        //region Arrange
+        final PipelineMetrics metrics = new PipelineMetrics();
+        metrics.recordReader(reader(2 * 1024 * 1024, SECOND, SECOND / 2));
+        metrics.recordParser(parser(500, SECOND, 0));
+        metrics.recordStage(PipelineMetrics.Stage.READ, SECOND);
+        metrics.recordStage(PipelineMetrics.Stage.PARSE, 2 * SECOND);
+        metrics.recordQueueDepth(0, 4);
+        metrics.recordQueueDepth(4, 4);
+        metrics.recordQueueDepth(2, 4);
+        //endregion
+
+        //region Act
+        final String json = metrics.toJson();
+        final String summary = metrics.summary();
+        //endregion
+
+        //region Assert
+        assertTrue(json.contains("\"bottleneck\": \"parser-bound\""), json);
+        assertTrue(json.contains("\"readMillis\": 1000.000, \"parseMillis\": 2000.000"), json);
+        assertTrue(json.contains("\"bytes\": 2097152, \"bytesPerSecond\": 2097152.000"), json);
+        assertTrue(json.contains("{\"bytes\": 2097152, \"elapsedMillis\": 1000.000, \"blockedMillis\": 500.000}"), json);
+        assertTrue(json.contains("{\"words\": 500, \"lines\": 50, \"busyMillis\": 1000.000, \"blockedMillis\": 0.000, \"wordsPerSecond\": 500.000}"), json);
+        assertTrue(json.contains("\"capacity\": 4, \"sampleMillis\": 100, \"samples\": 3, \"meanDepth\": 2.000, \"maxDepth\": 4"), json);
+        assertTrue(json.contains("\"depths\": [0, 4, 2]"), json);
+        assertTrue(summary.startsWith("Pipeline: read 2.0 MB/s, parsed 250 words/s"), summary);
+        assertTrue(summary.endsWith("parser-bound."), summary);
+        //endregion
+    }
+
+    @Test
+    void eventsShouldCommitWithOrWithoutFlightRecorder() {
+        //Without a recording, or without jdk.jfr at all, committing does nothing. It must not fail either way.
+        FlightRecorderEvents.STAGE_FINISHED.commit("merge", SECOND);
+        FlightRecorderEvents.QUEUE_DEPTH.commit(1, 2);
+
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> FlightRecorderEvents.QUEUE_DEPTH.commit(1));
+        assertEquals("Expected 2 values, got 1.", illegalArgumentException.getMessage());
+    }
+
+    private static PipelineMetrics.ParserStage parser(long words, long busyNanos, long blockedNanos) {
+        return new PipelineMetrics.ParserStage() {
+            @Override
+            public long words() {
+                return words;
+            }
+
+            @Override
+            public long lines() {
+                return words / 10;
+            }
+
+            @Override
+            public long busyNanos() {
+                return busyNanos;
+            }
+
+            @Override
+            public long blockedNanos() {
+                return blockedNanos;
+            }
+        };
+    }
+
+    private static PipelineMetrics.ReaderStage reader(long bytes, long elapsedNanos, long blockedNanos) {
+        return new PipelineMetrics.ReaderStage() {
+            @Override
+            public long bytesRead() {
+                return bytes;
+            }
+
+            @Override
+            public long elapsedNanos() {
+                return elapsedNanos;
+            }
+
+            @Override
+            public long blockedNanos() {
+                return blockedNanos;
+            }
+        };
+    }
+}
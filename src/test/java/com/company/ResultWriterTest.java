@@ -0,0 +1,161 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for ResultWriter class.
+ */
+class ResultWriterTest {
+
+    private static final String NL = ConsoleOutput.NEW_LINE;
+
+    @Test
+    void instantiationShouldThrowWithNullOutput() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new ResultWriter(null, RunOptions.OutputFormat.TEXT, RunOptions.SortOrder.NONE));
+        assertEquals("'output' cannot be null.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void textShouldBeSortedByCountThenWordAcrossPartitions() throws IOException {
+        final String text = write(sample(), RunOptions.OutputFormat.TEXT, RunOptions.SortOrder.COUNT);
+        assertEquals("{'dogs': 3}" + NL + "{'are': 2}" + NL + "{'like': 2}" + NL
+                + "{'cute': 1}" + NL + "{'i': 1}" + NL + "{'others': 1}" + NL + "{'the': 1}" + NL, text);
+    }
+
+    @Test
+    void csvShouldBeSortedByWord() throws IOException {
+        final String csv = write(sample(), RunOptions.OutputFormat.CSV, RunOptions.SortOrder.WORD);
+        assertEquals("word,count" + NL + "are,2" + NL + "cute,1" + NL + "dogs,3" + NL + "i,1" + NL
+                + "like,2" + NL + "others,1" + NL + "the,1" + NL, csv);
+    }
+
+    @Test
+    void jsonShouldBeOneObject() throws IOException {
+        assertEquals("{" + NL + "  \"dogs\": 3," + NL + "  \"i\": 1" + NL + "}" + NL,
+                write(countsOf(3, "dogs", "i", "dogs", "dogs"), RunOptions.OutputFormat.JSON, RunOptions.SortOrder.COUNT));
+        assertEquals("{" + NL + "}" + NL,
+                write(countsOf(3), RunOptions.OutputFormat.JSON, RunOptions.SortOrder.NONE));
+    }
+
+    @Test
+    void binaryShouldRoundTripEveryCount() throws IOException {
+
+        //region Arrange
+
+        //More words than fit in the write buffer, so that it is flushed on the way.
+        final PartitionedWordCounts counts = new PartitionedWordCounts(4);
+        for (int word = 0; word < 200_000; word++) {
+            final byte[] bytes = ("w" + word).getBytes(StandardCharsets.US_ASCII);
+            counts.add(bytes, 0, bytes.length, word * 1000L + 1);
+        }
+
+        //endregion
+
+        //region Act
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ResultWriter(output, RunOptions.OutputFormat.BINARY, RunOptions.SortOrder.NONE).write(counts);
+
+        //endregion
+
+        //region Assert
+
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(ResultWriter.BINARY_MAGIC, input.readInt());
+        final long size = readVarLong(input);
+        final HashMap<String, Long> actual = new HashMap<>();
+        for (long entry = 0; entry < size; entry++) {
+            final byte[] word = new byte[(int) readVarLong(input)];
+            input.readFully(word);
+            actual.put(new String(word, StandardCharsets.US_ASCII), readVarLong(input));
+        }
+        assertEquals(-1, input.read());
+        assertEquals(counts.toMap(), actual);
+
+        //endregion
+    }
+
+    @Test
+    void sortByCountShouldMatchASerialSort() throws IOException {
+        final PartitionedWordCounts counts = new PartitionedWordCounts(5);
+        final List<String> words = new ArrayList<>();
+        for (int word = 0; word < 5000; word++) {
+            final byte[] bytes = ("w" + word).getBytes(StandardCharsets.US_ASCII);
+            counts.add(bytes, 0, bytes.length, (word * 7919L) % 97);
+            words.add("w" + word);
+        }
+        final HashMap<String, Long> map = counts.toMap();
+        words.sort((first, second) -> map.get(first).equals(map.get(second))
+                ? first.compareTo(second) : Long.compare(map.get(second), map.get(first)));
+
+        final String csv = write(counts, RunOptions.OutputFormat.CSV, RunOptions.SortOrder.COUNT);
+        final List<String> lines = Arrays.asList(csv.split(NL));
+        for (int index = 0; index < words.size(); index++) {
+            assertEquals(words.get(index) + "," + map.get(words.get(index)), lines.get(index + 1));
+        }
+    }
+
+    @Test
+    void aLargeResultSortedOnAnExecutorShouldMatchTheCallingThread() throws IOException {
+        //More words than are sorted on the calling thread anyway.
+        final PartitionedWordCounts counts = new PartitionedWordCounts(7);
+        for (int word = 0; word < 100000; word++) {
+            final byte[] bytes = ("w" + word).getBytes(StandardCharsets.US_ASCII);
+            counts.add(bytes, 0, bytes.length, (word * 7919L) % 97);
+        }
+
+        final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory("result-writer-test-"));
+        try {
+            for (RunOptions.SortOrder sort : new RunOptions.SortOrder[]{RunOptions.SortOrder.COUNT, RunOptions.SortOrder.WORD}) {
+                final ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+                new ResultWriter(parallel, RunOptions.OutputFormat.CSV, sort, executor).write(counts);
+                assertEquals(write(counts, RunOptions.OutputFormat.CSV, sort), new String(parallel.toByteArray(), StandardCharsets.US_ASCII));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String write(PartitionedWordCounts counts, RunOptions.OutputFormat format, RunOptions.SortOrder sort) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ResultWriter(output, format, sort).write(counts);
+        return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static PartitionedWordCounts sample() {
+        return countsOf(3, "i", "like", "dogs", "dogs", "are", "cute", "are", "the", "others", "like", "dogs");
+    }
+
+    private static PartitionedWordCounts countsOf(int partitionCount, String... words) {
+        final PartitionedWordCounts counts = new PartitionedWordCounts(partitionCount);
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            counts.accept(bytes, 0, bytes.length);
+        }
+        return counts;
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+}
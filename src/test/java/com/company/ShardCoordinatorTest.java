@@ -0,0 +1,186 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for ShardCoordinator, ShardWorker and ShardProtocol classes.
+ */
+class ShardCoordinatorTest {
+
+    private Path _small;
+    private Path _log;
+    private ExecutorService _executor;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        _small = Files.createTempFile("shard-small", ".txt");
+        _log = Files.createTempFile("shard-worker", ".log");
+        Files.write(_small, "the end of the play".getBytes(StandardCharsets.US_ASCII));
+        _executor = Executors.newCachedThreadPool(new DaemonThreadFactory("shard-test-"));
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        _executor.shutdownNow();
+        Files.deleteIfExists(_small);
+        Files.deleteIfExists(_log);
+    }
+
+    @Test
+    void instantiationShouldThrowWithAnInputThatIsNotARegularFile() {
+        final String directory = _small.getParent().toString();
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new ShardCoordinator(new String[]{directory}, 0, 2, 1024, 1000));
+        assertEquals("A distributed count reads regular files only: " + directory, illegalArgumentException.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> new ShardCoordinator(new String[0], 0, 2, 1024, 1000));
+    }
+
+    @Test
+    void shardsShouldCoverTheFilesAndEndAfterADelimiter() throws IOException {
+        final Path hamlet = GzipMemberChainTest.hamlet();
+        final byte[] text = Files.readAllBytes(hamlet);
+        final List<FileRange[]> shards = ShardCoordinator.planShards(new String[]{hamlet.toString(), _small.toString()}, 10_000);
+
+        //The ranges of hamlet follow each other, then the small file is a shard of its own.
+        long position = 0;
+        for (FileRange[] shard : shards.subList(0, shards.size() - 1)) {
+            assertEquals(1, shard.length);
+            assertEquals(position, shard[0].start());
+            assertTrue(shard[0].end() - shard[0].start() >= 10_000 || shard[0].end() == text.length);
+            if (shard[0].end() < text.length) assertTrue(MappedFileReader.isDelimiter(text[(int) shard[0].end() - 1]));
+            position = shard[0].end();
+        }
+        assertEquals(text.length, position);
+        final FileRange[] last = shards.get(shards.size() - 1);
+        assertEquals(1, last.length);
+        assertTrue(last[0].isWholeFile());
+        assertEquals(_small.toAbsolutePath().toString(), last[0].path());
+
+        //Files smaller than a shard are grouped.
+        assertEquals(1, ShardCoordinator.planShards(new String[]{_small.toString(), _small.toString()}, 10_000).size());
+    }
+
+    @Test
+    void countShouldMatchASingleCountWhenAWorkerIsLost() throws Exception {
+
+        //region Arrange
+
+        final String hamlet = GzipMemberChainTest.hamlet().toString();
+        final HashMap<String, Long> expected;
+        try (WordCounter counter = WordCounter.builder().threads(2).build()) {
+            expected = counter.count(hamlet, _small.toString()).counts().toMap();
+        }
+        final ShardCoordinator coordinator = new ShardCoordinator(new String[]{hamlet, _small.toString()}, 0, 3, 8 * 1024, 10_000);
+        assertTrue(coordinator.shardCount() > 10);
+
+        //endregion
+
+        //region Act
+
+        final Future<WordCountResult> result = _executor.submit(coordinator::count);
+
+        //A worker that takes a shard, then goes away without its result.
+        try (Socket socket = new Socket("localhost", coordinator.port())) {
+            final DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            ShardProtocol.writeHello(output);
+            final DataInputStream input = new DataInputStream(socket.getInputStream());
+            assertEquals(ShardProtocol.SHARD, input.readByte());
+            assertEquals(3, ShardProtocol.readShard(input).partitionCount());
+        }
+
+        //Then a worker in another JVM, and once it joined, one in this JVM.
+        final Process process = startWorkerProcess(coordinator.port());
+        final Future<Integer> worker;
+        try (WordCounter counter = WordCounter.builder().threads(2).build()) {
+            awaitWorkers(coordinator, 2);
+            worker = _executor.submit(() -> new ShardWorker(counter, "localhost", coordinator.port()).run());
+            result.get(60, TimeUnit.SECONDS);
+            worker.get(10, TimeUnit.SECONDS);
+        } finally {
+            assertTrue(process.waitFor(10, TimeUnit.SECONDS) || !process.destroyForcibly().isAlive());
+        }
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(expected, result.get().counts().toMap());
+        assertEquals(3, result.get().counts().partitionCount());
+        assertEquals(1, coordinator.reassignedCount());
+        assertEquals(3, coordinator.workerCount());
+        assertEquals(0, process.exitValue());
+
+        //endregion
+    }
+
+    @Test
+    void countShouldFailWhenAShardFailsOnEveryAttempt() throws Exception {
+        final ShardCoordinator coordinator = new ShardCoordinator(new String[]{_small.toString()}, 0, 2, 1024, 10_000);
+        final Future<WordCountResult> result = _executor.submit(coordinator::count);
+
+        //A worker that cannot count anything.
+        try (Socket socket = new Socket("localhost", coordinator.port())) {
+            final DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            final DataInputStream input = new DataInputStream(socket.getInputStream());
+            ShardProtocol.writeHello(output);
+            for (int attempt = 0; attempt < ShardCoordinator.MAX_ATTEMPTS; attempt++) {
+                assertEquals(ShardProtocol.SHARD, input.readByte());
+                ShardProtocol.writeFailure(output, ShardProtocol.readShard(input).id(), "No disk.");
+            }
+        }
+
+        final ExecutionException executionException = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertTrue(executionException.getCause() instanceof IOException);
+        assertTrue(executionException.getCause().getMessage().startsWith("Shard 0 failed on 3 workers."),
+                executionException.getCause().getMessage());
+        assertTrue(executionException.getCause().getMessage().endsWith("No disk."), executionException.getCause().getMessage());
+    }
+
+    /**
+     * Waits for the workers to join, and fails with the output of the worker process when they do not in time.
+     */
+    private void awaitWorkers(ShardCoordinator coordinator, int workerCount) throws IOException, InterruptedException {
+        final long deadline = System.currentTimeMillis() + ShardWorker.CONNECT_TIMEOUT_MILLIS;
+        while (coordinator.workerCount() < workerCount) {
+            if (System.currentTimeMillis() >= deadline) {
+                fail(coordinator.workerCount() + " of " + workerCount + " workers joined. Worker process output:"
+                        + System.lineSeparator() + new String(Files.readAllBytes(_log), StandardCharsets.UTF_8));
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private Process startWorkerProcess(int port) throws IOException, URISyntaxException {
+        final List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        //The classes of the application, wherever the build put them, rather than the class path of the test runner.
+        command.add(Paths.get(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        command.add(Main.class.getName());
+        command.add("--join=localhost:" + port);
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(_log.toFile()).start();
+    }
+}
@@ -0,0 +1,140 @@
+package com.company;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for SortedRuns and SpillingWordCounts classes.
+ */
+class SortedRunsTest {
+
+    private Path _directory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        _directory = Files.createTempDirectory("runs");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(_directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void mergeShouldSumEqualWordsInWordOrder() throws IOException {
+
+        //region Arrange
+
+        final List<Path> runs = new ArrayList<>();
+        runs.add(SortedRuns.writeRun(_directory, tableOf("pear", "apple", "pear", "fig")));
+        runs.add(SortedRuns.writeRun(_directory, tableOf("banana", "pear")));
+        runs.add(SortedRuns.writeRun(_directory, tableOf("apple", "zucchini", "ap")));
+        final SortedRuns sortedRuns = new SortedRuns(_directory, runs);
+
+        //endregion
+
+        //region Act
+
+        final StringBuilder merged = new StringBuilder();
+        sortedRuns.merge((word, offset, length, count) ->
+                merged.append(new String(word, offset, length, StandardCharsets.US_ASCII)).append('=').append(count).append(' '));
+
+        //endregion
+
+        //region Assert
+
+        assertEquals("ap=1 apple=2 banana=1 fig=1 pear=3 zucchini=1 ", merged.toString());
+        assertEquals(0, fileCount());
+        assertThrows(IllegalStateException.class, () -> sortedRuns.merge((word, offset, length, count) -> { }));
+
+        //endregion
+    }
+
+    @Test
+    void moreRunsThanTheFanInShouldBeMergedInPasses() throws IOException {
+
+        //region Arrange
+
+        //A budget smaller than an empty table spills after every new word, into a run each.
+        final SpillingWordCounts counts = new SpillingWordCounts(_directory, 1);
+        final int distinctWords = SortedRuns.MAX_FAN_IN * 3;
+        for (int round = 0; round < 2; round++) {
+            for (int index = distinctWords - 1; index >= 0; index--) {
+                final byte[] word = String.format("w%04d", index).getBytes(StandardCharsets.US_ASCII);
+                counts.accept(word, 0, word.length);
+            }
+        }
+        final List<Path> runs = counts.finish();
+
+        //endregion
+
+        //region Act
+
+        final List<String> words = new ArrayList<>();
+        final long[] total = new long[1];
+        new SortedRuns(_directory, runs).merge((word, offset, length, count) -> {
+            words.add(new String(word, offset, length, StandardCharsets.US_ASCII));
+            total[0] += count;
+            assertEquals(2L, count);
+        });
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(distinctWords * 2, runs.size());
+        assertEquals(distinctWords, words.size());
+        assertEquals("w0000", words.get(0));
+        assertEquals(String.format("w%04d", distinctWords - 1), words.get(distinctWords - 1));
+        assertEquals(distinctWords * 2L, total[0]);
+        assertEquals(0, fileCount());
+
+        //endregion
+    }
+
+    @Test
+    void spillingWordCountsWithinTheirBudgetShouldWriteASingleRun() throws IOException {
+        final SpillingWordCounts counts = new SpillingWordCounts(_directory, 1024 * 1024);
+        for (String word : new String[]{"one", "two", "one"}) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            counts.accept(bytes, 0, bytes.length);
+        }
+        final SortedRuns sortedRuns = new SortedRuns(_directory, counts.finish());
+        assertEquals(1, sortedRuns.runCount());
+        assertTrue(sortedRuns.bytes() > 0);
+    }
+
+    @Test
+    void mergeOfNoRunsShouldVisitNothing() throws IOException {
+        new SortedRuns(_directory, new ArrayList<>()).merge((word, offset, length, count) -> fail("No word expected."));
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> paths = Files.list(_directory)) {
+            return paths.count();
+        }
+    }
+
+    private static WordCountTable tableOf(String... words) {
+        final WordCountTable table = new WordCountTable();
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            table.accept(bytes, 0, bytes.length);
+        }
+        return table;
+    }
+}
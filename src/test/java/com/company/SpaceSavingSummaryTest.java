@@ -0,0 +1,91 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for SpaceSavingSummary class.
+ */
+class SpaceSavingSummaryTest {
+
+    @Test
+    void instantiationShouldThrowWithNonPositiveCapacity() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new SpaceSavingSummary(0));
+        assertEquals("'capacity' must be positive.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void countsShouldBeExactWhenTheVocabularyFits() {
+        final SpaceSavingSummary summary = new SpaceSavingSummary(100);
+        count(summary, "dogs", "are", "dogs", "cute", "dogs", "are");
+
+        final List<SpaceSavingSummary.HeavyHitter> top = summary.top(2);
+        assertEquals(6L, summary.totalCount());
+        assertEquals(0L, summary.unlistedBound());
+        assertEquals("dogs", top.get(0).word());
+        assertEquals(3L, top.get(0).count());
+        assertEquals(0L, top.get(0).error());
+        assertEquals("are", top.get(1).word());
+        assertEquals(2L, top.get(1).count());
+    }
+
+    @Test
+    void trueCountsShouldBeWithinTheBoundsOfASkewedStream() {
+
+        //region Arrange
+
+        //Far more distinct words than counters, with a few words much more frequent than the rest.
+        final Random random = new Random(7);
+        final HashMap<String, Long> exact = new HashMap<>();
+        final List<SpaceSavingSummary> summaries = new ArrayList<>();
+        for (int parser = 0; parser < 4; parser++) summaries.add(new SpaceSavingSummary(64));
+
+        //endregion
+
+        //region Act
+
+        for (int index = 0; index < 200000; index++) {
+            final int rank = (int) Math.min(100000, 1 / Math.max(1e-5, random.nextDouble()));
+            final String word = "w" + rank;
+            exact.merge(word, 1L, Long::sum);
+            count(summaries.get(index % summaries.size()), word);
+        }
+        final SpaceSavingSummary merged = SpaceSavingSummary.merge(summaries, 64);
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(200000L, merged.totalCount());
+        final List<SpaceSavingSummary.HeavyHitter> top = merged.top(5);
+        for (SpaceSavingSummary.HeavyHitter hitter : top) {
+            final long trueCount = exact.get(hitter.word());
+            assertTrue(hitter.lowerBound() <= trueCount && trueCount <= hitter.count(), hitter.word());
+        }
+        assertEquals("w1", top.get(0).word());
+        assertEquals("w2", top.get(1).word());
+        final HashSet<String> listed = new HashSet<>();
+        for (SpaceSavingSummary.HeavyHitter hitter : merged.top(merged.capacity())) listed.add(hitter.word());
+        for (String word : exact.keySet()) {
+            if (!listed.contains(word)) assertTrue(exact.get(word) <= merged.unlistedBound(), word);
+        }
+
+        //endregion
+    }
+
+    private static void count(SpaceSavingSummary summary, String... words) {
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            summary.accept(bytes, 0, bytes.length);
+        }
+    }
+}
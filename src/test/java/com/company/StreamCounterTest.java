@@ -0,0 +1,71 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for StreamCounter class.
+ */
+class StreamCounterTest {
+
+    @Test
+    void countShouldEndWhenEveryParserFails() throws Exception {
+
+        //region Arrange
+
+        //Every parser is interrupted as it starts, so it dies at its first take from the channel.
+        final ExecutorService parserExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                new DaemonThreadFactory("stream-test-parser-")) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                thread.interrupt();
+            }
+        };
+        final ExecutorService readerExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("stream-test-reader-"));
+        final ExecutorService countExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("stream-test-count-"));
+
+        //Far more chunks than fit in the channel.
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < 64 * 1024) text.append("more words than the parsers can take ");
+        final ByteArrayInputStream input = new ByteArrayInputStream(text.toString().getBytes(StandardCharsets.US_ASCII));
+        final StreamCounter counter = new StreamCounter(parserExecutor, readerExecutor, 2, 2, StandardCharsets.US_ASCII,
+                RunOptions.Tokenizer.SCALAR, 64);
+        final AtomicInteger lastSnapshots = new AtomicInteger();
+
+        //endregion
+
+        try {
+
+            //region Act
+
+            final Future<?> count = countExecutor.submit(() -> counter.count(input, StreamWindow.of(RunOptions.Window.CUMULATIVE, 0, 20),
+                    (result, last) -> {
+                        if (last) lastSnapshots.incrementAndGet();
+                    }));
+
+            //endregion
+
+            //region Assert
+
+            count.get(10, TimeUnit.SECONDS);
+            assertEquals(1, lastSnapshots.get());
+
+            //endregion
+        } finally {
+            parserExecutor.shutdownNow();
+            readerExecutor.shutdownNow();
+            countExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for StreamWindow class.
+ */
+class StreamWindowTest {
+
+    @Test
+    void cumulativeWindowShouldKeepEveryPane() {
+        final StreamWindow window = StreamWindow.of(RunOptions.Window.CUMULATIVE, 0, 100);
+        window.add(paneOf("a", "b"));
+        final PartitionedWordCounts counts = window.add(paneOf("a", "c"));
+
+        assertEquals(100, window.paneMillis());
+        assertEquals(3, counts.size());
+        assertEquals(2L, counts.get("a"));
+    }
+
+    @Test
+    void tumblingWindowShouldStartFromZeroInEveryWindow() {
+        final StreamWindow window = StreamWindow.of(RunOptions.Window.TUMBLING, 500, 100);
+        window.add(paneOf("a", "b"));
+        final PartitionedWordCounts counts = window.add(paneOf("a", "c"));
+
+        //A pane lasts a whole window, whatever the snapshot interval.
+        assertEquals(500, window.paneMillis());
+        assertEquals(2, counts.size());
+        assertEquals(1L, counts.get("a"));
+        assertEquals(0L, counts.get("b"));
+    }
+
+    @Test
+    void slidingWindowShouldExpireTheOldestPane() {
+
+        //region Arrange
+
+        final StreamWindow window = StreamWindow.of(RunOptions.Window.SLIDING, 300, 100);
+
+        //endregion
+
+        //region Act
+
+        window.add(paneOf("a"));
+        window.add(paneOf("a", "b"));
+        final PartitionedWordCounts full = window.add(paneOf("c"));
+        final PartitionedWordCounts slid = window.add(paneOf("c"));
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(100, window.paneMillis());
+        assertEquals(2L, full.get("a"));
+        assertEquals(1L, full.get("c"));
+        assertEquals(1L, slid.get("a"));
+        assertEquals(1L, slid.get("b"));
+        assertEquals(2L, slid.get("c"));
+
+        //endregion
+    }
+
+    @Test
+    void slidingWindowShouldBeAWholeNumberOfIntervals() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> StreamWindow.of(RunOptions.Window.SLIDING, 250, 100));
+        assertEquals("A sliding window must be a whole number of snapshot intervals long.", illegalArgumentException.getMessage());
+    }
+
+    private static PartitionedWordCounts paneOf(String... words) {
+        final PartitionedWordCounts pane = new PartitionedWordCounts(4);
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            pane.accept(bytes, 0, bytes.length);
+        }
+        return pane;
+    }
+}
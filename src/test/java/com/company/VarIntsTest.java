@@ -0,0 +1,71 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for VarInts class.
+ */
+class VarIntsTest {
+
+    private static final long[] VALUES = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+
+    @Test
+    void numbersShouldReadBackAsTheyWereWrittenToAStream() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        for (long value : VALUES) VarInts.write(output, value);
+
+        final ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+        for (long value : VALUES) assertEquals(value, VarInts.read(input));
+        assertEquals(-1, input.read());
+    }
+
+    @Test
+    void numbersShouldBeTheSameBytesInABufferAsInAStream() throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[VALUES.length * VarInts.MAX_LENGTH];
+        int offset = 0;
+        for (long value : VALUES) {
+            VarInts.write(output, value);
+            offset = VarInts.write(buffer, offset, value);
+        }
+        final byte[] bytes = Arrays.copyOf(buffer, offset);
+        assertArrayEquals(output.toByteArray(), bytes);
+
+        final int[] position = {0};
+        for (long value : VALUES) assertEquals(value, VarInts.read(bytes, position));
+        assertEquals(bytes.length, position[0]);
+    }
+
+    @Test
+    void aSevenBitNumberShouldTakeOneByteAndAllBitsTen() {
+        assertEquals(1, VarInts.write(new byte[VarInts.MAX_LENGTH], 0, 127));
+        assertEquals(2, VarInts.write(new byte[VarInts.MAX_LENGTH], 0, 128));
+        assertEquals(VarInts.MAX_LENGTH, VarInts.write(new byte[VarInts.MAX_LENGTH], 0, -1));
+    }
+
+    @Test
+    void readShouldThrowOnACutOffNumber() {
+        final byte[] cutOff = {(byte) 0x80, (byte) 0x80};
+        assertThrows(EOFException.class, () -> VarInts.read(new ByteArrayInputStream(cutOff)));
+        assertThrows(EOFException.class, () -> VarInts.read(cutOff, new int[]{0}));
+    }
+
+    @Test
+    void readShouldThrowOnANumberOfMoreThan64Bits() {
+        final byte[] tooLong = new byte[VarInts.MAX_LENGTH + 1];
+        Arrays.fill(tooLong, (byte) 0x80);
+        tooLong[tooLong.length - 1] = 1;
+        final IOException streamFailure = assertThrows(IOException.class, () -> VarInts.read(new ByteArrayInputStream(tooLong)));
+        assertEquals("A number of more than 64 bits.", streamFailure.getMessage());
+        final IOException bytesFailure = assertThrows(IOException.class, () -> VarInts.read(tooLong, new int[]{0}));
+        assertEquals("A number of more than 64 bits.", bytesFailure.getMessage());
+    }
+}
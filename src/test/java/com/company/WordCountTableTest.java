@@ -0,0 +1,99 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for WordCountTable class.
+ */
+class WordCountTableTest {
+
+    @Test
+    void instantiationShouldThrowWithNegativeSize() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new WordCountTable(-1));
+        assertEquals("'expectedSize' cannot be negative.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void countsShouldMatchHashMapAcrossGrowth() {
+
+        //region Arrange
+
+        //More distinct words than the initial capacity, so that the entries, keys and index all grow.
+        final Random random = new Random(42);
+        final WordCountTable table = new WordCountTable(0);
+        final HashMap<String, Long> expected = new HashMap<>();
+
+        //endregion
+
+        //region Act
+
+        for (int index = 0; index < 100000; index++) {
+            final String word = "w" + random.nextInt(20000);
+            final byte[] bytes = ("  " + word).getBytes(StandardCharsets.US_ASCII);
+            table.accept(bytes, 2, bytes.length - 2);
+            expected.merge(word, 1L, Long::sum);
+        }
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(expected.size(), table.size());
+        assertEquals(expected, table.toMap());
+        for (String word : expected.keySet()) assertEquals(expected.get(word).longValue(), table.get(word));
+        assertEquals(0L, table.get("missing"));
+
+        //endregion
+    }
+
+    @Test
+    void mergeShouldAddCountsOfBothTables() {
+
+        //region Arrange
+
+        final WordCountTable first = tableOf("a", "b", "b");
+        final WordCountTable second = tableOf("b", "c");
+
+        //endregion
+
+        //region Act
+
+        first.merge(second);
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(3, first.size());
+        assertEquals(1L, first.get("a"));
+        assertEquals(3L, first.get("b"));
+        assertEquals(1L, first.get("c"));
+
+        //endregion
+    }
+
+    @Test
+    void forEachShouldVisitWordsInFirstSeenOrder() {
+        final WordCountTable table = tableOf("dogs", "are", "dogs", "cute");
+        final StringBuilder visited = new StringBuilder();
+        table.forEach((word, offset, length, count) ->
+                visited.append(new String(word, offset, length, StandardCharsets.US_ASCII)).append('=').append(count).append(' '));
+        assertEquals("dogs=2 are=1 cute=1 ", visited.toString());
+    }
+
+    private static WordCountTable tableOf(String... words) {
+        final WordCountTable table = new WordCountTable();
+        for (String word : words) {
+            final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            table.accept(bytes, 0, bytes.length);
+        }
+        return table;
+    }
+}
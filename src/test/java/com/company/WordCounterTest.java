@@ -0,0 +1,416 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for WordCounter class.
+ */
+class WordCounterTest {
+
+    private static final String TEST_DATA = new File(".").getAbsolutePath()
+            + File.separator + "src"
+            + File.separator + "test"
+            + File.separator + "resources"
+            + File.separator + "TestData";
+
+    @Test
+    void builderShouldThrowWithNonPositiveThreads() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> WordCounter.builder().threads(0));
+        assertEquals("'threads' must be positive.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void countShouldThrowWithoutInput() {
+        try (WordCounter counter = WordCounter.builder().threads(1).build()) {
+            final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                    counter::count);
+            assertEquals("No file path provided.", illegalArgumentException.getMessage());
+        }
+    }
+
+    @Test
+    void countShouldMatchTheProblemStatementInEveryReaderMode() {
+        final String problemText = TEST_DATA + File.separator + "problemText.txt";
+        for (RunOptions.ReaderMode readerMode : RunOptions.ReaderMode.values()) {
+            try (WordCounter counter = WordCounter.builder().threads(2).readerMode(readerMode).build()) {
+                final PartitionedWordCounts counts = counter.count(problemText).counts();
+                assertEquals(9, counts.size());
+                assertEquals(1, counts.get("i"));
+                assertEquals(2, counts.get("like"));
+                assertEquals(2, counts.get("dogs"));
+                assertEquals(2, counts.get("are"));
+                assertEquals(1, counts.get("others"));
+            }
+        }
+    }
+
+    @Test
+    void oneCounterShouldRunRepeatedAndConcurrentCountsWithTheSameResult() throws Exception {
+
+        //region Arrange
+
+        //A small memory budget, so that the rings of the batched transport are reused by the later counts.
+        final WordCounter counter = WordCounter.builder()
+                .threads(3)
+                .readerMode(RunOptions.ReaderMode.LINES)
+                .memoryBudget(1024 * 1024)
+                .build();
+        final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+        //endregion
+
+        try {
+
+            //region Act
+
+            final Map<String, Long> first = toMap(counter.count(TEST_DATA).counts());
+            final Map<String, Long> second = toMap(counter.count(TEST_DATA).counts());
+            final List<Future<WordCountResult>> concurrent = new ArrayList<>();
+            for (int index = 0; index < 4; index++) concurrent.add(callers.submit(() -> counter.count(TEST_DATA)));
+
+            //endregion
+
+            //region Assert
+
+            assertEquals(8104, first.size());
+            assertEquals(first, second);
+            for (Future<WordCountResult> result : concurrent) {
+                assertEquals(4, result.get().fileCount());
+                assertEquals(first, toMap(result.get().counts()));
+            }
+
+            //endregion
+
+        } finally {
+            callers.shutdown();
+            counter.close();
+        }
+    }
+
+    @Test
+    void topAndDistinctCountsShouldOnlyGiveTheirOwnResult() {
+        try (WordCounter counter = WordCounter.builder().threads(2).build()) {
+            final WordCountResult top = counter.countTop(1000, TEST_DATA);
+            assertEquals(RunOptions.CountMode.TOP, top.mode());
+            assertEquals("the", top.summary().top(1).get(0).word());
+            assertThrows(IllegalStateException.class, top::counts);
+
+            final WordCountResult distinct = counter.countDistinct(HyperLogLog.DEFAULT_PRECISION, TEST_DATA);
+            assertEquals(8104, distinct.sketch().estimate(), 8104 * 0.05);
+            assertThrows(IllegalStateException.class, distinct::summary);
+        }
+    }
+
+    @Test
+    void fileTasksShouldCountLikeThePipeline() throws IOException {
+
+        //region Arrange
+
+        //Plain, gzip and zip files, each read whole by its own task.
+        final Path directory = Files.createTempDirectory("file-tasks");
+        final String[] files = {"hamlet.txt", "problemText.txt", "My_Queen.txt", "The_Book_of_the_Native.txt"};
+        Files.copy(testFile(files[0]), directory.resolve(files[0]));
+        Files.copy(testFile(files[1]), directory.resolve(files[1]));
+        try (OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(directory.resolve(files[2] + ".gz")))) {
+            Files.copy(testFile(files[2]), gzip);
+        }
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(directory.resolve("book.zip")))) {
+            zip.putNextEntry(new ZipEntry(files[3]));
+            Files.copy(testFile(files[3]), zip);
+            zip.closeEntry();
+        }
+
+        //endregion
+
+        try (WordCounter fileTasks = WordCounter.builder().threads(2).execution(RunOptions.Execution.FILES).build();
+             WordCounter pipeline = WordCounter.builder().threads(2).build()) {
+
+            //region Act
+
+            final WordCountResult result = fileTasks.count(directory.toString());
+
+            //endregion
+
+            //region Assert
+
+            assertEquals(4, result.fileCount());
+            assertEquals(8104, result.counts().size());
+            assertEquals(toMap(pipeline.count(TEST_DATA).counts()), toMap(result.counts()));
+            assertEquals(2, toMap(fileTasks.count(directory.resolve(files[1]).toString()).counts()).get("dogs").longValue());
+
+            //endregion
+
+        } finally {
+            try (DirectoryStream<Path> created = Files.newDirectoryStream(directory)) {
+                for (Path file : created) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void aSharedDictionaryShouldCountLikeTablesPerParser() {
+        for (RunOptions.ReaderMode readerMode : RunOptions.ReaderMode.values()) {
+            try (WordCounter dictionary = WordCounter.builder().threads(3).partitions(4).readerMode(readerMode)
+                    .countStore(RunOptions.CountStore.DICTIONARY).build();
+                 WordCounter tables = WordCounter.builder().threads(3).partitions(4).readerMode(readerMode).build()) {
+                final PartitionedWordCounts counts = dictionary.count(TEST_DATA).counts();
+                assertEquals(4, counts.partitionCount());
+                assertEquals(toMap(tables.count(TEST_DATA).counts()), toMap(counts));
+            }
+        }
+    }
+
+    @Test
+    void inputShouldBeReadInTheGivenEncodingWhateverThePlatformDefault() throws IOException {
+        final String text = "Grüße, dogs and DOGS\n";
+        final Path utf8 = Files.createTempFile("encoding-utf8", ".txt");
+        final Path utf16 = Files.createTempFile("encoding-utf16", ".txt");
+        try {
+            Files.write(utf8, text.getBytes(StandardCharsets.UTF_8));
+            Files.write(utf16, text.getBytes(StandardCharsets.UTF_16));
+
+            //UTF-8 chunks are tokenized as bytes. UTF-16 cannot be cut into chunks, so it is decoded line by line.
+            try (WordCounter utf8Counter = WordCounter.builder().threads(2).build();
+                 WordCounter utf16Counter = WordCounter.builder().threads(2).encoding(StandardCharsets.UTF_16).build()) {
+                final PartitionedWordCounts counts = utf8Counter.count(utf8.toString()).counts();
+                assertEquals(4, counts.size());
+                assertEquals(1, counts.get("gr"));
+                assertEquals(1, counts.get("e"));
+                assertEquals(2, counts.get("dogs"));
+                assertEquals(toMap(counts), toMap(utf16Counter.count(utf16.toString()).counts()));
+            }
+        } finally {
+            Files.delete(utf8);
+            Files.delete(utf16);
+        }
+    }
+
+    @Test
+    void aStreamShouldBeSnapshottedBeforeItEnds() throws Exception {
+        final BlockingQueue<Map<String, Long>> snapshots = new LinkedBlockingQueue<>();
+        final BlockingQueue<Map<String, Long>> lastSnapshot = new LinkedBlockingQueue<>();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (WordCounter counter = WordCounter.builder().threads(2).build();
+             PipedInputStream stream = new PipedInputStream()) {
+            final StreamWindow window = StreamWindow.of(RunOptions.Window.CUMULATIVE, 0, 20);
+            final Future<?> count;
+            try (PipedOutputStream writer = new PipedOutputStream(stream)) {
+                count = executor.submit(() -> counter.countStream(stream, window,
+                        (result, last) -> (last ? lastSnapshot : snapshots).add(toMap(result.counts()))));
+
+                //The stream stays open, with a partial word at its end, until the complete words have been counted.
+                writer.write("one two TWO thr".getBytes(StandardCharsets.US_ASCII));
+                writer.flush();
+                Map<String, Long> snapshot;
+                do {
+                    snapshot = snapshots.poll(10, TimeUnit.SECONDS);
+                    assertNotNull(snapshot);
+                } while (snapshot.size() < 2);
+                assertEquals(Long.valueOf(1), snapshot.get("one"));
+                assertEquals(Long.valueOf(2), snapshot.get("two"));
+                assertFalse(snapshot.containsKey("thr"));
+
+                writer.write("ee\n".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            //Closing the writer ends the stream.
+            count.get(10, TimeUnit.SECONDS);
+            final Map<String, Long> last = lastSnapshot.poll();
+            assertNotNull(last);
+            assertEquals(3, last.size());
+            assertEquals(Long.valueOf(1), last.get("three"));
+            assertEquals(Long.valueOf(2), last.get("two"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void aCheckpointedCountShouldResumeWhereItsCheckpointEnds() throws IOException {
+        final Path directory = Files.createTempDirectory("checkpoint");
+        final Path first = Files.createTempFile("checkpoint-first", ".txt");
+        final Path second = Files.createTempFile("checkpoint-second", ".txt");
+        try {
+            Files.write(first, "one two three\n".getBytes(StandardCharsets.US_ASCII));
+            Files.write(second, "four five six\nseven\n".getBytes(StandardCharsets.US_ASCII));
+            final String[] filePath = {first.toString(), second.toString()};
+
+            //As if a count died after the first file and the first line of the second.
+            final CheckpointStore store = new CheckpointStore(directory);
+            final CheckpointStore.Progress progress = new CheckpointStore.Progress(2);
+            progress.complete(0);
+            progress.advance(1, "four five six\n".length());
+            try (WordCounter counter = WordCounter.builder().threads(2).build()) {
+                final PartitionedWordCounts counted = counter.count(first.toString()).counts();
+                for (String word : new String[]{"four", "five", "six"}) {
+                    final byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+                    counted.add(bytes, 0, bytes.length, 1);
+                }
+                store.save(filePath, progress, counted);
+            }
+
+            try (WordCounter counter = WordCounter.builder().threads(2).checkpoint(directory.toString(), 1).build()) {
+                final PartitionedWordCounts counts = counter.count(filePath).counts();
+                assertEquals(7, counts.size());
+                for (long count : toMap(counts).values()) assertEquals(1L, count);
+            }
+            assertFalse(Files.exists(directory.resolve("checkpoint.wck")));
+        } finally {
+            Files.delete(first);
+            Files.delete(second);
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                for (Path path : paths) Files.delete(path);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void checkpointsShouldNotChangeTheCounts() throws IOException {
+        final Path directory = Files.createTempDirectory("checkpoint");
+        try (WordCounter plain = WordCounter.builder().threads(2).build();
+             WordCounter checkpointed = WordCounter.builder().threads(2).checkpoint(directory.toString(), 1).build()) {
+            final WordCountResult result = checkpointed.count(TEST_DATA);
+            assertEquals(toMap(plain.count(TEST_DATA).counts()), toMap(result.counts()));
+            assertTrue(result.metrics().stageNanos(PipelineMetrics.Stage.CHECKPOINT) >= 0);
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void offHeapCountsShouldMatchTheHeapTables() throws IOException {
+        try (WordCounter tables = WordCounter.builder().threads(2).build();
+             WordCounter offHeap = WordCounter.builder().threads(2).countStore(RunOptions.CountStore.OFF_HEAP).build()) {
+            final WordCountResult expected = tables.count(TEST_DATA);
+            final WordCountResult result = offHeap.count(TEST_DATA);
+            assertEquals(toMap(expected.counts()), toMap(result.counts()));
+
+            final ByteArrayOutputStream expectedOutput = new ByteArrayOutputStream();
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            expected.write(expectedOutput, RunOptions.OutputFormat.BINARY, RunOptions.SortOrder.COUNT);
+            result.write(output, RunOptions.OutputFormat.BINARY, RunOptions.SortOrder.COUNT);
+            assertArrayEquals(expectedOutput.toByteArray(), output.toByteArray());
+        }
+    }
+
+    @Test
+    void spilledCountsShouldBeWrittenLikeTheCountsSortedByWord() throws IOException {
+        final Path directory = Files.createTempDirectory("spill");
+        try (WordCounter plain = WordCounter.builder().threads(2).build();
+             WordCounter spilling = WordCounter.builder().threads(2).spill(directory.toString(), 1).build()) {
+
+            //region Act
+
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            plain.count(TEST_DATA).write(expected, RunOptions.OutputFormat.CSV, RunOptions.SortOrder.WORD);
+            final WordCountResult result = spilling.count(TEST_DATA);
+            final ByteArrayOutputStream spilled = new ByteArrayOutputStream();
+            result.write(spilled, RunOptions.OutputFormat.CSV, RunOptions.SortOrder.NONE);
+
+            //endregion
+
+            //region Assert
+
+            assertTrue(result.spilled());
+            assertEquals(expected.toString("US-ASCII"), spilled.toString("US-ASCII"));
+            assertThrows(IllegalStateException.class, result::counts);
+            assertThrows(IllegalStateException.class,
+                    () -> result.write(new ByteArrayOutputStream(), RunOptions.OutputFormat.CSV, RunOptions.SortOrder.NONE));
+            try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                assertFalse(paths.iterator().hasNext());
+            }
+
+            //endregion
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void ngramCountsShouldRunAcrossLinesButNotAcrossFiles() throws IOException {
+        final Path first = Files.createTempFile("ngrams-first", ".txt");
+        final Path second = Files.createTempFile("ngrams-second", ".txt");
+        try (WordCounter counter = WordCounter.builder().threads(2).ngrams(3).build()) {
+            Files.write(first, "To be, or\nnot to be.\n".getBytes(StandardCharsets.US_ASCII));
+            Files.write(second, "be quick\n".getBytes(StandardCharsets.US_ASCII));
+
+            final WordCountResult result = counter.count(first.toString(), second.toString());
+            final HashMap<String, Long> counts = result.ngrams().toMap();
+
+            assertEquals(3L, counts.get("be").longValue());
+            assertEquals(2L, counts.get("to be").longValue());
+            assertEquals(1L, counts.get("or not").longValue());
+            assertEquals(1L, counts.get("be or not").longValue());
+            assertNull(counts.get("be be"));
+            assertEquals(toMap(result.counts()).size(), result.ngrams().words().size());
+            assertEquals(5 + 5 + 4, counts.size());
+        } finally {
+            Files.delete(first);
+            Files.delete(second);
+        }
+    }
+
+    @Test
+    void everyCountShouldCarryTheMetricsOfItsPipeline() {
+        final String problemText = TEST_DATA + File.separator + "problemText.txt";
+        for (RunOptions.ReaderMode readerMode : RunOptions.ReaderMode.values()) {
+            try (WordCounter counter = WordCounter.builder().threads(2).readerMode(readerMode).build()) {
+                final PipelineMetrics metrics = counter.count(problemText).metrics();
+                assertEquals(new File(problemText).length(), metrics.bytesRead());
+                assertEquals(12, metrics.words());
+                assertTrue(metrics.stageNanos(PipelineMetrics.Stage.PARSE) >= metrics.stageNanos(PipelineMetrics.Stage.READ));
+                assertTrue(metrics.stageNanos(PipelineMetrics.Stage.MERGE) > 0);
+                assertEquals(0, metrics.stageNanos(PipelineMetrics.Stage.OUTPUT));
+            }
+        }
+    }
+
+    @Test
+    void countShouldThrowOnceTheCounterIsClosed() {
+        final WordCounter counter = WordCounter.builder().threads(1).build();
+        counter.close();
+        final IllegalStateException illegalStateException = assertThrows(IllegalStateException.class,
+                () -> counter.count(TEST_DATA));
+        assertEquals("The word counter is closed.", illegalStateException.getMessage());
+    }
+
+    private static Path testFile(String name) {
+        return Paths.get(TEST_DATA, name);
+    }
+
+    private static Map<String, Long> toMap(PartitionedWordCounts counts) {
+        final Map<String, Long> map = new HashMap<>();
+        counts.forEach((word, offset, length, count) -> map.put(new String(word, offset, length, StandardCharsets.US_ASCII), count));
+        return map;
+    }
+}
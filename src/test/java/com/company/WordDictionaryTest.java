@@ -0,0 +1,125 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for WordDictionary and WordIdCounts classes.
+ */
+class WordDictionaryTest {
+
+    @Test
+    void instantiationShouldThrowWithNonPositiveStripeCount() {
+        final IllegalArgumentException illegalArgumentException = assertThrows(IllegalArgumentException.class,
+                () -> new WordDictionary(0));
+        assertEquals("'stripeCount' must be positive.", illegalArgumentException.getMessage());
+    }
+
+    @Test
+    void aWordShouldKeepItsIdAndBeFoundByIt() {
+        final WordDictionary dictionary = new WordDictionary(3);
+        final int dogs = idOf(dictionary, "dogs");
+        final int cats = idOf(dictionary, "cats");
+        assertNotEquals(dogs, cats);
+        assertEquals(dogs, idOf(dictionary, "dogs"));
+        assertEquals("dogs", dictionary.word(dogs));
+        assertEquals("cats", dictionary.word(cats));
+        assertEquals(2, dictionary.size());
+
+        final HashMap<Integer, String> visited = new HashMap<>();
+        dictionary.forEach((id, word, offset, length) -> visited.put(id, new String(word, offset, length, StandardCharsets.ISO_8859_1)));
+        assertEquals(2, visited.size());
+        assertEquals("dogs", visited.get(dogs));
+    }
+
+    @Test
+    void parsersOnManyThreadsShouldShareOneIdPerWord() throws Exception {
+
+        //region Arrange
+
+        final int threads = 4;
+        final int distinctWords = 20000;
+        final WordDictionary dictionary = new WordDictionary(4);
+        final List<WordIdCounts> parserCounts = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) parserCounts.add(new WordIdCounts(dictionary));
+
+        //endregion
+
+        //region Act
+
+        //Every thread counts every word once, in a different order, so they race to add each word.
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> parsers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final WordIdCounts counts = parserCounts.get(thread);
+                final int start = thread * distinctWords / threads;
+                parsers.add(executor.submit(() -> {
+                    for (int index = 0; index < distinctWords; index++) {
+                        final byte[] word = ("w" + (start + index) % distinctWords).getBytes(StandardCharsets.ISO_8859_1);
+                        counts.accept(word, 0, word.length);
+                    }
+                }));
+            }
+            for (Future<?> parser : parsers) parser.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        final WordCountTable[] stripes = new WordCountTable[dictionary.stripeCount()];
+        for (int stripe = 0; stripe < stripes.length; stripe++) stripes[stripe] = WordIdCounts.mergeStripe(stripe, parserCounts);
+        final PartitionedWordCounts merged = PartitionedWordCounts.of(stripes);
+
+        //endregion
+
+        //region Assert
+
+        assertEquals(distinctWords, dictionary.size());
+        assertEquals(distinctWords, merged.size());
+        for (int index = 0; index < distinctWords; index++) assertEquals(threads, merged.get("w" + index));
+        assertEquals(1L, parserCounts.get(0).get(idOf(dictionary, "w7")));
+
+        //endregion
+    }
+
+    @Test
+    void mergedStripesShouldBeTablesThatCanStillGrow() {
+        final WordDictionary dictionary = new WordDictionary(1);
+        final WordIdCounts counts = new WordIdCounts(dictionary);
+        for (int index = 0; index < 3000; index++) accept(counts, "w" + index);
+        accept(counts, "w0");
+
+        final List<WordIdCounts> parserCounts = new ArrayList<>();
+        parserCounts.add(counts);
+        final WordCountTable table = WordIdCounts.mergeStripe(0, parserCounts);
+        assertEquals(3000, table.size());
+        assertEquals(2L, table.get("w0"));
+
+        //A merged table is an ordinary one, such as for a later merge into it.
+        for (int index = 0; index < 3000; index++) {
+            final byte[] word = ("x" + index).getBytes(StandardCharsets.ISO_8859_1);
+            table.add(word, 0, word.length, 1L);
+        }
+        assertEquals(6000, table.size());
+        assertEquals(1L, table.get("w2999"));
+    }
+
+    private static int idOf(WordDictionary dictionary, String word) {
+        final byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+        return dictionary.idOf(bytes, 0, bytes.length);
+    }
+
+    private static void accept(WordIdCounts counts, String word) {
+        final byte[] bytes = word.getBytes(StandardCharsets.ISO_8859_1);
+        counts.accept(bytes, 0, bytes.length);
+    }
+}
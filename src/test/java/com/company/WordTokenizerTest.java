@@ -0,0 +1,179 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit Test class for WordTokenizer class.
+ * <p>
+ * The tokenizer replaced a "\W+" regex split followed by toLowerCase(). The differential tests below keep
+ * that original implementation as the reference, and compare the two on every file in TestData.
+ */
+class WordTokenizerTest {
+
+    private static final String NON_WORD_GREEDY_DELIMITER_REGEX = "\\W+";
+
+    @Test
+    void wordsShouldBeSplitOnNonWordCharactersAndLowerCased() {
+        final List<String> words = tokenize("  Hello,WORLD! it's snake_case 42\tnon-ASCII:café ");
+        assertEquals(9, words.size());
+        assertEquals("hello", words.get(0));
+        assertEquals("world", words.get(1));
+        assertEquals("it", words.get(2));
+        assertEquals("s", words.get(3));
+        assertEquals("snake_case", words.get(4));
+        assertEquals("42", words.get(5));
+        assertEquals("non", words.get(6));
+        assertEquals("ascii", words.get(7));
+        assertEquals("caf", words.get(8));
+    }
+
+    @Test
+    void emptyAndDelimiterOnlyTextShouldHaveNoWords() {
+        assertTrue(tokenize("").isEmpty());
+        assertTrue(tokenize(" .,;é\r\n").isEmpty());
+    }
+
+    @Test
+    void wordsAndLineFeedsShouldBeCountedOverEveryCall() {
+        final WordTokenizer tokenizer = new WordTokenizer();
+        final char[] text = "one two\n\nthree\n".toCharArray();
+        tokenizer.tokenize(text, 0, text.length, (word, offset, length) -> { });
+        tokenizer.tokenize("four, five", (word, offset, length) -> { });
+        assertEquals(5, tokenizer.words());
+        assertEquals(3, tokenizer.lines());
+    }
+
+    @Test
+    void wordsLongerThanTheInitialBufferShouldBeKeptWhole() {
+        final StringBuilder longWord = new StringBuilder();
+        for (int index = 0; index < 1000; index++) longWord.append('X');
+        final List<String> words = tokenize("a " + longWord + " b");
+        assertEquals(3, words.size());
+        assertEquals(longWord.toString().toLowerCase(), words.get(1));
+    }
+
+    @Test
+    void countsShouldMatchRegexSplitOnEveryTestDataFile() throws IOException {
+        final String sep = File.separator;
+        final Path testData = Paths.get(new File(".").getAbsolutePath()
+                + sep + "src"
+                + sep + "test"
+                + sep + "resources"
+                + sep + "TestData");
+
+        int fileCount = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(testData)) {
+            for (Path file : files) {
+                //Decode with replacement, so that files with malformed bytes are compared too.
+                final String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+                //Line by line, the way LineParser receives the lines.
+                final HashMap<String, Long> expected = new HashMap<>();
+                final HashMap<String, Long> actualByLine = new HashMap<>();
+                final WordTokenizer tokenizer = new WordTokenizer();
+                for (String line : text.split("\r\n|\r|\n")) {
+                    countWithRegex(line, expected);
+                    tokenizer.tokenize(line, (word, offset, length) -> count(word, offset, length, actualByLine));
+                }
+
+                //As a whole block of chars, the way batches and chunks are received.
+                final HashMap<String, Long> actualByBlock = new HashMap<>();
+                final char[] chars = text.toCharArray();
+                tokenizer.tokenize(chars, 0, chars.length, (word, offset, length) -> count(word, offset, length, actualByBlock));
+
+                assertEquals(expected, actualByLine, file.toString());
+                assertEquals(expected, actualByBlock, file.toString());
+                fileCount++;
+            }
+        }
+        assertTrue(fileCount > 0);
+    }
+
+    @Test
+    void everyBackendShouldFindTheWordsOfTheDecodedBytes() {
+        //Word characters, both cases, delimiters, line feeds and non-ASCII bytes, at every offset in a block.
+        final byte[] alphabet = "aZz_09AM \n.-\t".getBytes(StandardCharsets.US_ASCII);
+        final Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            final byte[] bytes = new byte[random.nextInt(100)];
+            for (int index = 0; index < bytes.length; index++) {
+                bytes[index] = random.nextInt(8) == 0 ? (byte) (0x80 | random.nextInt(0x80)) : alphabet[random.nextInt(alphabet.length)];
+            }
+            final int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            final String text = new String(bytes, offset, bytes.length - offset, StandardCharsets.UTF_8);
+
+            final WordTokenizer chars = new WordTokenizer();
+            final List<String> expected = new ArrayList<>();
+            chars.tokenize(text, (word, wordOffset, length) -> expected.add(new String(word, wordOffset, length, StandardCharsets.US_ASCII)));
+            for (RunOptions.Tokenizer backend : RunOptions.Tokenizer.values()) {
+                final WordTokenizer tokenizer = new WordTokenizer(backend);
+                final List<String> actual = new ArrayList<>();
+                final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, bytes.length - offset);
+                tokenizer.tokenize(buffer, (word, wordOffset, length) -> actual.add(new String(word, wordOffset, length, StandardCharsets.US_ASCII)));
+                assertEquals(expected, actual, backend + " on " + text);
+                assertEquals(chars.lines(), tokenizer.lines(), backend + " on " + text);
+                assertEquals(expected.size(), tokenizer.words());
+                assertEquals(0, buffer.remaining());
+            }
+        }
+    }
+
+    @Test
+    void swarShouldMatchScalarOnEveryTestDataFile() throws IOException {
+        int fileCount = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(new File(".").getAbsolutePath(), "src", "test", "resources", "TestData"))) {
+            for (Path file : files) {
+                final byte[] bytes = Files.readAllBytes(file);
+                final HashMap<String, Long> scalar = new HashMap<>();
+                final HashMap<String, Long> swar = new HashMap<>();
+                new WordTokenizer(RunOptions.Tokenizer.SCALAR).tokenize(ByteBuffer.wrap(bytes), (word, offset, length) -> count(word, offset, length, scalar));
+                new WordTokenizer(RunOptions.Tokenizer.SWAR).tokenize(ByteBuffer.wrap(bytes), (word, offset, length) -> count(word, offset, length, swar));
+                assertEquals(scalar, swar, file.toString());
+                fileCount++;
+            }
+        }
+        assertTrue(fileCount > 0);
+    }
+
+    //region Helpers
+
+    private static List<String> tokenize(String text) {
+        final List<String> words = new ArrayList<>();
+        new WordTokenizer().tokenize(text, (word, offset, length) -> words.add(new String(word, offset, length, StandardCharsets.US_ASCII)));
+        return words;
+    }
+
+    private static void count(byte[] word, int offset, int length, HashMap<String, Long> result) {
+        result.merge(new String(word, offset, length, StandardCharsets.US_ASCII), 1L, Long::sum);
+    }
+
+    /**
+     * The original LineParser implementation, kept as the reference for the differential test.
+     */
+    private static void countWithRegex(String line, HashMap<String, Long> result) {
+        for (String word : line.split(NON_WORD_GREEDY_DELIMITER_REGEX)) {
+            if (word.equals("")) continue;
+            word = word.toLowerCase();
+            if (!result.containsKey(word)) result.put(word, 0L);
+            result.put(word, result.get(word) + 1);
+        }
+    }
+
+    //endregion
+}
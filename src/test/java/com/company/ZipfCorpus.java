@@ -0,0 +1,168 @@
+package com.company;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates synthetic text for the benchmarks: words drawn from a fixed vocabulary with a Zipf distribution,
+ * where the word of rank r occurs in proportion to 1 / r^skew. Natural language has a skew of about one.
+ * <p>
+ * The same seed, vocabulary and skew always give the same text, so corpora do not have to be kept around:
+ * the benchmarks of two commits can regenerate the same one.
+ * <p>
+ * Run it on its own to write a corpus file: ZipfCorpus path size [vocabulary] [skew] [seed].
+ * The size takes a K, M or G suffix.
+ */
+final class ZipfCorpus {
+
+    //region Static Final Class Variables
+
+    static final int DEFAULT_VOCABULARY = 100_000;
+    static final double DEFAULT_SKEW = 1.0;
+    static final long DEFAULT_SEED = 42L;
+    private static final int WORDS_PER_LINE = 12;
+    private static final char[] LETTERS = "etaoinshrdlucmfwypvbgkjqxz".toCharArray();
+
+    //endregion
+
+    //region Final Variables
+
+    private final long _seed;
+    private final String[] _words;
+    private final double[] _cumulative;
+
+    //endregion
+
+    //region Constructor
+
+    /**
+     * @param vocabulary the number of distinct words the text is drawn from.
+     * @param skew       the Zipf exponent. 0 makes every word equally likely, higher values favor the first ranks.
+     */
+    ZipfCorpus(long seed, int vocabulary, double skew) {
+        if (vocabulary <= 0) throw new IllegalArgumentException("'vocabulary' must be positive.");
+        if (skew < 0) throw new IllegalArgumentException("'skew' cannot be negative.");
+        _seed = seed;
+
+        //The words get short names in rank order, so frequent words are short, as in natural language.
+        _words = new String[vocabulary];
+        for (int rank = 0; rank < vocabulary; rank++) _words[rank] = name(rank);
+
+        _cumulative = new double[vocabulary];
+        double total = 0;
+        for (int rank = 0; rank < vocabulary; rank++) {
+            total += 1.0 / Math.pow(rank + 1, skew);
+            _cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < vocabulary; rank++) _cumulative[rank] /= total;
+    }
+
+    //endregion
+
+    //region Generation
+
+    /**
+     * Writes about the given number of bytes of text, in lines of a dozen words. Always ends with a whole line.
+     */
+    void write(Writer output, long bytes) throws IOException {
+        write(output, bytes, new Random(_seed));
+    }
+
+    void write(Path path, long bytes) throws IOException {
+        try (BufferedWriter output = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+            write(output, bytes);
+        }
+    }
+
+    /**
+     * Writes the text into a number of files of about the same size, numbered from 0, and returns their paths.
+     * The files continue one text, so together they hold the same words as a single file of the whole size.
+     */
+    String[] writeFiles(Path directory, int files, long bytesPerFile) throws IOException {
+        if (files <= 0) throw new IllegalArgumentException("'files' must be positive.");
+        final Random random = new Random(_seed);
+        final String[] paths = new String[files];
+        for (int index = 0; index < files; index++) {
+            final Path path = directory.resolve(String.format("zipf-%06d.txt", index));
+            try (BufferedWriter output = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+                write(output, bytesPerFile, random);
+            }
+            paths[index] = path.toString();
+        }
+        return paths;
+    }
+
+    private void write(Writer output, long bytes, Random random) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        long written = 0;
+        while (written < bytes) {
+            line.setLength(0);
+            for (int index = 0; index < WORDS_PER_LINE; index++) {
+                if (index > 0) line.append(index % 5 == 0 ? ", " : " ");
+                line.append(_words[nextRank(random)]);
+            }
+            line.append('.').append('\n');
+            output.write(line.toString());
+            written += line.length();
+        }
+    }
+
+    /**
+     * @return the word of a rank, counted from 0 for the most frequent one.
+     */
+    String word(int rank) {
+        return _words[rank];
+    }
+
+    int vocabulary() {
+        return _words.length;
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private int nextRank(Random random) {
+        final int found = Arrays.binarySearch(_cumulative, random.nextDouble());
+        final int rank = found >= 0 ? found : -found - 1;
+        return Math.min(rank, _cumulative.length - 1);
+    }
+
+    /**
+     * Spells a rank in base 26, with the letters ordered by their frequency in English.
+     */
+    private static String name(int rank) {
+        final StringBuilder name = new StringBuilder();
+        int rest = rank;
+        do {
+            name.append(LETTERS[rest % LETTERS.length]);
+            rest = rest / LETTERS.length - 1;
+        } while (rest >= 0);
+        return name.toString();
+    }
+
+    //endregion
+
+    //region Command Line
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ZipfCorpus path size [vocabulary] [skew] [seed]");
+            return;
+        }
+        final long size = PipelineBenchmarks.parseSize(args[1]);
+        final int vocabulary = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_VOCABULARY;
+        final double skew = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_SKEW;
+        final long seed = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_SEED;
+        new ZipfCorpus(seed, vocabulary, skew).write(Paths.get(args[0]), size);
+    }
+
+    //endregion
+}
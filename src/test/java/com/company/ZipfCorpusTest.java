@@ -0,0 +1,71 @@
+package com.company;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit Test class for ZipfCorpus class.
+ */
+class ZipfCorpusTest {
+
+    @Test
+    void theSameSeedShouldGiveTheSameText() throws IOException {
+        assertEquals(generate(7, 1000, 1.0, 10_000), generate(7, 1000, 1.0, 10_000));
+        assertNotEquals(generate(7, 1000, 1.0, 10_000), generate(8, 1000, 1.0, 10_000));
+    }
+
+    @Test
+    void wordsShouldBeDistinctWordCharacters() {
+        final ZipfCorpus corpus = new ZipfCorpus(1, 50_000, 1.0);
+        final Set<String> words = new HashSet<>();
+        for (int rank = 0; rank < corpus.vocabulary(); rank++) {
+            assertTrue(corpus.word(rank).matches("[a-z]+"));
+            words.add(corpus.word(rank));
+        }
+        assertEquals(50_000, words.size());
+    }
+
+    @Test
+    void frequenciesShouldFollowTheSkew() throws IOException {
+
+        //region Arrange
+
+        final String text = generate(3, 1000, 1.0, 1_000_000);
+        final Map<String, Integer> counts = new HashMap<>();
+        for (String word : text.split("[^a-z]+")) {
+            if (!word.isEmpty()) counts.merge(word, 1, Integer::sum);
+        }
+        final ZipfCorpus corpus = new ZipfCorpus(3, 1000, 1.0);
+
+        //endregion
+
+        //region Act
+
+        final double firstToSecond = (double) counts.get(corpus.word(0)) / counts.get(corpus.word(1));
+        final double firstToTenth = (double) counts.get(corpus.word(0)) / counts.get(corpus.word(9));
+
+        //endregion
+
+        //region Assert
+
+        //With a skew of one, rank r occurs about 1/r as often as the first rank.
+        assertEquals(2.0, firstToSecond, 0.2);
+        assertEquals(10.0, firstToTenth, 1.5);
+
+        //endregion
+    }
+
+    private static String generate(long seed, int vocabulary, double skew, long bytes) throws IOException {
+        final StringWriter text = new StringWriter();
+        new ZipfCorpus(seed, vocabulary, skew).write(text, bytes);
+        return text.toString();
+    }
+}